@@ -0,0 +1,263 @@
+package edu.uw.zookeeper.client.trace;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Function;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Optional;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.typesafe.config.Config;
+
+import edu.uw.zookeeper.common.Configurable;
+import edu.uw.zookeeper.common.Configuration;
+import edu.uw.zookeeper.common.Generator;
+import edu.uw.zookeeper.common.Pair;
+import edu.uw.zookeeper.common.TimeValue;
+import edu.uw.zookeeper.protocol.proto.Records;
+
+/**
+ * Intended send times for open-loop load, as nanosecond offsets from the start of a run.
+ * 
+ * Specified as one of:
+ * <ul>
+ * <li>constant:RATE, evenly spaced
+ * <li>poisson:RATE, exponentially distributed gaps
+ * <li>step:[poisson:]RATE@DURATION,RATE@DURATION,..., 
+ * a piecewise constant rate that ends after the last step
+ * </ul>
+ * where RATE is per second and DURATION is a time value, e.g. step:100@10 s,1000@10 s.
+ */
+public abstract class ArrivalProcess extends AbstractIterator<Long> {
+
+    public static final long SECOND = TimeUnit.SECONDS.toNanos(1L);
+    
+    public static ArrivalProcess constant(double rate) {
+        return new Constant(rate);
+    }
+    
+    public static ArrivalProcess poisson(double rate, Random random) {
+        return new Poisson(rate, random);
+    }
+    
+    public static ArrivalProcess step(List<Step> steps, boolean poisson, Random random) {
+        return new Steps(steps, poisson, random);
+    }
+    
+    /**
+     * @param scale multiplies every rate, e.g. to split a total rate across clients
+     */
+    public static ArrivalProcess fromString(String value, double scale, Random random) {
+        int index = value.indexOf(':');
+        checkArgument(index > 0, value);
+        String kind = value.substring(0, index).trim();
+        String parameters = value.substring(index + 1).trim();
+        if (kind.equalsIgnoreCase("constant")) {
+            return constant(Double.parseDouble(parameters) * scale);
+        } else if (kind.equalsIgnoreCase("poisson")) {
+            return poisson(Double.parseDouble(parameters) * scale, random);
+        } else if (kind.equalsIgnoreCase("step")) {
+            boolean poisson = false;
+            if (parameters.toLowerCase().startsWith("poisson:")) {
+                poisson = true;
+                parameters = parameters.substring("poisson:".length());
+            }
+            ImmutableList.Builder<Step> steps = ImmutableList.builder();
+            for (String step: parameters.split(",")) {
+                int at = step.indexOf('@');
+                checkArgument(at > 0, step);
+                steps.add(Step.create(
+                        Double.parseDouble(step.substring(0, at).trim()) * scale, 
+                        TimeValue.fromString(step.substring(at + 1).trim()).value(TimeUnit.NANOSECONDS)));
+            }
+            return step(steps.build(), poisson, random);
+        }
+        throw new IllegalArgumentException(value);
+    }
+    
+    /**
+     * Pairs each arrival with the next request, for at most iterations requests.
+     * 
+     * @param iterations 0 for no limit
+     */
+    public static Iterator<Pair<Long, Records.Request>> schedule(
+            final Iterator<Long> arrivals,
+            final Generator<? extends Records.Request> requests,
+            final int iterations) {
+        return new AbstractIterator<Pair<Long, Records.Request>>() {
+            int count = 0;
+            @Override
+            protected Pair<Long, Records.Request> computeNext() {
+                if (((iterations > 0) && (count >= iterations)) || ! arrivals.hasNext()) {
+                    return endOfData();
+                }
+                ++count;
+                Long offset = arrivals.next();
+                return Pair.<Long, Records.Request>create(offset, requests.next());
+            }
+        };
+    }
+
+    @Configurable(arg="arrival", key="arrival", value="", help="open-loop arrivals: constant:RATE|poisson:RATE|step:[poisson:]RATE@DURATION,...")
+    public static class ArrivalConfiguration implements Function<Configuration, Optional<String>> {
+
+        public static Optional<String> get(Configuration configuration) {
+            return new ArrivalConfiguration().apply(configuration);
+        }
+
+        @Override
+        public Optional<String> apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            Config config = configuration.withConfigurable(configurable)
+                    .getConfigOrEmpty(configurable.path());
+            if (config.hasPath(configurable.key())) {
+                String value = config.getString(configurable.key()).trim();
+                if (! value.isEmpty()) {
+                    // fail early
+                    fromString(value, 1.0, new Random());
+                    return Optional.of(value);
+                }
+            }
+            return Optional.absent();
+        }
+    }
+    
+    protected ArrivalProcess() {}
+    
+    public static final class Step {
+        
+        public static Step create(double rate, long nanos) {
+            checkArgument(rate > 0.0, rate);
+            checkArgument(nanos > 0L, nanos);
+            return new Step(rate, nanos);
+        }
+        
+        private final double rate;
+        private final long nanos;
+        
+        private Step(double rate, long nanos) {
+            this.rate = rate;
+            this.nanos = nanos;
+        }
+        
+        public double getRate() {
+            return rate;
+        }
+        
+        public long getNanos() {
+            return nanos;
+        }
+        
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("rate", rate)
+                    .add("nanos", nanos)
+                    .toString();
+        }
+    }
+    
+    protected static final class Constant extends ArrivalProcess {
+
+        private final double rate;
+        private long count;
+        
+        public Constant(double rate) {
+            checkArgument(rate > 0.0, rate);
+            this.rate = rate;
+            this.count = 0L;
+        }
+        
+        @Override
+        protected Long computeNext() {
+            // from the count rather than accumulated gaps, so rounding doesn't drift
+            return Long.valueOf((long) ((count++ * SECOND) / rate));
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this).add("rate", rate).toString();
+        }
+    }
+    
+    protected static final class Poisson extends ArrivalProcess {
+
+        private final double rate;
+        private final Random random;
+        private double nanos;
+        
+        public Poisson(double rate, Random random) {
+            checkArgument(rate > 0.0, rate);
+            this.rate = rate;
+            this.random = random;
+            this.nanos = 0.0;
+        }
+        
+        @Override
+        protected Long computeNext() {
+            long next = (long) nanos;
+            nanos += -Math.log(1.0 - random.nextDouble()) * SECOND / rate;
+            return Long.valueOf(next);
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this).add("rate", rate).toString();
+        }
+    }
+    
+    protected static final class Steps extends ArrivalProcess {
+
+        private final ImmutableList<Step> steps;
+        private final boolean poisson;
+        private final Random random;
+        private int step;
+        private long start;
+        private double nanos;
+        
+        public Steps(List<Step> steps, boolean poisson, Random random) {
+            checkArgument(! steps.isEmpty());
+            this.steps = ImmutableList.copyOf(steps);
+            this.poisson = poisson;
+            this.random = random;
+            this.step = 0;
+            this.start = 0L;
+            this.nanos = 0.0;
+        }
+        
+        @Override
+        protected Long computeNext() {
+            while (step < steps.size()) {
+                Step current = steps.get(step);
+                long end = start + current.getNanos();
+                if (nanos < end) {
+                    long next = (long) nanos;
+                    double gap = SECOND / current.getRate();
+                    if (poisson) {
+                        gap *= -Math.log(1.0 - random.nextDouble());
+                    }
+                    nanos += gap;
+                    return Long.valueOf(next);
+                }
+                // the next step starts at its boundary
+                start = end;
+                nanos = end;
+                ++step;
+            }
+            return endOfData();
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("steps", steps)
+                    .add("poisson", poisson)
+                    .toString();
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package edu.uw.zookeeper.client.trace;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.common.base.Function;
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.Lists;
+import com.typesafe.config.ConfigValueType;
+
+import edu.uw.zookeeper.common.Actor;
+import edu.uw.zookeeper.common.Configurable;
+import edu.uw.zookeeper.common.Configuration;
+import edu.uw.zookeeper.protocol.proto.OpCode;
+
+/**
+ * Hands events to a bounded ring buffer that a dedicated thread drains in batches
+ * into the delegate, so that publishers (i.e. I/O threads) only pay for an enqueue.
+ * 
+ * When the buffer is full, the overflow policy either blocks the publisher,
+ * or drops the event. Dropped events never reach the delegate,
+ * so they are not measured either; the count is logged on stop.
+ * 
+ * Operation timings bypass the buffer.
+ * 
+ * The consumer thread is started on the first event. Once stopping,
+ * events are refused, and the ones already accepted are drained
+ * into the delegate before it is stopped.
+ */
+public class AsyncTraceEventActor implements Actor<TraceEvent>, OperationTimingListener {
+
+    public static enum OverflowPolicy {
+        /** publishers wait for space */
+        BLOCK,
+        /** publishers drop the event */
+        DROP,
+        /** publishers keep one in a number of events once the buffer is half full */
+        SAMPLE;
+        
+        public static OverflowPolicy fromString(String value) {
+            return valueOf(value.toUpperCase());
+        }
+    }
+    
+    /**
+     * @return the delegate if the configured policy is synchronous
+     */
+    public static Actor<TraceEvent> forConfiguration(
+            Configuration configuration,
+            Actor<TraceEvent> delegate) {
+        String policy = ConfigurablePublisher.get(configuration);
+        if (policy.isEmpty() || policy.equalsIgnoreCase("sync")) {
+            return delegate;
+        }
+        return create(
+                OverflowPolicy.fromString(policy), 
+                ConfigurablePublisherCapacity.get(configuration), 
+                ConfigurablePublisherSampling.get(configuration), 
+                delegate);
+    }
+    
+    public static AsyncTraceEventActor create(
+            OverflowPolicy policy,
+            int capacity,
+            int sampling,
+            Actor<? super TraceEvent> delegate) {
+        return new AsyncTraceEventActor(
+                policy, 
+                MpscRingBuffer.<TraceEvent>create(capacity), 
+                sampling, 
+                delegate, 
+                LogManager.getLogger(AsyncTraceEventActor.class));
+    }
+
+    @Configurable(path="trace", arg="publisher", key="publisher", value="sync", help="sync|block|drop|sample")
+    public static class ConfigurablePublisher implements Function<Configuration, String> {
+
+        public static String get(Configuration configuration) {
+            return new ConfigurablePublisher().apply(configuration);
+        }
+
+        @Override
+        public String apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getString(configurable.key());
+        }
+    }
+
+    @Configurable(path="trace", arg="publisherCapacity", key="publisherCapacity", value="65536", type=ConfigValueType.NUMBER, help="events")
+    public static class ConfigurablePublisherCapacity implements Function<Configuration, Integer> {
+
+        public static Integer get(Configuration configuration) {
+            return new ConfigurablePublisherCapacity().apply(configuration);
+        }
+
+        @Override
+        public Integer apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getInt(configurable.key());
+        }
+    }
+
+    @Configurable(path="trace", arg="publisherSampling", key="publisherSampling", value="10", type=ConfigValueType.NUMBER, help="keep one in this many events when sampling")
+    public static class ConfigurablePublisherSampling implements Function<Configuration, Integer> {
+
+        public static Integer get(Configuration configuration) {
+            return new ConfigurablePublisherSampling().apply(configuration);
+        }
+
+        @Override
+        public Integer apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getInt(configurable.key());
+        }
+    }
+    
+    protected static final int BATCH_SIZE = 1024;
+    protected static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(500L);
+
+    protected final Logger logger;
+    protected final OverflowPolicy policy;
+    protected final MpscRingBuffer<TraceEvent> buffer;
+    protected final int sampling;
+    protected final Actor<? super TraceEvent> delegate;
+    protected final AtomicLong published;
+    protected final AtomicLong dropped;
+    // publishers past the stopping check
+    protected final AtomicInteger sending;
+    protected final Runnable consumer;
+    protected volatile boolean stopping;
+    protected volatile Thread thread;
+    
+    protected AsyncTraceEventActor(
+            OverflowPolicy policy,
+            MpscRingBuffer<TraceEvent> buffer,
+            int sampling,
+            Actor<? super TraceEvent> delegate,
+            Logger logger) {
+        this.logger = logger;
+        this.policy = policy;
+        this.buffer = buffer;
+        this.sampling = Math.max(1, sampling);
+        this.delegate = delegate;
+        this.published = new AtomicLong(0L);
+        this.dropped = new AtomicLong(0L);
+        this.sending = new AtomicInteger(0);
+        this.stopping = false;
+        this.thread = null;
+        this.consumer = new Runnable() {
+            @Override
+            public void run() {
+                consume();
+            }
+        };
+    }
+    
+    /**
+     * @return events dropped so far by the overflow policy
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+    
+    @Override
+    public void run() {
+        delegate.run();
+    }
+
+    @Override
+    public State state() {
+        return delegate.state();
+    }
+
+    @Override
+    public boolean send(TraceEvent message) {
+        sending.incrementAndGet();
+        try {
+            if (stopping) {
+                return false;
+            }
+            if (thread == null) {
+                start();
+            }
+            return enqueue(message);
+        } finally {
+            sending.decrementAndGet();
+        }
+    }
+    
+    protected boolean enqueue(TraceEvent message) {
+        long count = published.getAndIncrement();
+        switch (policy) {
+        case SAMPLE:
+        {
+            if ((buffer.size() > (buffer.capacity() >>> 1)) && ((count % sampling) != 0L)) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            // fall through
+        }
+        case DROP:
+        {
+            if (! buffer.offer(message)) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            break;
+        }
+        case BLOCK:
+        {
+            while (! buffer.offer(message)) {
+                if (stopping) {
+                    dropped.incrementAndGet();
+                    return false;
+                }
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+            break;
+        }
+        }
+        return true;
+    }
+    
+    /**
+     * Forwards to the delegate if it is also a listener.
+     */
+    @Override
+    public void handleOperationTiming(long sessionId, OpCode opcode, int error,
+            long requestNanos, long responseNanos) {
+        if (delegate instanceof OperationTimingListener) {
+            ((OperationTimingListener) delegate).handleOperationTiming(sessionId, opcode, error, requestNanos, responseNanos);
+        }
+    }
+
+    /**
+     * Waits for the buffer to be drained before stopping the delegate.
+     * 
+     * Events accepted while stopping are drained here, after the consumer exits.
+     */
+    @Override
+    public boolean stop() {
+        Thread thread;
+        synchronized (this) {
+            stopping = true;
+            thread = this.thread;
+        }
+        if ((thread != null) && (thread != Thread.currentThread())) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        while (sending.get() > 0) {
+            Thread.yield();
+        }
+        // the buffer has a single consumer
+        if ((thread == null) || !thread.isAlive()) {
+            drain();
+        }
+        if (dropped.get() > 0L) {
+            logger.warn("Dropped {} of {} trace events ({})", dropped.get(), published.get(), this);
+        }
+        return delegate.stop();
+    }
+    
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("policy", policy)
+                .add("buffer", buffer)
+                .add("dropped", dropped.get())
+                .toString();
+    }
+    
+    /**
+     * Starts the consumer thread, unless it was started or this is stopping.
+     */
+    public synchronized void start() {
+        if ((thread == null) && !stopping) {
+            Thread thread = new Thread(consumer, "trace-publisher");
+            thread.setDaemon(true);
+            this.thread = thread;
+            thread.start();
+        }
+    }
+    
+    protected void consume() {
+        List<TraceEvent> batch = Lists.newArrayListWithCapacity(BATCH_SIZE);
+        while (true) {
+            boolean stopping = this.stopping;
+            if (buffer.drainTo(batch, BATCH_SIZE) > 0) {
+                for (TraceEvent event: batch) {
+                    delegate.send(event);
+                }
+                batch.clear();
+            } else if (stopping && buffer.isEmpty()) {
+                break;
+            } else {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+    }
+    
+    protected void drain() {
+        List<TraceEvent> batch = Lists.newArrayListWithCapacity(BATCH_SIZE);
+        while (buffer.drainTo(batch, BATCH_SIZE) > 0) {
+            for (TraceEvent event: batch) {
+                delegate.send(event);
+            }
+            batch.clear();
+        }
+    }
+}
@@ -0,0 +1,502 @@
+package edu.uw.zookeeper.client.trace;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+
+import org.apache.jute.BinaryInputArchive;
+import org.apache.jute.BinaryOutputArchive;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import edu.uw.zookeeper.protocol.Message;
+import edu.uw.zookeeper.protocol.ProtocolRequestMessage;
+import edu.uw.zookeeper.protocol.ProtocolResponseMessage;
+import edu.uw.zookeeper.protocol.proto.OpCode;
+
+/**
+ * Length-prefixed binary encoding of trace events.
+ *
+ * A trace file is the magic number, the format version, a length-prefixed JSON
+ * trace header, and then a sequence of records.
+ * Each record is a varint length followed by a varint tag ordinal and the event body.
+ * Requests and responses are written as raw jute bytes.
+ * Nanosecond timestamps are delta-encoded against the previous timestamp in the stream,
+ * so an Encoder or Decoder must see every record in order.
+ * Events without a specialized body are written as embedded JSON.
+ */
+public abstract class BinaryTraceEventCodec {
+
+    public static final int MAGIC = 0x5a4b5452; // "ZKTR"
+    public static final int VERSION = 1;
+
+    protected static final TraceEventTag[] EVENT_TAGS = TraceEventTag.values();
+    protected static final SessionEvent.Kind[] SESSION_KINDS = SessionEvent.Kind.values();
+    protected static final LockEvent.Kind[] LOCK_KINDS = LockEvent.Kind.values();
+
+    protected static final int HAS_REQUEST = 0x1;
+    protected static final int HAS_RESPONSE = 0x2;
+
+    public static Encoder encoder(ObjectWriter writer) {
+        return new Encoder(writer);
+    }
+
+    public static Decoder decoder(ObjectReader reader) {
+        return decoder(reader, TraceEventHeader.types());
+    }
+
+    public static Decoder decoder(ObjectReader reader, Map<TraceEventTag, Class<? extends TraceEvent>> types) {
+        return new Decoder(reader, types);
+    }
+
+    public static void writeHeader(TraceHeader header, ObjectWriter writer, DataOutput output) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeByte(VERSION);
+        byte[] bytes = writer.writeValueAsBytes(header);
+        writeVarInt(bytes.length, output);
+        output.write(bytes);
+    }
+
+    public static TraceHeader readHeader(ObjectReader reader, DataInput input) throws IOException {
+        if (input.readInt() != MAGIC) {
+            throw new IOException("not a binary trace");
+        }
+        int version = input.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException(String.format("unsupported binary trace version %d", version));
+        }
+        byte[] bytes = new byte[readVarInt(input)];
+        input.readFully(bytes);
+        return reader.withType(TraceHeader.class).readValue(bytes);
+    }
+
+    /**
+     * @return number of bytes written for the record, including the length prefix
+     */
+    public static int writeRecord(RecordBuffer record, OutputStream output) throws IOException {
+        int length = record.size();
+        int prefix = writeRecordLength(length, output);
+        record.writeTo(output);
+        return prefix + length;
+    }
+
+    /**
+     * @return record length, or -1 at end of stream
+     */
+    public static int readRecordLength(InputStream input) throws IOException {
+        int b = input.read();
+        if (b < 0) {
+            return -1;
+        }
+        int value = b & 0x7f;
+        int shift = 7;
+        while ((b & 0x80) != 0) {
+            b = input.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        }
+        return value;
+    }
+
+    public static int writeRecordLength(int value, OutputStream output) throws IOException {
+        int n = 1;
+        while ((value & ~0x7f) != 0) {
+            output.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+            ++n;
+        }
+        output.write(value);
+        return n;
+    }
+
+    public static void writeVarInt(int value, DataOutput output) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            output.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+
+    public static void writeVarLong(long value, DataOutput output) throws IOException {
+        while ((value & ~0x7fL) != 0L) {
+            output.writeByte(((int) value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte((int) value);
+    }
+
+    public static int readVarInt(DataInput input) throws IOException {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = input.readUnsignedByte();
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    public static long readVarLong(DataInput input) throws IOException {
+        long value = 0L;
+        int shift = 0;
+        int b;
+        do {
+            b = input.readUnsignedByte();
+            value |= (long) (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    public static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    public static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    public static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1L);
+    }
+
+    /**
+     * Reusable record buffer.
+     */
+    public static final class RecordBuffer extends ByteArrayOutputStream {
+
+        public RecordBuffer() {
+            super(256);
+        }
+
+        public byte[] array() {
+            return buf;
+        }
+    }
+
+    protected long nanos;
+
+    protected BinaryTraceEventCodec() {
+        this.nanos = 0L;
+    }
+
+    /**
+     * Base for delta-encoded nanosecond timestamps.
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    public void setNanos(long nanos) {
+        this.nanos = nanos;
+    }
+
+    public static class Encoder extends BinaryTraceEventCodec {
+
+        protected final ObjectWriter writer;
+
+        public Encoder(ObjectWriter writer) {
+            this.writer = writer;
+        }
+
+        public void encode(TraceEvent event, DataOutput output) throws IOException {
+            TraceEventTag tag = event.getTag();
+            writeVarInt(tag.ordinal(), output);
+            switch (tag) {
+            case TIMESTAMP_EVENT:
+            {
+                writeVarLong(((TimestampEvent) event).getTimestamp(), output);
+                break;
+            }
+            case PROTOCOL_REQUEST_EVENT:
+            {
+                ProtocolRequestEvent request = (ProtocolRequestEvent) event;
+                output.writeLong(request.getSessionId());
+                writeRequest(request.getRequest(), output);
+                if (request.hasNanos()) {
+                    writeNanos(request.getNanos(), output);
+                }
+                break;
+            }
+            case PROTOCOL_RESPONSE_EVENT:
+            {
+                ProtocolResponseEvent response = (ProtocolResponseEvent) event;
+                output.writeLong(response.getSessionId());
+                writeResponse(response.getResponse(), output);
+                break;
+            }
+            case OPERATION_EVENT:
+            {
+                OperationEvent operation = (OperationEvent) event;
+                output.writeLong(operation.getSessionId());
+                int flags = 0;
+                if (operation.getRequest() != null) {
+                    flags |= HAS_REQUEST;
+                }
+                if (operation.getResponse() != null) {
+                    flags |= HAS_RESPONSE;
+                }
+                output.writeByte(flags);
+                if (operation.getRequest() != null) {
+                    writeRequest((Message.ClientRequest<?>) operation.getRequest(), output);
+                    writeNanos(operation.getRequestNanos(), output);
+                }
+                if (operation.getResponse() != null) {
+                    writeResponse((Message.ServerResponse<?>) operation.getResponse(), output);
+                    writeNanos(operation.getResponseNanos(), output);
+                }
+                break;
+            }
+            case LATENCY_MEASUREMENT_EVENT:
+            {
+                writeVarInt(zigZag(((LatencyMeasurementEvent) event).getMicros()), output);
+                break;
+            }
+            case THROUGHPUT_MEASUREMENT_EVENT:
+            {
+                ThroughputMeasurementEvent throughput = (ThroughputMeasurementEvent) event;
+                writeVarInt(zigZag(throughput.getCount()), output);
+                writeVarInt(zigZag(throughput.getMillis()), output);
+                break;
+            }
+            case LATENCY_HISTOGRAM_EVENT:
+            {
+                LatencyHistogramEvent histogram = (LatencyHistogramEvent) event;
+                writeVarInt(zigZag(histogram.getMillis()), output);
+                writeVarInt(zigZag(histogram.getCount()), output);
+                writeVarInt(zigZag(histogram.getP50()), output);
+                writeVarInt(zigZag(histogram.getP90()), output);
+                writeVarInt(zigZag(histogram.getP99()), output);
+                writeVarInt(zigZag(histogram.getP999()), output);
+                writeVarInt(zigZag(histogram.getMax()), output);
+                break;
+            }
+            case SESSION_EVENT:
+            {
+                SessionEvent session = (SessionEvent) event;
+                output.writeByte(session.getKind().ordinal());
+                output.writeLong(session.getSessionId());
+                writeVarInt(zigZag(session.getMicros()), output);
+                break;
+            }
+            case NOTIFICATION_EVENT:
+            {
+                NotificationEvent notification = (NotificationEvent) event;
+                output.writeLong(notification.getSessionId());
+                output.writeUTF(notification.getPath());
+                writeVarInt(zigZag(notification.getMicros()), output);
+                break;
+            }
+            case LOCK_EVENT:
+            {
+                LockEvent lock = (LockEvent) event;
+                output.writeByte(lock.getKind().ordinal());
+                output.writeLong(lock.getSessionId());
+                writeVarInt(lock.getLock(), output);
+                writeVarInt(zigZag(lock.getMicros()), output);
+                break;
+            }
+            case MULTI_EVENT:
+            {
+                MultiEvent multi = (MultiEvent) event;
+                writeVarInt(multi.getOps(), output);
+                writeVarInt(multi.getRequestBytes(), output);
+                writeVarInt(multi.getResponseBytes(), output);
+                writeVarInt(zigZag(multi.getMicros()), output);
+                break;
+            }
+            case OPERATION_LATENCY_EVENT:
+            {
+                OperationLatencyEvent latency = (OperationLatencyEvent) event;
+                writeVarInt(zigZag(latency.getOpcode()), output);
+                writeVarInt(zigZag(latency.getError()), output);
+                writeVarInt(zigZag(latency.getMicros()), output);
+                break;
+            }
+            case OPERATION_THROUGHPUT_EVENT:
+            {
+                OperationThroughputEvent throughput = (OperationThroughputEvent) event;
+                writeVarInt(zigZag(throughput.getOpcode()), output);
+                writeVarInt(zigZag(throughput.getError()), output);
+                writeVarInt(zigZag(throughput.getCount()), output);
+                writeVarInt(zigZag(throughput.getMillis()), output);
+                break;
+            }
+            default:
+            {
+                byte[] bytes = writer.writeValueAsBytes(event);
+                writeVarInt(bytes.length, output);
+                output.write(bytes);
+                break;
+            }
+            }
+        }
+
+        protected void writeNanos(long value, DataOutput output) throws IOException {
+            writeVarLong(zigZag(value - nanos), output);
+            nanos = value;
+        }
+
+        protected void writeRequest(Message.ClientRequest<?> request, DataOutput output) throws IOException {
+            ProtocolRequestMessage.serialize(request, new BinaryOutputArchive(output));
+        }
+
+        protected void writeResponse(Message.ServerResponse<?> response, DataOutput output) throws IOException {
+            writeVarInt(response.record().opcode().intValue(), output);
+            ProtocolResponseMessage.serialize(response, new BinaryOutputArchive(output));
+        }
+    }
+
+    public static class Decoder extends BinaryTraceEventCodec {
+
+        protected final ObjectReader reader;
+        protected final Map<TraceEventTag, Class<? extends TraceEvent>> types;
+
+        public Decoder(ObjectReader reader, Map<TraceEventTag, Class<? extends TraceEvent>> types) {
+            this.reader = reader;
+            this.types = types;
+        }
+
+        /**
+         * @param input a single record
+         */
+        public TraceEvent decode(DataInputStream input) throws IOException {
+            TraceEventTag tag = EVENT_TAGS[readVarInt(input)];
+            switch (tag) {
+            case TIMESTAMP_EVENT:
+            {
+                return TimestampEvent.create(readVarLong(input));
+            }
+            case PROTOCOL_REQUEST_EVENT:
+            {
+                long sessionId = input.readLong();
+                Message.ClientRequest<?> request = readRequest(input);
+                long nanos = (input.available() > 0) ? readNanos(input) : ProtocolRequestEvent.UNKNOWN;
+                return ProtocolRequestEvent.create(sessionId, request, nanos);
+            }
+            case PROTOCOL_RESPONSE_EVENT:
+            {
+                long sessionId = input.readLong();
+                return ProtocolResponseEvent.create(sessionId, readResponse(input));
+            }
+            case OPERATION_EVENT:
+            {
+                long sessionId = input.readLong();
+                int flags = input.readUnsignedByte();
+                Message.ClientRequest<?> request = null;
+                long requestNanos = OperationEvent.TIMEOUT;
+                if ((flags & HAS_REQUEST) != 0) {
+                    request = readRequest(input);
+                    requestNanos = readNanos(input);
+                }
+                Message.ServerResponse<?> response = null;
+                long responseNanos = OperationEvent.TIMEOUT;
+                if ((flags & HAS_RESPONSE) != 0) {
+                    response = readResponse(input);
+                    responseNanos = readNanos(input);
+                }
+                return OperationEvent.create(sessionId, request, requestNanos, response, responseNanos);
+            }
+            case LATENCY_MEASUREMENT_EVENT:
+            {
+                return LatencyMeasurementEvent.create(unZigZag(readVarInt(input)));
+            }
+            case THROUGHPUT_MEASUREMENT_EVENT:
+            {
+                int count = unZigZag(readVarInt(input));
+                int millis = unZigZag(readVarInt(input));
+                return ThroughputMeasurementEvent.create(count, millis);
+            }
+            case LATENCY_HISTOGRAM_EVENT:
+            {
+                int millis = unZigZag(readVarInt(input));
+                int count = unZigZag(readVarInt(input));
+                int p50 = unZigZag(readVarInt(input));
+                int p90 = unZigZag(readVarInt(input));
+                int p99 = unZigZag(readVarInt(input));
+                int p999 = unZigZag(readVarInt(input));
+                int max = unZigZag(readVarInt(input));
+                return LatencyHistogramEvent.create(millis, count, p50, p90, p99, p999, max);
+            }
+            case SESSION_EVENT:
+            {
+                SessionEvent.Kind kind = SESSION_KINDS[input.readUnsignedByte()];
+                long sessionId = input.readLong();
+                return SessionEvent.create(kind, sessionId, unZigZag(readVarInt(input)));
+            }
+            case NOTIFICATION_EVENT:
+            {
+                long sessionId = input.readLong();
+                String path = input.readUTF();
+                return NotificationEvent.create(sessionId, path, unZigZag(readVarInt(input)));
+            }
+            case LOCK_EVENT:
+            {
+                LockEvent.Kind kind = LOCK_KINDS[input.readUnsignedByte()];
+                long sessionId = input.readLong();
+                int lock = readVarInt(input);
+                return LockEvent.create(kind, sessionId, lock, unZigZag(readVarInt(input)));
+            }
+            case MULTI_EVENT:
+            {
+                int ops = readVarInt(input);
+                int requestBytes = readVarInt(input);
+                int responseBytes = readVarInt(input);
+                return MultiEvent.create(ops, requestBytes, responseBytes, unZigZag(readVarInt(input)));
+            }
+            case OPERATION_LATENCY_EVENT:
+            {
+                int opcode = unZigZag(readVarInt(input));
+                int error = unZigZag(readVarInt(input));
+                return OperationLatencyEvent.create(opcode, error, unZigZag(readVarInt(input)));
+            }
+            case OPERATION_THROUGHPUT_EVENT:
+            {
+                int opcode = unZigZag(readVarInt(input));
+                int error = unZigZag(readVarInt(input));
+                int count = unZigZag(readVarInt(input));
+                return OperationThroughputEvent.create(opcode, error, count, unZigZag(readVarInt(input)));
+            }
+            default:
+            {
+                Class<? extends TraceEvent> type = types.get(tag);
+                if (type == null) {
+                    throw new IOException(String.valueOf(tag));
+                }
+                byte[] bytes = new byte[readVarInt(input)];
+                input.readFully(bytes);
+                return reader.withType(type).readValue(bytes);
+            }
+            }
+        }
+
+        protected long readNanos(DataInput input) throws IOException {
+            nanos += unZigZag(readVarLong(input));
+            return nanos;
+        }
+
+        protected Message.ClientRequest<?> readRequest(DataInput input) throws IOException {
+            return ProtocolRequestMessage.deserialize(new BinaryInputArchive(input));
+        }
+
+        protected Message.ServerResponse<?> readResponse(DataInput input) throws IOException {
+            OpCode opcode = OpCode.of(readVarInt(input));
+            return ProtocolResponseMessage.deserialize(opcode, new BinaryInputArchive(input));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package edu.uw.zookeeper.client.trace;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.google.common.base.Throwables;
+
+public class BinaryTraceEventIterator extends TraceEventIterator {
+
+    public static BinaryTraceEventIterator forFile(
+            File file,
+            ObjectReader reader) throws IOException {
+        return create(TraceCompression.open(file), reader);
+    }
+
+    public static BinaryTraceEventIterator create(
+            InputStream input,
+            ObjectReader reader) throws IOException {
+        return new BinaryTraceEventIterator(
+                new DataInputStream(new BufferedInputStream(input)),
+                reader,
+                BinaryTraceEventCodec.decoder(reader));
+    }
+
+    protected final DataInputStream input;
+    protected final BinaryTraceEventCodec.Decoder decoder;
+    protected final TraceHeader header;
+    protected byte[] record;
+
+    public BinaryTraceEventIterator(
+            DataInputStream input,
+            ObjectReader reader,
+            BinaryTraceEventCodec.Decoder decoder) throws IOException {
+        this.input = input;
+        this.decoder = decoder;
+        this.record = new byte[256];
+        this.header = BinaryTraceEventCodec.readHeader(reader, input);
+    }
+
+    @Override
+    public TraceHeader header() {
+        return header;
+    }
+
+    @Override
+    protected TraceEvent computeNext() {
+        try {
+            int length = BinaryTraceEventCodec.readRecordLength(input);
+            if (length < 0) {
+                close();
+                return endOfData();
+            }
+            if (record.length < length) {
+                record = new byte[Math.max(length, record.length * 2)];
+            }
+            input.readFully(record, 0, length);
+            return decoder.decode(new DataInputStream(new ByteArrayInputStream(record, 0, length)));
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+}
@@ -0,0 +1,316 @@
+package edu.uw.zookeeper.client.trace;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Sidecar index of a binary trace.
+ *
+ * Every interval events, records the event number, the file offset of the record,
+ * the nanosecond base needed to resume delta decoding at that record,
+ * and the range of timestamps decoded in the previous interval.
+ * A trailer records the range of the last interval.
+ *
+ * Timestamps are only approximately ordered, so seeking by time uses
+ * the largest timestamp before an entry and the smallest from it on,
+ * rather than the bases.
+ */
+public final class BinaryTraceIndex {
+
+    public static final int MAGIC = 0x5a4b5449; // "ZKTI"
+    public static final int VERSION = 2;
+    public static final int DEFAULT_INTERVAL = 1024;
+    public static final String SUFFIX = "idx";
+    public static final long TRAILER = -1L;
+    public static final int ENTRY_BYTES = 40;
+
+    public static File forTrace(File trace) {
+        return new File(trace.getPath() + '.' + SUFFIX);
+    }
+
+    /**
+     * @return the version of an index file, or -1 if it isn't one
+     */
+    public static int version(File file) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (input.readInt() != MAGIC) {
+                return -1;
+            }
+            return input.readInt();
+        } catch (EOFException e) {
+            return -1;
+        } finally {
+            input.close();
+        }
+    }
+
+    public static BinaryTraceIndex forFile(File file) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("not a binary trace index");
+            }
+            int version = input.readInt();
+            if (version != VERSION) {
+                throw new IOException(String.format("unsupported binary trace index version %d", version));
+            }
+            int interval = input.readInt();
+            int capacity = (int) Math.max(16L, (file.length() - 12L) / ENTRY_BYTES);
+            long[] events = new long[capacity];
+            long[] offsets = new long[capacity];
+            long[] nanos = new long[capacity];
+            // range of each interval, unbounded where unknown
+            long[] minNanos = new long[capacity];
+            long[] maxNanos = new long[capacity];
+            int size = 0;
+            while (true) {
+                try {
+                    long event = input.readLong();
+                    long offset = input.readLong();
+                    long base = input.readLong();
+                    long min = input.readLong();
+                    long max = input.readLong();
+                    if (size > 0) {
+                        minNanos[size - 1] = min;
+                        maxNanos[size - 1] = max;
+                    }
+                    if (event == TRAILER) {
+                        break;
+                    }
+                    if (size == events.length) {
+                        events = Arrays.copyOf(events, size * 2);
+                        offsets = Arrays.copyOf(offsets, size * 2);
+                        nanos = Arrays.copyOf(nanos, size * 2);
+                        minNanos = Arrays.copyOf(minNanos, size * 2);
+                        maxNanos = Arrays.copyOf(maxNanos, size * 2);
+                    }
+                    events[size] = event;
+                    offsets[size] = offset;
+                    nanos[size] = base;
+                    minNanos[size] = Long.MIN_VALUE;
+                    maxNanos[size] = Long.MAX_VALUE;
+                    ++size;
+                } catch (EOFException e) {
+                    break;
+                }
+            }
+            return new BinaryTraceIndex(interval, size, events, offsets, nanos, minNanos, maxNanos);
+        } finally {
+            input.close();
+        }
+    }
+
+    protected final int interval;
+    protected final int size;
+    protected final long[] events;
+    protected final long[] offsets;
+    protected final long[] nanos;
+    protected final long[] minNanos;
+    protected final long[] maxNanos;
+    // largest timestamp before each entry
+    protected final long[] maxBefore;
+    // smallest timestamp from each entry on
+    protected final long[] minAfter;
+
+    protected BinaryTraceIndex(
+            int interval,
+            int size,
+            long[] events,
+            long[] offsets,
+            long[] nanos,
+            long[] minNanos,
+            long[] maxNanos) {
+        this.interval = interval;
+        this.size = size;
+        this.events = events;
+        this.offsets = offsets;
+        this.nanos = nanos;
+        this.minNanos = minNanos;
+        this.maxNanos = maxNanos;
+        this.maxBefore = new long[size];
+        this.minAfter = new long[size];
+        for (int i=0; i<size; ++i) {
+            maxBefore[i] = (i == 0) ? Long.MIN_VALUE : Math.max(maxBefore[i-1], maxNanos[i-1]);
+        }
+        for (int i=size-1; i>=0; --i) {
+            minAfter[i] = (i == size-1) ? minNanos[i] : Math.min(minAfter[i+1], minNanos[i]);
+        }
+    }
+
+    public int interval() {
+        return interval;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long eventNumber(int entry) {
+        checkArgument(entry < size);
+        return events[entry];
+    }
+
+    public long offset(int entry) {
+        checkArgument(entry < size);
+        return offsets[entry];
+    }
+
+    public long nanos(int entry) {
+        checkArgument(entry < size);
+        return nanos[entry];
+    }
+
+    /**
+     * @return last entry at or before the event, or -1 if none
+     */
+    public int floorEvent(long eventNumber) {
+        return floor(events, eventNumber);
+    }
+
+    /**
+     * @return last entry before which every timestamp is earlier than the time, or -1 if none
+     */
+    public int floorNanos(long nanos) {
+        return (nanos == Long.MIN_VALUE) ? -1 : floor(maxBefore, nanos - 1L);
+    }
+
+    /**
+     * @return first entry from which every timestamp is later than the time, or size() if none
+     */
+    public int ceilingNanos(long nanos) {
+        return floor(minAfter, nanos) + 1;
+    }
+
+    /**
+     * Drops entries that point past the end of a truncated trace.
+     * The range of the last interval kept still bounds what remains of it.
+     */
+    public BinaryTraceIndex truncate(long length) {
+        int n = size;
+        while ((n > 0) && (offsets[n-1] >= length)) {
+            --n;
+        }
+        if (n == size) {
+            return this;
+        }
+        return new BinaryTraceIndex(interval, n, events, offsets, nanos, minNanos, maxNanos);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("interval", interval)
+                .add("size", size)
+                .toString();
+    }
+
+    protected int floor(long[] values, long value) {
+        int index = Arrays.binarySearch(values, 0, size, value);
+        if (index < 0) {
+            index = -(index + 1) - 1;
+        } else {
+            while ((index + 1 < size) && (values[index + 1] == value)) {
+                ++index;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Not thread-safe.
+     */
+    public static final class Writer implements Closeable {
+
+        public static Writer forFile(File file, int interval) throws IOException {
+            return new Writer(
+                    new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file))),
+                    interval);
+        }
+
+        private final DataOutputStream output;
+        private final int interval;
+        private long events;
+        // of the interval since the last entry
+        private long minNanos;
+        private long maxNanos;
+
+        public Writer(DataOutputStream output, int interval) throws IOException {
+            checkArgument(interval > 0);
+            this.output = output;
+            this.interval = interval;
+            this.events = 0L;
+            this.minNanos = Long.MAX_VALUE;
+            this.maxNanos = Long.MIN_VALUE;
+
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(interval);
+        }
+
+        /**
+         * Call before writing each record.
+         * 
+         * @param nanos the most recent timestamp, i.e. the base of the record
+         */
+        public void append(long offset, long nanos) throws IOException {
+            if (events > 0L) {
+                update(nanos);
+            }
+            if ((events % interval) == 0L) {
+                write(events, offset, nanos);
+            }
+            ++events;
+        }
+
+        /**
+         * Call after the last record, before closing,
+         * so that the range of the last interval is known.
+         * 
+         * @param nanos the most recent timestamp
+         */
+        public void finish(long nanos) throws IOException {
+            if (events > 0L) {
+                update(nanos);
+            }
+            write(TRAILER, 0L, nanos);
+        }
+
+        private void update(long nanos) {
+            minNanos = Math.min(minNanos, nanos);
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+
+        private void write(long event, long offset, long nanos) throws IOException {
+            output.writeLong(event);
+            output.writeLong(offset);
+            output.writeLong(nanos);
+            output.writeLong(minNanos);
+            output.writeLong(maxNanos);
+            minNanos = Long.MAX_VALUE;
+            maxNanos = Long.MIN_VALUE;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                output.flush();
+            } finally {
+                output.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package edu.uw.zookeeper.client.trace;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.base.Optional;
+import com.google.common.collect.Queues;
+
+public class BinaryTraceWriter extends TraceWriter {
+
+    /**
+     * Also writes a sidecar index.
+     */
+    public static BinaryTraceWriter forFile(
+            File file,
+            ObjectWriter writer,
+            TraceHeader header,
+            Executor executor) throws IOException {
+        return forFile(file, writer, header, TraceFlushPolicy.defaults(), executor);
+    }
+
+    /**
+     * Also writes a sidecar index, unless the file is compressed.
+     */
+    public static BinaryTraceWriter forFile(
+            File file,
+            ObjectWriter writer,
+            TraceHeader header,
+            TraceFlushPolicy policy,
+            Executor executor) throws IOException {
+        TraceCompression compression = TraceCompression.forFile(file);
+        if (compression == TraceCompression.NONE) {
+            return create(
+                    new FileOutputStream(file),
+                    Optional.of(BinaryTraceIndex.Writer.forFile(
+                            BinaryTraceIndex.forTrace(file), 
+                            BinaryTraceIndex.DEFAULT_INTERVAL)),
+                    writer,
+                    header,
+                    policy,
+                    executor);
+        }
+        // index offsets would be into the uncompressed stream, which can't be mapped
+        FileOutputStream output = new FileOutputStream(file);
+        return new BinaryTraceWriter(
+                new DataOutputStream(new BufferedOutputStream(compression.compress(output), policy.getBufferSize())),
+                Optional.of(output.getFD()),
+                Optional.<BinaryTraceIndex.Writer>absent(),
+                BinaryTraceEventCodec.encoder(writer),
+                header,
+                policy,
+                executor,
+                Queues.<TraceEvent>newConcurrentLinkedQueue(),
+                LogManager.getLogger(BinaryTraceWriter.class));
+    }
+
+    public static BinaryTraceWriter create(
+            OutputStream output,
+            ObjectWriter writer,
+            TraceHeader header,
+            Executor executor) throws IOException {
+        return create(output, Optional.<BinaryTraceIndex.Writer>absent(), writer, header, TraceFlushPolicy.defaults(), executor);
+    }
+
+    /**
+     * Output to a FileOutputStream is fsynced according to the policy.
+     */
+    public static BinaryTraceWriter create(
+            OutputStream output,
+            Optional<BinaryTraceIndex.Writer> index,
+            ObjectWriter writer,
+            TraceHeader header,
+            TraceFlushPolicy policy,
+            Executor executor) throws IOException {
+        Optional<FileDescriptor> fd = (output instanceof FileOutputStream) ?
+                Optional.of(((FileOutputStream) output).getFD()) :
+                    Optional.<FileDescriptor>absent();
+        return new BinaryTraceWriter(
+                new DataOutputStream(new BufferedOutputStream(output, policy.getBufferSize())),
+                fd,
+                index,
+                BinaryTraceEventCodec.encoder(writer),
+                header,
+                policy,
+                executor,
+                Queues.<TraceEvent>newConcurrentLinkedQueue(),
+                LogManager.getLogger(BinaryTraceWriter.class));
+    }
+
+    protected final DataOutputStream output;
+    protected final Optional<FileDescriptor> fd;
+    protected final BinaryTraceEventCodec.Encoder encoder;
+    protected final BinaryTraceEventCodec.RecordBuffer record;
+    protected final DataOutputStream recordOutput;
+    protected final Optional<BinaryTraceIndex.Writer> index;
+    protected long position;
+
+    public BinaryTraceWriter(
+            DataOutputStream output,
+            Optional<FileDescriptor> fd,
+            Optional<BinaryTraceIndex.Writer> index,
+            BinaryTraceEventCodec.Encoder encoder,
+            TraceHeader header,
+            TraceFlushPolicy policy,
+            Executor executor,
+            Queue<TraceEvent> mailbox,
+            Logger logger) throws IOException {
+        super(header, policy, executor, mailbox, logger);
+        this.output = output;
+        this.fd = fd;
+        this.index = index;
+        this.encoder = encoder;
+        this.record = new BinaryTraceEventCodec.RecordBuffer();
+        this.recordOutput = new DataOutputStream(record);
+
+        BinaryTraceEventCodec.writeHeader(header, encoder.writer, output);
+        this.position = output.size();
+    }
+
+    @Override
+    public long position() {
+        return position;
+    }
+
+    @Override
+    protected void write(TraceEvent event) throws IOException {
+        if (index.isPresent()) {
+            index.get().append(position, encoder.getNanos());
+        }
+        record.reset();
+        encoder.encode(event, recordOutput);
+        position += BinaryTraceEventCodec.writeRecord(record, output);
+    }
+
+    @Override
+    protected void flush() throws IOException {
+        output.flush();
+    }
+
+    @Override
+    protected void sync() throws IOException {
+        output.flush();
+        if (fd.isPresent()) {
+            fd.get().sync();
+        }
+    }
+
+    @Override
+    protected void finish() {
+        if (index.isPresent()) {
+            try {
+                index.get().finish(encoder.getNanos());
+            } catch (IOException e) {
+            } finally {
+                try {
+                    index.get().close();
+                } catch (IOException e) {
+                }
+            }
+        }
+        try {
+            output.flush();
+        } catch (IOException e) {
+        } finally {
+            try {
+                output.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+}
@@ -4,7 +4,6 @@ import static com.google.common.base.Preconditions.checkArgument;
 
 import java.util.List;
 import java.util.Random;
-import java.util.concurrent.ExecutorService;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Function;
@@ -12,14 +11,14 @@ import com.google.common.base.Functions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.Service;
 import com.typesafe.config.ConfigValueType;
 
 import edu.uw.zookeeper.client.ConnectionClientExecutorService;
-import edu.uw.zookeeper.client.IteratingClient;
-import edu.uw.zookeeper.client.SubmitIterator;
+import edu.uw.zookeeper.client.ConnectionClientExecutorsService;
 import edu.uw.zookeeper.client.random.BinGenerator;
 import edu.uw.zookeeper.client.random.PathRequestGenerator;
 import edu.uw.zookeeper.client.random.RandomData;
@@ -28,10 +27,8 @@ import edu.uw.zookeeper.common.Configurable;
 import edu.uw.zookeeper.common.Configuration;
 import edu.uw.zookeeper.common.Generator;
 import edu.uw.zookeeper.common.Generators;
-import edu.uw.zookeeper.common.LoggingFutureListener;
 import edu.uw.zookeeper.common.Pair;
 import edu.uw.zookeeper.common.RuntimeModule;
-import edu.uw.zookeeper.common.SettableFuturePromise;
 import edu.uw.zookeeper.data.AbsoluteZNodePath;
 import edu.uw.zookeeper.data.Operations;
 import edu.uw.zookeeper.data.RelativeZNodePath;
@@ -40,6 +37,9 @@ import edu.uw.zookeeper.data.ZNodeLabelVector;
 import edu.uw.zookeeper.data.ZNodeName;
 import edu.uw.zookeeper.data.ZNodePath;
 import edu.uw.zookeeper.protocol.Message;
+import edu.uw.zookeeper.protocol.Operation;
+import edu.uw.zookeeper.protocol.ProtocolCodec;
+import edu.uw.zookeeper.protocol.client.ConnectionClientExecutor;
 import edu.uw.zookeeper.protocol.proto.Records;
 
 public class GetSetClientBuilder extends MeasuringClientBuilder {
@@ -284,34 +284,28 @@ public class GetSetClientBuilder extends MeasuringClientBuilder {
         // don't want the tree creation operations to go through
         // the tracing layer
         final Runnable delegate = super.getDefaultRunnable();
-        final ConnectionClientExecutorService.Builder untraced = 
-                ConnectionClientExecutorService.builder()
+        final ConnectionClientExecutorsService.OperationBuilder untraced = 
+                ConnectionClientExecutorsService.builder()
                 .setConnectionBuilder(
                         getClientBuilder().getConnectionBuilder().setCodecFactory(null).setDefaults())
                 .setRuntimeModule(getRuntimeModule())
                 .setDefaults();
+        final int connections = TreeBootstrap.ConfigurableConnections.get(getRuntimeModule().getConfiguration()).intValue();
         return new Runnable() {
             @Override
             public void run() {
                 for (Service service: untraced.build()) {
                     service.startAsync().awaitRunning();
                 }
-                ExecutorService executor = getRuntimeModule().getExecutors().get(ExecutorService.class);
-                SubmitIterator<Records.Request, Message.ServerResponse<?>> operations = SubmitIterator.create(
-                         Iterators.transform(PerfectTreePaths.forParameters(getParameters()), 
-                                 new Function<ZNodePath, Records.Request>() {
-                                    @Override
-                                    public Records.Request apply(
-                                            ZNodePath path) {
-                                        return Operations.Requests.create().setPath(path).build();
-                                    }
-                         }),
-                         untraced.getConnectionClientExecutor());
-                IteratingClient client = IteratingClient.create(executor, operations, SettableFuturePromise.<Void>create());
-                LoggingFutureListener.listen(logger, client);
-                executor.execute(client);
                 try {
-                    client.get();
+                    List<ConnectionClientExecutor<Operation.Request,?,?,?>> clients = Lists.newArrayListWithCapacity(connections);
+                    for (int i=0; i<connections; ++i) {
+                        clients.add(untraced.getConnectionClientExecutors().get().get());
+                    }
+                    TreeBootstrap.fromConfiguration(
+                            getRuntimeModule().getConfiguration(), 
+                            getParameters(), 
+                            clients).run();
                 } catch (Exception e) {
                     throw Throwables.propagate(e);
                 } finally {
@@ -330,11 +324,28 @@ public class GetSetClientBuilder extends MeasuringClientBuilder {
         final Configuration configuration = getRuntimeModule().getConfiguration();
         final Float getPercentage = GetPercentageConfiguration.get(configuration);
         final Float dataMaxMB = DataMaxMBConfiguration.get(configuration);
-        final ImmutableList.Builder<ZNodePath> paths = ImmutableList.builder();
-        paths.add(ZNodePath.root());
-        paths.addAll(PerfectTreePaths.forParameters(parameters));
+        final String keys = KeyDistribution.KeyDistributionConfiguration.get(configuration);
+        final ImmutableList.Builder<ZNodePath> builder = ImmutableList.builder();
+        builder.add(ZNodePath.root());
+        builder.addAll(PerfectTreePaths.forParameters(parameters));
+        final ImmutableList<ZNodePath> paths = builder.build();
+        // ranks follow the depth-first creation order,
+        // so skew favors the root and the leftmost subtree, not shallow znodes
+        final Generator<ZNodePath> selector = keys.equalsIgnoreCase("uniform") ?
+                RandomFromList.create(getRandom(), paths) :
+                    KeyDistribution.<ZNodePath>fromList(
+                        KeyDistribution.fromString(keys, paths.size(), getRandom()), paths);
+        final List<Integer> batches = MultiRequestGenerator.ConfigurableBatches.get(configuration);
+        if (! batches.isEmpty()) {
+            return MultiRequestGenerator.create(
+                    getRandom(), 
+                    batches, 
+                    getPercentage.floatValue(), 
+                    selector, 
+                    getDefaultPayloads(dataMaxMB));
+        }
         return PathRequestGenerator.create(
-                RandomFromList.create(getRandom(), paths.build()),
+                selector,
                 Generators.dereferencing(
                         BinGenerator.create(
                             getRandom(), 
@@ -343,7 +354,45 @@ public class GetSetClientBuilder extends MeasuringClientBuilder {
                                         Generators.constant(Operations.Requests.getData())), 
                                 Pair.create(
                                         Float.valueOf(1.0f - getPercentage.floatValue()), 
-                                        SetDataGenerator.forData(RandomData.create(getRandom(), 0, (int) (dataMaxMB.floatValue() * Math.pow(2, 20))))))));
+                                        SetDataGenerator.forData(getDefaultPayloads(dataMaxMB))))));
+    }
+    
+    /**
+     * Multis are traced in addition to the usual measurements.
+     */
+    @Override
+    protected TraceHeader getDefaultTraceHeader() {
+        TraceHeader header = super.getDefaultTraceHeader();
+        if (MultiRequestGenerator.ConfigurableBatches.get(getRuntimeModule().getConfiguration()).isEmpty()) {
+            return header;
+        }
+        return TraceHeader.create(
+                header.getDescription(), 
+                ImmutableSet.<TraceEventTag>builder()
+                    .addAll(header.getTypes())
+                    .add(TraceEventTag.MULTI_EVENT).build(),
+                header.getWindow());
+    }
+    
+    @Override
+    protected ProtocolCodec<Message.ClientSession, Message.ServerSession, Message.ClientSession, Message.ServerSession> getDefaultCodec() {
+        if (getDefaultTraceHeader().getTypes().contains(TraceEventTag.MULTI_EVENT)) {
+            return MultiTimingCodec.defaults(getTracePublisher().getPublisher());
+        }
+        return super.getDefaultCodec();
+    }
+    
+    /**
+     * Pooled, unless disabled, so that payload allocation doesn't slow the client.
+     */
+    protected Generator<byte[]> getDefaultPayloads(Float dataMaxMB) {
+        int max = (int) (dataMaxMB.floatValue() * Math.pow(2, 20));
+        int pool = PayloadPool.PayloadPoolConfiguration.get(getRuntimeModule().getConfiguration()).intValue();
+        if (pool > 0) {
+            return PayloadPool.create(getRandom(), 0, max, pool);
+        } else {
+            return RandomData.create(getRandom(), 0, max);
+        }
     }
     
     protected Random getDefaultRandom() {
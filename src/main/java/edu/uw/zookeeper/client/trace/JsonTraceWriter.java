@@ -0,0 +1,153 @@
+package edu.uw.zookeeper.client.trace;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.base.Optional;
+import com.google.common.collect.Queues;
+import com.google.common.io.CountingOutputStream;
+
+public class JsonTraceWriter extends TraceWriter {
+
+    public static JsonTraceWriter forFile(
+            File file,
+            ObjectWriter writer,
+            TraceHeader header,
+            Executor executor) throws IOException {
+        return forFile(file, writer, header, TraceFlushPolicy.defaults(), executor);
+    }
+
+    public static JsonTraceWriter forFile(
+            File file,
+            ObjectWriter writer,
+            TraceHeader header,
+            TraceFlushPolicy policy,
+            Executor executor) throws IOException {
+        FileOutputStream output = new FileOutputStream(file);
+        CountingOutputStream counting = new CountingOutputStream(
+                new BufferedOutputStream(
+                        TraceCompression.forFile(file).compress(output), 
+                        policy.getBufferSize()));
+        return new JsonTraceWriter(
+                writer.getFactory().createGenerator(counting, Tracing.ENCODING),
+                Optional.of(counting),
+                Optional.of(output.getFD()),
+                writer,
+                header,
+                policy,
+                executor,
+                Queues.<TraceEvent>newConcurrentLinkedQueue(),
+                LogManager.getLogger(JsonTraceWriter.class));
+    }
+
+    public static JsonTraceWriter create(
+            JsonGenerator json,
+            ObjectWriter writer,
+            TraceHeader header,
+            Executor executor) throws IOException {
+        return new JsonTraceWriter(
+                json,
+                Optional.<CountingOutputStream>absent(),
+                Optional.<FileDescriptor>absent(),
+                writer,
+                header,
+                TraceFlushPolicy.defaults(),
+                executor,
+                Queues.<TraceEvent>newConcurrentLinkedQueue(),
+                LogManager.getLogger(JsonTraceWriter.class));
+    }
+
+    protected final ObjectWriter writer;
+    protected final JsonGenerator json;
+    protected final Optional<CountingOutputStream> counting;
+    protected final Optional<FileDescriptor> fd;
+
+    /**
+     * @param counting counts the bytes generated, if known
+     * @param fd to fsync, if any
+     */
+    public JsonTraceWriter(
+            JsonGenerator json,
+            Optional<CountingOutputStream> counting,
+            Optional<FileDescriptor> fd,
+            ObjectWriter writer,
+            TraceHeader header,
+            TraceFlushPolicy policy,
+            Executor executor,
+            Queue<TraceEvent> mailbox,
+            Logger logger) throws IOException {
+        super(header, policy, executor, mailbox, logger);
+        // flushing is up to the policy
+        this.writer = writer.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.json = json;
+        this.counting = counting;
+        this.fd = fd;
+
+        json.writeStartArray();
+        this.writer.writeValue(json, header);
+        json.writeStartArray();
+    }
+
+    /**
+     * Approximate; doesn't include output still buffered by the generator.
+     * Counts bytes before compression.
+     */
+    @Override
+    public long position() {
+        return counting.isPresent() ? counting.get().getCount() : 0L;
+    }
+
+    /**
+     * Same encoding as TraceEventHeader, without allocating one per event.
+     */
+    @Override
+    protected void write(TraceEvent event) throws IOException {
+        json.writeStartArray();
+        json.writeNumber(event.getTag().ordinal());
+        writer.writeValue(json, event);
+        json.writeEndArray();
+    }
+
+    @Override
+    protected void flush() throws IOException {
+        json.flush();
+    }
+
+    @Override
+    protected void sync() throws IOException {
+        json.flush();
+        if (fd.isPresent()) {
+            fd.get().sync();
+        }
+    }
+
+    @Override
+    protected void finish() {
+        try {
+            json.writeEndArray();
+            json.writeEndArray();
+        } catch (IOException e) {
+        }
+
+        try {
+            json.flush();
+        } catch (IOException e) {
+        } finally {
+            try {
+                json.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package edu.uw.zookeeper.client.trace;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.base.Function;
+import com.google.common.base.MoreObjects;
+import com.typesafe.config.Config;
+
+import edu.uw.zookeeper.common.Configurable;
+import edu.uw.zookeeper.common.Configuration;
+import edu.uw.zookeeper.common.Generator;
+
+/**
+ * Selects indices into a list of keys.
+ *
+ * Specified as one of:
+ * <ul>
+ * <li>uniform
+ * <li>zipfian:THETA, the key of rank i is chosen with probability proportional to 1/i^THETA
+ * <li>hotspot:OPS:KEYS, the fraction OPS of selections go to the first fraction KEYS of keys
+ * <li>latest:THETA, zipfian ranked from the end of the list
+ * </ul>
+ * where 0 &lt; THETA &lt; 1 and ranks follow list order, e.g. zipfian:0.99 or hotspot:0.9:0.1.
+ *
+ * Sampling is constant time. Zipfian setup is linear in the number of keys.
+ *
+ * Not thread-safe.
+ */
+public abstract class KeyDistribution {
+
+    public static KeyDistribution uniform(int n, Random random) {
+        return new Uniform(n, random);
+    }
+
+    public static KeyDistribution zipfian(int n, double theta, Random random) {
+        return new Zipfian(n, theta, random);
+    }
+
+    public static KeyDistribution hotspot(int n, double ops, double keys, Random random) {
+        return new Hotspot(n, ops, keys, random);
+    }
+
+    public static KeyDistribution latest(int n, double theta, Random random) {
+        return new Latest(new Zipfian(n, theta, random));
+    }
+
+    public static KeyDistribution fromString(String value, int n, Random random) {
+        String[] parameters = value.trim().split(":");
+        String kind = parameters[0].trim();
+        if (kind.equalsIgnoreCase("uniform")) {
+            checkArgument(parameters.length == 1, value);
+            return uniform(n, random);
+        } else if (kind.equalsIgnoreCase("zipfian")) {
+            checkArgument(parameters.length == 2, value);
+            return zipfian(n, Double.parseDouble(parameters[1].trim()), random);
+        } else if (kind.equalsIgnoreCase("hotspot")) {
+            checkArgument(parameters.length == 3, value);
+            return hotspot(n, Double.parseDouble(parameters[1].trim()), Double.parseDouble(parameters[2].trim()), random);
+        } else if (kind.equalsIgnoreCase("latest")) {
+            checkArgument(parameters.length == 2, value);
+            return latest(n, Double.parseDouble(parameters[1].trim()), random);
+        }
+        throw new IllegalArgumentException(value);
+    }
+
+    public static <T> Generator<T> fromList(
+            final KeyDistribution distribution,
+            final List<? extends T> keys) {
+        checkArgument(distribution.size() == keys.size());
+        return new Generator<T>() {
+            @Override
+            public T next() {
+                return keys.get(distribution.nextIndex());
+            }
+        };
+    }
+
+    @Configurable(arg="keys", key="keyDistribution", value="uniform", help="uniform|zipfian:THETA|hotspot:OPS:KEYS|latest:THETA")
+    public static class KeyDistributionConfiguration implements Function<Configuration, String> {
+
+        public static String get(Configuration configuration) {
+            return new KeyDistributionConfiguration().apply(configuration);
+        }
+
+        @Override
+        public String apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            Config config = configuration.withConfigurable(configurable)
+                    .getConfigOrEmpty(configurable.path());
+            String value = config.getString(configurable.key()).trim();
+            // fail early
+            fromString(value, 2, new Random());
+            return value;
+        }
+    }
+
+    protected final int n;
+
+    protected KeyDistribution(int n) {
+        checkArgument(n > 0);
+        this.n = n;
+    }
+
+    public int size() {
+        return n;
+    }
+
+    /**
+     * @return in [0, size())
+     */
+    public abstract int nextIndex();
+
+    protected static final class Uniform extends KeyDistribution {
+
+        protected final Random random;
+
+        public Uniform(int n, Random random) {
+            super(n);
+            this.random = random;
+        }
+
+        @Override
+        public int nextIndex() {
+            return random.nextInt(n);
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this).addValue(n).toString();
+        }
+    }
+
+    /**
+     * Gray et al., "Quickly Generating Billion-Record Synthetic Databases", SIGMOD 1994.
+     */
+    protected static final class Zipfian extends KeyDistribution {
+
+        protected final double theta;
+        protected final double alpha;
+        protected final double zetan;
+        protected final double eta;
+        protected final double half;
+        protected final Random random;
+
+        public Zipfian(int n, double theta, Random random) {
+            super(n);
+            checkArgument((theta > 0.0) && (theta < 1.0), theta);
+            this.theta = theta;
+            this.random = random;
+            double zetan = 0.0;
+            for (int i=1; i<=n; ++i) {
+                zetan += 1.0 / Math.pow(i, theta);
+            }
+            this.zetan = zetan;
+            this.alpha = 1.0 / (1.0 - theta);
+            this.half = Math.pow(0.5, theta);
+            double zeta2 = 1.0 + half;
+            this.eta = (n > 1) ?
+                    (1.0 - Math.pow(2.0 / n, 1.0 - theta)) / (1.0 - zeta2 / zetan) :
+                        0.0;
+        }
+
+        @Override
+        public int nextIndex() {
+            double u = random.nextDouble();
+            double uz = u * zetan;
+            if (uz < 1.0) {
+                return 0;
+            }
+            if (uz < 1.0 + half) {
+                return Math.min(1, n - 1);
+            }
+            int index = (int) (n * Math.pow(eta * u - eta + 1.0, alpha));
+            return Math.min(Math.max(index, 0), n - 1);
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this).addValue(n).add("theta", theta).toString();
+        }
+    }
+
+    protected static final class Hotspot extends KeyDistribution {
+
+        protected final double ops;
+        protected final int hot;
+        protected final Random random;
+
+        public Hotspot(int n, double ops, double keys, Random random) {
+            super(n);
+            checkArgument((ops >= 0.0) && (ops <= 1.0), ops);
+            checkArgument((keys > 0.0) && (keys <= 1.0), keys);
+            this.ops = ops;
+            this.hot = Math.max(1, (int) (n * keys));
+            this.random = random;
+        }
+
+        @Override
+        public int nextIndex() {
+            if ((hot == n) || (random.nextDouble() < ops)) {
+                return random.nextInt(hot);
+            } else {
+                return hot + random.nextInt(n - hot);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this).addValue(n).add("ops", ops).add("hot", hot).toString();
+        }
+    }
+
+    protected static final class Latest extends KeyDistribution {
+
+        protected final Zipfian delegate;
+
+        public Latest(Zipfian delegate) {
+            super(delegate.size());
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int nextIndex() {
+            return n - 1 - delegate.nextIndex();
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this).addValue(delegate).toString();
+        }
+    }
+}
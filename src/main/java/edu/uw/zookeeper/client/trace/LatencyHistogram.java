@@ -0,0 +1,131 @@
+package edu.uw.zookeeper.client.trace;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Lock-free log-linear histogram of non-negative microsecond values.
+ * 
+ * Values below 2^precision are counted exactly.
+ * Each larger power of two is split into 2^(precision-1) linear buckets,
+ * so the relative error is at most 2^-(precision-1).
+ */
+public final class LatencyHistogram {
+
+    public static final int DEFAULT_PRECISION = 8;
+    
+    public static LatencyHistogram create() {
+        return create(DEFAULT_PRECISION);
+    }
+    
+    public static LatencyHistogram create(int precision) {
+        checkArgument((precision > 0) && (precision < 31));
+        return new LatencyHistogram(precision);
+    }
+    
+    private final int precision;
+    private final int half;
+    private final AtomicLongArray counts;
+    private final AtomicLong max;
+    
+    private LatencyHistogram(int precision) {
+        this.precision = precision;
+        this.half = 1 << (precision - 1);
+        this.counts = new AtomicLongArray(index(Integer.MAX_VALUE) + 1);
+        this.max = new AtomicLong(0L);
+    }
+    
+    public void record(long micros) {
+        long value = Math.min(Math.max(0L, micros), Integer.MAX_VALUE);
+        counts.incrementAndGet(index(value));
+        long current = max.get();
+        while ((value > current) && ! max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+    
+    /**
+     * Values recorded concurrently end up in either this snapshot or the next.
+     */
+    public Snapshot getAndReset() {
+        long[] values = new long[counts.length()];
+        long count = 0L;
+        for (int i=0; i<values.length; ++i) {
+            if (counts.get(i) != 0L) {
+                values[i] = counts.getAndSet(i, 0L);
+                count += values[i];
+            }
+        }
+        return new Snapshot(values, count, max.getAndSet(0L));
+    }
+    
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("precision", precision)
+                .toString();
+    }
+    
+    private int index(long value) {
+        int shift = Math.max(0, (63 - Long.numberOfLeadingZeros(value)) - precision + 1);
+        return (shift * half) + (int) (value >>> shift);
+    }
+    
+    private long highestEquivalent(int index) {
+        int shift = Math.max(0, (index / half) - 1);
+        long bucket = index - (shift * half);
+        return ((bucket + 1L) << shift) - 1L;
+    }
+    
+    public final class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long max;
+        
+        private Snapshot(long[] counts, long count, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.max = max;
+        }
+        
+        public long count() {
+            return count;
+        }
+        
+        public long max() {
+            return max;
+        }
+        
+        /**
+         * @param percentile in [0, 100]
+         * @return 0 if empty
+         */
+        public long valueAtPercentile(double percentile) {
+            if (count == 0L) {
+                return 0L;
+            }
+            long rank = Math.max(1L, (long) Math.ceil((percentile / 100.0) * count));
+            long total = 0L;
+            for (int i=0; i<counts.length; ++i) {
+                total += counts[i];
+                if (total >= rank) {
+                    return Math.min(highestEquivalent(i), max);
+                }
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("count", count)
+                    .add("max", max)
+                    .toString();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package edu.uw.zookeeper.client.trace;
+
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableList;
+
+import edu.uw.zookeeper.common.Actor;
+import edu.uw.zookeeper.common.Configuration;
+import edu.uw.zookeeper.protocol.proto.OpCode;
+
+/**
+ * Records operation latencies into a histogram and forwards
+ * one LatencyHistogramEvent per interval instead of one event per operation.
+ * 
+ * Intervals start at the origin shared with StripedThroughputMeasuringActor.
+ * Recording doesn't lock; only completing an interval does.
+ */
+public class LatencyHistogramActor implements Actor<TraceEvent>, OperationTimingListener {
+
+    public static LatencyHistogramActor create(
+            Configuration configuration,
+            Actor<? super TraceEvent> delegate) {
+        return create(configuration, MeasurementOrigin.create(), delegate);
+    }
+
+    public static LatencyHistogramActor create(
+            Configuration configuration,
+            MeasurementOrigin origin,
+            Actor<? super TraceEvent> delegate) {
+        int interval = (int) ThroughputMeasuringActor.ConfigurableThroughputInterval.get(configuration).value(TimeUnit.MILLISECONDS);
+        return new LatencyHistogramActor(interval, LatencyHistogram.create(), origin, delegate);
+    }
+    
+    public static LatencyHistogramActor create(
+            int interval,
+            Actor<? super TraceEvent> delegate) {
+        return new LatencyHistogramActor(interval, LatencyHistogram.create(), MeasurementOrigin.create(), delegate);
+    }
+
+    protected final long interval;
+    protected final LatencyHistogram histogram;
+    protected final MeasurementOrigin origin;
+    protected final Actor<? super TraceEvent> delegate;
+    protected long start;
+    // zero until the first operation
+    protected volatile long end;
+    
+    public LatencyHistogramActor(
+            int interval,
+            LatencyHistogram histogram,
+            MeasurementOrigin origin,
+            Actor<? super TraceEvent> delegate) {
+        this.interval = TimeUnit.NANOSECONDS.convert(interval, TimeUnit.MILLISECONDS);
+        this.histogram = histogram;
+        this.origin = origin;
+        this.delegate = delegate;
+        this.start = 0L;
+        this.end = 0L;
+    }
+    
+    @Override
+    public void run() {
+        delegate.run();
+    }
+
+    @Override
+    public State state() {
+        return delegate.state();
+    }
+
+    @Override
+    public boolean send(TraceEvent message) {
+        if (message instanceof OperationEvent) {
+            OperationEvent operation = (OperationEvent) message;
+            if ((operation.getRequest() != null) && (operation.getResponse() != null)) {
+                record(operation.getRequestNanos(), operation.getResponseNanos());
+            }
+        }
+        return delegate.send(message);
+    }
+
+    /**
+     * Forwards to the delegate if it is also a listener.
+     */
+    @Override
+    public void handleOperationTiming(long sessionId, OpCode opcode, int error,
+            long requestNanos, long responseNanos) {
+        if (responseNanos != OperationEvent.TIMEOUT) {
+            record(requestNanos, responseNanos);
+        }
+        if (delegate instanceof OperationTimingListener) {
+            ((OperationTimingListener) delegate).handleOperationTiming(sessionId, opcode, error, requestNanos, responseNanos);
+        }
+    }
+
+    @Override
+    public boolean stop() {
+        LatencyHistogramEvent event = null;
+        synchronized (this) {
+            if (end != 0L) {
+                LatencyHistogram.Snapshot snapshot = histogram.getAndReset();
+                if (snapshot.count() > 0L) {
+                    event = LatencyHistogramEvent.fromSnapshot(snapshot, System.nanoTime() - start);
+                }
+                start = 0L;
+                end = 0L;
+            }
+        }
+        if (event != null) {
+            delegate.send(event);
+        }
+        return delegate.stop();
+    }
+    
+    protected void record(long requestNanos, long responseNanos) {
+        if (responseNanos >= end) {
+            ImmutableList.Builder<TraceEvent> events = ImmutableList.builder();
+            synchronized (this) {
+                if (end == 0L) {
+                    start = origin.get(requestNanos);
+                    end = start + interval;
+                }
+                // complete preceding intervals
+                while (responseNanos >= end) {
+                    events.add(LatencyHistogramEvent.fromSnapshot(histogram.getAndReset(), interval));
+                    start = end;
+                    end = start + interval;
+                }
+            }
+            for (TraceEvent event: events.build()) {
+                delegate.send(event);
+            }
+        }
+        long latency = Math.max(0L, responseNanos - requestNanos);
+        histogram.record(TimeUnit.MICROSECONDS.convert(latency, TimeUnit.NANOSECONDS));
+    }
+}
@@ -0,0 +1,207 @@
+package edu.uw.zookeeper.client.trace;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerationException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Objects;
+
+/**
+ * Latency percentiles of the operations completed in one interval.
+ * 
+ * Latencies are in microseconds.
+ */
+@TraceEventType(TraceEventTag.LATENCY_HISTOGRAM_EVENT)
+@JsonSerialize(using=LatencyHistogramEvent.Serializer.class, typing=JsonSerialize.Typing.STATIC)
+@JsonDeserialize(using=LatencyHistogramEvent.Deserializer.class)
+public final class LatencyHistogramEvent implements TraceEvent {
+
+    public static LatencyHistogramEvent fromSnapshot(LatencyHistogram.Snapshot snapshot, long nanos) {
+        long millis = (nanos <= 0) ? 
+                nanos : 
+                    TimeUnit.MILLISECONDS.convert(nanos, TimeUnit.NANOSECONDS);
+        return new LatencyHistogramEvent(
+                (int) millis,
+                (int) snapshot.count(),
+                (int) snapshot.valueAtPercentile(50.0),
+                (int) snapshot.valueAtPercentile(90.0),
+                (int) snapshot.valueAtPercentile(99.0),
+                (int) snapshot.valueAtPercentile(99.9),
+                (int) snapshot.max());
+    }
+
+    public static LatencyHistogramEvent create(
+            int millis, int count, int p50, int p90, int p99, int p999, int max) {
+        return new LatencyHistogramEvent(millis, count, p50, p90, p99, p999, max);
+    }
+
+    private final int millis;
+    private final int count;
+    private final int p50;
+    private final int p90;
+    private final int p99;
+    private final int p999;
+    private final int max;
+    
+    @JsonCreator
+    public LatencyHistogramEvent(
+            @JsonProperty("millis") int millis,
+            @JsonProperty("count") int count,
+            @JsonProperty("p50") int p50,
+            @JsonProperty("p90") int p90,
+            @JsonProperty("p99") int p99,
+            @JsonProperty("p999") int p999,
+            @JsonProperty("max") int max) {
+        this.millis = millis;
+        this.count = count;
+        this.p50 = p50;
+        this.p90 = p90;
+        this.p99 = p99;
+        this.p999 = p999;
+        this.max = max;
+    }
+
+    @Override
+    public TraceEventTag getTag() {
+        return TraceEventTag.LATENCY_HISTOGRAM_EVENT;
+    }
+
+    public int getMillis() {
+        return millis;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getP50() {
+        return p50;
+    }
+
+    public int getP90() {
+        return p90;
+    }
+
+    public int getP99() {
+        return p99;
+    }
+
+    public int getP999() {
+        return p999;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("millis", millis)
+                .add("count", count)
+                .add("p50", p50)
+                .add("p90", p90)
+                .add("p99", p99)
+                .add("p999", p999)
+                .add("max", max)
+                .toString();
+    }
+    
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (! (obj instanceof LatencyHistogramEvent)) {
+            return false;
+        }
+        LatencyHistogramEvent other = (LatencyHistogramEvent) obj;
+        return (millis == other.millis) 
+                && (count == other.count)
+                && (p50 == other.p50)
+                && (p90 == other.p90)
+                && (p99 == other.p99)
+                && (p999 == other.p999)
+                && (max == other.max);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(millis, count, p50, p90, p99, p999, max);
+    }
+
+    public static class Serializer extends ListSerializer<LatencyHistogramEvent> {
+    
+        public static Serializer create() {
+            return new Serializer();
+        }
+        
+        public Serializer() {
+            super(LatencyHistogramEvent.class);
+        }
+    
+        @Override
+        protected void serializeValue(LatencyHistogramEvent value, JsonGenerator json,
+                SerializerProvider provider) throws IOException,
+                JsonGenerationException {
+            json.writeNumber(value.millis);
+            json.writeNumber(value.count);
+            json.writeNumber(value.p50);
+            json.writeNumber(value.p90);
+            json.writeNumber(value.p99);
+            json.writeNumber(value.p999);
+            json.writeNumber(value.max);
+        }
+    }
+
+    public static class Deserializer extends ListDeserializer<LatencyHistogramEvent> {
+
+        public static Deserializer create() {
+            return new Deserializer();
+        }
+
+        private static final long serialVersionUID = -2281764853960519853L;
+
+        public Deserializer() {
+            super(LatencyHistogramEvent.class);
+        }
+    
+        @Override
+        protected LatencyHistogramEvent deserializeValue(JsonParser json,
+                DeserializationContext ctxt) throws IOException,
+                JsonProcessingException {
+            JsonToken token = json.getCurrentToken();
+            if (token == null) {
+                token = json.nextToken();
+                if (token == null) {
+                    return null;
+                }
+            }
+            int[] values = new int[7];
+            for (int i=0; i<values.length; ++i) {
+                if (i > 0) {
+                    token = json.nextToken();
+                }
+                if (token != JsonToken.VALUE_NUMBER_INT) {
+                    throw ctxt.wrongTokenException(json, JsonToken.VALUE_NUMBER_INT, "");
+                }
+                values[i] = json.getIntValue();
+            }
+            json.clearCurrentToken();
+            LatencyHistogramEvent value = new LatencyHistogramEvent(
+                    values[0], values[1], values[2], values[3], values[4], values[5], values[6]);
+            return value;
+        }
+    }
+}
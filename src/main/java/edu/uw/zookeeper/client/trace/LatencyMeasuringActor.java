@@ -1,18 +1,59 @@
 package edu.uw.zookeeper.client.trace;
 
+import java.util.concurrent.TimeUnit;
+
 import edu.uw.zookeeper.common.Actor;
+import edu.uw.zookeeper.protocol.Operation;
+import edu.uw.zookeeper.protocol.proto.OpCode;
+
+/**
+ * Operations completed outside the measurement window,
+ * counted from the origin shared with the interval actors, aren't measured.
+ * 
+ * By operation, latencies are published as OperationLatencyEvents
+ * tagged with the opcode and error code instead.
+ */
+public class LatencyMeasuringActor implements Actor<TraceEvent>, OperationTimingListener {
 
-public class LatencyMeasuringActor implements Actor<TraceEvent> {
+    public static LatencyMeasuringActor create(
+            Actor<? super TraceEvent> delegate) {
+        return create(MeasurementWindow.none(), delegate);
+    }
 
     public static LatencyMeasuringActor create(
+            MeasurementWindow window,
             Actor<? super TraceEvent> delegate) {
-        return new LatencyMeasuringActor(delegate);
+        return create(window, false, delegate);
+    }
+
+    public static LatencyMeasuringActor create(
+            MeasurementWindow window,
+            boolean byOperation,
+            Actor<? super TraceEvent> delegate) {
+        return create(window, byOperation, MeasurementOrigin.create(), delegate);
+    }
+
+    public static LatencyMeasuringActor create(
+            MeasurementWindow window,
+            boolean byOperation,
+            MeasurementOrigin origin,
+            Actor<? super TraceEvent> delegate) {
+        return new LatencyMeasuringActor(window, byOperation, origin, delegate);
     }
     
+    protected final MeasurementWindow window;
+    protected final boolean byOperation;
+    protected final MeasurementOrigin origin;
     protected final Actor<? super TraceEvent> delegate;
     
     public LatencyMeasuringActor(
+            MeasurementWindow window,
+            boolean byOperation,
+            MeasurementOrigin origin,
             Actor<? super TraceEvent> delegate) {
+        this.window = window;
+        this.byOperation = byOperation;
+        this.origin = origin;
         this.delegate = delegate;
     }
     
@@ -30,13 +71,49 @@ public class LatencyMeasuringActor implements Actor<TraceEvent> {
     public boolean send(TraceEvent message) {
         if (message instanceof OperationEvent) {
             OperationEvent operation = (OperationEvent) message;
-            long latency = Math.max(0L, operation.getResponseNanos() - operation.getRequestNanos());
-            LatencyMeasurementEvent event = LatencyMeasurementEvent.fromNanos(latency);
-            delegate.send(event);
+            if (isMeasured(operation.getRequestNanos(), operation.getResponseNanos())) {
+                long latency = Math.max(0L, operation.getResponseNanos() - operation.getRequestNanos());
+                if (byOperation) {
+                    if ((operation.getRequest() != null) && (operation.getResponse() != null)) {
+                        int error = (operation.getResponse().record() instanceof Operation.Error) ?
+                                ((Operation.Error) operation.getResponse().record()).error().intValue() :
+                                    0;
+                        delegate.send(OperationLatencyEvent.fromNanos(operation.getRequest().record().opcode(), error, latency));
+                    }
+                } else {
+                    delegate.send(LatencyMeasurementEvent.fromNanos(latency));
+                }
+            }
         }
         return delegate.send(message);
     }
 
+    /**
+     * Forwards to the delegate if it is also a listener.
+     */
+    @Override
+    public void handleOperationTiming(long sessionId, OpCode opcode, int error,
+            long requestNanos, long responseNanos) {
+        if ((responseNanos != OperationEvent.TIMEOUT) && isMeasured(requestNanos, responseNanos)) {
+            long latency = Math.max(0L, responseNanos - requestNanos);
+            if (byOperation) {
+                delegate.send(OperationLatencyEvent.fromNanos(opcode, error, latency));
+            } else {
+                delegate.send(LatencyMeasurementEvent.fromNanos(latency));
+            }
+        }
+        if (delegate instanceof OperationTimingListener) {
+            ((OperationTimingListener) delegate).handleOperationTiming(sessionId, opcode, error, requestNanos, responseNanos);
+        }
+    }
+
+    protected boolean isMeasured(long requestNanos, long responseNanos) {
+        if (window.equals(MeasurementWindow.none())) {
+            return true;
+        }
+        return window.contains(TimeUnit.NANOSECONDS.toMillis(responseNanos - origin.get(requestNanos)));
+    }
+
     @Override
     public boolean stop() {
         return delegate.stop();
@@ -0,0 +1,510 @@
+package edu.uw.zookeeper.client.trace;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.typesafe.config.ConfigValueType;
+
+import edu.uw.zookeeper.client.ClientExecutor;
+import edu.uw.zookeeper.client.trace.csv.CsvAppender;
+import edu.uw.zookeeper.client.trace.csv.CsvColumn;
+import edu.uw.zookeeper.client.trace.csv.CsvFieldType;
+import edu.uw.zookeeper.client.trace.csv.CsvSchema;
+import edu.uw.zookeeper.common.Configurable;
+import edu.uw.zookeeper.common.Configuration;
+import edu.uw.zookeeper.common.Generator;
+import edu.uw.zookeeper.common.TimeValue;
+import edu.uw.zookeeper.protocol.Operation;
+import edu.uw.zookeeper.protocol.proto.Records;
+
+/**
+ * Steps through increasing open-loop offered load to find where latency explodes.
+ *
+ * Each step submits requests at a fixed rate for a warmup period and then a measurement window.
+ * Only requests intended to be sent during the window are measured,
+ * with latency from the intended send time.
+ * Throughput counts the responses received during the window.
+ * One row per step is appended to a CSV summary.
+ * The sweep stops early once more than 1% of the window's requests are still unanswered
+ * a window after it ends, or, if an SLO is configured, once p99 exceeds it.
+ * Outstanding requests are drained before the next step starts.
+ */
+public class LoadSweep implements Runnable {
+
+    public static LoadSweep fromConfiguration(
+            Configuration configuration,
+            Generator<? extends Records.Request> requests,
+            List<? extends ClientExecutor<? super Operation.Request, ?, ?>> clients) {
+        return create(
+                parseRates(ConfigurableRates.get(configuration)),
+                ConfigurablePoisson.get(configuration).booleanValue(),
+                ConfigurableWarmup.get(configuration).value(TimeUnit.NANOSECONDS),
+                ConfigurableWindow.get(configuration).value(TimeUnit.NANOSECONDS),
+                ConfigurableSlo.get(configuration).value(TimeUnit.MICROSECONDS),
+                ConfigurableOutputFile.get(configuration),
+                requests,
+                clients);
+    }
+
+    public static LoadSweep create(
+            List<Double> rates,
+            boolean poisson,
+            long warmupNanos,
+            long windowNanos,
+            long sloMicros,
+            File output,
+            Generator<? extends Records.Request> requests,
+            List<? extends ClientExecutor<? super Operation.Request, ?, ?>> clients) {
+        checkArgument(! rates.isEmpty());
+        checkArgument(warmupNanos >= 0L);
+        checkArgument(windowNanos > 0L);
+        checkArgument(! clients.isEmpty());
+        return new LoadSweep(
+                ImmutableList.copyOf(rates), poisson, warmupNanos, windowNanos, sloMicros,
+                output, requests, ImmutableList.copyOf(clients), new Random(),
+                LogManager.getLogger(LoadSweep.class));
+    }
+
+    /**
+     * Either a list, e.g. 100,200,400,
+     * or a geometric progression START..MAX*FACTOR, e.g. 100..6400*2.
+     */
+    public static List<Double> parseRates(String value) {
+        ImmutableList.Builder<Double> rates = ImmutableList.builder();
+        int range = value.indexOf("..");
+        if (range >= 0) {
+            int factor = value.indexOf('*', range);
+            checkArgument(factor > range, value);
+            double start = Double.parseDouble(value.substring(0, range).trim());
+            double max = Double.parseDouble(value.substring(range + 2, factor).trim());
+            double multiplier = Double.parseDouble(value.substring(factor + 1).trim());
+            checkArgument((start > 0.0) && (multiplier > 1.0), value);
+            for (double rate = start; rate <= max; rate *= multiplier) {
+                rates.add(Double.valueOf(rate));
+            }
+        } else {
+            for (String rate: value.split(",")) {
+                if (! rate.trim().isEmpty()) {
+                    double r = Double.parseDouble(rate.trim());
+                    checkArgument(r > 0.0, value);
+                    rates.add(Double.valueOf(r));
+                }
+            }
+        }
+        return rates.build();
+    }
+
+    public static ImmutableList<CsvColumn> columns() {
+        Function<Object, String> millis = CsvSchema.forFormat("%04.3f");
+        Function<Object, String> rate = CsvSchema.forFormat("%.1f");
+        return ImmutableList.of(
+                CsvColumn.create(
+                        CsvFieldType.FIELD_FLOAT, "Offered (ops/s)", rate),
+                CsvColumn.create(
+                        CsvFieldType.FIELD_FLOAT, "Throughput (ops/s)", rate),
+                CsvColumn.create(
+                        CsvFieldType.FIELD_INT, "Operations", CsvSchema.forFormat("%d")),
+                CsvColumn.create(
+                        CsvFieldType.FIELD_INT, "Errors", CsvSchema.forFormat("%d")),
+                CsvColumn.create(
+                        CsvFieldType.FIELD_INT, "Unanswered", CsvSchema.forFormat("%d")),
+                CsvColumn.create(
+                        CsvFieldType.FIELD_FLOAT, "p50 (ms)", millis),
+                CsvColumn.create(
+                        CsvFieldType.FIELD_FLOAT, "p90 (ms)", millis),
+                CsvColumn.create(
+                        CsvFieldType.FIELD_FLOAT, "p99 (ms)", millis),
+                CsvColumn.create(
+                        CsvFieldType.FIELD_FLOAT, "p99.9 (ms)", millis),
+                CsvColumn.create(
+                        CsvFieldType.FIELD_FLOAT, "Max (ms)", millis),
+                CsvColumn.create(
+                        CsvFieldType.FIELD_FLOAT, "Lag p99 (ms)", millis));
+    }
+
+    @Configurable(path="sweep", arg="sweep", key="rates", value="", help="offered load steps per second: R1,R2,...|START..MAX*FACTOR")
+    public static class ConfigurableRates implements Function<Configuration, String> {
+
+        public static String get(Configuration configuration) {
+            return new ConfigurableRates().apply(configuration);
+        }
+
+        @Override
+        public String apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getString(configurable.key()).trim();
+        }
+    }
+
+    @Configurable(path="sweep", arg="sweepPoisson", key="poisson", value="true", type=ConfigValueType.BOOLEAN, help="exponentially distributed arrivals")
+    public static class ConfigurablePoisson implements Function<Configuration, Boolean> {
+
+        public static Boolean get(Configuration configuration) {
+            return new ConfigurablePoisson().apply(configuration);
+        }
+
+        @Override
+        public Boolean apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getBoolean(configurable.key());
+        }
+    }
+
+    @Configurable(path="sweep", arg="warmup", key="warmup", value="5 s", help="time")
+    public static class ConfigurableWarmup implements Function<Configuration, TimeValue> {
+
+        public static TimeValue get(Configuration configuration) {
+            return new ConfigurableWarmup().apply(configuration);
+        }
+
+        @Override
+        public TimeValue apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return TimeValue.fromString(
+                    configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getString(configurable.key()));
+        }
+    }
+
+    @Configurable(path="sweep", arg="window", key="window", value="10 s", help="time")
+    public static class ConfigurableWindow implements Function<Configuration, TimeValue> {
+
+        public static TimeValue get(Configuration configuration) {
+            return new ConfigurableWindow().apply(configuration);
+        }
+
+        @Override
+        public TimeValue apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return TimeValue.fromString(
+                    configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getString(configurable.key()));
+        }
+    }
+
+    @Configurable(path="sweep", arg="slo", key="sloP99", value="0 ms", help="time, 0 for none")
+    public static class ConfigurableSlo implements Function<Configuration, TimeValue> {
+
+        public static TimeValue get(Configuration configuration) {
+            return new ConfigurableSlo().apply(configuration);
+        }
+
+        @Override
+        public TimeValue apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return TimeValue.fromString(
+                    configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getString(configurable.key()));
+        }
+    }
+
+    @Configurable(path="sweep", arg="sweepOutput", key="outputFile", value="sweep-%d.csv", help="path")
+    public static class ConfigurableOutputFile implements Function<Configuration, File> {
+
+        public static File get(Configuration configuration) {
+            return new ConfigurableOutputFile().apply(configuration);
+        }
+
+        @Override
+        public File apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            String value =
+                    configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getString(configurable.key());
+            if (value.indexOf('%') != -1) {
+                value = String.format(value, System.currentTimeMillis());
+            }
+            return new File(value).getAbsoluteFile();
+        }
+    }
+
+    protected final Logger logger;
+    protected final ImmutableList<Double> rates;
+    protected final boolean poisson;
+    protected final long warmupNanos;
+    protected final long windowNanos;
+    protected final long sloMicros;
+    protected final File output;
+    protected final Generator<? extends Records.Request> requests;
+    protected final ImmutableList<? extends ClientExecutor<? super Operation.Request, ?, ?>> clients;
+    protected final Random random;
+
+    protected LoadSweep(
+            ImmutableList<Double> rates,
+            boolean poisson,
+            long warmupNanos,
+            long windowNanos,
+            long sloMicros,
+            File output,
+            Generator<? extends Records.Request> requests,
+            ImmutableList<? extends ClientExecutor<? super Operation.Request, ?, ?>> clients,
+            Random random,
+            Logger logger) {
+        this.logger = logger;
+        this.rates = rates;
+        this.poisson = poisson;
+        this.warmupNanos = warmupNanos;
+        this.windowNanos = windowNanos;
+        this.sloMicros = sloMicros;
+        this.output = output;
+        this.requests = requests;
+        this.clients = clients;
+        this.random = random;
+    }
+
+    @Override
+    public void run() {
+        logger.info("Sweeping {} over {} clients to {}", rates, clients.size(), output);
+        try {
+            CsvAppender csv = CsvAppender.forFile(output, CsvSchema.builder().withColumns(columns()).build());
+            try {
+                for (Double rate: rates) {
+                    Result result = step(rate.doubleValue());
+                    csv.append(result.toRecord());
+                    csv.flush();
+                    if (result.isSaturated(sloMicros)) {
+                        logger.info("Stopping at {}/s: {}", rate, result);
+                        break;
+                    }
+                    logger.info("{}/s: {}", rate, result);
+                }
+            } finally {
+                csv.close();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    protected Result step(double rate) throws InterruptedException {
+        Iterator<Long> arrivals = poisson ? ArrivalProcess.poisson(rate, random) : ArrivalProcess.constant(rate);
+        long start = System.nanoTime();
+        long measured = start + warmupNanos;
+        long end = measured + windowNanos;
+        // latencies of warmup requests are discarded,
+        // but responses to them received during the window are throughput
+        AtomicLong answered = new AtomicLong(0L);
+        Window warmup = new Window(answered, measured, end);
+        Window window = new Window(answered, measured, end);
+        int next = 0;
+        while (arrivals.hasNext()) {
+            long intended = start + arrivals.next().longValue();
+            if (intended >= end) {
+                break;
+            }
+            Window current = (intended >= measured) ? window : warmup;
+            long now = OpenLoopSubmitter.awaitNanos(intended);
+            Records.Request request = requests.next();
+            ClientExecutor<? super Operation.Request, ?, ?> client = clients.get(next);
+            next = (next + 1) % clients.size();
+            current.submit(request, client, intended, now);
+        }
+        window.await(end + windowNanos);
+        Result result = window.result(rate, answered.get(), windowNanos);
+        drain(end + 2L * windowNanos, warmup, window);
+        return result;
+    }
+
+    /**
+     * Waits for this step's outstanding requests so that they don't load the next step.
+     */
+    protected void drain(long deadline, Window...windows) throws InterruptedException {
+        long outstanding = 0L;
+        for (Window window: windows) {
+            window.await(deadline);
+            outstanding += window.outstanding();
+        }
+        if (outstanding > 0L) {
+            logger.warn("{} requests still outstanding", outstanding);
+        }
+    }
+
+    public static final class Result {
+
+        protected final double offered;
+        protected final long submitted;
+        protected final long completed;
+        protected final long errors;
+        protected final long answered;
+        protected final long windowNanos;
+        protected final LatencyHistogram.Snapshot latency;
+        protected final LatencyHistogram.Snapshot lag;
+
+        public Result(
+                double offered,
+                long submitted,
+                long completed,
+                long errors,
+                long answered,
+                long windowNanos,
+                LatencyHistogram.Snapshot latency,
+                LatencyHistogram.Snapshot lag) {
+            this.offered = offered;
+            this.submitted = submitted;
+            this.completed = completed;
+            this.errors = errors;
+            this.answered = answered;
+            this.windowNanos = windowNanos;
+            this.latency = latency;
+            this.lag = lag;
+        }
+
+        /**
+         * Successful responses received during the window, per second.
+         */
+        public double getThroughput() {
+            return (double) answered * ArrivalProcess.SECOND / windowNanos;
+        }
+
+        public long getUnanswered() {
+            return submitted - completed - errors;
+        }
+
+        /**
+         * @param sloMicros 0 for no SLO
+         */
+        public boolean isSaturated(long sloMicros) {
+            if (getUnanswered() * 100L > submitted) {
+                return true;
+            }
+            return (sloMicros > 0L) && (latency.valueAtPercentile(99.0) > sloMicros);
+        }
+
+        public ImmutableList<Object> toRecord() {
+            return ImmutableList.<Object>of(
+                    Double.valueOf(offered),
+                    Double.valueOf(getThroughput()),
+                    Long.valueOf(completed),
+                    Long.valueOf(errors),
+                    Long.valueOf(getUnanswered()),
+                    Float.valueOf(latency.valueAtPercentile(50.0) / 1000.0f),
+                    Float.valueOf(latency.valueAtPercentile(90.0) / 1000.0f),
+                    Float.valueOf(latency.valueAtPercentile(99.0) / 1000.0f),
+                    Float.valueOf(latency.valueAtPercentile(99.9) / 1000.0f),
+                    Float.valueOf(latency.max() / 1000.0f),
+                    Float.valueOf(lag.valueAtPercentile(99.0) / 1000.0f));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("throughput=%.1f/s count=%d errors=%d unanswered=%d p50=%dus p99=%dus p99.9=%dus max=%dus",
+                    getThroughput(), completed, errors, getUnanswered(),
+                    latency.valueAtPercentile(50.0), latency.valueAtPercentile(99.0),
+                    latency.valueAtPercentile(99.9), latency.max());
+        }
+    }
+
+    /**
+     * Requests intended for one period of a step.
+     */
+    protected static final class Window {
+
+        protected final LatencyHistogram latency;
+        protected final LatencyHistogram lag;
+        protected final AtomicLong completed;
+        protected final AtomicLong errors;
+        protected final AtomicLong answered;
+        protected final long measured;
+        protected final long end;
+        protected long submitted;
+
+        /**
+         * @param answered counts successful responses received in [measured, end)
+         */
+        public Window(AtomicLong answered, long measured, long end) {
+            this.latency = LatencyHistogram.create();
+            this.lag = LatencyHistogram.create();
+            this.completed = new AtomicLong(0L);
+            this.errors = new AtomicLong(0L);
+            this.answered = answered;
+            this.measured = measured;
+            this.end = end;
+            this.submitted = 0L;
+        }
+
+        public void submit(
+                Records.Request request,
+                ClientExecutor<? super Operation.Request, ?, ?> client,
+                final long intended,
+                long now) {
+            lag.record(TimeUnit.NANOSECONDS.toMicros(now - intended));
+            final ListenableFuture<?> future = client.submit(request);
+            future.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    complete(future, intended);
+                }
+            }, MoreExecutors.directExecutor());
+            ++submitted;
+        }
+
+        /**
+         * Failures and error replies are counted as errors, and not measured.
+         */
+        public void complete(ListenableFuture<?> future, long intended) {
+            long nanos = System.nanoTime();
+            Object response;
+            try {
+                response = future.get();
+            } catch (Exception e) {
+                errors.incrementAndGet();
+                return;
+            }
+            if ((response instanceof Operation.ProtocolResponse<?>) 
+                    && (((Operation.ProtocolResponse<?>) response).record() instanceof Operation.Error)) {
+                errors.incrementAndGet();
+                return;
+            }
+            latency.record(TimeUnit.NANOSECONDS.toMicros(nanos - intended));
+            completed.incrementAndGet();
+            if ((nanos >= measured) && (nanos < end)) {
+                answered.incrementAndGet();
+            }
+        }
+
+        /**
+         * Waits until every request is answered, or until the deadline.
+         */
+        public void await(long deadline) throws InterruptedException {
+            long remaining;
+            while ((completed.get() + errors.get() < submitted)
+                    && ((remaining = deadline - System.nanoTime()) > 0L)) {
+                TimeUnit.NANOSECONDS.sleep(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(10L)));
+            }
+        }
+
+        public long outstanding() {
+            return submitted - completed.get() - errors.get();
+        }
+
+        public Result result(double offered, long answered, long windowNanos) {
+            long completed = this.completed.get();
+            long errors = this.errors.get();
+            return new Result(offered, submitted, completed, errors, answered, windowNanos, latency.getAndReset(), lag.getAndReset());
+        }
+    }
+}
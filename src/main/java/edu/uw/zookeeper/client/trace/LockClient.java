@@ -0,0 +1,45 @@
+package edu.uw.zookeeper.client.trace;
+
+import com.google.common.util.concurrent.Service;
+
+import edu.uw.zookeeper.ZooKeeperApplication;
+import edu.uw.zookeeper.common.Application;
+import edu.uw.zookeeper.common.ServiceApplication;
+import edu.uw.zookeeper.common.ServiceMonitor;
+
+public class LockClient extends ZooKeeperApplication.ForwardingApplication {
+
+    public static void main(String[] args) {
+        ZooKeeperApplication.main(args, new MainBuilder());
+    }
+
+    protected LockClient(Application delegate) {
+        super(delegate);
+    }
+
+    protected static class MainBuilder extends ZooKeeperApplication.ForwardingBuilder<LockClient, LockClientBuilder, MainBuilder> {
+        
+        public MainBuilder() {
+            this(LockClientBuilder.defaults());
+        }
+
+        public MainBuilder(
+                LockClientBuilder delegate) {
+            super(delegate);
+        }
+
+        @Override
+        protected MainBuilder newInstance(LockClientBuilder delegate) {
+            return new MainBuilder(delegate);
+        }
+
+        @Override
+        protected LockClient doBuild() {
+            ServiceMonitor monitor = getRuntimeModule().getServiceMonitor();
+            for (Service service: delegate.build()) {
+                monitor.add(service);
+            }
+            return new LockClient(ServiceApplication.forService(monitor));
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package edu.uw.zookeeper.client.trace;
+
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Service;
+
+import edu.uw.zookeeper.client.ConnectionClientExecutorsService;
+import edu.uw.zookeeper.common.Configuration;
+import edu.uw.zookeeper.common.CountingGenerator;
+import edu.uw.zookeeper.common.Factory;
+import edu.uw.zookeeper.common.RunnableService;
+import edu.uw.zookeeper.common.RuntimeModule;
+import edu.uw.zookeeper.protocol.client.ClientConnectionFactoryBuilder;
+
+/**
+ * Measures contention for locks built on sequential ephemeral znodes.
+ */
+public class LockClientBuilder extends Tracing.TraceWritingBuilder<List<Service>, LockClientBuilder> {
+
+    public static LockClientBuilder defaults() {
+        return new LockClientBuilder(
+                null, null, null, null, null, null);
+    }
+
+    protected final LockContention contention;
+    protected final ConnectionClientExecutorsService.OperationBuilder connectionBuilder;
+    
+    protected LockClientBuilder(
+            LockContention contention,
+            ConnectionClientExecutorsService.OperationBuilder connectionBuilder,
+            TraceWriterBuilder writerBuilder,
+            TraceEventPublisherService tracePublisher, 
+            ObjectMapper mapper,
+            RuntimeModule runtime) {
+        super(writerBuilder, tracePublisher, mapper, runtime);
+        this.contention = contention;
+        this.connectionBuilder = connectionBuilder;
+    }
+
+    public LockContention getContention() {
+        return contention;
+    }
+
+    public LockClientBuilder setContention(LockContention contention) {
+        if (this.contention == contention) {
+            return this;
+        } else {
+            return newInstance(contention, connectionBuilder, writerBuilder, tracePublisher, mapper, runtime);
+        }
+    }
+
+    public ConnectionClientExecutorsService.OperationBuilder getConnectionBuilder() {
+        return connectionBuilder;
+    }
+
+    public LockClientBuilder setConnectionBuilder(ConnectionClientExecutorsService.OperationBuilder connectionBuilder) {
+        if (this.connectionBuilder == connectionBuilder) {
+            return this;
+        } else {
+            return newInstance(contention, connectionBuilder, writerBuilder, tracePublisher, mapper, runtime);
+        }
+    }
+
+    /**
+     * The contention must be set before the connections, which report notifications to it.
+     */
+    @Override
+    public LockClientBuilder setDefaults() {
+        LockClientBuilder builder = super.setDefaults();
+        if (this == builder) {
+            if (contention == null) {
+                return setContention(getDefaultContention()).setDefaults();
+            }
+            if (connectionBuilder == null) {
+                return setConnectionBuilder(getDefaultConnectionBuilder()).setDefaults();
+            }
+            ConnectionClientExecutorsService.OperationBuilder connectionBuilder = this.connectionBuilder.setDefaults();
+            if (this.connectionBuilder != connectionBuilder) {
+                return setConnectionBuilder(connectionBuilder).setDefaults();
+            }
+        }
+        return builder;
+    }
+
+    @Override
+    protected LockClientBuilder newInstance(
+            TraceWriterBuilder writerBuilder,
+            TraceEventPublisherService tracePublisher, 
+            ObjectMapper mapper,
+            RuntimeModule runtime) {
+        return newInstance(contention, connectionBuilder, writerBuilder, tracePublisher, mapper, runtime);
+    }
+    
+    protected LockClientBuilder newInstance(
+            LockContention contention,
+            ConnectionClientExecutorsService.OperationBuilder connectionBuilder,
+            TraceWriterBuilder writerBuilder,
+            TraceEventPublisherService tracePublisher, 
+            ObjectMapper mapper,
+            RuntimeModule runtime) {
+        return new LockClientBuilder(contention, connectionBuilder, writerBuilder, tracePublisher, mapper, runtime);
+    }
+    
+    @Override
+    protected List<Service> doBuild() {
+        List<Service> services = Lists.newArrayList();
+        services.add(getTracePublisher());
+        services.addAll(getConnectionBuilder().build());
+        services.add(RunnableService.create(getDefaultRunnable()));
+        return services;
+    }
+
+    /**
+     * Throughput is locks acquired.
+     */
+    @Override
+    protected TraceHeader getDefaultTraceHeader() {
+        return TraceHeader.create(
+                Tracing.getTraceDescription(getRuntimeModule().getConfiguration()), 
+                TraceEventTag.TIMESTAMP_EVENT, 
+                TraceEventTag.THROUGHPUT_MEASUREMENT_EVENT,
+                TraceEventTag.SESSION_EVENT,
+                TraceEventTag.LOCK_EVENT);
+    }
+    
+    protected LockContention getDefaultContention() {
+        return LockContention.fromConfiguration(
+                getRuntimeModule().getConfiguration(), 
+                CountingGenerator.ConfigurableIterations.get(getRuntimeModule().getConfiguration()), 
+                getTracePublisher().getPublisher(), 
+                getRuntimeModule().getExecutors().get(ScheduledExecutorService.class));
+    }
+    
+    protected ClientConnectionFactoryBuilder getDefaultClientConnectionFactoryBuilder() {
+        return ClientConnectionFactoryBuilder.defaults()
+                .setCodecFactory(
+                    new Factory<NotificationTimingCodec>() {
+                        @Override
+                        public NotificationTimingCodec get() {
+                            return NotificationTimingCodec.defaults(getContention());
+                        }
+                    })
+                .setRuntimeModule(getRuntimeModule())
+                .setDefaults();
+    }
+    
+    protected ConnectionClientExecutorsService.OperationBuilder getDefaultConnectionBuilder() {
+        return ConnectionClientExecutorsService.builder()
+                .setConnectionBuilder(getDefaultClientConnectionFactoryBuilder())
+                .setRuntimeModule(getRuntimeModule())
+                .setDefaults(); 
+    }
+    
+    protected Runnable getDefaultRunnable() {
+        Configuration configuration = getRuntimeModule().getConfiguration();
+        final int contenders = LockContention.ConfigurableContenders.get(configuration).intValue();
+        final SessionConnector connector = SessionConnector.create(
+                getConnectionBuilder().getConnectionClientExecutors(), 
+                SessionConnector.ConfigurableConcurrency.get(configuration).intValue(), 
+                getTracePublisher().getPublisher());
+        final LockContention contention = getContention();
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    contention.run(connector.connect(contenders));
+                } catch (Exception e) {
+                    throw Throwables.propagate(e);
+                }
+            }
+        };
+    }
+}
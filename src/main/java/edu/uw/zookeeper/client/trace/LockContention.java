@@ -0,0 +1,363 @@
+package edu.uw.zookeeper.client.trace;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import net.engio.mbassy.bus.common.PubSubSupport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.typesafe.config.ConfigValueType;
+
+import edu.uw.zookeeper.client.ClientExecutor;
+import edu.uw.zookeeper.common.Configurable;
+import edu.uw.zookeeper.common.Configuration;
+import edu.uw.zookeeper.common.TimeValue;
+import edu.uw.zookeeper.data.Operations;
+import edu.uw.zookeeper.data.ZNodeLabel;
+import edu.uw.zookeeper.data.ZNodePath;
+import edu.uw.zookeeper.protocol.Operation;
+import edu.uw.zookeeper.protocol.client.ConnectionClientExecutor;
+import edu.uw.zookeeper.protocol.proto.Records;
+
+/**
+ * Contenders repeatedly acquire and release one of a set of locks,
+ * using the standard recipe: create an ephemeral sequential znode under the lock,
+ * and if it isn't the lowest, watch the next lower one until it is deleted.
+ *
+ * The time from creating the znode until the lock is acquired is published
+ * as an ACQUIRE LockEvent, and for contenders that had to wait, the time from the
+ * previous holder's release is published as a HANDOFF LockEvent.
+ * Acquisitions per interval are published as throughput.
+ */
+public class LockContention implements NotificationListener {
+
+    public static LockContention fromConfiguration(
+            Configuration configuration,
+            int iterations,
+            PubSubSupport<? super TraceEvent> publisher,
+            ScheduledExecutorService scheduler) {
+        return create(
+                ConfigurableLocks.get(configuration).intValue(),
+                iterations,
+                ConfigurableHold.get(configuration).value(TimeUnit.NANOSECONDS),
+                ThroughputMeasuringActor.ConfigurableThroughputInterval.get(configuration).value(TimeUnit.NANOSECONDS),
+                publisher,
+                scheduler);
+    }
+
+    /**
+     * @param iterations acquisitions per contender
+     */
+    public static LockContention create(
+            int locks,
+            int iterations,
+            long holdNanos,
+            long intervalNanos,
+            PubSubSupport<? super TraceEvent> publisher,
+            ScheduledExecutorService scheduler) {
+        checkArgument(locks > 0);
+        checkArgument(holdNanos >= 0L);
+        checkArgument(intervalNanos > 0L);
+        ImmutableList.Builder<ZNodePath> paths = ImmutableList.builder();
+        for (int i=0; i<locks; ++i) {
+            paths.add(ROOT.join(ZNodeLabel.fromString(String.format("lock-%d", i))));
+        }
+        return new LockContention(paths.build(), iterations, holdNanos, intervalNanos,
+                publisher, scheduler, LogManager.getLogger(LockContention.class));
+    }
+
+    public static final ZNodePath ROOT = ZNodePath.root().join(ZNodeLabel.fromString("locks"));
+    public static final String PREFIX = "n-";
+
+    @Configurable(path="lock", arg="contenders", key="contenders", value="10", type=ConfigValueType.NUMBER, help="sessions competing for locks")
+    public static class ConfigurableContenders implements Function<Configuration, Integer> {
+
+        public static Integer get(Configuration configuration) {
+            return new ConfigurableContenders().apply(configuration);
+        }
+
+        @Override
+        public Integer apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getInt(configurable.key());
+        }
+    }
+
+    @Configurable(path="lock", arg="locks", key="locks", value="1", type=ConfigValueType.NUMBER, help="locks, chosen uniformly for each acquisition")
+    public static class ConfigurableLocks implements Function<Configuration, Integer> {
+
+        public static Integer get(Configuration configuration) {
+            return new ConfigurableLocks().apply(configuration);
+        }
+
+        @Override
+        public Integer apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getInt(configurable.key());
+        }
+    }
+
+    @Configurable(path="lock", arg="hold", key="hold", value="0 ms", help="time a lock is held once acquired")
+    public static class ConfigurableHold implements Function<Configuration, TimeValue> {
+
+        public static TimeValue get(Configuration configuration) {
+            return new ConfigurableHold().apply(configuration);
+        }
+
+        @Override
+        public TimeValue apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return TimeValue.fromString(configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getString(configurable.key()));
+        }
+    }
+
+    protected final Logger logger;
+    protected final ImmutableList<ZNodePath> paths;
+    protected final int iterations;
+    protected final long holdNanos;
+    protected final long intervalNanos;
+    protected final PubSubSupport<? super TraceEvent> publisher;
+    protected final ScheduledExecutorService scheduler;
+    protected final ConcurrentMap<Long, Contender> contenders;
+    protected final AtomicLongArray released;
+    protected final AtomicInteger acquired;
+    protected final AtomicLong total;
+    protected final LatencyHistogram acquireLatency;
+    protected final LatencyHistogram handoffLatency;
+
+    protected LockContention(
+            ImmutableList<ZNodePath> paths,
+            int iterations,
+            long holdNanos,
+            long intervalNanos,
+            PubSubSupport<? super TraceEvent> publisher,
+            ScheduledExecutorService scheduler,
+            Logger logger) {
+        this.logger = logger;
+        this.paths = paths;
+        this.iterations = iterations;
+        this.holdNanos = holdNanos;
+        this.intervalNanos = intervalNanos;
+        this.publisher = publisher;
+        this.scheduler = scheduler;
+        this.contenders = Maps.newConcurrentMap();
+        this.released = new AtomicLongArray(paths.size());
+        this.acquired = new AtomicInteger(0);
+        this.total = new AtomicLong(0L);
+        this.acquireLatency = LatencyHistogram.create();
+        this.handoffLatency = LatencyHistogram.create();
+    }
+
+    /**
+     * Called from I/O threads, so only wakes the contender.
+     */
+    @Override
+    public void handleNotification(long sessionId, String path, long nanos) {
+        Contender contender = contenders.get(Long.valueOf(sessionId));
+        if (contender != null) {
+            contender.notified(path);
+        }
+    }
+
+    /**
+     * Each client contends from its own thread until it has acquired a lock
+     * <code>iterations</code> times.
+     */
+    public void run(
+            List<? extends ConnectionClientExecutor<Operation.Request,?,?,?>> clients) throws Exception {
+        ClientExecutor<? super Records.Request, ?, ?> first = clients.get(0);
+        create(first, ROOT);
+        for (ZNodePath path: paths) {
+            create(first, path);
+        }
+        List<Contender> tasks = Lists.newArrayListWithCapacity(clients.size());
+        for (ConnectionClientExecutor<Operation.Request,?,?,?> client: clients) {
+            Contender contender = new Contender(client.session().get().getSessionId(), client, new Random());
+            contenders.put(Long.valueOf(contender.sessionId), contender);
+            tasks.add(contender);
+        }
+
+        ScheduledFuture<?> throughput = scheduler.scheduleAtFixedRate(new Runnable() {
+            long last = System.nanoTime();
+            @Override
+            public void run() {
+                long now = System.nanoTime();
+                publisher.publish(ThroughputMeasurementEvent.fromNanos(acquired.getAndSet(0), now - last));
+                last = now;
+            }
+        }, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size(),
+                new ThreadFactoryBuilder().setNameFormat("lock-contender-%d").setDaemon(true).build());
+        long start = System.nanoTime();
+        try {
+            List<Future<Void>> futures = Lists.newArrayListWithCapacity(tasks.size());
+            for (Contender task: tasks) {
+                futures.add(executor.submit(task));
+            }
+            for (Future<Void> future: futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+            throughput.cancel(false);
+            long nanos = System.nanoTime() - start;
+            long count = total.get();
+            logger.info("Acquired {} locks {} times by {} contenders in {} ms ({} per second)",
+                    paths.size(), count, tasks.size(),
+                    TimeUnit.NANOSECONDS.toMillis(nanos),
+                    (nanos > 0L) ? (count * TimeUnit.SECONDS.toNanos(1L)) / nanos : 0L);
+            log("Acquire", acquireLatency.getAndReset());
+            log("Handoff", handoffLatency.getAndReset());
+        }
+    }
+
+    protected void log(String name, LatencyHistogram.Snapshot snapshot) {
+        logger.info("{} latency (us): count={} p50={} p99={} p99.9={} max={}",
+                name,
+                snapshot.count(),
+                snapshot.valueAtPercentile(50.0),
+                snapshot.valueAtPercentile(99.0),
+                snapshot.valueAtPercentile(99.9),
+                snapshot.max());
+    }
+
+    protected static void create(
+            ClientExecutor<? super Records.Request, ?, ?> client,
+            ZNodePath path) throws Exception {
+        Records.Response response = response(client.submit(
+                Operations.Requests.create().setPath(path).build()));
+        if (! ((response instanceof Operation.Error)
+                && (((Operation.Error) response).error() == KeeperException.Code.NODEEXISTS))) {
+            unlessError(response);
+        }
+    }
+
+    protected static Records.Response response(ListenableFuture<?> future) throws Exception {
+        return (Records.Response) ((Operation.ProtocolResponse<?>) future.get()).record();
+    }
+
+    protected static Records.Response unlessError(Records.Response response) throws KeeperException {
+        if (response instanceof Operation.Error) {
+            throw KeeperException.create(((Operation.Error) response).error());
+        }
+        return response;
+    }
+
+    protected final class Contender implements Callable<Void> {
+
+        protected final long sessionId;
+        protected final ClientExecutor<? super Records.Request, ?, ?> client;
+        protected final Random random;
+        protected volatile String watching;
+        protected volatile SettableFuture<Void> watch;
+
+        public Contender(
+                long sessionId,
+                ClientExecutor<? super Records.Request, ?, ?> client,
+                Random random) {
+            this.sessionId = sessionId;
+            this.client = client;
+            this.random = random;
+            this.watching = null;
+            this.watch = null;
+        }
+
+        public void notified(String path) {
+            SettableFuture<Void> watch = this.watch;
+            if ((watch != null) && path.equals(watching)) {
+                watch.set(null);
+            }
+        }
+
+        @Override
+        public Void call() throws Exception {
+            for (int i=0; i<iterations; ++i) {
+                int lock = random.nextInt(paths.size());
+                ZNodePath parent = paths.get(lock);
+                long start = System.nanoTime();
+                String created = ((Records.PathGetter) unlessError(response(client.submit(
+                        Operations.Requests.create()
+                            .setPath(parent.join(ZNodeLabel.fromString(PREFIX)))
+                            .setMode(CreateMode.EPHEMERAL_SEQUENTIAL).build())))).getPath();
+                String name = created.substring(created.lastIndexOf('/') + 1);
+                boolean waited = false;
+                while (true) {
+                    List<String> children = Ordering.natural().sortedCopy(
+                            ((Records.ChildrenGetter) unlessError(response(client.submit(
+                                    Operations.Requests.getChildren().setPath(parent).build())))).getChildren());
+                    int index = children.indexOf(name);
+                    if (index < 0) {
+                        throw new IllegalStateException(created);
+                    } else if (index == 0) {
+                        break;
+                    }
+                    ZNodePath predecessor = parent.join(ZNodeLabel.fromString(children.get(index - 1)));
+                    SettableFuture<Void> watch = SettableFuture.create();
+                    this.watching = predecessor.toString();
+                    this.watch = watch;
+                    Records.Response response = response(client.submit(
+                            Operations.Requests.exists().setPath(predecessor).setWatch(true).build()));
+                    if ((response instanceof Operation.Error)
+                            && (((Operation.Error) response).error() == KeeperException.Code.NONODE)) {
+                        continue;
+                    }
+                    unlessError(response);
+                    watch.get();
+                    waited = true;
+                }
+                this.watch = null;
+
+                long nanos = System.nanoTime();
+                acquireLatency.record(TimeUnit.NANOSECONDS.toMicros(nanos - start));
+                publisher.publish(LockEvent.fromNanos(LockEvent.Kind.ACQUIRE, sessionId, lock, nanos - start));
+                if (waited) {
+                    long handoff = nanos - released.get(lock);
+                    handoffLatency.record(TimeUnit.NANOSECONDS.toMicros(handoff));
+                    publisher.publish(LockEvent.fromNanos(LockEvent.Kind.HANDOFF, sessionId, lock, handoff));
+                }
+                acquired.incrementAndGet();
+                total.incrementAndGet();
+
+                if (holdNanos > 0L) {
+                    TimeUnit.NANOSECONDS.sleep(holdNanos);
+                }
+                released.set(lock, System.nanoTime());
+                unlessError(response(client.submit(
+                        Operations.Requests.delete().setPath(parent.join(ZNodeLabel.fromString(name))).build())));
+            }
+            return null;
+        }
+    }
+}
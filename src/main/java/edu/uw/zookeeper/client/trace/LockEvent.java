@@ -0,0 +1,188 @@
+package edu.uw.zookeeper.client.trace;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerationException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Objects;
+
+/**
+ * Latency of one session acquiring a lock.
+ */
+@TraceEventType(TraceEventTag.LOCK_EVENT)
+@JsonSerialize(using=LockEvent.Serializer.class, typing=JsonSerialize.Typing.STATIC)
+@JsonDeserialize(using=LockEvent.Deserializer.class)
+public final class LockEvent implements TraceEvent {
+
+    public static enum Kind {
+        /**
+         * Time from requesting a lock until it was acquired.
+         */
+        ACQUIRE,
+        /**
+         * Time from the previous holder releasing a lock until a waiter acquired it.
+         */
+        HANDOFF;
+    }
+
+    public static LockEvent fromNanos(Kind kind, long sessionId, int lock, long nanos) {
+        long micros = (nanos <= 0) ?
+                nanos :
+                    TimeUnit.MICROSECONDS.convert(nanos, TimeUnit.NANOSECONDS);
+        return new LockEvent(kind, sessionId, lock, (int) micros);
+    }
+
+    public static LockEvent create(Kind kind, long sessionId, int lock, int micros) {
+        return new LockEvent(kind, sessionId, lock, micros);
+    }
+
+    protected static final Kind[] KINDS = Kind.values();
+
+    private final Kind kind;
+    private final long sessionId;
+    private final int lock;
+    private final int micros;
+
+    @JsonCreator
+    public LockEvent(
+            @JsonProperty("kind") Kind kind,
+            @JsonProperty("sessionId") long sessionId,
+            @JsonProperty("lock") int lock,
+            @JsonProperty("micros") int micros) {
+        this.kind = checkNotNull(kind);
+        this.sessionId = sessionId;
+        this.lock = lock;
+        this.micros = micros;
+    }
+
+    @Override
+    public TraceEventTag getTag() {
+        return TraceEventTag.LOCK_EVENT;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public long getSessionId() {
+        return sessionId;
+    }
+
+    public int getLock() {
+        return lock;
+    }
+
+    public int getMicros() {
+        return micros;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("kind", kind)
+                .add("sessionId", sessionId)
+                .add("lock", lock)
+                .add("micros", micros)
+                .toString();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (! (obj instanceof LockEvent)) {
+            return false;
+        }
+        LockEvent other = (LockEvent) obj;
+        return (kind == other.kind) && (sessionId == other.sessionId)
+                && (lock == other.lock) && (micros == other.micros);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(kind, sessionId, lock, micros);
+    }
+
+    public static class Serializer extends ListSerializer<LockEvent> {
+
+        public static Serializer create() {
+            return new Serializer();
+        }
+
+        public Serializer() {
+            super(LockEvent.class);
+        }
+
+        @Override
+        protected void serializeValue(LockEvent value, JsonGenerator json,
+                SerializerProvider provider) throws IOException,
+                JsonGenerationException {
+            json.writeNumber(value.kind.ordinal());
+            json.writeNumber(value.sessionId);
+            json.writeNumber(value.lock);
+            json.writeNumber(value.micros);
+        }
+    }
+
+    public static class Deserializer extends ListDeserializer<LockEvent> {
+
+        public static Deserializer create() {
+            return new Deserializer();
+        }
+
+        private static final long serialVersionUID = -5306112841903786243L;
+
+        public Deserializer() {
+            super(LockEvent.class);
+        }
+
+        @Override
+        protected LockEvent deserializeValue(JsonParser json,
+                DeserializationContext ctxt) throws IOException,
+                JsonProcessingException {
+            JsonToken token = json.getCurrentToken();
+            if (token == null) {
+                token = json.nextToken();
+                if (token == null) {
+                    return null;
+                }
+            }
+            if (token != JsonToken.VALUE_NUMBER_INT) {
+                throw ctxt.wrongTokenException(json, JsonToken.VALUE_NUMBER_INT, "");
+            }
+            Kind kind = KINDS[json.getIntValue()];
+            token = json.nextToken();
+            if (token != JsonToken.VALUE_NUMBER_INT) {
+                throw ctxt.wrongTokenException(json, JsonToken.VALUE_NUMBER_INT, "");
+            }
+            long sessionId = json.getLongValue();
+            token = json.nextToken();
+            if (token != JsonToken.VALUE_NUMBER_INT) {
+                throw ctxt.wrongTokenException(json, JsonToken.VALUE_NUMBER_INT, "");
+            }
+            int lock = json.getIntValue();
+            token = json.nextToken();
+            if (token != JsonToken.VALUE_NUMBER_INT) {
+                throw ctxt.wrongTokenException(json, JsonToken.VALUE_NUMBER_INT, "");
+            }
+            int micros = json.getIntValue();
+            json.clearCurrentToken();
+            LockEvent value = new LockEvent(kind, sessionId, lock, micros);
+            return value;
+        }
+    }
+}
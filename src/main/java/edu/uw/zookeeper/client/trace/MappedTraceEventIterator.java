@@ -0,0 +1,144 @@
+package edu.uw.zookeeper.client.trace;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.google.common.base.Throwables;
+
+/**
+ * Iterates over binary trace records in [start, end) of a memory-mapped file,
+ * skipping events decoded with a timestamp outside of [fromNanos, untilNanos].
+ *
+ * The file is mapped in windows, remapping whenever a record crosses the current window.
+ * Does not own the channel.
+ */
+public class MappedTraceEventIterator extends TraceEventIterator {
+
+    public static final int WINDOW_SIZE = 1 << 26;
+
+    protected final FileChannel channel;
+    protected final TraceHeader header;
+    protected final BinaryTraceEventCodec.Decoder decoder;
+    protected final long end;
+    protected final long fromNanos;
+    protected final long untilNanos;
+    protected long position;
+    protected long eventNumber;
+    protected MappedByteBuffer window;
+    protected long windowOffset;
+    protected byte[] record;
+
+    public MappedTraceEventIterator(
+            FileChannel channel,
+            TraceHeader header,
+            BinaryTraceEventCodec.Decoder decoder,
+            long start,
+            long end,
+            long eventNumber,
+            long fromNanos,
+            long untilNanos) {
+        this.channel = channel;
+        this.header = header;
+        this.decoder = decoder;
+        this.position = start;
+        this.end = end;
+        this.eventNumber = eventNumber;
+        this.fromNanos = fromNanos;
+        this.untilNanos = untilNanos;
+        this.window = null;
+        this.windowOffset = 0L;
+        this.record = new byte[256];
+    }
+
+    @Override
+    public TraceHeader header() {
+        return header;
+    }
+
+    /**
+     * @return number of events decoded so far, counted from the start of the trace
+     */
+    public long eventNumber() {
+        return eventNumber;
+    }
+
+    /**
+     * @return file offset of the next unread record
+     */
+    public long position() {
+        return position;
+    }
+
+    /**
+     * @return the most recent nanosecond timestamp decoded
+     */
+    public long nanos() {
+        return decoder.getNanos();
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+    }
+
+    @Override
+    protected TraceEvent computeNext() {
+        while (position < end) {
+            TraceEvent event = decode();
+            ++eventNumber;
+            if ((decoder.getNanos() >= fromNanos) && (decoder.getNanos() <= untilNanos)) {
+                return event;
+            }
+        }
+        return endOfData();
+    }
+
+    protected TraceEvent decode() {
+        TraceEvent event;
+        try {
+            map(position, (int) Math.min(5L, end - position));
+            int offset = (int) (position - windowOffset);
+            int length = 0;
+            int shift = 0;
+            int b;
+            do {
+                if (offset >= window.limit()) {
+                    throw new EOFException();
+                }
+                b = window.get(offset++) & 0xff;
+                length |= (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            long start = windowOffset + offset;
+            if (start + length > end) {
+                throw new EOFException();
+            }
+            map(start, length);
+            if (record.length < length) {
+                record = new byte[Math.max(length, record.length * 2)];
+            }
+            window.position((int) (start - windowOffset));
+            window.get(record, 0, length);
+            position = start + length;
+            event = decoder.decode(new DataInputStream(new ByteArrayInputStream(record, 0, length)));
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+        return event;
+    }
+
+    protected void map(long offset, int length) throws IOException {
+        if ((window != null)
+                && (offset >= windowOffset)
+                && (offset + length <= windowOffset + window.limit())) {
+            return;
+        }
+        long size = Math.min(Math.max((long) WINDOW_SIZE, length), channel.size() - offset);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+        windowOffset = offset;
+    }
+}
@@ -0,0 +1,184 @@
+package edu.uw.zookeeper.client.trace;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.google.common.base.MoreObjects;
+import com.google.common.io.CountingInputStream;
+
+/**
+ * Random access to a binary trace through a memory-mapped file and its sidecar index.
+ *
+ * Iterators returned by this reader are independent of each other
+ * and may be used from different threads.
+ */
+public class MappedTraceReader implements Closeable {
+
+    /**
+     * Builds and writes the sidecar index if it doesn't exist.
+     */
+    public static MappedTraceReader forFile(
+            File file,
+            ObjectReader reader) throws IOException {
+        TraceCompression compression = TraceCompression.detect(file);
+        if (compression != TraceCompression.NONE) {
+            throw new IllegalArgumentException(String.format("%s is compressed with %s", file, compression));
+        }
+        CountingInputStream input = new CountingInputStream(new FileInputStream(file));
+        TraceHeader header;
+        long start;
+        try {
+            header = BinaryTraceEventCodec.readHeader(reader, new DataInputStream(input));
+            start = input.getCount();
+        } finally {
+            input.close();
+        }
+        @SuppressWarnings("resource")
+        FileChannel channel = new RandomAccessFile(file, "r").getChannel();
+        File indexFile = BinaryTraceIndex.forTrace(file);
+        // rebuilt if missing or written by an older version
+        if (! indexFile.exists() || (BinaryTraceIndex.version(indexFile) != BinaryTraceIndex.VERSION)) {
+            writeIndex(
+                    new MappedTraceEventIterator(channel, header, BinaryTraceEventCodec.decoder(reader), start, channel.size(), 0L, Long.MIN_VALUE, Long.MAX_VALUE),
+                    indexFile,
+                    BinaryTraceIndex.DEFAULT_INTERVAL);
+        }
+        BinaryTraceIndex index = BinaryTraceIndex.forFile(indexFile).truncate(channel.size());
+        return new MappedTraceReader(file, channel, header, start, index, reader);
+    }
+
+    protected static void writeIndex(
+            MappedTraceEventIterator events,
+            File file,
+            int interval) throws IOException {
+        Logger logger = LogManager.getLogger(MappedTraceReader.class);
+        logger.info("Indexing {}", file);
+        BinaryTraceIndex.Writer writer = BinaryTraceIndex.Writer.forFile(file, interval);
+        try {
+            while (true) {
+                long offset = events.position();
+                long nanos = events.nanos();
+                if (! events.hasNext()) {
+                    writer.finish(nanos);
+                    break;
+                }
+                writer.append(offset, nanos);
+                events.next();
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    protected final File file;
+    protected final FileChannel channel;
+    protected final TraceHeader header;
+    protected final long start;
+    protected final BinaryTraceIndex index;
+    protected final ObjectReader reader;
+
+    protected MappedTraceReader(
+            File file,
+            FileChannel channel,
+            TraceHeader header,
+            long start,
+            BinaryTraceIndex index,
+            ObjectReader reader) {
+        this.file = file;
+        this.channel = channel;
+        this.header = header;
+        this.start = start;
+        this.index = index;
+        this.reader = reader;
+    }
+
+    public TraceHeader header() {
+        return header;
+    }
+
+    public BinaryTraceIndex index() {
+        return index;
+    }
+
+    public long size() throws IOException {
+        return channel.size();
+    }
+
+    public MappedTraceEventIterator iterator() throws IOException {
+        return fromEntry(-1, channel.size(), Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Iterates over the records of index entries [from, to).
+     */
+    public MappedTraceEventIterator entries(int from, int to) throws IOException {
+        long end = (to < index.size()) ? index.offset(to) : channel.size();
+        return fromEntry(from, end, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param eventNumber zero-based
+     */
+    public MappedTraceEventIterator seekToEvent(long eventNumber) throws IOException {
+        MappedTraceEventIterator events = fromEntry(index.floorEvent(eventNumber), channel.size(), Long.MIN_VALUE, Long.MAX_VALUE);
+        while ((events.eventNumber() < eventNumber) && events.hasNext()) {
+            events.next();
+        }
+        return events;
+    }
+
+    public MappedTraceEventIterator seekToNanos(long nanos) throws IOException {
+        return window(nanos, Long.MAX_VALUE);
+    }
+
+    /**
+     * Iterates over events decoded with a nanosecond timestamp in [fromNanos, untilNanos].
+     * Events that don't carry a timestamp are included if the timestamp before them is.
+     * 
+     * Timestamps are only approximately ordered, so the records read are bounded
+     * by the index entries before which every timestamp is earlier than the window,
+     * and from which every timestamp is later, and filtered in between.
+     */
+    public MappedTraceEventIterator window(long fromNanos, long untilNanos) throws IOException {
+        int to = index.ceilingNanos(untilNanos);
+        long end = (to < index.size()) ? index.offset(to) : channel.size();
+        return fromEntry(index.floorNanos(fromNanos), end, fromNanos, untilNanos);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .addValue(file)
+                .add("index", index)
+                .toString();
+    }
+
+    protected MappedTraceEventIterator fromEntry(int entry, long end, long fromNanos, long untilNanos) {
+        BinaryTraceEventCodec.Decoder decoder = BinaryTraceEventCodec.decoder(reader);
+        long offset;
+        long eventNumber;
+        if (entry < 0) {
+            offset = start;
+            eventNumber = 0L;
+        } else {
+            offset = index.offset(entry);
+            eventNumber = index.eventNumber(entry);
+            decoder.setNanos(index.nanos(entry));
+        }
+        return new MappedTraceEventIterator(channel, header, decoder, offset, end, eventNumber, fromNanos, untilNanos);
+    }
+}
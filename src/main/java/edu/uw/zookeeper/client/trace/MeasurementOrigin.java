@@ -0,0 +1,45 @@
+package edu.uw.zookeeper.client.trace;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Request time of the first operation of a run.
+ * 
+ * Shared by the actors measuring a run, so that the measurement window
+ * and the intervals of the exported time series start at the same instant.
+ */
+public final class MeasurementOrigin {
+
+    public static MeasurementOrigin create() {
+        return new MeasurementOrigin();
+    }
+
+    private final AtomicLong nanos;
+
+    public MeasurementOrigin() {
+        this.nanos = new AtomicLong(0L);
+    }
+
+    /**
+     * @return zero until the first operation
+     */
+    public long get() {
+        return nanos.get();
+    }
+
+    /**
+     * @param requestNanos of an operation
+     * @return the origin, which is requestNanos if this is the first operation
+     */
+    public long get(long requestNanos) {
+        long origin = nanos.get();
+        if (origin == 0L) {
+            if (nanos.compareAndSet(0L, requestNanos)) {
+                origin = requestNanos;
+            } else {
+                origin = nanos.get();
+            }
+        }
+        return origin;
+    }
+}
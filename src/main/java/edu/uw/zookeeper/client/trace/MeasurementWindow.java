@@ -0,0 +1,206 @@
+package edu.uw.zookeeper.client.trace;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Function;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Objects;
+import com.google.common.collect.AbstractIterator;
+
+import edu.uw.zookeeper.common.Configurable;
+import edu.uw.zookeeper.common.Configuration;
+import edu.uw.zookeeper.common.Pair;
+import edu.uw.zookeeper.common.TimeValue;
+
+/**
+ * Steady-state part of a run, in milliseconds from the first operation.
+ *
+ * Operations completed during the warmup, or during the cooldown after
+ * the duration, aren't measured. A zero duration leaves the run bounded
+ * by iterations instead, in which case there is no cooldown.
+ * 
+ * The first operation is the MeasurementOrigin shared by the measuring actors,
+ * but bounded runs are ended getRunMillis after the clients start,
+ * so any time to connect before the first operation is taken from the cooldown.
+ */
+public final class MeasurementWindow {
+
+    public static MeasurementWindow none() {
+        return NONE;
+    }
+
+    public static MeasurementWindow fromConfiguration(Configuration configuration) {
+        return create(
+                ConfigurableWarmup.get(configuration).value(TimeUnit.MILLISECONDS),
+                ConfigurableDuration.get(configuration).value(TimeUnit.MILLISECONDS),
+                ConfigurableCooldown.get(configuration).value(TimeUnit.MILLISECONDS));
+    }
+
+    public static MeasurementWindow create(long warmup, long duration, long cooldown) {
+        checkArgument(warmup >= 0L);
+        checkArgument(duration >= 0L);
+        checkArgument(cooldown >= 0L);
+        return new MeasurementWindow(warmup, duration, (duration > 0L) ? cooldown : 0L);
+    }
+
+    /**
+     * Stops at the first element scheduled at or after nanos.
+     */
+    public static <T> Iterator<Pair<Long, T>> until(
+            final long nanos,
+            final Iterator<? extends Pair<Long, ? extends T>> schedule) {
+        return new AbstractIterator<Pair<Long, T>>() {
+            @Override
+            protected Pair<Long, T> computeNext() {
+                if (schedule.hasNext()) {
+                    Pair<Long, ? extends T> next = schedule.next();
+                    if (next.first().longValue() < nanos) {
+                        return Pair.<Long, T>create(next.first(), next.second());
+                    }
+                }
+                return endOfData();
+            }
+        };
+    }
+
+    @Configurable(arg="warmup", key="warmup", value="0 s", help="time from the first operation before measuring")
+    public static class ConfigurableWarmup implements Function<Configuration, TimeValue> {
+
+        public static TimeValue get(Configuration configuration) {
+            return new ConfigurableWarmup().apply(configuration);
+        }
+
+        @Override
+        public TimeValue apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return TimeValue.fromString(
+                    configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getString(configurable.key()));
+        }
+    }
+
+    @Configurable(arg="duration", key="duration", value="0 s", help="time measured after the warmup, 0 to run for iterations")
+    public static class ConfigurableDuration implements Function<Configuration, TimeValue> {
+
+        public static TimeValue get(Configuration configuration) {
+            return new ConfigurableDuration().apply(configuration);
+        }
+
+        @Override
+        public TimeValue apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return TimeValue.fromString(
+                    configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getString(configurable.key()));
+        }
+    }
+
+    @Configurable(arg="cooldown", key="cooldown", value="0 s", help="time run after the duration without measuring")
+    public static class ConfigurableCooldown implements Function<Configuration, TimeValue> {
+
+        public static TimeValue get(Configuration configuration) {
+            return new ConfigurableCooldown().apply(configuration);
+        }
+
+        @Override
+        public TimeValue apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return TimeValue.fromString(
+                    configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getString(configurable.key()));
+        }
+    }
+
+    private static final MeasurementWindow NONE = new MeasurementWindow(0L, 0L, 0L);
+
+    private final long warmup;
+    private final long duration;
+    private final long cooldown;
+
+    @JsonCreator
+    public MeasurementWindow(
+            @JsonProperty("warmup") long warmup,
+            @JsonProperty("duration") long duration,
+            @JsonProperty("cooldown") long cooldown) {
+        this.warmup = warmup;
+        this.duration = duration;
+        this.cooldown = cooldown;
+    }
+
+    public long getWarmup() {
+        return warmup;
+    }
+
+    public long getDuration() {
+        return duration;
+    }
+
+    public long getCooldown() {
+        return cooldown;
+    }
+
+    @JsonIgnore
+    public boolean isBounded() {
+        return duration > 0L;
+    }
+
+    /**
+     * @return zero if not bounded
+     */
+    @JsonIgnore
+    public long getRunMillis() {
+        return isBounded() ? warmup + duration + cooldown : 0L;
+    }
+
+    /**
+     * @param millis since the first operation
+     */
+    public boolean contains(long millis) {
+        return (millis >= warmup) && (! isBounded() || (millis < warmup + duration));
+    }
+
+    /**
+     * @param start milliseconds since the first operation
+     * @param end milliseconds since the first operation
+     */
+    public boolean contains(long start, long end) {
+        return (start >= warmup) && (! isBounded() || (end <= warmup + duration));
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("warmup", warmup)
+                .add("duration", duration)
+                .add("cooldown", cooldown)
+                .toString();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (! (obj instanceof MeasurementWindow)) {
+            return false;
+        }
+        MeasurementWindow other = (MeasurementWindow) obj;
+        return (warmup == other.warmup)
+                && (duration == other.duration)
+                && (cooldown == other.cooldown);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(warmup, duration, cooldown);
+    }
+}
@@ -1,11 +1,13 @@
 package edu.uw.zookeeper.client.trace;
 
 import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
 
 import net.engio.mbassy.bus.BusFactory;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Function;
+import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableSet;
 import com.typesafe.config.ConfigValueType;
@@ -19,7 +21,10 @@ import edu.uw.zookeeper.common.Generator;
 import edu.uw.zookeeper.common.Generators;
 import edu.uw.zookeeper.common.RuntimeModule;
 import edu.uw.zookeeper.data.ZNodePath;
+import edu.uw.zookeeper.protocol.Message;
+import edu.uw.zookeeper.protocol.ProtocolCodec;
 import edu.uw.zookeeper.protocol.client.ClientConnectionFactoryBuilder;
+import edu.uw.zookeeper.protocol.client.ClientProtocolCodec;
 import edu.uw.zookeeper.data.Operations;
 import edu.uw.zookeeper.protocol.proto.Records;
 
@@ -45,6 +50,38 @@ public class MeasuringClientBuilder extends TraceGeneratingClientBuilder<Measuri
         }
     }
 
+    @Configurable(arg="histogram", key="latencyHistogram", value="false", type=ConfigValueType.BOOLEAN, help="latency percentiles per interval")
+    public static class LatencyHistogramConfiguration implements Function<Configuration, Boolean> {
+
+        public static Boolean get(Configuration configuration) {
+            return new LatencyHistogramConfiguration().apply(configuration);
+        }
+
+        @Override
+        public Boolean apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getBoolean(configurable.key());
+        }
+    }
+
+    @Configurable(arg="timing", key="timingCodec", value="false", type=ConfigValueType.BOOLEAN, help="time operations without tracing them")
+    public static class TimingCodecConfiguration implements Function<Configuration, Boolean> {
+
+        public static Boolean get(Configuration configuration) {
+            return new TimingCodecConfiguration().apply(configuration);
+        }
+
+        @Override
+        public Boolean apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getBoolean(configurable.key());
+        }
+    }
+
     @Configurable(arg="throughput", key="measureThroughput", value="true", type=ConfigValueType.BOOLEAN)
     public static class MeasureThroughputConfiguration implements Function<Configuration, Boolean> {
 
@@ -61,6 +98,22 @@ public class MeasuringClientBuilder extends TraceGeneratingClientBuilder<Measuri
         }
     }
 
+    @Configurable(arg="byOperation", key="measureByOperation", value="false", type=ConfigValueType.BOOLEAN, help="latency and throughput per opcode and error code")
+    public static class MeasureByOperationConfiguration implements Function<Configuration, Boolean> {
+
+        public static Boolean get(Configuration configuration) {
+            return new MeasureByOperationConfiguration().apply(configuration);
+        }
+
+        @Override
+        public Boolean apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getBoolean(configurable.key());
+        }
+    }
+
     protected MeasuringClientBuilder() {
         this(null, null, null, null, null);
     }
@@ -90,17 +143,27 @@ public class MeasuringClientBuilder extends TraceGeneratingClientBuilder<Measuri
         ImmutableSet.Builder<TraceEventTag> types = ImmutableSet.builder();
         types.add(TraceEventTag.TIMESTAMP_EVENT);
         if (MeasureLatencyConfiguration.get(configuration)) {
-            types.add(TraceEventTag.LATENCY_MEASUREMENT_EVENT);
+            if (LatencyHistogramConfiguration.get(configuration)) {
+                types.add(TraceEventTag.LATENCY_HISTOGRAM_EVENT);
+            } else if (MeasureByOperationConfiguration.get(configuration)) {
+                types.add(TraceEventTag.OPERATION_LATENCY_EVENT);
+            } else {
+                types.add(TraceEventTag.LATENCY_MEASUREMENT_EVENT);
+            }
         }
         if (MeasureThroughputConfiguration.get(configuration)) {
             types.add(TraceEventTag.THROUGHPUT_MEASUREMENT_EVENT);
+            if (MeasureByOperationConfiguration.get(configuration)) {
+                types.add(TraceEventTag.OPERATION_THROUGHPUT_EVENT);
+            }
         }
         if (types.build().size() == 1) {
             types.add(TraceEventTag.OPERATION_EVENT);
         }
         return TraceHeader.create(
                 Tracing.getTraceDescription(getRuntimeModule().getConfiguration()), 
-                types.build());
+                types.build(),
+                MeasurementWindow.fromConfiguration(configuration));
     }
     
     @SuppressWarnings({ "unchecked" })
@@ -116,33 +179,110 @@ public class MeasuringClientBuilder extends TraceGeneratingClientBuilder<Measuri
         };
         Actor<TraceEvent> actor = FilteringTraceEventActor.create(
                 filter, writer);
+        // the window and the exported intervals count from the same instant
+        MeasurementOrigin origin = MeasurementOrigin.create();
         if (types.contains(TraceEventTag.LATENCY_MEASUREMENT_EVENT)) {
-            actor = LatencyMeasuringActor.create(actor);
+            actor = LatencyMeasuringActor.create(writer.header().getWindow(), false, origin, actor);
+        } else if (types.contains(TraceEventTag.OPERATION_LATENCY_EVENT)) {
+            actor = LatencyMeasuringActor.create(writer.header().getWindow(), true, origin, actor);
+        }
+        if (types.contains(TraceEventTag.LATENCY_HISTOGRAM_EVENT)) {
+            actor = LatencyHistogramActor.create(
+                    getRuntimeModule().getConfiguration(), origin, actor);
         }
         if (types.contains(TraceEventTag.THROUGHPUT_MEASUREMENT_EVENT)) {
-            actor = ThroughputMeasuringActor.create(
-                    getRuntimeModule().getConfiguration(), actor);
+            actor = StripedThroughputMeasuringActor.create(
+                    getRuntimeModule().getConfiguration(), 
+                    types.contains(TraceEventTag.OPERATION_THROUGHPUT_EVENT),
+                    origin,
+                    getRuntimeModule().getExecutors().get(ScheduledExecutorService.class),
+                    actor);
         }
         return TraceEventPublisherService.newInstance(
                 BusFactory.SynchronousOnly(), 
-                actor);
+                AsyncTraceEventActor.forConfiguration(
+                        getRuntimeModule().getConfiguration(), actor));
     }
     
     @Override
     protected ConnectionClientExecutorService.Builder getDefaultClientBuilder() {
+        ClientConnectionFactoryBuilder connectionBuilder = ClientConnectionFactoryBuilder.defaults();
+        if (isOpenLoopTiming()) {
+            // untraced, as OpenLoopSubmitter times operations
+            if (getDefaultTraceHeader().getTypes().contains(TraceEventTag.MULTI_EVENT)) {
+                connectionBuilder = connectionBuilder.setCodecFactory(
+                        new Factory<ProtocolCodec<Message.ClientSession, Message.ServerSession, Message.ClientSession, Message.ServerSession>>() {
+                            @Override
+                            public ProtocolCodec<Message.ClientSession, Message.ServerSession, Message.ClientSession, Message.ServerSession> get() {
+                                return getDefaultCodec();
+                            }
+                        });
+            }
+        } else if (isTimingOnly()) {
+            connectionBuilder = connectionBuilder.setCodecFactory(
+                    new Factory<OperationTimingCodec>() {
+                        @Override
+                        public OperationTimingCodec get() {
+                            return OperationTimingCodec.newInstance((OperationTimingListener) getTracePublisher().getWriter(), getDefaultCodec());
+                        }
+                    });
+        } else {
+            connectionBuilder = connectionBuilder.setCodecFactory(
+                    new Factory<OperationTracingCodec>() {
+                        @Override
+                        public OperationTracingCodec get() {
+                            return OperationTracingCodec.newInstance(getTracePublisher().getPublisher(), getDefaultCodec());
+                        }
+                    });
+        }
         return ConnectionClientExecutorService.builder()
-                .setConnectionBuilder(
-                        ClientConnectionFactoryBuilder.defaults()
-                        .setCodecFactory(
-                                new Factory<OperationTracingCodec>() {
-                                    @Override
-                                    public OperationTracingCodec get() {
-                                        return OperationTracingCodec.defaults(getTracePublisher().getPublisher());
-                                    }
-                                }))
+                .setConnectionBuilder(connectionBuilder)
                 .setRuntimeModule(getRuntimeModule())
                 .setDefaults();
     }
+    
+    /**
+     * Beneath any tracing or timing codec.
+     */
+    protected ProtocolCodec<Message.ClientSession, Message.ServerSession, Message.ClientSession, Message.ServerSession> getDefaultCodec() {
+        return ClientProtocolCodec.defaults();
+    }
+    
+    /**
+     * Operations only need to be timed if nothing traces whole operations.
+     */
+    protected boolean isTimingOnly() {
+        if (! TimingCodecConfiguration.get(getRuntimeModule().getConfiguration())) {
+            return false;
+        }
+        return isTimeable();
+    }
+    
+    /**
+     * Open-loop operations are timed from their intended send time,
+     * so that latency under overload isn't understated.
+     */
+    protected boolean isOpenLoopTiming() {
+        if (! ArrivalProcess.ArrivalConfiguration.get(getRuntimeModule().getConfiguration()).isPresent()) {
+            return false;
+        }
+        return isTimeable();
+    }
+    
+    protected boolean isTimeable() {
+        if (! (getTracePublisher().getWriter() instanceof OperationTimingListener)) {
+            return false;
+        }
+        return ! getDefaultTraceHeader().getTypes().contains(TraceEventTag.OPERATION_EVENT);
+    }
+    
+    @Override
+    protected Optional<OperationTimingListener> getOpenLoopTimings() {
+        if (isOpenLoopTiming()) {
+            return Optional.of((OperationTimingListener) getTracePublisher().getWriter());
+        }
+        return Optional.absent();
+    }
 
     @Override
     protected Generator<? extends Records.Request> getDefaultRequestGenerator() {
@@ -0,0 +1,105 @@
+package edu.uw.zookeeper.client.trace;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Bounded ring buffer for many producers and a single consumer.
+ * 
+ * Producers claim a sequence number and then publish into its slot,
+ * so the consumer stops at a claimed slot that isn't published yet.
+ */
+public final class MpscRingBuffer<E> {
+
+    public static <E> MpscRingBuffer<E> create(int capacity) {
+        checkArgument(capacity > 0);
+        int n = (capacity == 1) ? 1 : (Integer.highestOneBit(capacity - 1) << 1);
+        return new MpscRingBuffer<E>(n);
+    }
+    
+    private final int mask;
+    private final AtomicReferenceArray<E> slots;
+    // next sequence to claim
+    private final AtomicLong tail;
+    // next sequence to consume
+    private final AtomicLong head;
+    
+    private MpscRingBuffer(int capacity) {
+        this.mask = capacity - 1;
+        this.slots = new AtomicReferenceArray<E>(capacity);
+        this.tail = new AtomicLong(0L);
+        this.head = new AtomicLong(0L);
+    }
+    
+    public int capacity() {
+        return slots.length();
+    }
+    
+    /**
+     * Approximate when called concurrently.
+     */
+    public int size() {
+        return (int) Math.max(0L, tail.get() - head.get());
+    }
+    
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+    
+    /**
+     * Thread-safe.
+     * 
+     * @return false if full
+     */
+    public boolean offer(E element) {
+        checkNotNull(element);
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head.get() >= slots.length()) {
+                return false;
+            }
+        } while (! tail.compareAndSet(sequence, sequence + 1L));
+        slots.lazySet((int) (sequence & mask), element);
+        return true;
+    }
+    
+    /**
+     * Consumer only.
+     * 
+     * @return number of elements moved to output
+     */
+    public int drainTo(Collection<? super E> output, int max) {
+        long sequence = head.get();
+        int n = 0;
+        while (n < max) {
+            int slot = (int) (sequence & mask);
+            E element = slots.get(slot);
+            if (element == null) {
+                break;
+            }
+            slots.lazySet(slot, null);
+            output.add(element);
+            ++sequence;
+            ++n;
+        }
+        if (n > 0) {
+            head.lazySet(sequence);
+        }
+        return n;
+    }
+    
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("capacity", capacity())
+                .add("size", size())
+                .toString();
+    }
+}
@@ -0,0 +1,169 @@
+package edu.uw.zookeeper.client.trace;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerationException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Objects;
+
+/**
+ * Size and latency of one multi request.
+ *
+ * Bytes are as encoded and decoded by the protocol codec.
+ */
+@TraceEventType(TraceEventTag.MULTI_EVENT)
+@JsonSerialize(using=MultiEvent.Serializer.class, typing=JsonSerialize.Typing.STATIC)
+@JsonDeserialize(using=MultiEvent.Deserializer.class)
+public final class MultiEvent implements TraceEvent {
+
+    public static MultiEvent fromNanos(int ops, int requestBytes, int responseBytes, long nanos) {
+        long micros = (nanos <= 0) ?
+                nanos :
+                    TimeUnit.MICROSECONDS.convert(nanos, TimeUnit.NANOSECONDS);
+        return new MultiEvent(ops, requestBytes, responseBytes, (int) micros);
+    }
+
+    public static MultiEvent create(int ops, int requestBytes, int responseBytes, int micros) {
+        return new MultiEvent(ops, requestBytes, responseBytes, micros);
+    }
+
+    private final int ops;
+    private final int requestBytes;
+    private final int responseBytes;
+    private final int micros;
+
+    @JsonCreator
+    public MultiEvent(
+            @JsonProperty("ops") int ops,
+            @JsonProperty("requestBytes") int requestBytes,
+            @JsonProperty("responseBytes") int responseBytes,
+            @JsonProperty("micros") int micros) {
+        this.ops = ops;
+        this.requestBytes = requestBytes;
+        this.responseBytes = responseBytes;
+        this.micros = micros;
+    }
+
+    @Override
+    public TraceEventTag getTag() {
+        return TraceEventTag.MULTI_EVENT;
+    }
+
+    public int getOps() {
+        return ops;
+    }
+
+    public int getRequestBytes() {
+        return requestBytes;
+    }
+
+    public int getResponseBytes() {
+        return responseBytes;
+    }
+
+    public int getMicros() {
+        return micros;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("ops", ops)
+                .add("requestBytes", requestBytes)
+                .add("responseBytes", responseBytes)
+                .add("micros", micros)
+                .toString();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (! (obj instanceof MultiEvent)) {
+            return false;
+        }
+        MultiEvent other = (MultiEvent) obj;
+        return (ops == other.ops)
+                && (requestBytes == other.requestBytes)
+                && (responseBytes == other.responseBytes)
+                && (micros == other.micros);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(ops, requestBytes, responseBytes, micros);
+    }
+
+    public static class Serializer extends ListSerializer<MultiEvent> {
+
+        public static Serializer create() {
+            return new Serializer();
+        }
+
+        public Serializer() {
+            super(MultiEvent.class);
+        }
+
+        @Override
+        protected void serializeValue(MultiEvent value, JsonGenerator json,
+                SerializerProvider provider) throws IOException,
+                JsonGenerationException {
+            json.writeNumber(value.ops);
+            json.writeNumber(value.requestBytes);
+            json.writeNumber(value.responseBytes);
+            json.writeNumber(value.micros);
+        }
+    }
+
+    public static class Deserializer extends ListDeserializer<MultiEvent> {
+
+        public static Deserializer create() {
+            return new Deserializer();
+        }
+
+        private static final long serialVersionUID = 6192840775012139457L;
+
+        public Deserializer() {
+            super(MultiEvent.class);
+        }
+
+        @Override
+        protected MultiEvent deserializeValue(JsonParser json,
+                DeserializationContext ctxt) throws IOException,
+                JsonProcessingException {
+            JsonToken token = json.getCurrentToken();
+            if (token == null) {
+                token = json.nextToken();
+                if (token == null) {
+                    return null;
+                }
+            }
+            int[] values = new int[4];
+            for (int i=0; i<values.length; ++i) {
+                if (i > 0) {
+                    token = json.nextToken();
+                }
+                if (token != JsonToken.VALUE_NUMBER_INT) {
+                    throw ctxt.wrongTokenException(json, JsonToken.VALUE_NUMBER_INT, "");
+                }
+                values[i] = json.getIntValue();
+            }
+            json.clearCurrentToken();
+            MultiEvent value = new MultiEvent(
+                    values[0], values[1], values[2], values[3]);
+            return value;
+        }
+    }
+}
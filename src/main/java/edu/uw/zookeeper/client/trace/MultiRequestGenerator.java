@@ -0,0 +1,104 @@
+package edu.uw.zookeeper.client.trace;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.base.Function;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Ints;
+
+import edu.uw.zookeeper.common.Configurable;
+import edu.uw.zookeeper.common.Configuration;
+import edu.uw.zookeeper.common.Generator;
+import edu.uw.zookeeper.data.Operations;
+import edu.uw.zookeeper.data.ZNodePath;
+import edu.uw.zookeeper.protocol.proto.ICheckVersionRequest;
+import edu.uw.zookeeper.protocol.proto.IMultiRequest;
+import edu.uw.zookeeper.protocol.proto.Records;
+
+/**
+ * Wraps sub-operations into multi requests,
+ * with each batch size chosen uniformly from a list.
+ * 
+ * Reads aren't allowed in a multi, so the read fraction of the mix
+ * is made of version checks, which are evaluated like reads but don't fail 
+ * because any version matches.
+ */
+public final class MultiRequestGenerator implements Generator<Records.Request> {
+
+    public static MultiRequestGenerator create(
+            Random random,
+            List<Integer> batches,
+            float checks,
+            Generator<ZNodePath> paths,
+            Generator<byte[]> data) {
+        checkArgument(! batches.isEmpty());
+        for (Integer batch: batches) {
+            checkArgument(batch.intValue() > 0);
+        }
+        return new MultiRequestGenerator(random, Ints.toArray(batches), checks, paths, data);
+    }
+    
+    public static ImmutableList<Integer> parseBatches(String value) {
+        ImmutableList.Builder<Integer> batches = ImmutableList.builder();
+        for (String batch: Splitter.on(',').trimResults().omitEmptyStrings().split(value)) {
+            batches.add(Integer.valueOf(batch));
+        }
+        return batches.build();
+    }
+
+    @Configurable(path="multi", arg="multiBatches", key="batches", value="", help="comma-separated multi batch sizes, empty for single requests")
+    public static class ConfigurableBatches implements Function<Configuration, ImmutableList<Integer>> {
+
+        public static ImmutableList<Integer> get(Configuration configuration) {
+            return new ConfigurableBatches().apply(configuration);
+        }
+
+        @Override
+        public ImmutableList<Integer> apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return parseBatches(configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getString(configurable.key()));
+        }
+    }
+
+    private final Random random;
+    private final int[] batches;
+    private final float checks;
+    private final Generator<ZNodePath> paths;
+    private final Generator<byte[]> data;
+    
+    private MultiRequestGenerator(
+            Random random,
+            int[] batches,
+            float checks,
+            Generator<ZNodePath> paths,
+            Generator<byte[]> data) {
+        this.random = random;
+        this.batches = batches;
+        this.checks = checks;
+        this.paths = paths;
+        this.data = data;
+    }
+    
+    @Override
+    public IMultiRequest next() {
+        int batch = batches[random.nextInt(batches.length)];
+        List<Records.MultiOpRequest> ops = Lists.newArrayListWithCapacity(batch);
+        for (int i=0; i<batch; ++i) {
+            ZNodePath path = paths.next();
+            if (random.nextFloat() < checks) {
+                ops.add(new ICheckVersionRequest(path.toString(), -1));
+            } else {
+                ops.add((Records.MultiOpRequest) Operations.Requests.setData()
+                        .setPath(path).setData(data.next()).build());
+            }
+        }
+        return new IMultiRequest(ops);
+    }
+}
@@ -0,0 +1,106 @@
+package edu.uw.zookeeper.client.trace;
+
+import io.netty.buffer.ByteBuf;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentMap;
+
+import net.engio.mbassy.bus.common.PubSubSupport;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
+
+import edu.uw.zookeeper.common.ForwardingProtocolCodec;
+import edu.uw.zookeeper.protocol.Message;
+import edu.uw.zookeeper.protocol.ProtocolCodec;
+import edu.uw.zookeeper.protocol.client.ClientProtocolCodec;
+import edu.uw.zookeeper.protocol.proto.IMultiRequest;
+import edu.uw.zookeeper.protocol.proto.OpCode;
+
+/**
+ * Publishes a MultiEvent for each multi request,
+ * with the bytes that the delegate encoded and decoded for it.
+ * 
+ * Other messages pass through untouched, so this can sit
+ * beneath either tracing codec.
+ */
+public class MultiTimingCodec extends ForwardingProtocolCodec<Message.ClientSession, Message.ServerSession, Message.ClientSession, Message.ServerSession> {
+
+    public static MultiTimingCodec defaults(
+            PubSubSupport<? super TraceEvent> publisher) {
+        return newInstance(publisher, ClientProtocolCodec.defaults());
+    }
+    
+    public static MultiTimingCodec newInstance(
+            PubSubSupport<? super TraceEvent> publisher,
+            ProtocolCodec<Message.ClientSession, Message.ServerSession, Message.ClientSession, Message.ServerSession> delegate) {
+        return new MultiTimingCodec(publisher, delegate);
+    }
+    
+    protected final PubSubSupport<? super TraceEvent> publisher;
+    protected final ProtocolCodec<Message.ClientSession, Message.ServerSession, Message.ClientSession, Message.ServerSession> delegate;
+    protected final ConcurrentMap<Integer, Pending> pending;
+    
+    protected MultiTimingCodec(
+            PubSubSupport<? super TraceEvent> publisher, 
+            ProtocolCodec<Message.ClientSession, Message.ServerSession, Message.ClientSession, Message.ServerSession> delegate) {
+        super();
+        this.publisher = publisher;
+        this.delegate = delegate;
+        this.pending = Maps.newConcurrentMap();
+    }
+
+    @Override
+    public void encode(Message.ClientSession message, ByteBuf output) throws IOException {
+        int index = output.writerIndex();
+        delegate.encode(message, output);
+        if (message instanceof Message.ClientRequest<?>) {
+            Message.ClientRequest<?> request = (Message.ClientRequest<?>) message;
+            if (request.record().opcode() == OpCode.MULTI) {
+                pending.put(Integer.valueOf(request.xid()), 
+                        new Pending(
+                                Iterables.size((IMultiRequest) request.record()), 
+                                output.writerIndex() - index, 
+                                System.nanoTime()));
+            }
+        }
+    }
+
+    @Override
+    public Optional<? extends Message.ServerSession> decode(ByteBuf input)
+            throws IOException {
+        int index = input.readerIndex();
+        Optional<? extends Message.ServerSession> output = delegate.decode(input);
+        if (output.isPresent() && (output.get() instanceof Message.ServerResponse<?>)) {
+            Message.ServerResponse<?> response = (Message.ServerResponse<?>) output.get();
+            Pending request = pending.remove(Integer.valueOf(response.xid()));
+            if (request != null) {
+                publisher.publish(MultiEvent.fromNanos(
+                        request.ops, 
+                        request.bytes, 
+                        input.readerIndex() - index, 
+                        System.nanoTime() - request.nanos));
+            }
+        }
+        return output;
+    }
+
+    @Override
+    protected ProtocolCodec<Message.ClientSession, Message.ServerSession, Message.ClientSession, Message.ServerSession> delegate() {
+        return delegate;
+    }
+    
+    protected static final class Pending {
+        
+        protected final int ops;
+        protected final int bytes;
+        protected final long nanos;
+        
+        public Pending(int ops, int bytes, long nanos) {
+            this.ops = ops;
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+    }
+}
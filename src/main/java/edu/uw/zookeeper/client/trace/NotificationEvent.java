@@ -0,0 +1,161 @@
+package edu.uw.zookeeper.client.trace;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerationException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Objects;
+
+/**
+ * Time from sending the write that triggered a watch
+ * until the watching session received the notification.
+ */
+@TraceEventType(TraceEventTag.NOTIFICATION_EVENT)
+@JsonSerialize(using=NotificationEvent.Serializer.class, typing=JsonSerialize.Typing.STATIC)
+@JsonDeserialize(using=NotificationEvent.Deserializer.class)
+public final class NotificationEvent implements TraceEvent {
+
+    public static NotificationEvent fromNanos(long sessionId, String path, long nanos) {
+        long micros = (nanos <= 0) ?
+                nanos :
+                    TimeUnit.MICROSECONDS.convert(nanos, TimeUnit.NANOSECONDS);
+        return new NotificationEvent(sessionId, path, (int) micros);
+    }
+
+    public static NotificationEvent create(long sessionId, String path, int micros) {
+        return new NotificationEvent(sessionId, path, micros);
+    }
+
+    private final long sessionId;
+    private final String path;
+    private final int micros;
+
+    @JsonCreator
+    public NotificationEvent(
+            @JsonProperty("sessionId") long sessionId,
+            @JsonProperty("path") String path,
+            @JsonProperty("micros") int micros) {
+        this.sessionId = sessionId;
+        this.path = path;
+        this.micros = micros;
+    }
+
+    @Override
+    public TraceEventTag getTag() {
+        return TraceEventTag.NOTIFICATION_EVENT;
+    }
+
+    public long getSessionId() {
+        return sessionId;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public int getMicros() {
+        return micros;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("sessionId", sessionId)
+                .add("path", path)
+                .add("micros", micros)
+                .toString();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (! (obj instanceof NotificationEvent)) {
+            return false;
+        }
+        NotificationEvent other = (NotificationEvent) obj;
+        return (sessionId == other.sessionId) 
+                && path.equals(other.path)
+                && (micros == other.micros);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(sessionId, path, micros);
+    }
+
+    public static class Serializer extends ListSerializer<NotificationEvent> {
+
+        public static Serializer create() {
+            return new Serializer();
+        }
+
+        public Serializer() {
+            super(NotificationEvent.class);
+        }
+
+        @Override
+        protected void serializeValue(NotificationEvent value, JsonGenerator json,
+                SerializerProvider provider) throws IOException,
+                JsonGenerationException {
+            json.writeNumber(value.sessionId);
+            json.writeString(value.path);
+            json.writeNumber(value.micros);
+        }
+    }
+
+    public static class Deserializer extends ListDeserializer<NotificationEvent> {
+
+        public static Deserializer create() {
+            return new Deserializer();
+        }
+
+        private static final long serialVersionUID = 4150937820365520171L;
+
+        public Deserializer() {
+            super(NotificationEvent.class);
+        }
+
+        @Override
+        protected NotificationEvent deserializeValue(JsonParser json,
+                DeserializationContext ctxt) throws IOException,
+                JsonProcessingException {
+            JsonToken token = json.getCurrentToken();
+            if (token == null) {
+                token = json.nextToken();
+                if (token == null) {
+                    return null;
+                }
+            }
+            if (token != JsonToken.VALUE_NUMBER_INT) {
+                throw ctxt.wrongTokenException(json, JsonToken.VALUE_NUMBER_INT, "");
+            }
+            long sessionId = json.getLongValue();
+            token = json.nextToken();
+            if (token != JsonToken.VALUE_STRING) {
+                throw ctxt.wrongTokenException(json, JsonToken.VALUE_STRING, "");
+            }
+            String path = json.getText();
+            token = json.nextToken();
+            if (token != JsonToken.VALUE_NUMBER_INT) {
+                throw ctxt.wrongTokenException(json, JsonToken.VALUE_NUMBER_INT, "");
+            }
+            int micros = json.getIntValue();
+            json.clearCurrentToken();
+            NotificationEvent value = new NotificationEvent(sessionId, path, micros);
+            return value;
+        }
+    }
+}
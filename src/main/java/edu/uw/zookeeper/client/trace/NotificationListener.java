@@ -0,0 +1,12 @@
+package edu.uw.zookeeper.client.trace;
+
+/**
+ * Receives the time at which a session received a watch notification.
+ */
+public interface NotificationListener {
+
+    /**
+     * @param nanos <code>System.nanoTime()</code> when the notification was decoded
+     */
+    void handleNotification(long sessionId, String path, long nanos);
+}
@@ -0,0 +1,73 @@
+package edu.uw.zookeeper.client.trace;
+
+import io.netty.buffer.ByteBuf;
+
+import java.io.IOException;
+
+import com.google.common.base.Optional;
+
+import edu.uw.zookeeper.protocol.Session;
+import edu.uw.zookeeper.common.ForwardingProtocolCodec;
+import edu.uw.zookeeper.protocol.ConnectMessage;
+import edu.uw.zookeeper.protocol.Message;
+import edu.uw.zookeeper.protocol.ProtocolCodec;
+import edu.uw.zookeeper.protocol.client.ClientProtocolCodec;
+import edu.uw.zookeeper.protocol.proto.IWatcherEvent;
+
+/**
+ * Reports when each watch notification is decoded,
+ * which the tracing codecs skip along with the other special xids.
+ */
+public class NotificationTimingCodec extends ForwardingProtocolCodec<Message.ClientSession, Message.ServerSession, Message.ClientSession, Message.ServerSession> {
+
+    public static NotificationTimingCodec defaults(
+            NotificationListener listener) {
+        return newInstance(listener, ClientProtocolCodec.defaults());
+    }
+    
+    public static NotificationTimingCodec newInstance(
+            NotificationListener listener,
+            ProtocolCodec<Message.ClientSession, Message.ServerSession, Message.ClientSession, Message.ServerSession> delegate) {
+        return new NotificationTimingCodec(listener, delegate);
+    }
+    
+    protected final NotificationListener listener;
+    protected final ProtocolCodec<Message.ClientSession, Message.ServerSession, Message.ClientSession, Message.ServerSession> delegate;
+    protected volatile long sessionId;
+    
+    protected NotificationTimingCodec(
+            NotificationListener listener, 
+            ProtocolCodec<Message.ClientSession, Message.ServerSession, Message.ClientSession, Message.ServerSession> delegate) {
+        super();
+        this.listener = listener;
+        this.delegate = delegate;
+        this.sessionId = Session.uninitialized().id();
+    }
+
+    @Override
+    public void encode(Message.ClientSession message, ByteBuf output) throws IOException {
+        delegate.encode(message, output);
+    }
+
+    @Override
+    public Optional<? extends Message.ServerSession> decode(ByteBuf input)
+            throws IOException {
+        Optional<? extends Message.ServerSession> output = delegate.decode(input);
+        if (output.isPresent()) {
+            Message.ServerSession message = output.get();
+            if (message instanceof ConnectMessage.Response) {
+                sessionId = ((ConnectMessage.Response) message).getSessionId();
+            } else if (((Message.ServerResponse<?>) message).record() instanceof IWatcherEvent) {
+                long nanos = System.nanoTime();
+                IWatcherEvent event = (IWatcherEvent) ((Message.ServerResponse<?>) message).record();
+                listener.handleNotification(sessionId, event.getPath(), nanos);
+            }
+        }
+        return output;
+    }
+
+    @Override
+    protected ProtocolCodec<Message.ClientSession, Message.ServerSession, Message.ClientSession, Message.ServerSession> delegate() {
+        return delegate;
+    }
+}
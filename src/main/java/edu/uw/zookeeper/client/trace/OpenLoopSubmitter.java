@@ -0,0 +1,188 @@
+package edu.uw.zookeeper.client.trace;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import edu.uw.zookeeper.client.ClientExecutor;
+import edu.uw.zookeeper.common.Pair;
+import edu.uw.zookeeper.protocol.Operation;
+import edu.uw.zookeeper.protocol.Session;
+import edu.uw.zookeeper.protocol.proto.Records;
+
+/**
+ * Submits each request at its scheduled offset from the start of the run,
+ * regardless of how many requests are outstanding.
+ * With more than one client, requests go to each in turn,
+ * so that one thread keeps the whole schedule.
+ * 
+ * Schedule lag, how far behind its intended send time each request was submitted,
+ * and latency, from the intended send time to the response,
+ * are logged when the run completes.
+ * Measuring from the intended time rather than the actual one 
+ * keeps a stalled client or server from hiding the requests it delayed.
+ */
+public class OpenLoopSubmitter implements Runnable {
+
+    public static OpenLoopSubmitter create(
+            Iterator<? extends Pair<Long, ? extends Records.Request>> requests,
+            ClientExecutor<? super Operation.Request, ?, ?> client) {
+        return create(requests, ImmutableList.of(client));
+    }
+
+    public static OpenLoopSubmitter create(
+            Iterator<? extends Pair<Long, ? extends Records.Request>> requests,
+            List<? extends ClientExecutor<? super Operation.Request, ?, ?>> clients) {
+        return new OpenLoopSubmitter(requests, ImmutableList.copyOf(clients), Optional.<OperationTimingListener>absent(), LogManager.getLogger(OpenLoopSubmitter.class));
+    }
+
+    /**
+     * @param timings notified of each response, with the intended send time as the request time
+     */
+    public static OpenLoopSubmitter create(
+            Iterator<? extends Pair<Long, ? extends Records.Request>> requests,
+            ClientExecutor<? super Operation.Request, ?, ?> client,
+            OperationTimingListener timings) {
+        return new OpenLoopSubmitter(requests, ImmutableList.of(client), Optional.of(timings), LogManager.getLogger(OpenLoopSubmitter.class));
+    }
+    
+    /**
+     * Park until this close to the intended time, then spin.
+     */
+    public static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(50L);
+    
+    protected final Logger logger;
+    protected final Iterator<? extends Pair<Long, ? extends Records.Request>> requests;
+    protected final ImmutableList<? extends ClientExecutor<? super Operation.Request, ?, ?>> clients;
+    protected final Optional<OperationTimingListener> timings;
+    protected final LatencyHistogram lag;
+    protected final LatencyHistogram latency;
+    
+    public OpenLoopSubmitter(
+            Iterator<? extends Pair<Long, ? extends Records.Request>> requests,
+            ImmutableList<? extends ClientExecutor<? super Operation.Request, ?, ?>> clients,
+            Optional<OperationTimingListener> timings,
+            Logger logger) {
+        this.logger = logger;
+        this.requests = requests;
+        this.clients = clients;
+        this.timings = timings;
+        this.lag = LatencyHistogram.create();
+        this.latency = LatencyHistogram.create();
+    }
+    
+    /**
+     * Microseconds.
+     */
+    public LatencyHistogram lag() {
+        return lag;
+    }
+    
+    /**
+     * Microseconds from the intended send time.
+     */
+    public LatencyHistogram latency() {
+        return latency;
+    }
+
+    @Override
+    public void run() {
+        // each client answers in order, so its last request is answered last
+        ListenableFuture<?>[] last = new ListenableFuture<?>[clients.size()];
+        int client = 0;
+        long start = System.nanoTime();
+        try {
+            while (requests.hasNext()) {
+                Pair<Long, ? extends Records.Request> next = requests.next();
+                long intended = start + next.first().longValue();
+                long now = awaitNanos(intended);
+                lag.record(TimeUnit.NANOSECONDS.toMicros(now - intended));
+                ListenableFuture<?> future = clients.get(client).submit(next.second());
+                future.addListener(new Response(next.second(), intended, future), MoreExecutors.directExecutor());
+                last[client] = future;
+                client = (client + 1) % clients.size();
+            }
+            for (ListenableFuture<?> future: last) {
+                if (future != null) {
+                    future.get();
+                }
+            }
+        } catch (Exception e) {
+            throw Throwables.propagate(e);
+        } finally {
+            log("Schedule lag", lag.getAndReset());
+            log("Latency from intended send", latency.getAndReset());
+        }
+    }
+    
+    /**
+     * @return the current time, no earlier than nanos
+     */
+    public static long awaitNanos(long nanos) {
+        long now = System.nanoTime();
+        long remaining;
+        while ((remaining = nanos - now) > 0L) {
+            if (remaining > SPIN_NANOS) {
+                LockSupport.parkNanos(remaining - SPIN_NANOS);
+            }
+            now = System.nanoTime();
+        }
+        return now;
+    }
+    
+    protected void log(String name, LatencyHistogram.Snapshot snapshot) {
+        logger.info("{} (us): count={} p50={} p99={} p99.9={} max={}", 
+                name,
+                snapshot.count(), 
+                snapshot.valueAtPercentile(50.0), 
+                snapshot.valueAtPercentile(99.0), 
+                snapshot.valueAtPercentile(99.9), 
+                snapshot.max());
+    }
+    
+    protected final class Response implements Runnable {
+
+        protected final Records.Request request;
+        protected final long intended;
+        protected final ListenableFuture<?> future;
+        
+        public Response(Records.Request request, long intended, ListenableFuture<?> future) {
+            this.request = request;
+            this.intended = intended;
+            this.future = future;
+        }
+        
+        @Override
+        public void run() {
+            long nanos = System.nanoTime();
+            Object response;
+            try {
+                response = future.get();
+            } catch (Exception e) {
+                // failed or cancelled operations aren't measured
+                return;
+            }
+            latency.record(TimeUnit.NANOSECONDS.toMicros(nanos - intended));
+            if (timings.isPresent()) {
+                int error = 0;
+                if ((response instanceof Operation.ProtocolResponse<?>) 
+                        && (((Operation.ProtocolResponse<?>) response).record() instanceof Operation.Error)) {
+                    error = ((Operation.Error) ((Operation.ProtocolResponse<?>) response).record()).error().intValue();
+                }
+                // the session isn't known here
+                timings.get().handleOperationTiming(
+                        Session.uninitialized().id(), request.opcode(), error, intended, nanos);
+            }
+        }
+    }
+}
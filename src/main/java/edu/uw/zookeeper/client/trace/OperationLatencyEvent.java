@@ -0,0 +1,163 @@
+package edu.uw.zookeeper.client.trace;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerationException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Objects;
+
+import edu.uw.zookeeper.protocol.proto.OpCode;
+
+/**
+ * Latency of one operation, tagged with its opcode
+ * and with its error code if the response is an error.
+ */
+@TraceEventType(TraceEventTag.OPERATION_LATENCY_EVENT)
+@JsonSerialize(using=OperationLatencyEvent.Serializer.class, typing=JsonSerialize.Typing.STATIC)
+@JsonDeserialize(using=OperationLatencyEvent.Deserializer.class)
+public final class OperationLatencyEvent implements TraceEvent {
+
+    /**
+     * @param error zero if the operation succeeded, otherwise the error code
+     */
+    public static OperationLatencyEvent fromNanos(OpCode opcode, int error, long nanos) {
+        long micros = (nanos <= 0) ?
+                nanos :
+                    TimeUnit.MICROSECONDS.convert(nanos, TimeUnit.NANOSECONDS);
+        return new OperationLatencyEvent(opcode.intValue(), error, (int) micros);
+    }
+
+    public static OperationLatencyEvent create(int opcode, int error, int micros) {
+        return new OperationLatencyEvent(opcode, error, micros);
+    }
+
+    private final int opcode;
+    private final int error;
+    private final int micros;
+
+    @JsonCreator
+    public OperationLatencyEvent(
+            @JsonProperty("opcode") int opcode,
+            @JsonProperty("error") int error,
+            @JsonProperty("micros") int micros) {
+        this.opcode = opcode;
+        this.error = error;
+        this.micros = micros;
+    }
+
+    @Override
+    public TraceEventTag getTag() {
+        return TraceEventTag.OPERATION_LATENCY_EVENT;
+    }
+
+    public int getOpcode() {
+        return opcode;
+    }
+
+    public int getError() {
+        return error;
+    }
+
+    public int getMicros() {
+        return micros;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("opcode", opcode)
+                .add("error", error)
+                .add("micros", micros)
+                .toString();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (! (obj instanceof OperationLatencyEvent)) {
+            return false;
+        }
+        OperationLatencyEvent other = (OperationLatencyEvent) obj;
+        return (opcode == other.opcode)
+                && (error == other.error)
+                && (micros == other.micros);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(opcode, error, micros);
+    }
+
+    public static class Serializer extends ListSerializer<OperationLatencyEvent> {
+
+        public static Serializer create() {
+            return new Serializer();
+        }
+
+        public Serializer() {
+            super(OperationLatencyEvent.class);
+        }
+
+        @Override
+        protected void serializeValue(OperationLatencyEvent value, JsonGenerator json,
+                SerializerProvider provider) throws IOException,
+                JsonGenerationException {
+            json.writeNumber(value.opcode);
+            json.writeNumber(value.error);
+            json.writeNumber(value.micros);
+        }
+    }
+
+    public static class Deserializer extends ListDeserializer<OperationLatencyEvent> {
+
+        public static Deserializer create() {
+            return new Deserializer();
+        }
+
+        private static final long serialVersionUID = -3317463271908427640L;
+
+        public Deserializer() {
+            super(OperationLatencyEvent.class);
+        }
+
+        @Override
+        protected OperationLatencyEvent deserializeValue(JsonParser json,
+                DeserializationContext ctxt) throws IOException,
+                JsonProcessingException {
+            JsonToken token = json.getCurrentToken();
+            if (token == null) {
+                token = json.nextToken();
+                if (token == null) {
+                    return null;
+                }
+            }
+            int[] values = new int[3];
+            for (int i=0; i<values.length; ++i) {
+                if (i > 0) {
+                    token = json.nextToken();
+                }
+                if (token != JsonToken.VALUE_NUMBER_INT) {
+                    throw ctxt.wrongTokenException(json, JsonToken.VALUE_NUMBER_INT, "");
+                }
+                values[i] = json.getIntValue();
+            }
+            json.clearCurrentToken();
+            OperationLatencyEvent value = new OperationLatencyEvent(
+                    values[0], values[1], values[2]);
+            return value;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package edu.uw.zookeeper.client.trace;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerationException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Objects;
+
+import edu.uw.zookeeper.protocol.proto.OpCode;
+
+/**
+ * Operations completed in an interval with one opcode,
+ * and with one error code if the responses were errors.
+ */
+@TraceEventType(TraceEventTag.OPERATION_THROUGHPUT_EVENT)
+@JsonSerialize(using=OperationThroughputEvent.Serializer.class, typing=JsonSerialize.Typing.STATIC)
+@JsonDeserialize(using=OperationThroughputEvent.Deserializer.class)
+public final class OperationThroughputEvent implements TraceEvent {
+
+    /**
+     * @param error zero if the operations succeeded, otherwise the error code
+     */
+    public static OperationThroughputEvent fromNanos(OpCode opcode, int error, int count, long nanos) {
+        long millis = (nanos <= 0) ?
+                nanos :
+                    TimeUnit.MILLISECONDS.convert(nanos, TimeUnit.NANOSECONDS);
+        return new OperationThroughputEvent(opcode.intValue(), error, count, (int) millis);
+    }
+
+    public static OperationThroughputEvent create(int opcode, int error, int count, int millis) {
+        return new OperationThroughputEvent(opcode, error, count, millis);
+    }
+
+    private final int opcode;
+    private final int error;
+    private final int count;
+    private final int millis;
+
+    @JsonCreator
+    public OperationThroughputEvent(
+            @JsonProperty("opcode") int opcode,
+            @JsonProperty("error") int error,
+            @JsonProperty("count") int count,
+            @JsonProperty("millis") int millis) {
+        this.opcode = opcode;
+        this.error = error;
+        this.count = count;
+        this.millis = millis;
+    }
+
+    @Override
+    public TraceEventTag getTag() {
+        return TraceEventTag.OPERATION_THROUGHPUT_EVENT;
+    }
+
+    public int getOpcode() {
+        return opcode;
+    }
+
+    public int getError() {
+        return error;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getMillis() {
+        return millis;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("opcode", opcode)
+                .add("error", error)
+                .add("count", count)
+                .add("millis", millis)
+                .toString();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (! (obj instanceof OperationThroughputEvent)) {
+            return false;
+        }
+        OperationThroughputEvent other = (OperationThroughputEvent) obj;
+        return (opcode == other.opcode)
+                && (error == other.error)
+                && (count == other.count)
+                && (millis == other.millis);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(opcode, error, count, millis);
+    }
+
+    public static class Serializer extends ListSerializer<OperationThroughputEvent> {
+
+        public static Serializer create() {
+            return new Serializer();
+        }
+
+        public Serializer() {
+            super(OperationThroughputEvent.class);
+        }
+
+        @Override
+        protected void serializeValue(OperationThroughputEvent value, JsonGenerator json,
+                SerializerProvider provider) throws IOException,
+                JsonGenerationException {
+            json.writeNumber(value.opcode);
+            json.writeNumber(value.error);
+            json.writeNumber(value.count);
+            json.writeNumber(value.millis);
+        }
+    }
+
+    public static class Deserializer extends ListDeserializer<OperationThroughputEvent> {
+
+        public static Deserializer create() {
+            return new Deserializer();
+        }
+
+        private static final long serialVersionUID = 8847319905361226153L;
+
+        public Deserializer() {
+            super(OperationThroughputEvent.class);
+        }
+
+        @Override
+        protected OperationThroughputEvent deserializeValue(JsonParser json,
+                DeserializationContext ctxt) throws IOException,
+                JsonProcessingException {
+            JsonToken token = json.getCurrentToken();
+            if (token == null) {
+                token = json.nextToken();
+                if (token == null) {
+                    return null;
+                }
+            }
+            int[] values = new int[4];
+            for (int i=0; i<values.length; ++i) {
+                if (i > 0) {
+                    token = json.nextToken();
+                }
+                if (token != JsonToken.VALUE_NUMBER_INT) {
+                    throw ctxt.wrongTokenException(json, JsonToken.VALUE_NUMBER_INT, "");
+                }
+                values[i] = json.getIntValue();
+            }
+            json.clearCurrentToken();
+            OperationThroughputEvent value = new OperationThroughputEvent(
+                    values[0], values[1], values[2], values[3]);
+            return value;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package edu.uw.zookeeper.client.trace;
+
+import io.netty.buffer.ByteBuf;
+
+import java.io.IOException;
+
+import com.google.common.base.Optional;
+
+import edu.uw.zookeeper.protocol.Session;
+import edu.uw.zookeeper.common.Automaton;
+import edu.uw.zookeeper.common.Automatons;
+import edu.uw.zookeeper.common.ForwardingProtocolCodec;
+import edu.uw.zookeeper.protocol.ConnectMessage;
+import edu.uw.zookeeper.protocol.Message;
+import edu.uw.zookeeper.protocol.Operation;
+import edu.uw.zookeeper.protocol.ProtocolCodec;
+import edu.uw.zookeeper.protocol.ProtocolState;
+import edu.uw.zookeeper.protocol.client.ClientProtocolCodec;
+import edu.uw.zookeeper.protocol.proto.OpCode;
+import edu.uw.zookeeper.protocol.proto.OpCodeXid;
+
+/**
+ * Like OperationTracingCodec, but keeps only send times, in a ring indexed by xid,
+ * and reports primitive timings instead of publishing OperationEvents,
+ * so that timing doesn't allocate.
+ */
+public class OperationTimingCodec extends ForwardingProtocolCodec<Message.ClientSession, Message.ServerSession, Message.ClientSession, Message.ServerSession> implements Automatons.AutomatonListener<ProtocolState> {
+
+    public static OperationTimingCodec defaults(
+            OperationTimingListener listener) {
+        return newInstance(listener, ClientProtocolCodec.defaults());
+    }
+    
+    public static OperationTimingCodec newInstance(
+            OperationTimingListener listener,
+            ProtocolCodec<Message.ClientSession, Message.ServerSession, Message.ClientSession, Message.ServerSession> delegate) {
+        return new OperationTimingCodec(
+                listener, 
+                XidTimings.create(), 
+                delegate);
+    }
+    
+    protected final OperationTimingListener listener;
+    protected final XidTimings times;
+    protected final ProtocolCodec<Message.ClientSession, Message.ServerSession, Message.ClientSession, Message.ServerSession> delegate;
+    protected volatile long sessionId;
+    
+    protected OperationTimingCodec(
+            OperationTimingListener listener, 
+            XidTimings times,
+            ProtocolCodec<Message.ClientSession, Message.ServerSession, Message.ClientSession, Message.ServerSession> delegate) {
+        super();
+        this.listener = listener;
+        this.times = times;
+        this.delegate = delegate;
+        this.sessionId = Session.uninitialized().id();
+        
+        delegate.subscribe(this);
+    }
+
+    @Override
+    public void encode(Message.ClientSession message, ByteBuf output) throws IOException {
+        delegate.encode(message, output);
+        if (message instanceof Message.ClientRequest<?>) {
+            sent((Message.ClientRequest<?>) message);
+        }
+    }
+
+    @Override
+    public Optional<? extends Message.ServerSession> decode(ByteBuf input)
+            throws IOException {
+        Optional<? extends Message.ServerSession> output = delegate.decode(input);
+        if (output.isPresent()) {
+            Message.ServerSession message = output.get();
+            if (message instanceof ConnectMessage.Response) {
+                ConnectMessage.Response response = (ConnectMessage.Response) message;
+                sessionId = response.getSessionId();
+            } else {
+                received((Message.ServerResponse<?>) message);
+            }
+        }
+        return output;
+    }
+
+    protected void sent(Message.ClientRequest<?> request) {
+        if (! OpCodeXid.has(request.xid())) {
+            times.put(request.xid(), request.record().opcode(), System.nanoTime());
+        }
+    }
+
+    /**
+     * Error replies carry the error opcode, so timings are reported
+     * with the opcode recorded for the request.
+     */
+    protected void received(Message.ServerResponse<?> response) {
+        if (! OpCodeXid.has(response.xid())) {
+            long responseNanos = System.nanoTime();
+            int error = (response.record() instanceof Operation.Error) ? 
+                    ((Operation.Error) response.record()).error().intValue() : 
+                        0;
+            times.remove(response.xid(), sessionId, error, responseNanos, listener);
+            if (response.record().opcode() == OpCode.CLOSE_SESSION) {
+                delegate.unsubscribe(this);
+            }
+        }
+    }
+
+    @Override
+    public void handleAutomatonTransition(Automaton.Transition<ProtocolState> transition) {
+        switch (transition.to()) {
+        case ERROR:
+        {
+            delegate.unsubscribe(this);
+            times.expire(sessionId, listener);
+            break;
+        }
+        default:
+            break;
+        }
+    }
+
+    @Override
+    protected ProtocolCodec<Message.ClientSession, Message.ServerSession, Message.ClientSession, Message.ServerSession> delegate() {
+        return delegate;
+    }
+}
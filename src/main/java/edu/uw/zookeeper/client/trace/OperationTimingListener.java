@@ -0,0 +1,16 @@
+package edu.uw.zookeeper.client.trace;
+
+import edu.uw.zookeeper.protocol.proto.OpCode;
+
+/**
+ * Receives the timing of a completed operation as primitives,
+ * for measurements that don't need an OperationEvent.
+ */
+public interface OperationTimingListener {
+
+    /**
+     * @param error zero if the operation succeeded, otherwise the error code
+     * @param responseNanos <code>OperationEvent.TIMEOUT</code> if no response was received
+     */
+    void handleOperationTiming(long sessionId, OpCode opcode, int error, long requestNanos, long responseNanos);
+}
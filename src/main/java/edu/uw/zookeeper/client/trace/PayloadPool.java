@@ -0,0 +1,79 @@
+package edu.uw.zookeeper.client.trace;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Random;
+
+import com.google.common.base.Function;
+import com.google.common.base.MoreObjects;
+import com.typesafe.config.ConfigValueType;
+
+import edu.uw.zookeeper.common.Configurable;
+import edu.uw.zookeeper.common.Configuration;
+import edu.uw.zookeeper.common.Generator;
+
+/**
+ * Random payloads with sizes evenly spaced over [min, max],
+ * generated once and then shared by every request.
+ *
+ * Returned arrays must not be modified.
+ */
+public final class PayloadPool implements Generator<byte[]> {
+
+    public static PayloadPool create(Random random, int min, int max, int size) {
+        checkArgument(min >= 0);
+        checkArgument(max >= min);
+        checkArgument(size > 0);
+        byte[][] payloads = new byte[size][];
+        for (int i=0; i<size; ++i) {
+            int length = (size > 1) ?
+                    min + (int) (((long) (max - min) * i) / (size - 1)) :
+                        min + (max - min) / 2;
+            payloads[i] = new byte[length];
+            random.nextBytes(payloads[i]);
+        }
+        return new PayloadPool(random, payloads);
+    }
+
+    @Configurable(arg="payloads", key="payloadPool", value="64", type=ConfigValueType.NUMBER, help="preallocated setData payloads, 0 to allocate each")
+    public static class PayloadPoolConfiguration implements Function<Configuration, Integer> {
+
+        public static Integer get(Configuration configuration) {
+            return new PayloadPoolConfiguration().apply(configuration);
+        }
+
+        @Override
+        public Integer apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return Integer.valueOf(configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getInt(configurable.key()));
+        }
+    }
+
+    private final Random random;
+    private final byte[][] payloads;
+
+    private PayloadPool(Random random, byte[][] payloads) {
+        this.random = random;
+        this.payloads = payloads;
+    }
+
+    public int size() {
+        return payloads.length;
+    }
+
+    @Override
+    public byte[] next() {
+        return payloads[random.nextInt(payloads.length)];
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("size", payloads.length)
+                .add("min", payloads[0].length)
+                .add("max", payloads[payloads.length - 1].length)
+                .toString();
+    }
+}
@@ -23,18 +23,31 @@ import edu.uw.zookeeper.protocol.Message;
 @JsonDeserialize(using=ProtocolRequestEvent.Deserializer.class)
 public final class ProtocolRequestEvent implements TraceEvent {
 
+    /**
+     * Traces written before requests were timestamped have no nanos.
+     */
+    public static final long UNKNOWN = Long.MIN_VALUE;
+
     public static ProtocolRequestEvent create(
             long sessionId, Message.ClientRequest<?> request) {
-        return new ProtocolRequestEvent(sessionId, request);
+        return create(sessionId, request, UNKNOWN);
+    }
+
+    public static ProtocolRequestEvent create(
+            long sessionId, Message.ClientRequest<?> request, long nanos) {
+        return new ProtocolRequestEvent(sessionId, request, nanos);
     }
 
     private final long sessionId;
     private final Message.ClientRequest<?> request;
+    private final long nanos;
 
     public ProtocolRequestEvent(long sessionId, 
-            Message.ClientRequest<?> request) {
+            Message.ClientRequest<?> request,
+            long nanos) {
         this.sessionId = sessionId;
         this.request = checkNotNull(request);
+        this.nanos = nanos;
     }
 
     @Override
@@ -50,11 +63,23 @@ public final class ProtocolRequestEvent implements TraceEvent {
         return request;
     }
     
+    /**
+     * @return System.nanoTime() when the request was sent, or UNKNOWN
+     */
+    public long getNanos() {
+        return nanos;
+    }
+    
+    public boolean hasNanos() {
+        return nanos != UNKNOWN;
+    }
+    
     @Override
     public String toString() {
         return MoreObjects.toStringHelper(this)
                 .add("sessionId", sessionId)
-                .add("request", request).toString();
+                .add("request", request)
+                .add("nanos", nanos).toString();
     }
     
     @Override
@@ -67,12 +92,13 @@ public final class ProtocolRequestEvent implements TraceEvent {
         }
         ProtocolRequestEvent other = (ProtocolRequestEvent) obj;
         return (sessionId == other.sessionId)
-                && request.equals(other.request);
+                && request.equals(other.request)
+                && (nanos == other.nanos);
     }
     
     @Override
     public int hashCode() {
-        return Objects.hashCode(sessionId, request);
+        return Objects.hashCode(sessionId, request, nanos);
     }
 
     public static class Serializer extends ListSerializer<ProtocolRequestEvent> {
@@ -91,6 +117,9 @@ public final class ProtocolRequestEvent implements TraceEvent {
                 JsonGenerationException {
             json.writeNumber(value.sessionId);
             provider.findValueSerializer(value.request.getClass(), null).serialize(value.request, json, provider);
+            if (value.hasNanos()) {
+                json.writeNumber(value.nanos);
+            }
         }
     }
 
@@ -126,7 +155,14 @@ public final class ProtocolRequestEvent implements TraceEvent {
             if (json.hasCurrentToken()) {
                 json.clearCurrentToken();
             }
-            ProtocolRequestEvent value = new ProtocolRequestEvent(sessionId, request);
+            // optional trailing nanos
+            long nanos = UNKNOWN;
+            token = json.nextToken();
+            if (token == JsonToken.VALUE_NUMBER_INT) {
+                nanos = json.getLongValue();
+                json.clearCurrentToken();
+            }
+            ProtocolRequestEvent value = new ProtocolRequestEvent(sessionId, request, nanos);
             return value;
         }
     }
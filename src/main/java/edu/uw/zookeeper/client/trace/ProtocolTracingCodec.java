@@ -54,7 +54,7 @@ public class ProtocolTracingCodec extends ForwardingProtocolCodec<Message.Client
                     break;
                 default:
                 {
-                    ProtocolRequestEvent event = ProtocolRequestEvent.create(sessionId, request);
+                    ProtocolRequestEvent event = ProtocolRequestEvent.create(sessionId, request, System.nanoTime());
                     publisher.publish(event);
                     break;
                 }
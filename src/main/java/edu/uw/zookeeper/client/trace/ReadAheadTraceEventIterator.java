@@ -0,0 +1,256 @@
+package edu.uw.zookeeper.client.trace;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.google.common.base.Function;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.typesafe.config.ConfigValueType;
+
+import edu.uw.zookeeper.common.Configurable;
+import edu.uw.zookeeper.common.Configuration;
+
+/**
+ * Decodes a trace ahead of the consumer into a bounded queue of batches.
+ * 
+ * An indexed binary trace is decoded in chunks of index entries by several threads,
+ * and the chunks are delivered in order; any other trace is decoded by one thread.
+ */
+public class ReadAheadTraceEventIterator extends TraceEventIterator {
+
+    /**
+     * Falls back to a single decoder thread unless the trace can be memory-mapped.
+     * 
+     * @param threads decoder threads
+     * @param capacity batches decoded ahead
+     */
+    public static ReadAheadTraceEventIterator forFile(
+            File file,
+            ObjectReader reader,
+            int threads,
+            int capacity) throws IOException {
+        if ((threads > 1) 
+                && file.exists()
+                && (TraceCompression.detect(file) == TraceCompression.NONE) 
+                && (TraceFormat.detect(file) == TraceFormat.BINARY)) {
+            return forReader(MappedTraceReader.forFile(file, reader), threads, capacity);
+        }
+        return forIterator(TraceEventIterator.forFile(file, reader), capacity);
+    }
+    
+    public static ReadAheadTraceEventIterator forIterator(
+            final TraceEventIterator events,
+            int capacity) {
+        ExecutorService executor = newExecutor(1);
+        final BlockingQueue<Future<List<TraceEvent>>> batches = new ArrayBlockingQueue<Future<List<TraceEvent>>>(capacity);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (events.hasNext()) {
+                        List<TraceEvent> batch = Lists.newArrayListWithCapacity(BATCH_SIZE);
+                        while ((batch.size() < BATCH_SIZE) && events.hasNext()) {
+                            batch.add(events.next());
+                        }
+                        batches.put(Futures.immediateFuture(batch));
+                    }
+                    terminate(batches, END);
+                } catch (Exception e) {
+                    terminate(batches, Futures.<List<TraceEvent>>immediateFailedFuture(e));
+                }
+            }
+        });
+        return new ReadAheadTraceEventIterator(events.header(), batches, executor, events);
+    }
+    
+    /**
+     * Takes ownership of reader.
+     */
+    public static ReadAheadTraceEventIterator forReader(
+            final MappedTraceReader reader,
+            int threads,
+            int capacity) {
+        checkArgument(capacity > 0);
+        final ExecutorService executor = newExecutor(threads + 1);
+        final BlockingQueue<Future<List<TraceEvent>>> batches = new ArrayBlockingQueue<Future<List<TraceEvent>>>(capacity);
+        final int entries = reader.index().size();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    // the queue bounds the number of chunks in flight
+                    for (int from=0; from<entries; from+=ENTRIES_PER_CHUNK) {
+                        final int to = Math.min(from + ENTRIES_PER_CHUNK, entries);
+                        final int chunk = from;
+                        batches.put(executor.submit(new Callable<List<TraceEvent>>() {
+                            @Override
+                            public List<TraceEvent> call() throws Exception {
+                                List<TraceEvent> batch = Lists.newArrayList();
+                                MappedTraceEventIterator events = reader.entries(chunk, to);
+                                try {
+                                    while (events.hasNext()) {
+                                        batch.add(events.next());
+                                    }
+                                } finally {
+                                    events.close();
+                                }
+                                return batch;
+                            }
+                        }));
+                    }
+                    terminate(batches, END);
+                } catch (Exception e) {
+                    terminate(batches, Futures.<List<TraceEvent>>immediateFailedFuture(e));
+                }
+            }
+        });
+        return new ReadAheadTraceEventIterator(reader.header(), batches, executor, reader);
+    }
+
+    @Configurable(path="trace", arg="readAhead", key="readAhead", value="64", type=ConfigValueType.NUMBER, help="batches decoded ahead of replay, 0 to decode on the replay thread")
+    public static class ConfigurableReadAhead implements Function<Configuration, Integer> {
+
+        public static Integer get(Configuration configuration) {
+            return new ConfigurableReadAhead().apply(configuration);
+        }
+
+        @Override
+        public Integer apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getInt(configurable.key());
+        }   
+    }
+
+    @Configurable(path="trace", arg="decoders", key="decoderThreads", value="2", type=ConfigValueType.NUMBER, help="threads decoding an indexed binary trace")
+    public static class ConfigurableDecoderThreads implements Function<Configuration, Integer> {
+
+        public static Integer get(Configuration configuration) {
+            return new ConfigurableDecoderThreads().apply(configuration);
+        }
+
+        @Override
+        public Integer apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getInt(configurable.key());
+        }   
+    }
+    
+    /**
+     * Reads ahead if configured, otherwise just opens the file.
+     */
+    public static TraceEventIterator forConfiguration(
+            Configuration configuration,
+            File file,
+            ObjectReader reader) throws IOException {
+        int capacity = ConfigurableReadAhead.get(configuration).intValue();
+        if (capacity <= 0) {
+            return TraceEventIterator.forFile(file, reader);
+        }
+        return forFile(file, reader, ConfigurableDecoderThreads.get(configuration).intValue(), capacity);
+    }
+
+    public static final int BATCH_SIZE = 256;
+    public static final int ENTRIES_PER_CHUNK = 1;
+    
+    protected static final Future<List<TraceEvent>> END = Futures.immediateFuture(null);
+    
+    /**
+     * Queues END or a failure, so that the consumer can't wait forever.
+     * If interrupted, queued batches are discarded to make room for the failure.
+     */
+    protected static void terminate(
+            BlockingQueue<Future<List<TraceEvent>>> batches,
+            Future<List<TraceEvent>> last) {
+        try {
+            batches.put(last);
+        } catch (InterruptedException e) {
+            // this is the only producer, so there is room after clearing
+            batches.clear();
+            batches.offer(Futures.<List<TraceEvent>>immediateFailedFuture(e));
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    protected static ExecutorService newExecutor(int threads) {
+        return Executors.newFixedThreadPool(
+                threads, 
+                new ThreadFactoryBuilder().setNameFormat("trace-decoder-%d").setDaemon(true).build());
+    }
+
+    protected final Logger logger;
+    protected final TraceHeader header;
+    protected final BlockingQueue<Future<List<TraceEvent>>> batches;
+    protected final ExecutorService executor;
+    protected final Closeable source;
+    protected Iterator<TraceEvent> batch;
+    
+    protected ReadAheadTraceEventIterator(
+            TraceHeader header,
+            BlockingQueue<Future<List<TraceEvent>>> batches,
+            ExecutorService executor,
+            Closeable source) {
+        this.logger = LogManager.getLogger(getClass());
+        this.header = header;
+        this.batches = batches;
+        this.executor = executor;
+        this.source = source;
+        this.batch = Collections.<TraceEvent>emptyIterator();
+    }
+
+    @Override
+    public TraceHeader header() {
+        return header;
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdownNow();
+        batches.clear();
+        source.close();
+    }
+
+    @Override
+    protected TraceEvent computeNext() {
+        while (! batch.hasNext()) {
+            List<TraceEvent> next;
+            try {
+                next = batches.take().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw Throwables.propagate(e);
+            } catch (ExecutionException e) {
+                throw Throwables.propagate(e.getCause());
+            }
+            if (next == null) {
+                executor.shutdown();
+                return endOfData();
+            }
+            batch = next.iterator();
+        }
+        return batch.next();
+    }
+}
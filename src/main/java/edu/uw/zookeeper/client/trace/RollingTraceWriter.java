@@ -0,0 +1,163 @@
+package edu.uw.zookeeper.client.trace;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Queues;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * Writes a trace as a sequence of segment files, 
+ * starting a new segment when the current one crosses a TraceRollingPolicy threshold.
+ * 
+ * Each segment has its own header, and the manifest 
+ * is rewritten whenever a segment is started or closed.
+ */
+public class RollingTraceWriter extends TraceWriter {
+
+    public static final String SEGMENT_KEY = "segment";
+    
+    public static RollingTraceWriter forFile(
+            File file,
+            TraceFormat format,
+            ObjectWriter writer,
+            TraceHeader header,
+            TraceFlushPolicy flushPolicy,
+            TraceRollingPolicy rollingPolicy,
+            Executor executor) throws IOException {
+        return new RollingTraceWriter(
+                file, 
+                format, 
+                writer, 
+                rollingPolicy, 
+                header, 
+                flushPolicy, 
+                executor, 
+                Queues.<TraceEvent>newConcurrentLinkedQueue(), 
+                LogManager.getLogger(RollingTraceWriter.class));
+    }
+    
+    protected final File file;
+    protected final File manifest;
+    protected final TraceFormat format;
+    protected final ObjectWriter writer;
+    protected final TraceRollingPolicy rollingPolicy;
+    protected final Executor segmentExecutor;
+    protected final List<TraceManifest.Segment> segments;
+    protected TraceWriter current;
+    protected File currentFile;
+    protected long currentEvents;
+    protected long currentStarted;
+    protected long closedBytes;
+    
+    public RollingTraceWriter(
+            File file,
+            TraceFormat format,
+            ObjectWriter writer,
+            TraceRollingPolicy rollingPolicy,
+            TraceHeader header,
+            TraceFlushPolicy flushPolicy,
+            Executor executor,
+            Queue<TraceEvent> mailbox,
+            Logger logger) throws IOException {
+        super(header, flushPolicy, executor, mailbox, logger);
+        this.file = file;
+        this.manifest = TraceManifest.forTrace(file);
+        this.format = format;
+        this.writer = writer;
+        this.rollingPolicy = rollingPolicy;
+        this.segmentExecutor = MoreExecutors.directExecutor();
+        this.segments = Lists.newArrayList();
+        this.closedBytes = 0L;
+        
+        startSegment();
+    }
+    
+    public File manifest() {
+        return manifest;
+    }
+
+    @Override
+    public long position() {
+        return closedBytes + current.position();
+    }
+
+    @Override
+    protected void write(TraceEvent event) throws IOException {
+        if ((currentEvents > 0L) && rollingPolicy.shouldRoll(
+                current.position(), System.nanoTime() - currentStarted)) {
+            closeSegment();
+            startSegment();
+        }
+        current.write(event);
+        ++currentEvents;
+    }
+
+    @Override
+    protected void flush() throws IOException {
+        current.flush();
+    }
+
+    @Override
+    protected void sync() throws IOException {
+        current.sync();
+    }
+
+    @Override
+    protected void finish() {
+        try {
+            closeSegment();
+        } catch (IOException e) {
+            logger.warn("{}", manifest, e);
+        }
+    }
+    
+    protected void startSegment() throws IOException {
+        int index = segments.size();
+        currentFile = TraceManifest.segmentFile(file, index);
+        Map<String, Object> description = ImmutableMap.<String, Object>builder()
+                .putAll(header.getDescription())
+                .put(SEGMENT_KEY, Integer.valueOf(index))
+                .build();
+        current = format.newWriter(
+                currentFile, 
+                writer, 
+                TraceHeader.create(description, header.getTypes(), header.getWindow()), 
+                policy, 
+                segmentExecutor);
+        currentEvents = 0L;
+        currentStarted = System.nanoTime();
+        logger.info("Trace segment: {}", currentFile);
+        writeManifest(TraceManifest.Segment.create(currentFile.getName(), 0L, current.position()));
+    }
+    
+    protected void closeSegment() throws IOException {
+        current.finish();
+        long bytes = current.position();
+        closedBytes += bytes;
+        segments.add(TraceManifest.Segment.create(currentFile.getName(), currentEvents, bytes));
+        writeManifest(null);
+    }
+
+    /**
+     * @param open the segment being written, if any
+     */
+    protected void writeManifest(TraceManifest.Segment open) throws IOException {
+        List<TraceManifest.Segment> listed = segments;
+        if (open != null) {
+            listed = Lists.newArrayList(segments);
+            listed.add(open);
+        }
+        TraceManifest.create(header, listed).toFile(manifest, writer);
+    }
+}
@@ -0,0 +1,73 @@
+package edu.uw.zookeeper.client.trace;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.google.common.base.Throwables;
+
+/**
+ * Iterates over the segments listed in a manifest as a single trace.
+ * 
+ * Each segment is opened when the previous one is exhausted.
+ */
+public class SegmentedTraceEventIterator extends TraceEventIterator {
+
+    public static SegmentedTraceEventIterator forFile(
+            File file,
+            ObjectReader reader) throws IOException {
+        return new SegmentedTraceEventIterator(file, TraceManifest.forFile(file, reader), reader);
+    }
+    
+    protected final File file;
+    protected final TraceManifest manifest;
+    protected final ObjectReader reader;
+    protected final Iterator<TraceManifest.Segment> segments;
+    protected TraceEventIterator current;
+    
+    public SegmentedTraceEventIterator(
+            File file,
+            TraceManifest manifest,
+            ObjectReader reader) {
+        this.file = file;
+        this.manifest = manifest;
+        this.reader = reader;
+        this.segments = manifest.getSegments().iterator();
+        this.current = null;
+    }
+    
+    public TraceManifest manifest() {
+        return manifest;
+    }
+
+    @Override
+    public TraceHeader header() {
+        return manifest.getHeader();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (current != null) {
+            current.close();
+            current = null;
+        }
+    }
+
+    @Override
+    protected TraceEvent computeNext() {
+        try {
+            while ((current == null) || ! current.hasNext()) {
+                close();
+                if (! segments.hasNext()) {
+                    return endOfData();
+                }
+                current = TraceEventIterator.forFile(
+                        manifest.segmentFile(file, segments.next()), reader);
+            }
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+        return current.next();
+    }
+}
@@ -0,0 +1,45 @@
+package edu.uw.zookeeper.client.trace;
+
+import com.google.common.util.concurrent.Service;
+
+import edu.uw.zookeeper.ZooKeeperApplication;
+import edu.uw.zookeeper.common.Application;
+import edu.uw.zookeeper.common.ServiceApplication;
+import edu.uw.zookeeper.common.ServiceMonitor;
+
+public class SessionChurnClient extends ZooKeeperApplication.ForwardingApplication {
+
+    public static void main(String[] args) {
+        ZooKeeperApplication.main(args, new MainBuilder());
+    }
+
+    protected SessionChurnClient(Application delegate) {
+        super(delegate);
+    }
+
+    protected static class MainBuilder extends ZooKeeperApplication.ForwardingBuilder<SessionChurnClient, SessionChurnClientBuilder, MainBuilder> {
+        
+        public MainBuilder() {
+            this(SessionChurnClientBuilder.defaults());
+        }
+
+        public MainBuilder(
+                SessionChurnClientBuilder delegate) {
+            super(delegate);
+        }
+
+        @Override
+        protected MainBuilder newInstance(SessionChurnClientBuilder delegate) {
+            return new MainBuilder(delegate);
+        }
+
+        @Override
+        protected SessionChurnClient doBuild() {
+            ServiceMonitor monitor = getRuntimeModule().getServiceMonitor();
+            for (Service service: delegate.build()) {
+                monitor.add(service);
+            }
+            return new SessionChurnClient(ServiceApplication.forService(monitor));
+        }
+    }
+}
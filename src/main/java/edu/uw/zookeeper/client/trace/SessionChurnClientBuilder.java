@@ -0,0 +1,141 @@
+package edu.uw.zookeeper.client.trace;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Service;
+
+import edu.uw.zookeeper.client.ConnectionClientExecutorsService;
+import edu.uw.zookeeper.common.Configuration;
+import edu.uw.zookeeper.common.CountingGenerator;
+import edu.uw.zookeeper.common.RunnableService;
+import edu.uw.zookeeper.common.RuntimeModule;
+import edu.uw.zookeeper.protocol.client.ClientConnectionFactoryBuilder;
+
+/**
+ * Measures the cost of creating and closing sessions.
+ */
+public class SessionChurnClientBuilder extends Tracing.TraceWritingBuilder<List<Service>, SessionChurnClientBuilder> {
+
+    public static SessionChurnClientBuilder defaults() {
+        return new SessionChurnClientBuilder(
+                null, null, null, null, null);
+    }
+
+    protected final Logger logger = LogManager.getLogger(getClass());
+    protected final ConnectionClientExecutorsService.OperationBuilder connectionBuilder;
+    
+    protected SessionChurnClientBuilder(
+            ConnectionClientExecutorsService.OperationBuilder connectionBuilder,
+            TraceWriterBuilder writerBuilder,
+            TraceEventPublisherService tracePublisher, 
+            ObjectMapper mapper,
+            RuntimeModule runtime) {
+        super(writerBuilder, tracePublisher, mapper, runtime);
+        this.connectionBuilder = connectionBuilder;
+    }
+
+    public ConnectionClientExecutorsService.OperationBuilder getConnectionBuilder() {
+        return connectionBuilder;
+    }
+
+    public SessionChurnClientBuilder setConnectionBuilder(ConnectionClientExecutorsService.OperationBuilder connectionBuilder) {
+        if (this.connectionBuilder == connectionBuilder) {
+            return this;
+        } else {
+            return newInstance(connectionBuilder, writerBuilder, tracePublisher, mapper, runtime);
+        }
+    }
+
+    @Override
+    public SessionChurnClientBuilder setDefaults() {
+        SessionChurnClientBuilder builder = super.setDefaults();
+        if (this == builder) {
+            if (connectionBuilder == null) {
+                return setConnectionBuilder(getDefaultConnectionBuilder()).setDefaults();
+            }
+            ConnectionClientExecutorsService.OperationBuilder connectionBuilder = this.connectionBuilder.setDefaults();
+            if (this.connectionBuilder != connectionBuilder) {
+                return setConnectionBuilder(connectionBuilder).setDefaults();
+            }
+        }
+        return builder;
+    }
+
+    @Override
+    protected SessionChurnClientBuilder newInstance(
+            TraceWriterBuilder writerBuilder,
+            TraceEventPublisherService tracePublisher, 
+            ObjectMapper mapper,
+            RuntimeModule runtime) {
+        return newInstance(connectionBuilder, writerBuilder, tracePublisher, mapper, runtime);
+    }
+    
+    protected SessionChurnClientBuilder newInstance(
+            ConnectionClientExecutorsService.OperationBuilder connectionBuilder,
+            TraceWriterBuilder writerBuilder,
+            TraceEventPublisherService tracePublisher, 
+            ObjectMapper mapper,
+            RuntimeModule runtime) {
+        return new SessionChurnClientBuilder(connectionBuilder, writerBuilder, tracePublisher, mapper, runtime);
+    }
+    
+    @Override
+    protected List<Service> doBuild() {
+        List<Service> services = Lists.newArrayList();
+        services.add(getTracePublisher());
+        services.addAll(getConnectionBuilder().build());
+        services.add(RunnableService.create(getDefaultRunnable()));
+        return services;
+    }
+
+    /**
+     * Throughput is completed sessions.
+     */
+    @Override
+    protected TraceHeader getDefaultTraceHeader() {
+        return TraceHeader.create(
+                Tracing.getTraceDescription(getRuntimeModule().getConfiguration()), 
+                TraceEventTag.TIMESTAMP_EVENT, 
+                TraceEventTag.THROUGHPUT_MEASUREMENT_EVENT,
+                TraceEventTag.SESSION_EVENT);
+    }
+    
+    /**
+     * Operations aren't traced.
+     */
+    protected ClientConnectionFactoryBuilder getDefaultClientConnectionFactoryBuilder() {
+        return ClientConnectionFactoryBuilder.defaults()
+                .setRuntimeModule(getRuntimeModule())
+                .setDefaults();
+    }
+    
+    protected ConnectionClientExecutorsService.OperationBuilder getDefaultConnectionBuilder() {
+        return ConnectionClientExecutorsService.builder()
+                .setConnectionBuilder(getDefaultClientConnectionFactoryBuilder())
+                .setRuntimeModule(getRuntimeModule())
+                .setDefaults(); 
+    }
+    
+    protected Runnable getDefaultRunnable() {
+        Configuration configuration = getRuntimeModule().getConfiguration();
+        String arrival = SessionChurner.ConfigurableArrival.get(configuration);
+        logger.info("Session arrivals: {}", arrival);
+        return SessionChurner.create(
+                ArrivalProcess.fromString(arrival, 1.0, new Random()), 
+                CountingGenerator.ConfigurableIterations.get(configuration), 
+                SessionChurner.ConfigurableEphemerals.get(configuration).intValue(), 
+                SessionChurner.ConfigurableMaxOpen.get(configuration).intValue(), 
+                ThroughputMeasuringActor.ConfigurableThroughputInterval.get(configuration).value(TimeUnit.NANOSECONDS), 
+                getConnectionBuilder().getConnectionClientExecutors(), 
+                getTracePublisher().getPublisher(), 
+                getRuntimeModule().getExecutors().get(ScheduledExecutorService.class));
+    }
+}
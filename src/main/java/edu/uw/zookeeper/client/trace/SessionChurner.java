@@ -0,0 +1,295 @@
+package edu.uw.zookeeper.client.trace;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Iterator;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.engio.mbassy.bus.common.PubSubSupport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.apache.zookeeper.CreateMode;
+
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.typesafe.config.ConfigValueType;
+
+import edu.uw.zookeeper.common.Configurable;
+import edu.uw.zookeeper.common.Configuration;
+import edu.uw.zookeeper.common.Factory;
+import edu.uw.zookeeper.data.Operations;
+import edu.uw.zookeeper.data.ZNodeLabel;
+import edu.uw.zookeeper.data.ZNodePath;
+import edu.uw.zookeeper.protocol.ConnectMessage;
+import edu.uw.zookeeper.protocol.Operation;
+import edu.uw.zookeeper.protocol.client.ConnectionClientExecutor;
+
+/**
+ * Opens sessions at the times of an arrival process,
+ * optionally creates ephemeral znodes in each, and then closes them.
+ *
+ * Connect and close latencies are published per session,
+ * and completed sessions per interval as throughput.
+ * At most a limited number of sessions are open at once,
+ * so arrivals are delayed rather than piling up when the server falls behind;
+ * connect latency is measured from the intended arrival time,
+ * so that the delay is counted rather than hidden,
+ * and schedule lag, how far behind its arrival each session was opened, is logged.
+ */
+public class SessionChurner implements Runnable {
+
+    /**
+     * @param sessions 0 for no limit
+     */
+    public static SessionChurner create(
+            Iterator<Long> arrivals,
+            int sessions,
+            int ephemerals,
+            int maxOpen,
+            long intervalNanos,
+            Factory<? extends ListenableFuture<? extends ConnectionClientExecutor<Operation.Request,?,?,?>>> connections,
+            PubSubSupport<? super TraceEvent> publisher,
+            ScheduledExecutorService scheduler) {
+        checkArgument(ephemerals >= 0);
+        checkArgument(maxOpen > 0);
+        checkArgument(intervalNanos > 0L);
+        return new SessionChurner(arrivals, sessions, ephemerals, maxOpen, intervalNanos,
+                connections, publisher, scheduler, LogManager.getLogger(SessionChurner.class));
+    }
+
+    @Configurable(path="churn", arg="churnArrival", key="arrival", value="constant:100", help="session arrivals: constant:RATE|poisson:RATE|step:[poisson:]RATE@DURATION,...")
+    public static class ConfigurableArrival implements Function<Configuration, String> {
+
+        public static String get(Configuration configuration) {
+            return new ConfigurableArrival().apply(configuration);
+        }
+
+        @Override
+        public String apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getString(configurable.key()).trim();
+        }
+    }
+
+    @Configurable(path="churn", arg="ephemerals", key="ephemerals", value="0", type=ConfigValueType.NUMBER, help="ephemeral znodes per session")
+    public static class ConfigurableEphemerals implements Function<Configuration, Integer> {
+
+        public static Integer get(Configuration configuration) {
+            return new ConfigurableEphemerals().apply(configuration);
+        }
+
+        @Override
+        public Integer apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getInt(configurable.key());
+        }
+    }
+
+    @Configurable(path="churn", arg="churnMaxOpen", key="maxOpen", value="100", type=ConfigValueType.NUMBER, help="sessions open at once")
+    public static class ConfigurableMaxOpen implements Function<Configuration, Integer> {
+
+        public static Integer get(Configuration configuration) {
+            return new ConfigurableMaxOpen().apply(configuration);
+        }
+
+        @Override
+        public Integer apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getInt(configurable.key());
+        }
+    }
+
+    protected final Logger logger;
+    protected final Iterator<Long> arrivals;
+    protected final int sessions;
+    protected final int ephemerals;
+    protected final long intervalNanos;
+    protected final Factory<? extends ListenableFuture<? extends ConnectionClientExecutor<Operation.Request,?,?,?>>> connections;
+    protected final PubSubSupport<? super TraceEvent> publisher;
+    protected final ScheduledExecutorService scheduler;
+    protected final Semaphore open;
+    protected final Phaser pending;
+    protected final AtomicInteger completed;
+    protected final AtomicLong failed;
+    protected final LatencyHistogram connectLatency;
+    protected final LatencyHistogram closeLatency;
+    protected final LatencyHistogram lag;
+
+    protected SessionChurner(
+            Iterator<Long> arrivals,
+            int sessions,
+            int ephemerals,
+            int maxOpen,
+            long intervalNanos,
+            Factory<? extends ListenableFuture<? extends ConnectionClientExecutor<Operation.Request,?,?,?>>> connections,
+            PubSubSupport<? super TraceEvent> publisher,
+            ScheduledExecutorService scheduler,
+            Logger logger) {
+        this.logger = logger;
+        this.arrivals = arrivals;
+        this.sessions = sessions;
+        this.ephemerals = ephemerals;
+        this.intervalNanos = intervalNanos;
+        this.connections = connections;
+        this.publisher = publisher;
+        this.scheduler = scheduler;
+        this.open = new Semaphore(maxOpen);
+        this.pending = new Phaser(1);
+        this.completed = new AtomicInteger(0);
+        this.failed = new AtomicLong(0L);
+        this.connectLatency = LatencyHistogram.create();
+        this.closeLatency = LatencyHistogram.create();
+        this.lag = LatencyHistogram.create();
+    }
+
+    @Override
+    public void run() {
+        ScheduledFuture<?> throughput = scheduler.scheduleAtFixedRate(new Runnable() {
+            long last = System.nanoTime();
+            @Override
+            public void run() {
+                long now = System.nanoTime();
+                publisher.publish(ThroughputMeasurementEvent.fromNanos(completed.getAndSet(0), now - last));
+                last = now;
+            }
+        }, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+        long start = System.nanoTime();
+        int count = 0;
+        try {
+            while (((sessions <= 0) || (count < sessions)) && arrivals.hasNext()) {
+                long intended = start + arrivals.next().longValue();
+                OpenLoopSubmitter.awaitNanos(intended);
+                open.acquire();
+                lag.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intended));
+                pending.register();
+                new Churn(intended).call();
+                ++count;
+            }
+            pending.arriveAndAwaitAdvance();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            throughput.cancel(false);
+            log("Schedule lag", lag.getAndReset());
+            log("Connect latency", connectLatency.getAndReset());
+            log("Close latency", closeLatency.getAndReset());
+            logger.info("Churned {} sessions ({} failed) in {} ms",
+                    count, failed.get(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+    }
+
+    protected void log(String name, LatencyHistogram.Snapshot snapshot) {
+        logger.info("{} (us): count={} p50={} p99={} p99.9={} max={}",
+                name,
+                snapshot.count(),
+                snapshot.valueAtPercentile(50.0),
+                snapshot.valueAtPercentile(99.0),
+                snapshot.valueAtPercentile(99.9),
+                snapshot.max());
+    }
+
+    /**
+     * Connect, then create ephemerals, then close,
+     * each step continuing from the completion of the previous one.
+     * 
+     * Connect latency is from the intended arrival.
+     */
+    protected final class Churn implements Runnable {
+
+        protected final long start;
+        protected ListenableFuture<? extends ConnectionClientExecutor<Operation.Request,?,?,?>> connection;
+        protected ConnectionClientExecutor<Operation.Request,?,?,?> client;
+        protected ListenableFuture<ConnectMessage.Response> session;
+        protected long sessionId;
+        protected int created;
+        protected ListenableFuture<?> current;
+        protected long closing;
+
+        public Churn(long intended) {
+            this.start = intended;
+            this.connection = null;
+            this.client = null;
+            this.session = null;
+            this.sessionId = 0L;
+            this.created = 0;
+            this.current = null;
+            this.closing = 0L;
+        }
+
+        public void call() {
+            connection = connections.get();
+            connection.addListener(this, MoreExecutors.directExecutor());
+        }
+
+        @Override
+        public synchronized void run() {
+            try {
+                if (client == null) {
+                    client = connection.get();
+                    session = client.session();
+                    session.addListener(this, MoreExecutors.directExecutor());
+                } else if (current == null) {
+                    long nanos = System.nanoTime() - start;
+                    sessionId = session.get().getSessionId();
+                    connectLatency.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+                    publisher.publish(SessionEvent.fromNanos(SessionEvent.Kind.CONNECT, sessionId, nanos));
+                    next();
+                } else {
+                    Object response = current.get();
+                    if ((response instanceof Operation.ProtocolResponse<?>)
+                            && (((Operation.ProtocolResponse<?>) response).record() instanceof Operation.Error)) {
+                        throw new IllegalStateException(String.valueOf(response));
+                    }
+                    if (closing == 0L) {
+                        next();
+                    } else {
+                        long nanos = System.nanoTime() - closing;
+                        closeLatency.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+                        publisher.publish(SessionEvent.fromNanos(SessionEvent.Kind.CLOSE, sessionId, nanos));
+                        completed.incrementAndGet();
+                        done();
+                    }
+                }
+            } catch (Exception e) {
+                if (failed.getAndIncrement() == 0L) {
+                    logger.warn("Session 0x{} failed", Long.toHexString(sessionId), e);
+                }
+                done();
+            }
+        }
+
+        protected void next() {
+            if (created < ephemerals) {
+                ZNodePath path = ZNodePath.root().join(
+                        ZNodeLabel.fromString(String.format("churn-%x-%d", sessionId, created)));
+                ++created;
+                current = client.submit(Operations.Requests.create()
+                        .setPath(path).setMode(CreateMode.EPHEMERAL).build());
+            } else {
+                closing = System.nanoTime();
+                current = client.submit(Operations.Requests.disconnect().build());
+            }
+            current.addListener(this, MoreExecutors.directExecutor());
+        }
+
+        protected void done() {
+            open.release();
+            pending.arriveAndDeregister();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package edu.uw.zookeeper.client.trace;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import net.engio.mbassy.bus.common.PubSubSupport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.collect.Lists;
+import com.typesafe.config.ConfigValueType;
+
+import edu.uw.zookeeper.common.Configurable;
+import edu.uw.zookeeper.common.Configuration;
+import edu.uw.zookeeper.common.Factory;
+import edu.uw.zookeeper.protocol.ConnectMessage;
+import edu.uw.zookeeper.protocol.Operation;
+import edu.uw.zookeeper.protocol.client.ConnectionClientExecutor;
+
+/**
+ * Establishes sessions concurrently, with at most a limited number of handshakes in flight.
+ *
+ * The time from opening each connection until its session is established
+ * is published as a SessionEvent, and percentiles are logged when done.
+ */
+public class SessionConnector {
+
+    public static SessionConnector create(
+            Factory<? extends ListenableFuture<? extends ConnectionClientExecutor<Operation.Request,?,?,?>>> connections,
+            int concurrency,
+            PubSubSupport<? super TraceEvent> publisher) {
+        checkArgument(concurrency > 0);
+        return new SessionConnector(connections, concurrency, publisher, LogManager.getLogger(SessionConnector.class));
+    }
+
+    @Configurable(arg="connectConcurrency", key="connectConcurrency", value="100", type=ConfigValueType.NUMBER, help="sessions connecting at once")
+    public static class ConfigurableConcurrency implements Function<Configuration, Integer> {
+
+        public static Integer get(Configuration configuration) {
+            return new ConfigurableConcurrency().apply(configuration);
+        }
+
+        @Override
+        public Integer apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getInt(configurable.key());
+        }
+    }
+
+    protected final Logger logger;
+    protected final Factory<? extends ListenableFuture<? extends ConnectionClientExecutor<Operation.Request,?,?,?>>> connections;
+    protected final Semaphore connecting;
+    protected final PubSubSupport<? super TraceEvent> publisher;
+    protected final LatencyHistogram latency;
+
+    protected SessionConnector(
+            Factory<? extends ListenableFuture<? extends ConnectionClientExecutor<Operation.Request,?,?,?>>> connections,
+            int concurrency,
+            PubSubSupport<? super TraceEvent> publisher,
+            Logger logger) {
+        this.logger = logger;
+        this.connections = connections;
+        this.connecting = new Semaphore(concurrency);
+        this.publisher = publisher;
+        this.latency = LatencyHistogram.create();
+    }
+
+    /**
+     * Blocks until every session is established.
+     */
+    public List<ConnectionClientExecutor<Operation.Request,?,?,?>> connect(int n) throws Exception {
+        long start = System.nanoTime();
+        List<ListenableFuture<ConnectionClientExecutor<Operation.Request,?,?,?>>> futures = Lists.newArrayListWithCapacity(n);
+        try {
+            for (int i=0; i<n; ++i) {
+                connecting.acquire();
+                futures.add(new Connect(System.nanoTime(), connections.get()).call());
+            }
+            return Futures.allAsList(futures).get();
+        } finally {
+            LatencyHistogram.Snapshot snapshot = latency.getAndReset();
+            logger.info("Connected {} sessions in {} ms (us): p50={} p99={} p99.9={} max={}",
+                    snapshot.count(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                    snapshot.valueAtPercentile(50.0),
+                    snapshot.valueAtPercentile(99.0),
+                    snapshot.valueAtPercentile(99.9),
+                    snapshot.max());
+        }
+    }
+
+    protected final class Connect implements Runnable {
+
+        protected final long start;
+        protected final ListenableFuture<? extends ConnectionClientExecutor<Operation.Request,?,?,?>> connection;
+        protected final SettableFuture<ConnectionClientExecutor<Operation.Request,?,?,?>> result;
+        protected ConnectionClientExecutor<Operation.Request,?,?,?> client;
+        protected ListenableFuture<ConnectMessage.Response> session;
+
+        public Connect(
+                long start,
+                ListenableFuture<? extends ConnectionClientExecutor<Operation.Request,?,?,?>> connection) {
+            this.start = start;
+            this.connection = connection;
+            this.result = SettableFuture.create();
+            this.client = null;
+            this.session = null;
+        }
+
+        public ListenableFuture<ConnectionClientExecutor<Operation.Request,?,?,?>> call() {
+            connection.addListener(this, MoreExecutors.directExecutor());
+            return result;
+        }
+
+        @Override
+        public synchronized void run() {
+            try {
+                if (client == null) {
+                    client = connection.get();
+                    session = client.session();
+                    session.addListener(this, MoreExecutors.directExecutor());
+                } else {
+                    long nanos = System.nanoTime() - start;
+                    ConnectMessage.Response response = session.get();
+                    latency.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+                    publisher.publish(SessionEvent.fromNanos(SessionEvent.Kind.CONNECT, response.getSessionId(), nanos));
+                    connecting.release();
+                    result.set(client);
+                }
+            } catch (Exception e) {
+                connecting.release();
+                result.setException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package edu.uw.zookeeper.client.trace;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerationException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Objects;
+
+/**
+ * Latency of one step in the lifecycle of a session.
+ */
+@TraceEventType(TraceEventTag.SESSION_EVENT)
+@JsonSerialize(using=SessionEvent.Serializer.class, typing=JsonSerialize.Typing.STATIC)
+@JsonDeserialize(using=SessionEvent.Deserializer.class)
+public final class SessionEvent implements TraceEvent {
+
+    public static enum Kind {
+        /**
+         * Time from opening a connection until its session was established.
+         */
+        CONNECT,
+        /**
+         * Time from requesting that a session be closed until the close was acknowledged.
+         */
+        CLOSE;
+    }
+
+    public static SessionEvent fromNanos(Kind kind, long sessionId, long nanos) {
+        long micros = (nanos <= 0) ?
+                nanos :
+                    TimeUnit.MICROSECONDS.convert(nanos, TimeUnit.NANOSECONDS);
+        return new SessionEvent(kind, sessionId, (int) micros);
+    }
+
+    public static SessionEvent create(Kind kind, long sessionId, int micros) {
+        return new SessionEvent(kind, sessionId, micros);
+    }
+
+    protected static final Kind[] KINDS = Kind.values();
+
+    private final Kind kind;
+    private final long sessionId;
+    private final int micros;
+
+    @JsonCreator
+    public SessionEvent(
+            @JsonProperty("kind") Kind kind,
+            @JsonProperty("sessionId") long sessionId,
+            @JsonProperty("micros") int micros) {
+        this.kind = checkNotNull(kind);
+        this.sessionId = sessionId;
+        this.micros = micros;
+    }
+
+    @Override
+    public TraceEventTag getTag() {
+        return TraceEventTag.SESSION_EVENT;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public long getSessionId() {
+        return sessionId;
+    }
+
+    public int getMicros() {
+        return micros;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("kind", kind)
+                .add("sessionId", sessionId)
+                .add("micros", micros)
+                .toString();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (! (obj instanceof SessionEvent)) {
+            return false;
+        }
+        SessionEvent other = (SessionEvent) obj;
+        return (kind == other.kind) && (sessionId == other.sessionId) && (micros == other.micros);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(kind, sessionId, micros);
+    }
+
+    public static class Serializer extends ListSerializer<SessionEvent> {
+
+        public static Serializer create() {
+            return new Serializer();
+        }
+
+        public Serializer() {
+            super(SessionEvent.class);
+        }
+
+        @Override
+        protected void serializeValue(SessionEvent value, JsonGenerator json,
+                SerializerProvider provider) throws IOException,
+                JsonGenerationException {
+            json.writeNumber(value.kind.ordinal());
+            json.writeNumber(value.sessionId);
+            json.writeNumber(value.micros);
+        }
+    }
+
+    public static class Deserializer extends ListDeserializer<SessionEvent> {
+
+        public static Deserializer create() {
+            return new Deserializer();
+        }
+
+        private static final long serialVersionUID = -2290385364925416131L;
+
+        public Deserializer() {
+            super(SessionEvent.class);
+        }
+
+        @Override
+        protected SessionEvent deserializeValue(JsonParser json,
+                DeserializationContext ctxt) throws IOException,
+                JsonProcessingException {
+            JsonToken token = json.getCurrentToken();
+            if (token == null) {
+                token = json.nextToken();
+                if (token == null) {
+                    return null;
+                }
+            }
+            if (token != JsonToken.VALUE_NUMBER_INT) {
+                throw ctxt.wrongTokenException(json, JsonToken.VALUE_NUMBER_INT, "");
+            }
+            Kind kind = KINDS[json.getIntValue()];
+            token = json.nextToken();
+            if (token != JsonToken.VALUE_NUMBER_INT) {
+                throw ctxt.wrongTokenException(json, JsonToken.VALUE_NUMBER_INT, "");
+            }
+            long sessionId = json.getLongValue();
+            token = json.nextToken();
+            if (token != JsonToken.VALUE_NUMBER_INT) {
+                throw ctxt.wrongTokenException(json, JsonToken.VALUE_NUMBER_INT, "");
+            }
+            int micros = json.getIntValue();
+            json.clearCurrentToken();
+            SessionEvent value = new SessionEvent(kind, sessionId, micros);
+            return value;
+        }
+    }
+}
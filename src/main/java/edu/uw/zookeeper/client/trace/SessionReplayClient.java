@@ -0,0 +1,45 @@
+package edu.uw.zookeeper.client.trace;
+
+import com.google.common.util.concurrent.Service;
+
+import edu.uw.zookeeper.ZooKeeperApplication;
+import edu.uw.zookeeper.common.Application;
+import edu.uw.zookeeper.common.ServiceApplication;
+import edu.uw.zookeeper.common.ServiceMonitor;
+
+public class SessionReplayClient extends ZooKeeperApplication.ForwardingApplication {
+
+    public static void main(String[] args) {
+        ZooKeeperApplication.main(args, new MainBuilder());
+    }
+
+    protected SessionReplayClient(Application delegate) {
+        super(delegate);
+    }
+
+    protected static class MainBuilder extends ZooKeeperApplication.ForwardingBuilder<SessionReplayClient, SessionReplayClientBuilder, MainBuilder> {
+        
+        public MainBuilder() {
+            this(SessionReplayClientBuilder.defaults());
+        }
+
+        public MainBuilder(
+                SessionReplayClientBuilder delegate) {
+            super(delegate);
+        }
+
+        @Override
+        protected MainBuilder newInstance(SessionReplayClientBuilder delegate) {
+            return new MainBuilder(delegate);
+        }
+
+        @Override
+        protected SessionReplayClient doBuild() {
+            ServiceMonitor monitor = getRuntimeModule().getServiceMonitor();
+            for (Service service: delegate.build()) {
+                monitor.add(service);
+            }
+            return new SessionReplayClient(ServiceApplication.forService(monitor));
+        }
+    }
+}
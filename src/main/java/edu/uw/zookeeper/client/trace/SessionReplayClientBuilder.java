@@ -0,0 +1,190 @@
+package edu.uw.zookeeper.client.trace;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Function;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Service;
+import com.typesafe.config.ConfigValueType;
+
+import edu.uw.zookeeper.client.ClientExecutor;
+import edu.uw.zookeeper.client.ConnectionClientExecutorsService;
+import edu.uw.zookeeper.client.LimitOutstandingClient;
+import edu.uw.zookeeper.common.Configurable;
+import edu.uw.zookeeper.common.Configuration;
+import edu.uw.zookeeper.common.Factory;
+import edu.uw.zookeeper.common.RunnableService;
+import edu.uw.zookeeper.common.RuntimeModule;
+import edu.uw.zookeeper.protocol.Operation;
+import edu.uw.zookeeper.protocol.client.ClientConnectionFactoryBuilder;
+import edu.uw.zookeeper.protocol.client.ConnectionClientExecutor;
+
+/**
+ * Replays each session of the input trace on its own connection.
+ */
+public class SessionReplayClientBuilder extends Tracing.TraceWritingBuilder<List<Service>, SessionReplayClientBuilder> {
+
+    public static SessionReplayClientBuilder defaults() {
+        return new SessionReplayClientBuilder(
+                null, null, null, null, null);
+    }
+    
+    @Configurable(path="trace", arg="threads", key="replayThreads", value="8", type=ConfigValueType.NUMBER, help="threads submitting replayed sessions")
+    public static class ConfigurableReplayThreads implements Function<Configuration, Integer> {
+
+        public static Integer get(Configuration configuration) {
+            return new ConfigurableReplayThreads().apply(configuration);
+        }
+
+        @Override
+        public Integer apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getInt(configurable.key());
+        }   
+    }
+
+    protected final Logger logger = LogManager.getLogger(getClass());
+    protected final ConnectionClientExecutorsService.OperationBuilder connectionBuilder;
+    
+    protected SessionReplayClientBuilder(
+            ConnectionClientExecutorsService.OperationBuilder connectionBuilder,
+            TraceWriterBuilder writerBuilder,
+            TraceEventPublisherService tracePublisher, 
+            ObjectMapper mapper,
+            RuntimeModule runtime) {
+        super(writerBuilder, tracePublisher, mapper, runtime);
+        this.connectionBuilder = connectionBuilder;
+    }
+
+    public ConnectionClientExecutorsService.OperationBuilder getConnectionBuilder() {
+        return connectionBuilder;
+    }
+
+    public SessionReplayClientBuilder setConnectionBuilder(ConnectionClientExecutorsService.OperationBuilder connectionBuilder) {
+        if (this.connectionBuilder == connectionBuilder) {
+            return this;
+        } else {
+            return newInstance(connectionBuilder, writerBuilder, tracePublisher, mapper, runtime);
+        }
+    }
+
+    @Override
+    public SessionReplayClientBuilder setDefaults() {
+        SessionReplayClientBuilder builder = super.setDefaults();
+        if (this == builder) {
+            if (connectionBuilder == null) {
+                return setConnectionBuilder(getDefaultConnectionBuilder()).setDefaults();
+            }
+            ConnectionClientExecutorsService.OperationBuilder connectionBuilder = this.connectionBuilder.setDefaults();
+            if (this.connectionBuilder != connectionBuilder) {
+                return setConnectionBuilder(connectionBuilder).setDefaults();
+            }
+        }
+        return builder;
+    }
+
+    @Override
+    protected SessionReplayClientBuilder newInstance(
+            TraceWriterBuilder writerBuilder,
+            TraceEventPublisherService tracePublisher, 
+            ObjectMapper mapper,
+            RuntimeModule runtime) {
+        return newInstance(connectionBuilder, writerBuilder, tracePublisher, mapper, runtime);
+    }
+    
+    protected SessionReplayClientBuilder newInstance(
+            ConnectionClientExecutorsService.OperationBuilder connectionBuilder,
+            TraceWriterBuilder writerBuilder,
+            TraceEventPublisherService tracePublisher, 
+            ObjectMapper mapper,
+            RuntimeModule runtime) {
+        return new SessionReplayClientBuilder(connectionBuilder, writerBuilder, tracePublisher, mapper, runtime);
+    }
+    
+    @Override
+    protected List<Service> doBuild() {
+        List<Service> services = Lists.newArrayList();
+        services.add(getTracePublisher());
+        services.addAll(getConnectionBuilder().build());
+        services.add(RunnableService.create(getDefaultRunnable()));
+        return services;
+    }
+    
+    protected ClientConnectionFactoryBuilder getDefaultClientConnectionFactoryBuilder() {
+        return ClientConnectionFactoryBuilder.defaults()
+                .setCodecFactory(
+                        new Factory<ProtocolTracingCodec>() {
+                            @Override
+                            public ProtocolTracingCodec get() {
+                                return ProtocolTracingCodec.defaults(getTracePublisher().getPublisher());
+                            }
+                        })
+                .setRuntimeModule(getRuntimeModule())
+                .setDefaults();
+    }
+    
+    protected ConnectionClientExecutorsService.OperationBuilder getDefaultConnectionBuilder() {
+        return ConnectionClientExecutorsService.builder()
+                .setConnectionBuilder(getDefaultClientConnectionFactoryBuilder())
+                .setRuntimeModule(getRuntimeModule())
+                .setDefaults(); 
+    }
+    
+    protected Iterator<ProtocolRequestEvent> getDefaultRequestEvents() {
+        if (getRuntimeModule().getConfiguration().getArguments().helpOptionSet()) {
+            return Collections.<ProtocolRequestEvent>emptyIterator();
+        }
+        File file = Tracing.getTraceInputFileConfiguration(getRuntimeModule().getConfiguration());
+        logger.info("Trace input: {}", file);
+        try {
+            return TraceRequestIterator.from(ReadAheadTraceEventIterator.forConfiguration(
+                    getRuntimeModule().getConfiguration(), file, getObjectMapper().reader()));
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+    
+    /**
+     * Open-loop sessions aren't limited by outstanding requests.
+     */
+    protected Factory<? extends ClientExecutor<? super Operation.Request, ?, ?>> getDefaultSessionFactory(final boolean openLoop) {
+        final int outstanding = LimitOutstandingClient.ConfigurableLimit.get(getRuntimeModule().getConfiguration());
+        return new Factory<ClientExecutor<? super Operation.Request, ?, ?>>() {
+            @Override
+            public ClientExecutor<? super Operation.Request, ?, ?> get() {
+                ConnectionClientExecutor<Operation.Request,?,?,?> connection;
+                try {
+                    connection = getConnectionBuilder().getConnectionClientExecutors().get().get();
+                } catch (Exception e) {
+                    throw Throwables.propagate(e);
+                }
+                if (openLoop) {
+                    return connection;
+                } else {
+                    return LimitOutstandingClient.create(outstanding, connection);
+                }
+            }
+        };
+    }
+    
+    protected Runnable getDefaultRunnable() {
+        Configuration configuration = getRuntimeModule().getConfiguration();
+        double speed = TraceIteratingClientBuilder.ReplaySpeedConfiguration.get(configuration).doubleValue();
+        return SessionReplayer.create(
+                getDefaultRequestEvents(), 
+                getDefaultSessionFactory(speed > 0.0), 
+                ConfigurableReplayThreads.get(configuration).intValue(), 
+                speed);
+    }
+}
@@ -0,0 +1,242 @@
+package edu.uw.zookeeper.client.trace;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import edu.uw.zookeeper.client.ClientExecutor;
+import edu.uw.zookeeper.common.Factory;
+import edu.uw.zookeeper.protocol.Operation;
+import edu.uw.zookeeper.protocol.proto.Records;
+
+/**
+ * Replays each session of a trace on its own connection.
+ * 
+ * The trace is read once and demultiplexed by session id. 
+ * Sessions are assigned round-robin, in order of first appearance, 
+ * to a fixed pool of threads, and each thread submits the requests 
+ * of its sessions in trace order, so per-session order is preserved.
+ * 
+ * If speed is positive, each request is submitted at its recorded offset 
+ * divided by speed, and schedule lag is logged as with OpenLoopSubmitter;
+ * otherwise requests are submitted as fast as the session clients allow.
+ */
+public class SessionReplayer implements Runnable {
+
+    public static SessionReplayer create(
+            Iterator<ProtocolRequestEvent> requests,
+            Factory<? extends ClientExecutor<? super Operation.Request, ?, ?>> sessions,
+            int threads,
+            double speed) {
+        return new SessionReplayer(requests, sessions, threads, speed, LogManager.getLogger(SessionReplayer.class));
+    }
+    
+    public static final int QUEUE_CAPACITY = 1024;
+    
+    protected final Logger logger;
+    protected final Iterator<ProtocolRequestEvent> requests;
+    protected final Factory<? extends ClientExecutor<? super Operation.Request, ?, ?>> sessions;
+    protected final int threads;
+    protected final double speed;
+    protected final LatencyHistogram lag;
+    
+    public SessionReplayer(
+            Iterator<ProtocolRequestEvent> requests,
+            Factory<? extends ClientExecutor<? super Operation.Request, ?, ?>> sessions,
+            int threads,
+            double speed,
+            Logger logger) {
+        checkArgument(threads > 0);
+        checkArgument(speed >= 0.0);
+        this.logger = logger;
+        this.requests = requests;
+        this.sessions = sessions;
+        this.threads = threads;
+        this.speed = speed;
+        this.lag = LatencyHistogram.create();
+    }
+    
+    public boolean isOpenLoop() {
+        return speed > 0.0;
+    }
+
+    @Override
+    public void run() {
+        ExecutorService executor = Executors.newFixedThreadPool(
+                threads, 
+                new ThreadFactoryBuilder().setNameFormat("replay-%d").setDaemon(true).build());
+        try {
+            List<Worker> workers = Lists.newArrayListWithCapacity(threads);
+            for (int i=0; i<threads; ++i) {
+                Worker worker = new Worker();
+                worker.future = executor.submit(worker);
+                workers.add(worker);
+            }
+            
+            Map<Long, Worker> assigned = Maps.newHashMap();
+            long base = ProtocolRequestEvent.UNKNOWN;
+            long offset = 0L;
+            long count = 0L;
+            long start = System.nanoTime();
+            Exception failure = null;
+            try {
+                while (requests.hasNext()) {
+                    ProtocolRequestEvent next = requests.next();
+                    Long session = Long.valueOf(next.getSessionId());
+                    Worker worker = assigned.get(session);
+                    if (worker == null) {
+                        worker = workers.get(assigned.size() % workers.size());
+                        assigned.put(session, worker);
+                    }
+                    if (isOpenLoop() && next.hasNanos()) {
+                        if (base == ProtocolRequestEvent.UNKNOWN) {
+                            base = next.getNanos();
+                        }
+                        offset = (long) ((next.getNanos() - base) / speed);
+                    }
+                    worker.put(new Request(next.getSessionId(), start + offset, next.getRequest().record()));
+                    ++count;
+                }
+            } catch (Exception e) {
+                failure = e;
+            }
+            // every worker is ended, without masking the failure that ended the replay
+            boolean interrupted = false;
+            for (Worker worker: workers) {
+                try {
+                    worker.put(Request.END);
+                } catch (Exception e) {
+                    if (e instanceof InterruptedException) {
+                        interrupted = true;
+                    }
+                    if (failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            for (Worker worker: workers) {
+                worker.future.get();
+            }
+            logger.info("Replayed {} requests of {} sessions on {} threads", count, assigned.size(), threads);
+        } catch (Exception e) {
+            throw Throwables.propagate(e);
+        } finally {
+            executor.shutdownNow();
+            if (isOpenLoop()) {
+                LatencyHistogram.Snapshot lags = lag.getAndReset();
+                logger.info("Schedule lag (us): count={} p50={} p99={} p99.9={} max={}", 
+                        lags.count(), 
+                        lags.valueAtPercentile(50.0), 
+                        lags.valueAtPercentile(99.0), 
+                        lags.valueAtPercentile(99.9), 
+                        lags.max());
+            }
+        }
+    }
+    
+    protected ListenableFuture<?> submit(
+            ClientExecutor<? super Operation.Request, ?, ?> client,
+            long sessionId,
+            Records.Request request) {
+        return client.submit(request);
+    }
+    
+    protected static final class Request {
+        
+        public static final Request END = new Request(0L, 0L, null);
+        
+        public final long sessionId;
+        public final long nanos;
+        public final Records.Request request;
+        
+        public Request(long sessionId, long nanos, Records.Request request) {
+            this.sessionId = sessionId;
+            this.nanos = nanos;
+            this.request = request;
+        }
+    }
+    
+    protected final class Worker implements Runnable {
+
+        protected final BlockingQueue<Request> queue;
+        protected final Map<Long, ClientExecutor<? super Operation.Request, ?, ?>> clients;
+        protected final Map<Long, ListenableFuture<?>> last;
+        protected Future<?> future;
+        
+        public Worker() {
+            this.queue = new ArrayBlockingQueue<Request>(QUEUE_CAPACITY);
+            this.clients = Maps.newHashMap();
+            this.last = Maps.newHashMap();
+            this.future = null;
+        }
+        
+        /**
+         * Blocks while the queue is full, unless this worker has failed.
+         */
+        public void put(Request request) throws Exception {
+            while (! queue.offer(request, 1L, TimeUnit.SECONDS)) {
+                if (future.isDone()) {
+                    future.get();
+                    throw new IllegalStateException();
+                }
+            }
+        }
+        
+        @Override
+        public void run() {
+            try {
+                Request next;
+                while ((next = queue.take()) != Request.END) {
+                    Long session = Long.valueOf(next.sessionId);
+                    ClientExecutor<? super Operation.Request, ?, ?> client = clients.get(session);
+                    if (client == null) {
+                        client = sessions.get();
+                        clients.put(session, client);
+                    }
+                    if (isOpenLoop()) {
+                        long now = System.nanoTime();
+                        while (now < next.nanos) {
+                            long remaining = next.nanos - now;
+                            if (remaining > OpenLoopSubmitter.SPIN_NANOS) {
+                                TimeUnit.NANOSECONDS.sleep(remaining - OpenLoopSubmitter.SPIN_NANOS);
+                            }
+                            now = System.nanoTime();
+                        }
+                        lag.record(TimeUnit.NANOSECONDS.toMicros(now - next.nanos));
+                    }
+                    last.put(session, submit(client, next.sessionId, next.request));
+                }
+                for (ListenableFuture<?> future: last.values()) {
+                    future.get();
+                }
+            } catch (Exception e) {
+                throw Throwables.propagate(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package edu.uw.zookeeper.client.trace;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Counter spread over padded cells selected by thread,
+ * so that concurrent increments don't contend on one cache line.
+ *
+ * Each cell also holds the epoch it counts for, so that an increment
+ * against an epoch that was already summed fails rather than being
+ * counted in the next epoch.
+ */
+public final class StripedCounter {
+
+    public static final int DEFAULT_STRIPES = Runtime.getRuntime().availableProcessors() * 2;
+
+    // 128 bytes between cells
+    private static final int PADDING = 16;
+
+    public static StripedCounter create() {
+        return create(DEFAULT_STRIPES, 0);
+    }
+
+    public static StripedCounter create(int stripes, int epoch) {
+        int n = (stripes <= 1) ? 1 : (Integer.highestOneBit(stripes - 1) << 1);
+        return new StripedCounter(n, epoch);
+    }
+
+    private final int mask;
+    // epoch in the high half, count in the low half
+    private final AtomicLongArray cells;
+
+    private StripedCounter(int stripes, int epoch) {
+        this.mask = stripes - 1;
+        this.cells = new AtomicLongArray((stripes + 1) * PADDING);
+        for (int i=PADDING; i<cells.length(); i+=PADDING) {
+            cells.set(i, (long) epoch << 32);
+        }
+    }
+
+    public int epoch() {
+        return (int) (cells.get(PADDING) >>> 32);
+    }
+
+    /**
+     * @return false if the counter has moved past the given epoch
+     */
+    public boolean increment(int epoch) {
+        int i = cell();
+        while (true) {
+            long value = cells.get(i);
+            if ((int) (value >>> 32) != epoch) {
+                return false;
+            }
+            if (cells.compareAndSet(i, value, value + 1L)) {
+                return true;
+            }
+        }
+    }
+
+    public long sum() {
+        long sum = 0L;
+        for (int i=PADDING; i<cells.length(); i+=PADDING) {
+            sum += cells.get(i) & 0xffffffffL;
+        }
+        return sum;
+    }
+
+    /**
+     * Sums the current epoch and starts the given one.
+     *
+     * Increments concurrent with this call are either summed now
+     * or fail, so none are carried into the next epoch.
+     */
+    public long sumThenAdvance(int epoch) {
+        long next = (long) epoch << 32;
+        long sum = 0L;
+        for (int i=PADDING; i<cells.length(); i+=PADDING) {
+            sum += cells.getAndSet(i, next) & 0xffffffffL;
+        }
+        return sum;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("epoch", epoch())
+                .add("sum", sum())
+                .toString();
+    }
+
+    private int cell() {
+        return ((((int) Thread.currentThread().getId()) & mask) + 1) * PADDING;
+    }
+}
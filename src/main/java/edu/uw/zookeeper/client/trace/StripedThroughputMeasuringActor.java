@@ -0,0 +1,367 @@
+package edu.uw.zookeeper.client.trace;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+
+import edu.uw.zookeeper.common.Actor;
+import edu.uw.zookeeper.common.Configuration;
+import edu.uw.zookeeper.protocol.Operation;
+import edu.uw.zookeeper.protocol.proto.OpCode;
+
+/**
+ * Emits the same series as ThroughputMeasuringActor without locking per operation.
+ * 
+ * Operations are counted in striped counters for the interval of their response,
+ * with intervals starting at the origin shared with the other measuring actors.
+ * Intervals are completed by a scheduled tick half an interval after they end,
+ * so that operations published late are usually still counted in the right interval.
+ * 
+ * Only SLOTS intervals are open at once. An operation published after
+ * its interval was completed is counted in the oldest open interval:
+ * each slot holds the index of the interval it counts, so an increment
+ * that races with the tick completing its interval is either summed
+ * by the tick or moves on, and is never more than one interval late.
+ * An operation past the newest open interval, as after the tick stopped,
+ * first completes the intervals before it.
+ * 
+ * The tick stops once no operation is counted in an open interval,
+ * so that no empty intervals are emitted after the last operation;
+ * the next operation schedules it again.
+ * 
+ * By operation, each completed interval is also followed by one
+ * OperationThroughputEvent for every opcode and error code seen so far.
+ */
+public class StripedThroughputMeasuringActor implements Actor<TraceEvent>, OperationTimingListener {
+
+    public static StripedThroughputMeasuringActor create(
+            Configuration configuration,
+            ScheduledExecutorService scheduler,
+            Actor<? super TraceEvent> delegate) {
+        int interval = (int) ThroughputMeasuringActor.ConfigurableThroughputInterval.get(configuration).value(TimeUnit.MILLISECONDS);
+        return create(interval, scheduler, delegate);
+    }
+    
+    public static StripedThroughputMeasuringActor create(
+            Configuration configuration,
+            boolean byOperation,
+            ScheduledExecutorService scheduler,
+            Actor<? super TraceEvent> delegate) {
+        return create(configuration, byOperation, MeasurementOrigin.create(), scheduler, delegate);
+    }
+    
+    public static StripedThroughputMeasuringActor create(
+            Configuration configuration,
+            boolean byOperation,
+            MeasurementOrigin origin,
+            ScheduledExecutorService scheduler,
+            Actor<? super TraceEvent> delegate) {
+        int interval = (int) ThroughputMeasuringActor.ConfigurableThroughputInterval.get(configuration).value(TimeUnit.MILLISECONDS);
+        return create(interval, byOperation, origin, scheduler, delegate);
+    }
+    
+    public static StripedThroughputMeasuringActor create(
+            int interval,
+            ScheduledExecutorService scheduler,
+            Actor<? super TraceEvent> delegate) {
+        return create(interval, false, scheduler, delegate);
+    }
+    
+    public static StripedThroughputMeasuringActor create(
+            int interval,
+            boolean byOperation,
+            ScheduledExecutorService scheduler,
+            Actor<? super TraceEvent> delegate) {
+        return create(interval, byOperation, MeasurementOrigin.create(), scheduler, delegate);
+    }
+    
+    public static StripedThroughputMeasuringActor create(
+            int interval,
+            boolean byOperation,
+            MeasurementOrigin origin,
+            ScheduledExecutorService scheduler,
+            Actor<? super TraceEvent> delegate) {
+        return new StripedThroughputMeasuringActor(interval, byOperation, origin, scheduler, delegate);
+    }
+    
+    protected static final int SLOTS = 4;
+
+    protected final long interval;
+    protected final ScheduledExecutorService scheduler;
+    protected final Actor<? super TraceEvent> delegate;
+    protected final StripedCounter[] counts;
+    protected final boolean byOperation;
+    // keyed by opcode and error code
+    protected final ConcurrentMap<Long, StripedCounter[]> operations;
+    protected final MeasurementOrigin origin;
+    protected final AtomicBoolean started;
+    protected final AtomicBoolean ticking;
+    // index of the oldest open interval
+    protected volatile long completed;
+    protected ScheduledFuture<?> tick;
+    
+    public StripedThroughputMeasuringActor(
+            int interval,
+            boolean byOperation,
+            MeasurementOrigin origin,
+            ScheduledExecutorService scheduler,
+            Actor<? super TraceEvent> delegate) {
+        this.interval = TimeUnit.NANOSECONDS.convert(interval, TimeUnit.MILLISECONDS);
+        this.scheduler = scheduler;
+        this.delegate = delegate;
+        this.counts = newSlots(0L);
+        this.byOperation = byOperation;
+        this.operations = Maps.newConcurrentMap();
+        this.origin = origin;
+        this.started = new AtomicBoolean(false);
+        this.ticking = new AtomicBoolean(false);
+        this.completed = 0L;
+        this.tick = null;
+    }
+    
+    @Override
+    public void run() {
+        delegate.run();
+    }
+
+    @Override
+    public State state() {
+        return delegate.state();
+    }
+
+    @Override
+    public boolean send(TraceEvent message) {
+        if (message instanceof OperationEvent) {
+            OperationEvent operation = (OperationEvent) message;
+            if ((operation.getRequest() != null) && (operation.getResponse() != null) && (operation.getRequest().record().opcode() != OpCode.CLOSE_SESSION)) {
+                int error = (operation.getResponse().record() instanceof Operation.Error) ?
+                        ((Operation.Error) operation.getResponse().record()).error().intValue() :
+                            0;
+                count(operation.getRequest().record().opcode(), error, operation.getRequestNanos(), operation.getResponseNanos());
+            }
+        }
+        return delegate.send(message);
+    }
+
+    /**
+     * Forwards to the delegate if it is also a listener.
+     */
+    @Override
+    public void handleOperationTiming(long sessionId, OpCode opcode, int error,
+            long requestNanos, long responseNanos) {
+        if ((responseNanos != OperationEvent.TIMEOUT) && (opcode != OpCode.CLOSE_SESSION)) {
+            count(opcode, error, requestNanos, responseNanos);
+        }
+        if (delegate instanceof OperationTimingListener) {
+            ((OperationTimingListener) delegate).handleOperationTiming(sessionId, opcode, error, requestNanos, responseNanos);
+        }
+    }
+
+    @Override
+    public boolean stop() {
+        synchronized (this) {
+            if (tick != null) {
+                tick.cancel(false);
+                tick = null;
+            }
+            ticking.set(false);
+            if (started.get()) {
+                ImmutableList.Builder<TraceEvent> events = ImmutableList.builder();
+                long origin = this.origin.get();
+                long now = System.nanoTime();
+                complete(origin, now, events);
+                long index = completed;
+                completed = 0L;
+                long nanos = now - (origin + index * interval);
+                long count = advance(counts, index, SLOTS, true);
+                ImmutableList.Builder<TraceEvent> series = ImmutableList.builder();
+                completeOperations(index, SLOTS, true, nanos, series);
+                if (count > 0L) {
+                    events.add(ThroughputMeasurementEvent.fromNanos((int) count, nanos));
+                    events.addAll(series.build());
+                }
+                started.set(false);
+                publish(events.build());
+            }
+        }
+        return delegate.stop();
+    }
+    
+    protected void count(OpCode opcode, int error, long requestNanos, long responseNanos) {
+        long origin = this.origin.get(requestNanos);
+        if (! started.get()) {
+            started.set(true);
+        }
+        // intervals are closed at the end, as in ThroughputMeasuringActor
+        long duration = responseNanos - origin;
+        long index = (duration <= 0L) ? 0L : ((duration - 1L) / interval);
+        if (index >= completed + SLOTS) {
+            catchUp(origin, index);
+        }
+        index = increment(counts, index);
+        if (byOperation) {
+            // may be one interval later than the aggregate if its slot was just completed
+            increment(slots(Long.valueOf(((long) opcode.intValue() << 32) | (error & 0xffffffffL))), index);
+        }
+        if (! ticking.get() && ticking.compareAndSet(false, true)) {
+            schedule();
+        }
+    }
+    
+    /**
+     * Counts in the given interval if it is still open,
+     * and otherwise in the oldest open interval.
+     * 
+     * @return the interval counted in
+     */
+    protected long increment(StripedCounter[] slots, long index) {
+        while (true) {
+            long oldest = completed;
+            index = Math.min(Math.max(index, oldest), oldest + SLOTS - 1);
+            // fails if the slot was completed, or isn't yet open for the newest interval
+            if (slots[(int) (index % SLOTS)].increment((int) index)) {
+                return index;
+            }
+        }
+    }
+    
+    protected StripedCounter[] slots(Long key) {
+        StripedCounter[] slots = operations.get(key);
+        if (slots == null) {
+            // under the lock, so that the slots start at the open intervals
+            synchronized (this) {
+                slots = operations.get(key);
+                if (slots == null) {
+                    slots = newSlots(completed);
+                    operations.put(key, slots);
+                }
+            }
+        }
+        return slots;
+    }
+    
+    /**
+     * Completes the intervals before the newest open interval that includes the given one.
+     */
+    protected synchronized void catchUp(long origin, long index) {
+        ImmutableList.Builder<TraceEvent> events = ImmutableList.builder();
+        complete(origin, origin + (index - SLOTS + 1L) * interval, events);
+        publish(events.build());
+    }
+    
+    protected synchronized void schedule() {
+        if ((tick == null) && !scheduler.isShutdown()) {
+            tick = scheduler.scheduleAtFixedRate(
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            tick();
+                        }
+                    }, 
+                    interval + interval / 2, interval, TimeUnit.NANOSECONDS);
+        }
+    }
+    
+    protected synchronized void tick() {
+        if (! started.get()) {
+            return;
+        }
+        ImmutableList.Builder<TraceEvent> events = ImmutableList.builder();
+        complete(origin.get(), System.nanoTime() - interval / 2, events);
+        if (isIdle()) {
+            if (tick != null) {
+                tick.cancel(false);
+                tick = null;
+            }
+            ticking.set(false);
+            // an operation counted before ticking was cleared didn't schedule
+            if (! isIdle() && ticking.compareAndSet(false, true)) {
+                schedule();
+            }
+        }
+        publish(events.build());
+    }
+    
+    /**
+     * @return true if no operation is counted in an open interval
+     */
+    protected boolean isIdle() {
+        for (StripedCounter slot: counts) {
+            if (slot.sum() > 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Completes every open interval that ended by the given time.
+     */
+    protected void complete(long origin, long nanos, ImmutableList.Builder<TraceEvent> events) {
+        assert (Thread.holdsLock(this));
+        while (origin + (completed + 1L) * interval <= nanos) {
+            // open the next interval first, so that an increment
+            // failing against the completed slot moves on to it
+            long index = completed;
+            completed = index + 1L;
+            long count = advance(counts, index, 1, false);
+            events.add(ThroughputMeasurementEvent.fromNanos((int) count, interval));
+            completeOperations(index, 1, false, interval, events);
+        }
+    }
+    
+    /**
+     * Sums the given number of intervals from the given one for each operation.
+     */
+    protected void completeOperations(long index, int intervals, boolean reset, long nanos, ImmutableList.Builder<TraceEvent> events) {
+        assert (Thread.holdsLock(this));
+        if (! byOperation) {
+            return;
+        }
+        int millis = (int) ((nanos <= 0L) ? nanos : TimeUnit.NANOSECONDS.toMillis(nanos));
+        for (Map.Entry<Long, StripedCounter[]> entry: operations.entrySet()) {
+            long count = advance(entry.getValue(), index, intervals, reset);
+            long key = entry.getKey().longValue();
+            events.add(OperationThroughputEvent.create((int) (key >> 32), (int) key, (int) count, millis));
+        }
+    }
+    
+    protected void publish(ImmutableList<TraceEvent> events) {
+        assert (Thread.holdsLock(this));
+        // under the lock, so that intervals are sent in order
+        for (TraceEvent event: events) {
+            delegate.send(event);
+        }
+    }
+    
+    /**
+     * Slots for the SLOTS intervals from the given one.
+     */
+    protected static StripedCounter[] newSlots(long index) {
+        StripedCounter[] slots = new StripedCounter[SLOTS];
+        for (long i=index; i<index+SLOTS; ++i) {
+            slots[(int) (i % SLOTS)] = StripedCounter.create(StripedCounter.DEFAULT_STRIPES, (int) i);
+        }
+        return slots;
+    }
+    
+    /**
+     * Sums the slots of the given number of intervals from the given one,
+     * and opens each for the interval SLOTS later, or after a reset
+     * for its interval from the start.
+     */
+    protected static long advance(StripedCounter[] slots, long index, int intervals, boolean reset) {
+        long count = 0L;
+        for (long i=index; i<index+intervals; ++i) {
+            int slot = (int) (i % SLOTS);
+            count += slots[slot].sumThenAdvance(reset ? slot : (int) (i + SLOTS));
+        }
+        return count;
+    }
+}
@@ -1,7 +1,12 @@
 package edu.uw.zookeeper.client.trace;
 
+import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import net.engio.mbassy.bus.BusFactory;
 
@@ -10,8 +15,10 @@ import org.apache.logging.log4j.Logger;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Function;
+import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -136,8 +143,11 @@ public class ThroughputClientsBuilder extends Tracing.TraceWritingBuilder<List<S
     protected TraceHeader getDefaultTraceHeader() {
         return TraceHeader.create(
                 Tracing.getTraceDescription(getRuntimeModule().getConfiguration()), 
-                TraceEventTag.TIMESTAMP_EVENT, 
-                TraceEventTag.THROUGHPUT_MEASUREMENT_EVENT);
+                ImmutableSet.of(
+                    TraceEventTag.TIMESTAMP_EVENT, 
+                    TraceEventTag.THROUGHPUT_MEASUREMENT_EVENT,
+                    TraceEventTag.SESSION_EVENT),
+                MeasurementWindow.fromConfiguration(getRuntimeModule().getConfiguration()));
     }
     
     @SuppressWarnings("unchecked")
@@ -151,24 +161,38 @@ public class ThroughputClientsBuilder extends Tracing.TraceWritingBuilder<List<S
                 return types.contains(input.getTag());
             }
         };
-        Actor<TraceEvent> actor = ThroughputMeasuringActor.create(
+        Actor<TraceEvent> actor = StripedThroughputMeasuringActor.create(
                     getRuntimeModule().getConfiguration(),
+                    getRuntimeModule().getExecutors().get(ScheduledExecutorService.class),
                     FilteringTraceEventActor.create(
                             filter, writer));
         return TraceEventPublisherService.newInstance(
                 BusFactory.SynchronousOnly(), 
-                actor);
+                AsyncTraceEventActor.forConfiguration(
+                        getRuntimeModule().getConfiguration(), actor));
     }
     
     protected ClientConnectionFactoryBuilder getDefaultClientConnectionFactoryBuilder() {
-        return ClientConnectionFactoryBuilder.defaults()
-                .setCodecFactory(
-                        new Factory<OperationTracingCodec>() {
-                            @Override
-                            public OperationTracingCodec get() {
-                                return OperationTracingCodec.defaults(getTracePublisher().getPublisher());
-                            }
-                        })
+        ClientConnectionFactoryBuilder builder = ClientConnectionFactoryBuilder.defaults();
+        if (MeasuringClientBuilder.TimingCodecConfiguration.get(getRuntimeModule().getConfiguration())
+                && (getTracePublisher().getWriter() instanceof OperationTimingListener)) {
+            builder = builder.setCodecFactory(
+                    new Factory<OperationTimingCodec>() {
+                        @Override
+                        public OperationTimingCodec get() {
+                            return OperationTimingCodec.defaults((OperationTimingListener) getTracePublisher().getWriter());
+                        }
+                    });
+        } else {
+            builder = builder.setCodecFactory(
+                    new Factory<OperationTracingCodec>() {
+                        @Override
+                        public OperationTracingCodec get() {
+                            return OperationTracingCodec.defaults(getTracePublisher().getPublisher());
+                        }
+                    });
+        }
+        return builder
                 .setRuntimeModule(getRuntimeModule())
                 .setDefaults();
     }
@@ -186,9 +210,17 @@ public class ThroughputClientsBuilder extends Tracing.TraceWritingBuilder<List<S
     }
     
     protected Runnable getDefaultRunnable() {
+        if (! LoadSweep.ConfigurableRates.get(getRuntimeModule().getConfiguration()).isEmpty()) {
+            return getSweepRunnable();
+        }
+        Optional<String> arrival = ArrivalProcess.ArrivalConfiguration.get(getRuntimeModule().getConfiguration());
+        if (arrival.isPresent()) {
+            return getOpenLoopRunnable(arrival.get());
+        }
         final int nclients = ConfigurableClients.get(getRuntimeModule().getConfiguration());
         final int outstanding = LimitOutstandingClient.ConfigurableLimit.get(getRuntimeModule().getConfiguration());
-        final int iterations = CountingGenerator.ConfigurableIterations.get(getRuntimeModule().getConfiguration());
+        final MeasurementWindow window = getDefaultTraceHeader().getWindow();
+        final int iterations = window.isBounded() ? Integer.MAX_VALUE : CountingGenerator.ConfigurableIterations.get(getRuntimeModule().getConfiguration());
         final int logInterval = 0;
         final Generator<? extends Records.Request> generator = getDefaultRequestGenerator();
         final ListeningExecutorService executor = getRuntimeModule().getExecutors().get(ListeningExecutorService.class);
@@ -197,10 +229,7 @@ public class ThroughputClientsBuilder extends Tracing.TraceWritingBuilder<List<S
             @Override
             public void run() {
                 try {
-                    List<ConnectionClientExecutor<Operation.Request,?,?,?>> executors = Lists.newArrayListWithCapacity(nclients);
-                    for (int i=0; i<nclients; ++i) {
-                        executors.add(connectionBuilder.getConnectionClientExecutors().get().get());
-                    }
+                    List<ConnectionClientExecutor<Operation.Request,?,?,?>> executors = connectClients(nclients);
                     
                     List<IteratingClient> clients = Lists.newArrayListWithCapacity(executors.size());
                     for (ConnectionClientExecutor<Operation.Request, ?, ?, ?> e: executors) {
@@ -220,17 +249,97 @@ public class ThroughputClientsBuilder extends Tracing.TraceWritingBuilder<List<S
                         clients.add(client);
                     }
                     
-                    List<ListenableFuture<?>> futures = Lists.newArrayListWithCapacity(clients.size());
+                    final List<ListenableFuture<?>> futures = Lists.newArrayListWithCapacity(clients.size());
                     for (IteratingClient e: clients) {
                         futures.add(e);
                         executor.execute(e);
                     }
                     
-                    Futures.allAsList(futures).get();
+                    if (window.isBounded()) {
+                        // timed from starting the connected clients, just before the first operation
+                        getRuntimeModule().getExecutors().get(ScheduledExecutorService.class).schedule(new Runnable() {
+                            @Override
+                            public void run() {
+                                for (ListenableFuture<?> e: futures) {
+                                    e.cancel(true);
+                                }
+                            }
+                        }, window.getRunMillis(), TimeUnit.MILLISECONDS);
+                        for (ListenableFuture<?> e: futures) {
+                            try {
+                                e.get();
+                            } catch (CancellationException cancelled) {
+                                // ended with the window
+                            }
+                        }
+                    } else {
+                        Futures.allAsList(futures).get();
+                    }
+                } catch (Exception e) {
+                    throw Throwables.propagate(e);
+                }
+            }
+        };
+    }
+    
+    /**
+     * One schedule at the full arrival rate, spread round-robin across clients.
+     */
+    protected Runnable getOpenLoopRunnable(final String arrival) {
+        final int nclients = ConfigurableClients.get(getRuntimeModule().getConfiguration());
+        final MeasurementWindow window = getDefaultTraceHeader().getWindow();
+        final int iterations = window.isBounded() ? 0 : CountingGenerator.ConfigurableIterations.get(getRuntimeModule().getConfiguration());
+        final Generator<? extends Records.Request> generator = getDefaultRequestGenerator();
+        logger.info("Open-loop arrivals: {} over {} clients", arrival, nclients);
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    List<ConnectionClientExecutor<Operation.Request,?,?,?>> clients = connectClients(nclients);
+                    Iterator<Pair<Long, Records.Request>> requests = ArrivalProcess.schedule(
+                            ArrivalProcess.fromString(arrival, 1.0, new Random()), 
+                            generator, 
+                            iterations);
+                    if (window.isBounded()) {
+                        requests = MeasurementWindow.until(TimeUnit.MILLISECONDS.toNanos(window.getRunMillis()), requests);
+                    }
+                    OpenLoopSubmitter.create(requests, clients).run();
+                } catch (Exception e) {
+                    throw Throwables.propagate(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Each step's offered load is spread round-robin across clients.
+     */
+    protected Runnable getSweepRunnable() {
+        final int nclients = ConfigurableClients.get(getRuntimeModule().getConfiguration());
+        final Generator<? extends Records.Request> generator = getDefaultRequestGenerator();
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    List<ConnectionClientExecutor<Operation.Request,?,?,?>> clients = connectClients(nclients);
+                    LoadSweep.fromConfiguration(
+                            getRuntimeModule().getConfiguration(), 
+                            generator, 
+                            clients).run();
                 } catch (Exception e) {
                     throw Throwables.propagate(e);
                 }
             }
         };
     }
+
+    /**
+     * Sessions are established concurrently, up to connectConcurrency at a time.
+     */
+    protected List<ConnectionClientExecutor<Operation.Request,?,?,?>> connectClients(int nclients) throws Exception {
+        return SessionConnector.create(
+                connectionBuilder.getConnectionClientExecutors(), 
+                SessionConnector.ConfigurableConcurrency.get(getRuntimeModule().getConfiguration()), 
+                getTracePublisher().getPublisher()).connect(nclients);
+    }
 }
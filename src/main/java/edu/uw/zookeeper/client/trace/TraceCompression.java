@@ -0,0 +1,179 @@
+package edu.uw.zookeeper.client.trace;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+
+/**
+ * Streaming compression of trace files.
+ * 
+ * Compression is chosen by the suffix following the format suffix 
+ * (e.g. trace.json.lz4) when writing, and detected from the leading
+ * bytes when reading.
+ */
+public enum TraceCompression {
+    NONE("", new byte[0]) {
+        @Override
+        public OutputStream compress(OutputStream output) {
+            return output;
+        }
+
+        @Override
+        public InputStream decompress(InputStream input) {
+            return input;
+        }
+    },
+    GZIP("gz", new byte[]{ (byte) 0x1f, (byte) 0x8b }) {
+        @Override
+        public OutputStream compress(OutputStream output) throws IOException {
+            // sync flush so that flushing the trace makes it readable
+            return new GZIPOutputStream(output, BLOCK_SIZE, true);
+        }
+
+        @Override
+        public InputStream decompress(InputStream input) throws IOException {
+            return new GZIPInputStream(input, BLOCK_SIZE);
+        }
+    },
+    LZ4("lz4", new byte[]{ (byte) 0x04, (byte) 0x22, (byte) 0x4d, (byte) 0x18 }) {
+        @Override
+        public OutputStream compress(OutputStream output) throws IOException {
+            return new LZ4FrameOutputStream(output, LZ4FrameOutputStream.BLOCKSIZE.SIZE_64KB);
+        }
+
+        @Override
+        public InputStream decompress(InputStream input) throws IOException {
+            return new LZ4FrameInputStream(input);
+        }
+    },
+    ZSTD("zst", new byte[]{ (byte) 0x28, (byte) 0xb5, (byte) 0x2f, (byte) 0xfd }) {
+        @Override
+        public OutputStream compress(OutputStream output) throws IOException {
+            return new ZstdOutputStream(output);
+        }
+
+        @Override
+        public InputStream decompress(InputStream input) throws IOException {
+            return new ZstdInputStream(input);
+        }
+    };
+    
+    public static final int BLOCK_SIZE = 1 << 16;
+    
+    public static TraceCompression fromString(String value) {
+        for (TraceCompression compression: values()) {
+            if (compression.suffix.equalsIgnoreCase(value) || compression.name().equalsIgnoreCase(value)) {
+                return compression;
+            }
+        }
+        throw new IllegalArgumentException(value);
+    }
+
+    public static TraceCompression forFile(File file) {
+        return forName(file.getName());
+    }
+    
+    public static TraceCompression forName(String name) {
+        int index = name.lastIndexOf('.');
+        if (index >= 0) {
+            String suffix = name.substring(index + 1);
+            for (TraceCompression compression: values()) {
+                if ((compression != NONE) && compression.suffix.equalsIgnoreCase(suffix)) {
+                    return compression;
+                }
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Sniffs the leading bytes of an existing file.
+     */
+    public static TraceCompression detect(File file) throws IOException {
+        byte[] bytes = new byte[4];
+        int length = 0;
+        InputStream input = new FileInputStream(file);
+        try {
+            int n;
+            while ((length < bytes.length) && ((n = input.read(bytes, length, bytes.length - length)) > 0)) {
+                length += n;
+            }
+        } finally {
+            input.close();
+        }
+        for (TraceCompression compression: values()) {
+            if ((compression != NONE) 
+                    && (compression.magic.length <= length)
+                    && Arrays.equals(compression.magic, Arrays.copyOf(bytes, compression.magic.length))) {
+                return compression;
+            }
+        }
+        return NONE;
+    }
+    
+    /**
+     * Opens an existing file for reading, decompressing it if necessary.
+     */
+    public static InputStream open(File file) throws IOException {
+        TraceCompression compression = detect(file);
+        InputStream input = new BufferedInputStream(new FileInputStream(file), BLOCK_SIZE);
+        try {
+            return compression.decompress(input);
+        } catch (IOException e) {
+            input.close();
+            throw e;
+        }
+    }
+    
+    private final String suffix;
+    private final byte[] magic;
+
+    private TraceCompression(String suffix, byte[] magic) {
+        this.suffix = suffix;
+        this.magic = magic;
+    }
+
+    public String suffix() {
+        return suffix;
+    }
+    
+    /**
+     * @return file with this compression suffix appended, if it doesn't already have one
+     */
+    public File withSuffix(File file) {
+        if ((this == NONE) || (forFile(file) == this)) {
+            return file;
+        }
+        return new File(file.getPath() + '.' + suffix);
+    }
+    
+    /**
+     * @return name without a compression suffix
+     */
+    public static String stripSuffix(String name) {
+        TraceCompression compression = forName(name);
+        if (compression == NONE) {
+            return name;
+        }
+        return name.substring(0, name.length() - compression.suffix.length() - 1);
+    }
+
+    /**
+     * Closing the returned stream finishes the compressed stream and closes output.
+     */
+    public abstract OutputStream compress(OutputStream output) throws IOException;
+
+    public abstract InputStream decompress(InputStream input) throws IOException;
+}
@@ -0,0 +1,98 @@
+package edu.uw.zookeeper.client.trace;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import edu.uw.zookeeper.ZooKeeperApplication;
+import edu.uw.zookeeper.common.Application;
+import edu.uw.zookeeper.common.RuntimeModule;
+
+/**
+ * Rewrites a trace file in another format.
+ *
+ * The input format is detected from the file contents.
+ * The output format is configured or chosen by file suffix.
+ */
+public class TraceConvert implements Application {
+
+    public static void main(String[] args) {
+        ZooKeeperApplication.main(args, new Builder());
+    }
+
+    protected final Logger logger;
+    protected final File inputFile;
+    protected final File outputFile;
+    protected final TraceFormat outputFormat;
+    protected final ObjectMapper mapper;
+
+    protected TraceConvert(
+            File inputFile,
+            File outputFile,
+            TraceFormat outputFormat,
+            ObjectMapper mapper) {
+        this.logger = LogManager.getLogger(getClass());
+        this.inputFile = inputFile;
+        this.outputFile = outputFile;
+        this.outputFormat = outputFormat;
+        this.mapper = mapper;
+    }
+
+    @Override
+    public void run() {
+        logger.info("Converting {} to {} ({})", inputFile, outputFile, outputFormat);
+        try {
+            TraceEventIterator events = TraceEventIterator.forFile(inputFile, mapper.reader());
+            try {
+                TraceWriter writer = TraceWriter.forFile(
+                        outputFile,
+                        outputFormat,
+                        mapper.writer(),
+                        events.header(),
+                        MoreExecutors.directExecutor());
+                while (events.hasNext()) {
+                    writer.send(events.next());
+                }
+                writer.stop();
+            } finally {
+                events.close();
+            }
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    public static class Builder extends Tracing.TracingBuilder<TraceConvert, Builder> {
+
+        public Builder() {
+            this(null, null);
+        }
+
+        protected Builder(
+                ObjectMapper mapper,
+                RuntimeModule runtime) {
+            super(mapper, runtime);
+        }
+
+        @Override
+        protected Builder newInstance(
+                ObjectMapper mapper,
+                RuntimeModule runtime) {
+            return new Builder(mapper, runtime);
+        }
+
+        @Override
+        protected TraceConvert doBuild() {
+            File inputFile = Tracing.getTraceInputFileConfiguration(getRuntimeModule().getConfiguration());
+            File outputFile = Tracing.getTraceOutputFileConfiguration(getRuntimeModule().getConfiguration());
+            TraceFormat outputFormat = Tracing.getTraceFormat(getRuntimeModule().getConfiguration(), outputFile);
+            return new TraceConvert(inputFile, outputFile, outputFormat, getObjectMapper());
+        }
+    }
+}
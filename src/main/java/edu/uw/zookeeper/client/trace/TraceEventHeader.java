@@ -36,7 +36,14 @@ public final class TraceEventHeader extends Factories.Holder<TraceEvent> {
                 ProtocolResponseEvent.class, 
                 OperationEvent.class, 
                 LatencyMeasurementEvent.class,
-                ThroughputMeasurementEvent.class);
+                ThroughputMeasurementEvent.class,
+                LatencyHistogramEvent.class,
+                SessionEvent.class,
+                NotificationEvent.class,
+                LockEvent.class,
+                MultiEvent.class,
+                OperationLatencyEvent.class,
+                OperationThroughputEvent.class);
         for (Class<? extends TraceEvent> type: types) {
             builder.put(type.getAnnotation(TraceEventType.class).value(), type);
         }
@@ -7,5 +7,12 @@ public enum TraceEventTag {
     PROTOCOL_RESPONSE_EVENT,
     OPERATION_EVENT,
     LATENCY_MEASUREMENT_EVENT,
-    THROUGHPUT_MEASUREMENT_EVENT;
+    THROUGHPUT_MEASUREMENT_EVENT,
+    LATENCY_HISTOGRAM_EVENT,
+    SESSION_EVENT,
+    NOTIFICATION_EVENT,
+    LOCK_EVENT,
+    MULTI_EVENT,
+    OPERATION_LATENCY_EVENT,
+    OPERATION_THROUGHPUT_EVENT;
 }
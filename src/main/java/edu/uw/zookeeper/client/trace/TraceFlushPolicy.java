@@ -0,0 +1,143 @@
+package edu.uw.zookeeper.client.trace;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Function;
+import com.google.common.base.MoreObjects;
+import com.typesafe.config.ConfigValueType;
+
+import edu.uw.zookeeper.common.Configurable;
+import edu.uw.zookeeper.common.Configuration;
+import edu.uw.zookeeper.common.TimeValue;
+
+/**
+ * When a TraceWriter flushes its buffered output, and when it forces it to disk.
+ * 
+ * Checked after each batch of events is written, and
+ * by a writer with a scheduler when the flush interval passes with output buffered.
+ */
+public final class TraceFlushPolicy {
+
+    public static final int MIN_BUFFER_SIZE = 1 << 13;
+    public static final int MAX_BUFFER_SIZE = 1 << 24;
+    
+    public static TraceFlushPolicy defaults() {
+        return create(1L << 20, TimeUnit.SECONDS.toNanos(1L), 0L);
+    }
+    
+    /**
+     * @param syncNanos zero to never force output to disk before closing
+     */
+    public static TraceFlushPolicy create(long bytes, long nanos, long syncNanos) {
+        checkArgument(bytes > 0L);
+        checkArgument(nanos >= 0L);
+        checkArgument(syncNanos >= 0L);
+        return new TraceFlushPolicy(bytes, nanos, syncNanos);
+    }
+    
+    public static TraceFlushPolicy fromConfiguration(Configuration configuration) {
+        return create(
+                ConfigurableFlushBytes.get(configuration).longValue(), 
+                ConfigurableFlushInterval.get(configuration).value(TimeUnit.NANOSECONDS), 
+                ConfigurableSyncInterval.get(configuration).value(TimeUnit.NANOSECONDS));
+    }
+
+    @Configurable(path="trace", arg="flushBytes", key="flushBytes", value="1048576", type=ConfigValueType.NUMBER, help="bytes")
+    public static class ConfigurableFlushBytes implements Function<Configuration, Long> {
+
+        public static Long get(Configuration configuration) {
+            return new ConfigurableFlushBytes().apply(configuration);
+        }
+
+        @Override
+        public Long apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return Long.valueOf(configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getLong(configurable.key()));
+        }
+    }
+
+    @Configurable(path="trace", arg="flushInterval", key="flushInterval", value="1 s", help="time")
+    public static class ConfigurableFlushInterval implements Function<Configuration, TimeValue> {
+
+        public static TimeValue get(Configuration configuration) {
+            return new ConfigurableFlushInterval().apply(configuration);
+        }
+
+        @Override
+        public TimeValue apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return TimeValue.fromString(
+                    configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getString(configurable.key()));
+        }
+    }
+
+    @Configurable(path="trace", arg="syncInterval", key="syncInterval", value="0 s", help="time, 0 to never fsync")
+    public static class ConfigurableSyncInterval implements Function<Configuration, TimeValue> {
+
+        public static TimeValue get(Configuration configuration) {
+            return new ConfigurableSyncInterval().apply(configuration);
+        }
+
+        @Override
+        public TimeValue apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return TimeValue.fromString(
+                    configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getString(configurable.key()));
+        }
+    }
+    
+    private final long bytes;
+    private final long nanos;
+    private final long syncNanos;
+    
+    private TraceFlushPolicy(long bytes, long nanos, long syncNanos) {
+        this.bytes = bytes;
+        this.nanos = nanos;
+        this.syncNanos = syncNanos;
+    }
+    
+    /**
+     * @return flush once this many bytes are buffered
+     */
+    public long getBytes() {
+        return bytes;
+    }
+    
+    /**
+     * @return flush once this long has passed since the last flush
+     */
+    public long getNanos() {
+        return nanos;
+    }
+    
+    /**
+     * @return fsync once this long has passed since the last fsync, or zero for never
+     */
+    public long getSyncNanos() {
+        return syncNanos;
+    }
+    
+    /**
+     * @return output buffer size that fits a flush
+     */
+    public int getBufferSize() {
+        return (int) Math.min(Math.max(bytes, MIN_BUFFER_SIZE), MAX_BUFFER_SIZE);
+    }
+    
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("bytes", bytes)
+                .add("nanos", nanos)
+                .add("syncNanos", syncNanos)
+                .toString();
+    }
+}
@@ -0,0 +1,103 @@
+package edu.uw.zookeeper.client.trace;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+public enum TraceFormat {
+    JSON("json") {
+        @Override
+        public TraceWriter newWriter(File file, ObjectWriter writer,
+                TraceHeader header, TraceFlushPolicy policy, Executor executor) throws IOException {
+            return JsonTraceWriter.forFile(file, writer, header, policy, executor);
+        }
+
+        @Override
+        public TraceEventIterator newIterator(File file, ObjectReader reader)
+                throws IOException {
+            return JsonTraceEventIterator.forFile(file, reader);
+        }
+    },
+    BINARY("bin") {
+        @Override
+        public TraceWriter newWriter(File file, ObjectWriter writer,
+                TraceHeader header, TraceFlushPolicy policy, Executor executor) throws IOException {
+            return BinaryTraceWriter.forFile(file, writer, header, policy, executor);
+        }
+
+        @Override
+        public TraceEventIterator newIterator(File file, ObjectReader reader)
+                throws IOException {
+            return BinaryTraceEventIterator.forFile(file, reader);
+        }
+    };
+
+    public static TraceFormat fromString(String value) {
+        for (TraceFormat format: values()) {
+            if (format.suffix.equalsIgnoreCase(value) || format.name().equalsIgnoreCase(value)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException(value);
+    }
+
+    /**
+     * Defaults to JSON for unrecognized suffixes.
+     * Ignores a compression suffix.
+     */
+    public static TraceFormat forFile(File file) {
+        String name = TraceCompression.stripSuffix(file.getName());
+        int index = name.lastIndexOf('.');
+        if (index >= 0) {
+            String suffix = name.substring(index + 1);
+            for (TraceFormat format: values()) {
+                if (format.suffix.equalsIgnoreCase(suffix)) {
+                    return format;
+                }
+            }
+        }
+        return JSON;
+    }
+
+    /**
+     * Sniffs the leading bytes of an existing, possibly compressed, trace file.
+     */
+    public static TraceFormat detect(File file) throws IOException {
+        DataInputStream input = new DataInputStream(TraceCompression.open(file));
+        try {
+            if (input.readInt() == BinaryTraceEventCodec.MAGIC) {
+                return BINARY;
+            }
+        } catch (EOFException e) {
+        } finally {
+            input.close();
+        }
+        return JSON;
+    }
+
+    private final String suffix;
+
+    private TraceFormat(String suffix) {
+        this.suffix = suffix;
+    }
+
+    public String suffix() {
+        return suffix;
+    }
+
+    public abstract TraceWriter newWriter(
+            File file,
+            ObjectWriter writer,
+            TraceHeader header,
+            TraceFlushPolicy policy,
+            Executor executor) throws IOException;
+
+    public abstract TraceEventIterator newIterator(
+            File file,
+            ObjectReader reader) throws IOException;
+}
@@ -1,18 +1,29 @@
 package edu.uw.zookeeper.client.trace;
 
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
 
+import edu.uw.zookeeper.client.ClientExecutor;
 import edu.uw.zookeeper.client.ConnectionClientExecutorService;
 import edu.uw.zookeeper.client.IteratingClient;
 import edu.uw.zookeeper.client.SubmitGenerator;
 import edu.uw.zookeeper.common.CountingGenerator;
 import edu.uw.zookeeper.common.Generator;
 import edu.uw.zookeeper.common.LoggingFutureListener;
+import edu.uw.zookeeper.common.Pair;
 import edu.uw.zookeeper.common.RuntimeModule;
 import edu.uw.zookeeper.common.SettableFuturePromise;
+import edu.uw.zookeeper.protocol.Operation;
 import edu.uw.zookeeper.protocol.proto.Records;
 
 public abstract class TraceGeneratingClientBuilder<C extends TraceGeneratingClientBuilder<C>> extends TraceWritingClientBuilder<C> {
@@ -28,23 +39,44 @@ public abstract class TraceGeneratingClientBuilder<C extends TraceGeneratingClie
 
     @Override
     protected Runnable getDefaultRunnable() {
+        if (! LoadSweep.ConfigurableRates.get(getRuntimeModule().getConfiguration()).isEmpty()) {
+            return getSweepRunnable();
+        }
+        Optional<String> arrival = ArrivalProcess.ArrivalConfiguration.get(getRuntimeModule().getConfiguration());
+        if (arrival.isPresent()) {
+            return getOpenLoopRunnable(arrival.get());
+        }
+        final MeasurementWindow window = getDefaultTraceHeader().getWindow();
         final IteratingClient callable = IteratingClient.create(
                 getRuntimeModule().getExecutors().get(ExecutorService.class), 
-                CountingGenerator.fromConfiguration(
-                        getRuntimeModule().getConfiguration(), 
-                        SubmitGenerator.create(
-                                getDefaultRequestGenerator(), 
-                                getDefaultClientExecutor())),
+                window.isBounded() ?
+                        CountingGenerator.create(
+                                Integer.MAX_VALUE, 
+                                0, 
+                                SubmitGenerator.create(
+                                        getDefaultRequestGenerator(), 
+                                        getDefaultClientExecutor()), 
+                                logger) :
+                        CountingGenerator.fromConfiguration(
+                                getRuntimeModule().getConfiguration(), 
+                                SubmitGenerator.create(
+                                        getDefaultRequestGenerator(), 
+                                        getDefaultClientExecutor())),
                 SettableFuturePromise.<Void>create());
         LoggingFutureListener.listen(logger, callable);
         return new Runnable() {
             @Override
             public void run() {
                 getRuntimeModule().getExecutors().get(ExecutorService.class).execute(callable);
+                if (window.isBounded()) {
+                    cancelAfter(window, callable);
+                }
                 try {
                     callable.get();
                 } catch (InterruptedException e) {
                     return;
+                } catch (CancellationException e) {
+                    return;
                 } catch (ExecutionException e) {
                     logger.error("", e.getCause());
                 }
@@ -52,5 +84,58 @@ public abstract class TraceGeneratingClientBuilder<C extends TraceGeneratingClie
         };
     }
 
+    /**
+     * Requests are submitted at the times of the arrival process,
+     * without limiting outstanding requests.
+     */
+    protected Runnable getOpenLoopRunnable(String arrival) {
+        logger.info("Open-loop arrivals: {}", arrival);
+        MeasurementWindow window = getDefaultTraceHeader().getWindow();
+        Iterator<Pair<Long, Records.Request>> requests = ArrivalProcess.schedule(
+                ArrivalProcess.fromString(arrival, 1.0, new Random()), 
+                getDefaultRequestGenerator(), 
+                window.isBounded() ? 0 : CountingGenerator.ConfigurableIterations.get(getRuntimeModule().getConfiguration()));
+        if (window.isBounded()) {
+            requests = MeasurementWindow.until(TimeUnit.MILLISECONDS.toNanos(window.getRunMillis()), requests);
+        }
+        Optional<OperationTimingListener> timings = getOpenLoopTimings();
+        if (timings.isPresent()) {
+            return OpenLoopSubmitter.create(requests, getClientBuilder().getConnectionClientExecutor(), timings.get());
+        } else {
+            return OpenLoopSubmitter.create(requests, getClientBuilder().getConnectionClientExecutor());
+        }
+    }
+    
+    protected Runnable getSweepRunnable() {
+        return LoadSweep.fromConfiguration(
+                getRuntimeModule().getConfiguration(), 
+                getDefaultRequestGenerator(), 
+                ImmutableList.<ClientExecutor<? super Operation.Request, ?, ?>>of(
+                        getClientBuilder().getConnectionClientExecutor()));
+    }
+    
+    /**
+     * Ends a duration-bounded run after its warmup, duration, and cooldown.
+     * 
+     * Timed from now rather than from the first operation,
+     * so connecting on the first request shortens the cooldown.
+     */
+    protected void cancelAfter(MeasurementWindow window, final Future<?> future) {
+        getRuntimeModule().getExecutors().get(ScheduledExecutorService.class).schedule(new Runnable() {
+            @Override
+            public void run() {
+                future.cancel(true);
+            }
+        }, window.getRunMillis(), TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * If present, notified of open-loop operations timed from their intended send time.
+     * Absent by default, as operations are already traced by the codec.
+     */
+    protected Optional<OperationTimingListener> getOpenLoopTimings() {
+        return Optional.absent();
+    }
+
     protected abstract Generator<? extends Records.Request> getDefaultRequestGenerator();
 }
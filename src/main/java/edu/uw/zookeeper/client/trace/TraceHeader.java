@@ -22,22 +22,35 @@ public final class TraceHeader {
     public static TraceHeader create(
             Map<String, Object> description,
             Set<TraceEventTag> types) {
-        return new TraceHeader(new Date(), description, types);
+        return create(description, types, MeasurementWindow.none());
+    }
+    
+    public static TraceHeader create(
+            Map<String, Object> description,
+            Set<TraceEventTag> types,
+            MeasurementWindow window) {
+        return new TraceHeader(new Date(), description, types, window);
     }
     
     protected final Date date;
     protected final Map<String, Object> description;
     protected final ImmutableSet<TraceEventTag> types;
+    protected final MeasurementWindow window;
     
+    /**
+     * @param window null for traces written before windows were recorded
+     */
     @JsonCreator
     public TraceHeader(
             @JsonProperty("date") Date date, 
             @JsonProperty("description") Map<String, Object> description,
-            @JsonProperty("types") Set<TraceEventTag> types) {
+            @JsonProperty("types") Set<TraceEventTag> types,
+            @JsonProperty("window") MeasurementWindow window) {
         super();
         this.date = date;
         this.description = ImmutableMap.copyOf(description);
         this.types = ImmutableSet.copyOf(types);
+        this.window = (window == null) ? MeasurementWindow.none() : window;
     }
     
     public Date getDate() {
@@ -52,9 +65,17 @@ public final class TraceHeader {
         return types;
     }
     
+    public MeasurementWindow getWindow() {
+        return window;
+    }
+    
+    public TraceHeader withWindow(MeasurementWindow window) {
+        return new TraceHeader(date, description, types, window);
+    }
+    
     @Override
     public String toString() {
-        return MoreObjects.toStringHelper(this).add("date", date).add("description", description).add("types", types).toString();
+        return MoreObjects.toStringHelper(this).add("date", date).add("description", description).add("types", types).add("window", window).toString();
     }
 
     @Override
@@ -68,11 +89,12 @@ public final class TraceHeader {
         TraceHeader other = (TraceHeader) obj;
         return Objects.equal(date, other.date)
                 && Objects.equal(description, other.description)
-                && Objects.equal(types, other.types);
+                && Objects.equal(types, other.types)
+                && Objects.equal(window, other.window);
     }
     
     @Override
     public int hashCode() {
-        return Objects.hashCode(date, description, types);
+        return Objects.hashCode(date, description, types, window);
     }
 }
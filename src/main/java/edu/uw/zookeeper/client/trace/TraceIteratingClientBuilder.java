@@ -1,18 +1,24 @@
 package edu.uw.zookeeper.client.trace;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import java.io.File;
 import java.io.IOException;
 import java.util.Iterator;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
+import com.google.common.base.Function;
 import com.google.common.base.Throwables;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.sun.xml.internal.xsom.impl.scd.Iterators;
+import com.typesafe.config.ConfigValueType;
 
 import edu.uw.zookeeper.client.ConnectionClientExecutorService;
 import edu.uw.zookeeper.client.ClientExecutor;
 import edu.uw.zookeeper.client.SubmitIterator;
+import edu.uw.zookeeper.common.Configurable;
+import edu.uw.zookeeper.common.Configuration;
 import edu.uw.zookeeper.common.Pair;
 import edu.uw.zookeeper.common.RuntimeModule;
 import edu.uw.zookeeper.protocol.Message;
@@ -24,6 +30,24 @@ public class TraceIteratingClientBuilder extends TraceWritingClientBuilder<Trace
     public static TraceIteratingClientBuilder defaults() {
         return new TraceIteratingClientBuilder();
     }
+    
+    @Configurable(path="trace", arg="speed", key="replaySpeed", value="0", type=ConfigValueType.NUMBER, help="replay requests at their recorded times, scaled by this multiplier; 0 to replay as fast as possible")
+    public static class ReplaySpeedConfiguration implements Function<Configuration, Double> {
+
+        public static Double get(Configuration configuration) {
+            return new ReplaySpeedConfiguration().apply(configuration);
+        }
+
+        @Override
+        public Double apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            double value = configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getDouble(configurable.key());
+            checkArgument(value >= 0.0, value);
+            return Double.valueOf(value);
+        }
+    }
 
     public TraceIteratingClientBuilder() {
         this(null, null, null, null, null);
@@ -50,6 +74,14 @@ public class TraceIteratingClientBuilder extends TraceWritingClientBuilder<Trace
     
     @Override
     protected Runnable getDefaultRunnable() {
+        double speed = ReplaySpeedConfiguration.get(getRuntimeModule().getConfiguration()).doubleValue();
+        if (speed > 0.0) {
+            // open-loop, so not limited by outstanding requests
+            logger.info("Replaying at {}x recorded time", speed);
+            return OpenLoopSubmitter.create(
+                    TraceRequestIterator.scheduledOf(getDefaultRequestEvents(), speed), 
+                    getClientBuilder().getConnectionClientExecutor());
+        }
         ClientExecutor<? super Operation.Request, Message.ServerResponse<?>, ?> client = getDefaultClientExecutor();
         Iterator<Records.Request> requests = getDefaultRequests();
         final Iterator<Pair<Records.Request, ListenableFuture<Message.ServerResponse<?>>>> operations = SubmitIterator.create(requests, client);
@@ -72,6 +104,10 @@ public class TraceIteratingClientBuilder extends TraceWritingClientBuilder<Trace
     }
 
     protected Iterator<Records.Request> getDefaultRequests() {
+        return TraceRequestIterator.requestsOf(getDefaultRequestEvents());
+    }
+
+    protected Iterator<ProtocolRequestEvent> getDefaultRequestEvents() {
         ObjectReader reader = getObjectMapper().reader();
         File file = Tracing.getTraceInputFileConfiguration(getRuntimeModule().getConfiguration());
         Iterator<TraceEvent> events;
@@ -80,11 +116,11 @@ public class TraceIteratingClientBuilder extends TraceWritingClientBuilder<Trace
         } else {
             logger.info("Trace input: {}", file);
             try {
-                events = TraceEventIterator.forFile(file, reader);
+                events = ReadAheadTraceEventIterator.forConfiguration(getRuntimeModule().getConfiguration(), file, reader);
             } catch (IOException e) {
                 throw Throwables.propagate(e);
             }
         }
-        return TraceRequestIterator.requestsOf(TraceRequestIterator.from(events));
+        return TraceRequestIterator.from(events);
     }
 }
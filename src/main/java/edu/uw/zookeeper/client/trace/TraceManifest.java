@@ -0,0 +1,181 @@
+package edu.uw.zookeeper.client.trace;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Lists the segments of a rolling trace, in order.
+ * 
+ * Segment files are relative to the directory of the manifest.
+ */
+public final class TraceManifest {
+
+    public static final String SUFFIX = "manifest";
+    
+    public static boolean isManifest(File file) {
+        return file.getName().endsWith('.' + SUFFIX);
+    }
+    
+    public static File forTrace(File trace) {
+        return new File(trace.getPath() + '.' + SUFFIX);
+    }
+    
+    /**
+     * Inserts the segment number before the format and compression suffixes of the trace file name.
+     */
+    public static File segmentFile(File trace, int segment) {
+        String name = TraceCompression.stripSuffix(trace.getName());
+        String compressed = trace.getName().substring(name.length());
+        int index = name.lastIndexOf('.');
+        String number = String.format("%05d", segment);
+        if (index >= 0) {
+            name = name.substring(0, index) + '.' + number + name.substring(index);
+        } else {
+            name = name + '.' + number;
+        }
+        return new File(trace.getAbsoluteFile().getParentFile(), name + compressed);
+    }
+    
+    public static TraceManifest forFile(File file, ObjectReader reader) throws IOException {
+        return reader.withType(TraceManifest.class).readValue(file);
+    }
+    
+    public static TraceManifest create(TraceHeader header, List<Segment> segments) {
+        return new TraceManifest(header, segments);
+    }
+    
+    private final TraceHeader header;
+    private final ImmutableList<Segment> segments;
+    
+    @JsonCreator
+    public TraceManifest(
+            @JsonProperty("header") TraceHeader header,
+            @JsonProperty("segments") List<Segment> segments) {
+        this.header = header;
+        this.segments = ImmutableList.copyOf(segments);
+    }
+    
+    @JsonProperty("header")
+    public TraceHeader getHeader() {
+        return header;
+    }
+    
+    @JsonProperty("segments")
+    public ImmutableList<Segment> getSegments() {
+        return segments;
+    }
+    
+    public File segmentFile(File manifest, Segment segment) {
+        return new File(manifest.getAbsoluteFile().getParentFile(), segment.getFile());
+    }
+    
+    /**
+     * Replaces the manifest file atomically, so readers never see a partial manifest.
+     */
+    public void toFile(File file, ObjectWriter writer) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        writer.writeValue(tmp, this);
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("header", header)
+                .add("segments", segments)
+                .toString();
+    }
+    
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (! (obj instanceof TraceManifest)) {
+            return false;
+        }
+        TraceManifest other = (TraceManifest) obj;
+        return Objects.equal(header, other.header)
+                && Objects.equal(segments, other.segments);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(header, segments);
+    }
+    
+    public static final class Segment {
+        
+        public static Segment create(String file, long events, long bytes) {
+            return new Segment(file, events, bytes);
+        }
+        
+        private final String file;
+        private final long events;
+        private final long bytes;
+        
+        @JsonCreator
+        public Segment(
+                @JsonProperty("file") String file,
+                @JsonProperty("events") long events,
+                @JsonProperty("bytes") long bytes) {
+            this.file = file;
+            this.events = events;
+            this.bytes = bytes;
+        }
+
+        @JsonProperty("file")
+        public String getFile() {
+            return file;
+        }
+
+        @JsonProperty("events")
+        public long getEvents() {
+            return events;
+        }
+
+        @JsonProperty("bytes")
+        public long getBytes() {
+            return bytes;
+        }
+        
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("file", file)
+                    .add("events", events)
+                    .add("bytes", bytes)
+                    .toString();
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (! (obj instanceof Segment)) {
+                return false;
+            }
+            Segment other = (Segment) obj;
+            return Objects.equal(file, other.file)
+                    && (events == other.events)
+                    && (bytes == other.bytes);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(file, events, bytes);
+        }
+    }
+}
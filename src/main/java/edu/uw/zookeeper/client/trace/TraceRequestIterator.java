@@ -1,20 +1,51 @@
 package edu.uw.zookeeper.client.trace;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import java.util.Iterator;
 
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.UnmodifiableIterator;
 
+import edu.uw.zookeeper.common.Pair;
+import edu.uw.zookeeper.protocol.Message;
 import edu.uw.zookeeper.protocol.Session;
 import edu.uw.zookeeper.protocol.proto.Records;
 
 public abstract class TraceRequestIterator {
 
+    /**
+     * Includes the requests of OperationEvents, timestamped with their request nanos.
+     */
     public static UnmodifiableIterator<ProtocolRequestEvent> from(
             Iterator<TraceEvent> events) {
-        return Iterators.filter(events, ProtocolRequestEvent.class);
+        return Iterators.filter(
+                Iterators.transform(events, new Function<TraceEvent, ProtocolRequestEvent>() {
+                    @Override
+                    public ProtocolRequestEvent apply(TraceEvent input) {
+                        switch (input.getTag()) {
+                        case PROTOCOL_REQUEST_EVENT:
+                            return (ProtocolRequestEvent) input;
+                        case OPERATION_EVENT:
+                        {
+                            OperationEvent operation = (OperationEvent) input;
+                            if (operation.getRequest() != null) {
+                                return ProtocolRequestEvent.create(
+                                        operation.getSessionId(), 
+                                        (Message.ClientRequest<?>) operation.getRequest(), 
+                                        operation.getRequestNanos());
+                            }
+                            return null;
+                        }
+                        default:
+                            return null;
+                        }
+                    }
+                }), 
+                Predicates.notNull());
     }
     
     public static UnmodifiableIterator<ProtocolRequestEvent> forSession(
@@ -39,6 +70,28 @@ public abstract class TraceRequestIterator {
             }});
     }
     
+    /**
+     * Schedules each request at its recorded offset from the first timestamped request,
+     * divided by speed. Requests without a timestamp are scheduled with the previous one.
+     */
+    public static Iterator<Pair<Long, Records.Request>> scheduledOf(
+            Iterator<ProtocolRequestEvent> requests, final double speed) {
+        checkArgument(speed > 0.0);
+        return Iterators.transform(requests, new Function<ProtocolRequestEvent, Pair<Long, Records.Request>>() {
+            long base = ProtocolRequestEvent.UNKNOWN;
+            long offset = 0L;
+            @Override
+            public Pair<Long, Records.Request> apply(ProtocolRequestEvent input) {
+                if (input.hasNanos()) {
+                    if (base == ProtocolRequestEvent.UNKNOWN) {
+                        base = input.getNanos();
+                    }
+                    offset = (long) ((input.getNanos() - base) / speed);
+                }
+                return Pair.create(Long.valueOf(offset), input.getRequest().record());
+            }});
+    }
+    
     public static Iterator<Records.Request> requestsOf(
             Iterator<ProtocolRequestEvent> requests) {
         return Iterators.transform(requests, new Function<ProtocolRequestEvent, Records.Request>() {
@@ -0,0 +1,103 @@
+package edu.uw.zookeeper.client.trace;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Function;
+import com.google.common.base.MoreObjects;
+import com.typesafe.config.ConfigValueType;
+
+import edu.uw.zookeeper.common.Configurable;
+import edu.uw.zookeeper.common.Configuration;
+import edu.uw.zookeeper.common.TimeValue;
+
+/**
+ * When a RollingTraceWriter starts a new segment.
+ * 
+ * A zero threshold is disabled.
+ */
+public final class TraceRollingPolicy {
+
+    public static TraceRollingPolicy disabled() {
+        return create(0L, 0L);
+    }
+    
+    public static TraceRollingPolicy create(long bytes, long nanos) {
+        checkArgument(bytes >= 0L);
+        checkArgument(nanos >= 0L);
+        return new TraceRollingPolicy(bytes, nanos);
+    }
+    
+    public static TraceRollingPolicy fromConfiguration(Configuration configuration) {
+        return create(
+                ConfigurableSegmentBytes.get(configuration).longValue(), 
+                ConfigurableSegmentInterval.get(configuration).value(TimeUnit.NANOSECONDS));
+    }
+
+    @Configurable(path="trace", arg="segmentBytes", key="segmentBytes", value="0", type=ConfigValueType.NUMBER, help="bytes, 0 to not roll by size")
+    public static class ConfigurableSegmentBytes implements Function<Configuration, Long> {
+
+        public static Long get(Configuration configuration) {
+            return new ConfigurableSegmentBytes().apply(configuration);
+        }
+
+        @Override
+        public Long apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return Long.valueOf(configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getLong(configurable.key()));
+        }
+    }
+
+    @Configurable(path="trace", arg="segmentInterval", key="segmentInterval", value="0 s", help="time, 0 to not roll by time")
+    public static class ConfigurableSegmentInterval implements Function<Configuration, TimeValue> {
+
+        public static TimeValue get(Configuration configuration) {
+            return new ConfigurableSegmentInterval().apply(configuration);
+        }
+
+        @Override
+        public TimeValue apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return TimeValue.fromString(
+                    configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getString(configurable.key()));
+        }
+    }
+    
+    private final long bytes;
+    private final long nanos;
+    
+    private TraceRollingPolicy(long bytes, long nanos) {
+        this.bytes = bytes;
+        this.nanos = nanos;
+    }
+    
+    public boolean isEnabled() {
+        return (bytes > 0L) || (nanos > 0L);
+    }
+    
+    public long getBytes() {
+        return bytes;
+    }
+    
+    public long getNanos() {
+        return nanos;
+    }
+    
+    public boolean shouldRoll(long segmentBytes, long segmentNanos) {
+        return ((bytes > 0L) && (segmentBytes >= bytes)) 
+                || ((nanos > 0L) && (segmentNanos >= nanos));
+    }
+    
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("bytes", bytes)
+                .add("nanos", nanos)
+                .toString();
+    }
+}
@@ -4,83 +4,151 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Queue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
-import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectWriter;
-import com.google.common.collect.Queues;
+import com.google.common.base.MoreObjects;
 
 import edu.uw.zookeeper.common.Actors.ExecutedQueuedActor;
 
-public class TraceWriter extends ExecutedQueuedActor<TraceEvent> {
+/**
+ * Writes each batch of events drained from the mailbox, 
+ * then flushes according to a TraceFlushPolicy.
+ * 
+ * With a scheduler, output still buffered when the flush interval passes
+ * is flushed on the writer's executor without waiting for the next batch.
+ */
+public abstract class TraceWriter extends ExecutedQueuedActor<TraceEvent> {
 
     public static TraceWriter forFile(
             File file,
             ObjectWriter writer,
             TraceHeader header,
             Executor executor) throws IOException {
-        return create(
-                writer.getFactory().createGenerator(file, Tracing.ENCODING), 
-                writer,
-                header,
-                executor);
+        return forFile(file, TraceFormat.forFile(file), writer, header, executor);
     }
 
-    public static TraceWriter create(
-            JsonGenerator json,
+    public static TraceWriter forFile(
+            File file,
+            TraceFormat format,
             ObjectWriter writer,
             TraceHeader header,
             Executor executor) throws IOException {
-        return new TraceWriter(
-                json,
-                writer,
-                header,
-                executor,
-                Queues.<TraceEvent>newConcurrentLinkedQueue(),
-                LogManager.getLogger(TraceWriter.class));
+        return forFile(file, format, writer, header, TraceFlushPolicy.defaults(), executor);
     }
-    
-    protected final ObjectWriter writer;
-    protected final JsonGenerator json;
-    protected final TraceHeader header;
-    
-    public TraceWriter(
+
+    public static TraceWriter forFile(
+            File file,
+            TraceFormat format,
+            ObjectWriter writer,
+            TraceHeader header,
+            TraceFlushPolicy policy,
+            Executor executor) throws IOException {
+        return format.newWriter(file, writer, header, policy, executor);
+    }
+
+    public static JsonTraceWriter create(
             JsonGenerator json,
             ObjectWriter writer,
-            TraceHeader header, 
+            TraceHeader header,
+            Executor executor) throws IOException {
+        return JsonTraceWriter.create(json, writer, header, executor);
+    }
+
+    protected final TraceHeader header;
+    protected final TraceFlushPolicy policy;
+    protected final Executor checkpointExecutor;
+    protected final long started;
+    protected volatile long events;
+    protected volatile long busyNanos;
+    protected long flushedPosition;
+    protected long flushedNanos;
+    protected long syncedNanos;
+    protected ScheduledExecutorService scheduler;
+    protected ScheduledFuture<?> pendingCheckpoint;
+
+    protected TraceWriter(
+            TraceHeader header,
+            TraceFlushPolicy policy,
             Executor executor,
             Queue<TraceEvent> mailbox,
-            Logger logger) throws IOException {
+            Logger logger) {
         super(executor, mailbox, logger);
-        this.writer = writer;
-        this.json = json;
         this.header = header;
-
-        json.writeStartArray();
-        writer.writeValue(json, header);
-        json.writeStartArray();
+        this.policy = policy;
+        this.checkpointExecutor = executor;
+        this.started = System.nanoTime();
+        this.events = 0L;
+        this.busyNanos = 0L;
+        this.flushedPosition = 0L;
+        this.flushedNanos = started;
+        this.syncedNanos = started;
+        this.scheduler = null;
+        this.pendingCheckpoint = null;
     }
-    
+
     public TraceHeader header() {
         return header;
     }
     
+    public TraceFlushPolicy policy() {
+        return policy;
+    }
+    
+    /**
+     * Without a scheduler, buffered output is only checked
+     * against the flush interval when the next batch arrives.
+     */
+    public synchronized TraceWriter setScheduler(ScheduledExecutorService scheduler) {
+        this.scheduler = scheduler;
+        return this;
+    }
+    
+    /**
+     * @return bytes written so far, including buffered output
+     */
+    public abstract long position();
+
+    public Stats stats() {
+        return new Stats(events, position(), busyNanos, System.nanoTime() - started);
+    }
+
     @Override
     protected synchronized void doRun() {
+        long start = System.nanoTime();
+        long n = 0L;
         TraceEvent next;
         while ((next = mailbox.poll()) != null) {
             if (! apply(next)) {
-                break;
+                return;
             }
+            ++n;
+        }
+        if (n > 0L) {
+            try {
+                long nanos = System.nanoTime();
+                checkpoint(nanos);
+                scheduleCheckpoint(nanos);
+            } catch (Exception e) {
+                logger.warn("{}", this, e);
+                mailbox.clear();
+                stop();
+                return;
+            }
+            events += n;
+            busyNanos += System.nanoTime() - start;
         }
     }
 
     @Override
     protected boolean apply(TraceEvent input) {
         try {
-            writer.writeValue(json, TraceEventHeader.create(input));
+            write(input);
             return true;
         } catch (Exception e) {
             logger.warn("{}", input, e);
@@ -92,22 +160,149 @@ public class TraceWriter extends ExecutedQueuedActor<TraceEvent> {
 
     @Override
     protected synchronized void doStop() {
+        scheduler = null;
+        if (pendingCheckpoint != null) {
+            pendingCheckpoint.cancel(false);
+            pendingCheckpoint = null;
+        }
         doRun();
-        
+        logger.info("{}", stats());
+        finish();
+    }
+    
+    protected void checkpoint(long nanos) throws IOException {
+        long position = position();
+        if ((position - flushedPosition >= policy.getBytes()) 
+                || (nanos - flushedNanos >= policy.getNanos())) {
+            flush();
+            flushedPosition = position;
+            flushedNanos = nanos;
+        }
+        if ((policy.getSyncNanos() > 0L) 
+                && (nanos - syncedNanos >= policy.getSyncNanos())) {
+            sync();
+            flushedPosition = position;
+            flushedNanos = nanos;
+            syncedNanos = nanos;
+        }
+    }
+
+    /**
+     * Checkpoints again when the flush interval passes if output is still buffered.
+     */
+    protected void scheduleCheckpoint(long nanos) {
+        if ((scheduler == null) || scheduler.isShutdown() 
+                || (pendingCheckpoint != null) 
+                || (position() == flushedPosition)) {
+            return;
+        }
+        pendingCheckpoint = scheduler.schedule(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        checkpointExecutor.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                idleCheckpoint();
+                            }
+                        });
+                    }
+                }, 
+                flushedNanos + policy.getNanos() - nanos, TimeUnit.NANOSECONDS);
+    }
+    
+    protected synchronized void idleCheckpoint() {
+        pendingCheckpoint = null;
+        if (scheduler == null) {
+            return;
+        }
         try {
-            json.writeEndArray();
-            json.writeEndArray();
-        } catch (IOException e) {
+            long nanos = System.nanoTime();
+            checkpoint(nanos);
+            scheduleCheckpoint(nanos);
+        } catch (Exception e) {
+            logger.warn("{}", this, e);
+            mailbox.clear();
+            stop();
         }
+    }
+
+    protected abstract void write(TraceEvent event) throws IOException;
+    
+    protected abstract void flush() throws IOException;
+
+    /**
+     * Flushes and forces output to disk if possible.
+     */
+    protected abstract void sync() throws IOException;
+
+    /**
+     * Called once after the mailbox has been drained on stop.
+     */
+    protected abstract void finish();
+    
+    /**
+     * Rates are over the time spent writing, 
+     * i.e. what the writer can sustain rather than what it was offered.
+     */
+    public static final class Stats {
         
-        try {
-            json.flush();
-        } catch (IOException e) {
-        } finally {
-            try {
-                json.close();
-            } catch (IOException e) {
-            }
+        private final long events;
+        private final long bytes;
+        private final long busyNanos;
+        private final long elapsedNanos;
+        
+        public Stats(long events, long bytes, long busyNanos, long elapsedNanos) {
+            this.events = events;
+            this.bytes = bytes;
+            this.busyNanos = busyNanos;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long getEvents() {
+            return events;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getBusyNanos() {
+            return busyNanos;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+        
+        /**
+         * @return fraction of elapsed time spent writing
+         */
+        public double getUtilization() {
+            return (elapsedNanos > 0L) ? ((double) busyNanos / elapsedNanos) : 0.0;
+        }
+        
+        public double getEventsPerSecond() {
+            return perSecond(events);
+        }
+        
+        public double getBytesPerSecond() {
+            return perSecond(bytes);
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("events", events)
+                    .add("bytes", bytes)
+                    .add("events/s", String.format("%.0f", getEventsPerSecond()))
+                    .add("bytes/s", String.format("%.0f", getBytesPerSecond()))
+                    .add("utilization", String.format("%.3f", getUtilization()))
+                    .toString();
+        }
+        
+        private double perSecond(long value) {
+            return (busyNanos > 0L) ? (value * (double) TimeUnit.SECONDS.toNanos(1L) / busyNanos) : 0.0;
         }
     }
 }
@@ -13,33 +13,42 @@ public class TraceWriterBuilder implements Builder<TraceWriter> {
     public static TraceWriterBuilder defaults() {
         return new TraceWriterBuilder();
     }
-    
+
     protected final ObjectWriter writer;
     protected final Executor executor;
     protected final File file;
+    protected final TraceFormat format;
+    protected final TraceFlushPolicy flushPolicy;
+    protected final TraceRollingPolicy rollingPolicy;
     protected final TraceHeader header;
-    
+
     public TraceWriterBuilder() {
-        this(null, null, null, null);
+        this(null, null, null, null, null, null, null);
     }
-    
+
     public TraceWriterBuilder(
             ObjectWriter writer,
             Executor executor,
             File file,
+            TraceFormat format,
+            TraceFlushPolicy flushPolicy,
+            TraceRollingPolicy rollingPolicy,
             TraceHeader header) {
         this.writer = writer;
         this.executor = executor;
         this.file = file;
+        this.format = format;
+        this.flushPolicy = flushPolicy;
+        this.rollingPolicy = rollingPolicy;
         this.header = header;
     }
-    
+
     public ObjectWriter getWriter() {
         return writer;
     }
-    
+
     public TraceWriterBuilder setWriter(ObjectWriter writer) {
-        return new TraceWriterBuilder(writer, executor, file, header);
+        return new TraceWriterBuilder(writer, executor, file, format, flushPolicy, rollingPolicy, header);
     }
 
     public Executor getExecutor() {
@@ -47,7 +56,7 @@ public class TraceWriterBuilder implements Builder<TraceWriter> {
     }
 
     public TraceWriterBuilder setExecutor(Executor executor) {
-        return new TraceWriterBuilder(writer, executor, file, header);
+        return new TraceWriterBuilder(writer, executor, file, format, flushPolicy, rollingPolicy, header);
     }
 
     public File getFile() {
@@ -55,7 +64,40 @@ public class TraceWriterBuilder implements Builder<TraceWriter> {
     }
 
     public TraceWriterBuilder setFile(File file) {
-        return new TraceWriterBuilder(writer, executor, file, header);
+        return new TraceWriterBuilder(writer, executor, file, format, flushPolicy, rollingPolicy, header);
+    }
+
+    /**
+     * If null, the format is chosen by file suffix.
+     */
+    public TraceFormat getFormat() {
+        return format;
+    }
+
+    public TraceWriterBuilder setFormat(TraceFormat format) {
+        return new TraceWriterBuilder(writer, executor, file, format, flushPolicy, rollingPolicy, header);
+    }
+
+    /**
+     * If null, the default policy is used.
+     */
+    public TraceFlushPolicy getFlushPolicy() {
+        return flushPolicy;
+    }
+
+    public TraceWriterBuilder setFlushPolicy(TraceFlushPolicy flushPolicy) {
+        return new TraceWriterBuilder(writer, executor, file, format, flushPolicy, rollingPolicy, header);
+    }
+
+    /**
+     * If null or disabled, the trace is written to a single file.
+     */
+    public TraceRollingPolicy getRollingPolicy() {
+        return rollingPolicy;
+    }
+
+    public TraceWriterBuilder setRollingPolicy(TraceRollingPolicy rollingPolicy) {
+        return new TraceWriterBuilder(writer, executor, file, format, flushPolicy, rollingPolicy, header);
     }
 
     public TraceHeader getHeader() {
@@ -63,16 +105,24 @@ public class TraceWriterBuilder implements Builder<TraceWriter> {
     }
 
     public TraceWriterBuilder setHeader(TraceHeader header) {
-        return new TraceWriterBuilder(writer, executor, file, header);
+        return new TraceWriterBuilder(writer, executor, file, format, flushPolicy, rollingPolicy, header);
     }
 
     @Override
     public TraceWriter build() {
+        TraceFormat format = (this.format != null) ? this.format : TraceFormat.forFile(file);
+        TraceFlushPolicy flushPolicy = (this.flushPolicy != null) ? this.flushPolicy : TraceFlushPolicy.defaults();
         try {
+            if ((rollingPolicy != null) && rollingPolicy.isEnabled()) {
+                return RollingTraceWriter.forFile(
+                        file, format, writer, header, flushPolicy, rollingPolicy, executor);
+            }
             return TraceWriter.forFile(
-                    file, 
+                    file,
+                    format,
                     writer,
                     header,
+                    flushPolicy,
                     executor);
         } catch (IOException e) {
             throw Throwables.propagate(e);
@@ -8,6 +8,7 @@ import java.io.StringWriter;
 import java.util.Map;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
 
 import net.engio.mbassy.bus.BusFactory;
 import org.apache.logging.log4j.LogManager;
@@ -18,8 +19,10 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.google.common.base.Function;
+import com.google.common.base.Optional;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigValueType;
 
@@ -43,6 +46,22 @@ public abstract class Tracing {
     public static Map<String, Object> getTraceDescription(Configuration configuration) {
         return TraceDescriptionConfiguration.get(configuration);
     }
+
+    /**
+     * The configured format if any, otherwise chosen by file suffix.
+     */
+    public static TraceFormat getTraceFormat(Configuration configuration, File file) {
+        Optional<TraceFormat> format = TraceFormatConfiguration.get(configuration);
+        return format.isPresent() ? format.get() : TraceFormat.forFile(file);
+    }
+    
+    /**
+     * The file with the configured compression suffix appended, if any.
+     */
+    public static File getTraceCompressedFile(Configuration configuration, File file) {
+        Optional<TraceCompression> compression = TraceCompressionConfiguration.get(configuration);
+        return compression.isPresent() ? compression.get().withSuffix(file) : file;
+    }
     
     @Configurable(path="trace", arg="output", key="outputFile", value="trace-%d.json", help="path")
     public static class TraceOutputFileConfiguration implements Function<Configuration, File> {
@@ -91,6 +110,50 @@ public abstract class Tracing {
         }   
     }
     
+    @Configurable(path="trace", arg="format", key="format", value="", help="json|bin")
+    public static class TraceFormatConfiguration implements Function<Configuration, Optional<TraceFormat>> {
+
+        public static Optional<TraceFormat> get(Configuration configuration) {
+            return new TraceFormatConfiguration().apply(configuration);
+        }
+
+        @Override
+        public Optional<TraceFormat> apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            Config config = configuration.withConfigurable(configurable)
+                    .getConfigOrEmpty(configurable.path());
+            if (config.hasPath(configurable.key())) {
+                String value = config.getString(configurable.key());
+                if (! value.isEmpty()) {
+                    return Optional.of(TraceFormat.fromString(value));
+                }
+            }
+            return Optional.absent();
+        }
+    }
+    
+    @Configurable(path="trace", arg="compression", key="compression", value="", help="gz|lz4|zst")
+    public static class TraceCompressionConfiguration implements Function<Configuration, Optional<TraceCompression>> {
+
+        public static Optional<TraceCompression> get(Configuration configuration) {
+            return new TraceCompressionConfiguration().apply(configuration);
+        }
+
+        @Override
+        public Optional<TraceCompression> apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            Config config = configuration.withConfigurable(configurable)
+                    .getConfigOrEmpty(configurable.path());
+            if (config.hasPath(configurable.key())) {
+                String value = config.getString(configurable.key());
+                if (! value.isEmpty()) {
+                    return Optional.of(TraceCompression.fromString(value));
+                }
+            }
+            return Optional.absent();
+        }
+    }
+    
     @Configurable(arg="description", path="trace", key="description", help="description", value="{}", type=ConfigValueType.STRING)
     public static class TraceDescriptionConfiguration implements Function<Configuration, Map<String, Object>> {
 
@@ -258,21 +321,29 @@ public abstract class Tracing {
         protected TraceHeader getDefaultTraceHeader() {
             return TraceHeader.create(
                     Tracing.getTraceDescription(getRuntimeModule().getConfiguration()), 
-                    TraceEventTag.TIMESTAMP_EVENT, 
-                    TraceEventTag.PROTOCOL_REQUEST_EVENT, 
-                    TraceEventTag.PROTOCOL_RESPONSE_EVENT);
+                    ImmutableSet.of(
+                        TraceEventTag.TIMESTAMP_EVENT, 
+                        TraceEventTag.PROTOCOL_REQUEST_EVENT, 
+                        TraceEventTag.PROTOCOL_RESPONSE_EVENT),
+                    MeasurementWindow.fromConfiguration(getRuntimeModule().getConfiguration()));
         }
 
         protected TraceWriterBuilder getDefaultWriterBuilder() {
             ObjectWriter writer = getObjectMapper().writer();
-            File file = Tracing.getTraceOutputFileConfiguration(getRuntimeModule().getConfiguration());
+            File file = Tracing.getTraceCompressedFile(
+                    getRuntimeModule().getConfiguration(),
+                    Tracing.getTraceOutputFileConfiguration(getRuntimeModule().getConfiguration()));
             Executor executor = getRuntimeModule().getExecutors().get(ExecutorService.class);
+            TraceFormat format = Tracing.getTraceFormat(getRuntimeModule().getConfiguration(), file);
             TraceHeader header = getDefaultTraceHeader();
             return TraceWriterBuilder.defaults()
                     .setHeader(header)
                     .setWriter(writer)
                     .setExecutor(executor)
-                    .setFile(file);
+                    .setFile(file)
+                    .setFormat(format)
+                    .setFlushPolicy(TraceFlushPolicy.fromConfiguration(getRuntimeModule().getConfiguration()))
+                    .setRollingPolicy(TraceRollingPolicy.fromConfiguration(getRuntimeModule().getConfiguration()));
         }
         
         protected TraceWriter getDefaultTraceWriter() {
@@ -288,7 +359,8 @@ public abstract class Tracing {
                 }
             } else {
                 logger.info("Trace output: {}", getTraceWriterBuilder().getFile());
-                return getTraceWriterBuilder().build();
+                return getTraceWriterBuilder().build()
+                        .setScheduler(getRuntimeModule().getExecutors().get(ScheduledExecutorService.class));
             }
         }
         
@@ -296,7 +368,9 @@ public abstract class Tracing {
         protected TraceEventPublisherService getDefaultTracePublisher() {
             return TraceEventPublisherService.newInstance(
                     BusFactory.SynchronousOnly(),
-                    getDefaultTraceWriter());
+                    AsyncTraceEventActor.forConfiguration(
+                            getRuntimeModule().getConfiguration(), 
+                            getDefaultTraceWriter()));
         }
     }
 }
@@ -0,0 +1,339 @@
+package edu.uw.zookeeper.client.trace;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.common.base.Function;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Queues;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.typesafe.config.ConfigValueType;
+
+import org.apache.zookeeper.KeeperException;
+
+import edu.uw.zookeeper.client.ClientExecutor;
+import edu.uw.zookeeper.common.Configurable;
+import edu.uw.zookeeper.common.Configuration;
+import edu.uw.zookeeper.data.Operations;
+import edu.uw.zookeeper.data.ZNodeLabel;
+import edu.uw.zookeeper.data.ZNodePath;
+import edu.uw.zookeeper.protocol.Operation;
+import edu.uw.zookeeper.protocol.proto.IMultiRequest;
+import edu.uw.zookeeper.protocol.proto.Records;
+
+/**
+ * Creates a perfect tree one level at a time,
+ * with batches of creates in multi transactions pipelined across connections.
+ *
+ * Children of znodes that already existed are listed first,
+ * so that existing subtrees are only traversed and never recreated.
+ * A batch that fails, e.g. because another client created one of its znodes,
+ * is retried one create at a time.
+ */
+public class TreeBootstrap implements Runnable {
+
+    public static TreeBootstrap fromConfiguration(
+            Configuration configuration,
+            GetSetClientBuilder.PerfectTreeParameters parameters,
+            List<? extends ClientExecutor<? super Records.Request, ?, ?>> clients) {
+        return create(
+                parameters,
+                ConfigurableBatch.get(configuration).intValue(),
+                ConfigurableOutstanding.get(configuration).intValue(),
+                clients);
+    }
+
+    public static TreeBootstrap create(
+            GetSetClientBuilder.PerfectTreeParameters parameters,
+            int batch,
+            int outstanding,
+            List<? extends ClientExecutor<? super Records.Request, ?, ?>> clients) {
+        checkArgument(batch > 0);
+        checkArgument(outstanding > 0);
+        checkArgument(! clients.isEmpty());
+        return new TreeBootstrap(
+                parameters, batch, outstanding * clients.size(),
+                ImmutableList.copyOf(clients),
+                LogManager.getLogger(TreeBootstrap.class));
+    }
+
+    @Configurable(path="data", arg="bootstrapConnections", key="connections", value="4", type=ConfigValueType.NUMBER, help="connections creating the tree")
+    public static class ConfigurableConnections implements Function<Configuration, Integer> {
+
+        public static Integer get(Configuration configuration) {
+            return new ConfigurableConnections().apply(configuration);
+        }
+
+        @Override
+        public Integer apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return Integer.valueOf(configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getInt(configurable.key()));
+        }
+    }
+
+    @Configurable(path="data", arg="bootstrapBatch", key="batch", value="100", type=ConfigValueType.NUMBER, help="creates per multi")
+    public static class ConfigurableBatch implements Function<Configuration, Integer> {
+
+        public static Integer get(Configuration configuration) {
+            return new ConfigurableBatch().apply(configuration);
+        }
+
+        @Override
+        public Integer apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return Integer.valueOf(configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getInt(configurable.key()));
+        }
+    }
+
+    @Configurable(path="data", arg="bootstrapOutstanding", key="outstanding", value="8", type=ConfigValueType.NUMBER, help="outstanding requests per connection")
+    public static class ConfigurableOutstanding implements Function<Configuration, Integer> {
+
+        public static Integer get(Configuration configuration) {
+            return new ConfigurableOutstanding().apply(configuration);
+        }
+
+        @Override
+        public Integer apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return Integer.valueOf(configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getInt(configurable.key()));
+        }
+    }
+
+    protected final Logger logger;
+    protected final GetSetClientBuilder.PerfectTreeParameters parameters;
+    protected final int batch;
+    protected final int permits;
+    protected final ImmutableList<? extends ClientExecutor<? super Records.Request, ?, ?>> clients;
+    protected final Semaphore outstanding;
+    protected final AtomicReference<Throwable> failure;
+    protected int next;
+
+    protected TreeBootstrap(
+            GetSetClientBuilder.PerfectTreeParameters parameters,
+            int batch,
+            int permits,
+            ImmutableList<? extends ClientExecutor<? super Records.Request, ?, ?>> clients,
+            Logger logger) {
+        this.logger = logger;
+        this.parameters = parameters;
+        this.batch = batch;
+        this.permits = permits;
+        this.clients = clients;
+        this.outstanding = new Semaphore(permits);
+        this.failure = new AtomicReference<Throwable>(null);
+        this.next = 0;
+    }
+
+    @Override
+    public void run() {
+        long start = System.nanoTime();
+        long total = 0L;
+        // znodes that existed, whose children are unknown
+        List<ZNodePath> existing = ImmutableList.<ZNodePath>of(ZNodePath.root());
+        // znodes created here, which have no children
+        List<ZNodePath> created = ImmutableList.of();
+        try {
+            for (int depth=1; depth<=parameters.getDepth(); ++depth) {
+                boolean leaves = (depth == parameters.getDepth());
+                Queue<ZNodePath> nextExisting = Queues.newConcurrentLinkedQueue();
+                Queue<ZNodePath> nextCreated = Queues.newConcurrentLinkedQueue();
+                Queue<ZNodePath> creates = Queues.newConcurrentLinkedQueue();
+                for (ZNodePath parent: existing) {
+                    list(parent, leaves ? null : nextExisting, creates);
+                }
+                await();
+                for (ZNodePath parent: created) {
+                    creates.addAll(children(parent));
+                }
+
+                Queue<ZNodePath> retries = Queues.newConcurrentLinkedQueue();
+                List<ZNodePath> pending = Lists.newArrayListWithCapacity(batch);
+                for (ZNodePath path: creates) {
+                    pending.add(path);
+                    if (pending.size() == batch) {
+                        multi(pending, leaves ? null : nextCreated, retries);
+                        pending = Lists.newArrayListWithCapacity(batch);
+                    }
+                }
+                if (! pending.isEmpty()) {
+                    multi(pending, leaves ? null : nextCreated, retries);
+                }
+                await();
+                for (ZNodePath path: retries) {
+                    create(path, leaves ? null : nextCreated, leaves ? null : nextExisting);
+                }
+                await();
+
+                logger.info("Created {} and skipped {} znodes at depth {}",
+                        creates.size(), (int) Math.pow(parameters.getBranching(), depth) - creates.size(), depth);
+                total += creates.size();
+                existing = ImmutableList.copyOf(nextExisting);
+                created = ImmutableList.copyOf(nextCreated);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        logger.info("Created {} znodes in {} ms", total, (System.nanoTime() - start) / 1000000L);
+    }
+
+    protected List<ZNodePath> children(ZNodePath parent) {
+        List<ZNodePath> children = Lists.newArrayListWithCapacity(parameters.getBranching());
+        for (int i=0; i<parameters.getBranching(); ++i) {
+            children.add(parent.join(ZNodeLabel.fromString(String.valueOf(i))));
+        }
+        return children;
+    }
+
+    protected void list(
+            final ZNodePath parent,
+            final Collection<ZNodePath> existing,
+            final Collection<ZNodePath> creates) throws InterruptedException {
+        final ListenableFuture<?> future = submit(
+                Operations.Requests.getChildren().setPath(parent).build());
+        future.addListener(new Response(future) {
+            @Override
+            protected void handle(Records.Response response) throws Exception {
+                Set<String> names = ImmutableSet.copyOf(
+                        ((Records.ChildrenGetter) unlessError(response)).getChildren());
+                for (int i=0; i<parameters.getBranching(); ++i) {
+                    String name = String.valueOf(i);
+                    ZNodePath child = parent.join(ZNodeLabel.fromString(name));
+                    if (names.contains(name)) {
+                        if (existing != null) {
+                            existing.add(child);
+                        }
+                    } else {
+                        creates.add(child);
+                    }
+                }
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    protected void multi(
+            final List<ZNodePath> paths,
+            final Collection<ZNodePath> created,
+            final Collection<ZNodePath> retries) throws InterruptedException {
+        List<Records.MultiOpRequest> creates = Lists.newArrayListWithCapacity(paths.size());
+        for (ZNodePath path: paths) {
+            creates.add((Records.MultiOpRequest) Operations.Requests.create().setPath(path).build());
+        }
+        final ListenableFuture<?> future = submit(new IMultiRequest(creates));
+        future.addListener(new Response(future) {
+            @SuppressWarnings("unchecked")
+            @Override
+            protected void handle(Records.Response response) throws Exception {
+                if (response instanceof Operation.Error) {
+                    retries.addAll(paths);
+                    return;
+                }
+                for (Records.MultiOpResponse result: (Iterable<Records.MultiOpResponse>) response) {
+                    if (result instanceof Operation.Error) {
+                        retries.addAll(paths);
+                        return;
+                    }
+                }
+                if (created != null) {
+                    created.addAll(paths);
+                }
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    protected void create(
+            final ZNodePath path,
+            final Collection<ZNodePath> created,
+            final Collection<ZNodePath> existing) throws InterruptedException {
+        final ListenableFuture<?> future = submit(
+                Operations.Requests.create().setPath(path).build());
+        future.addListener(new Response(future) {
+            @Override
+            protected void handle(Records.Response response) throws Exception {
+                if ((response instanceof Operation.Error)
+                        && (((Operation.Error) response).error() == KeeperException.Code.NODEEXISTS)) {
+                    if (existing != null) {
+                        existing.add(path);
+                    }
+                } else {
+                    unlessError(response);
+                    if (created != null) {
+                        created.add(path);
+                    }
+                }
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    protected static Records.Response unlessError(Records.Response response) throws KeeperException {
+        if (response instanceof Operation.Error) {
+            throw KeeperException.create(((Operation.Error) response).error());
+        }
+        return response;
+    }
+
+    protected ListenableFuture<?> submit(Records.Request request) throws InterruptedException {
+        outstanding.acquire();
+        ClientExecutor<? super Records.Request, ?, ?> client = clients.get(next);
+        next = (next + 1) % clients.size();
+        try {
+            return client.submit(request);
+        } catch (RuntimeException e) {
+            outstanding.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Waits for every submitted request.
+     */
+    protected void await() throws InterruptedException {
+        outstanding.acquire(permits);
+        outstanding.release(permits);
+        Throwable t = failure.get();
+        if (t != null) {
+            throw Throwables.propagate(t);
+        }
+    }
+
+    protected abstract class Response implements Runnable {
+
+        protected final ListenableFuture<?> future;
+
+        protected Response(ListenableFuture<?> future) {
+            this.future = future;
+        }
+
+        @Override
+        public void run() {
+            try {
+                handle((Records.Response) ((Operation.ProtocolResponse<?>) future.get()).record());
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                outstanding.release();
+            }
+        }
+
+        protected abstract void handle(Records.Response response) throws Exception;
+    }
+}
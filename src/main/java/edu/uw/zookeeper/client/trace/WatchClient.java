@@ -0,0 +1,45 @@
+package edu.uw.zookeeper.client.trace;
+
+import com.google.common.util.concurrent.Service;
+
+import edu.uw.zookeeper.ZooKeeperApplication;
+import edu.uw.zookeeper.common.Application;
+import edu.uw.zookeeper.common.ServiceApplication;
+import edu.uw.zookeeper.common.ServiceMonitor;
+
+public class WatchClient extends ZooKeeperApplication.ForwardingApplication {
+
+    public static void main(String[] args) {
+        ZooKeeperApplication.main(args, new MainBuilder());
+    }
+
+    protected WatchClient(Application delegate) {
+        super(delegate);
+    }
+
+    protected static class MainBuilder extends ZooKeeperApplication.ForwardingBuilder<WatchClient, WatchClientBuilder, MainBuilder> {
+        
+        public MainBuilder() {
+            this(WatchClientBuilder.defaults());
+        }
+
+        public MainBuilder(
+                WatchClientBuilder delegate) {
+            super(delegate);
+        }
+
+        @Override
+        protected MainBuilder newInstance(WatchClientBuilder delegate) {
+            return new MainBuilder(delegate);
+        }
+
+        @Override
+        protected WatchClient doBuild() {
+            ServiceMonitor monitor = getRuntimeModule().getServiceMonitor();
+            for (Service service: delegate.build()) {
+                monitor.add(service);
+            }
+            return new WatchClient(ServiceApplication.forService(monitor));
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package edu.uw.zookeeper.client.trace;
+
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Service;
+
+import edu.uw.zookeeper.client.ConnectionClientExecutorsService;
+import edu.uw.zookeeper.common.Configuration;
+import edu.uw.zookeeper.common.CountingGenerator;
+import edu.uw.zookeeper.common.Factory;
+import edu.uw.zookeeper.common.RunnableService;
+import edu.uw.zookeeper.common.RuntimeModule;
+import edu.uw.zookeeper.protocol.Operation;
+import edu.uw.zookeeper.protocol.client.ClientConnectionFactoryBuilder;
+import edu.uw.zookeeper.protocol.client.ConnectionClientExecutor;
+
+/**
+ * Measures the delivery of watch notifications from one writer to many watchers.
+ */
+public class WatchClientBuilder extends Tracing.TraceWritingBuilder<List<Service>, WatchClientBuilder> {
+
+    public static WatchClientBuilder defaults() {
+        return new WatchClientBuilder(
+                null, null, null, null, null, null);
+    }
+
+    protected final WatchFanout fanout;
+    protected final ConnectionClientExecutorsService.OperationBuilder connectionBuilder;
+    
+    protected WatchClientBuilder(
+            WatchFanout fanout,
+            ConnectionClientExecutorsService.OperationBuilder connectionBuilder,
+            TraceWriterBuilder writerBuilder,
+            TraceEventPublisherService tracePublisher, 
+            ObjectMapper mapper,
+            RuntimeModule runtime) {
+        super(writerBuilder, tracePublisher, mapper, runtime);
+        this.fanout = fanout;
+        this.connectionBuilder = connectionBuilder;
+    }
+
+    public WatchFanout getFanout() {
+        return fanout;
+    }
+
+    public WatchClientBuilder setFanout(WatchFanout fanout) {
+        if (this.fanout == fanout) {
+            return this;
+        } else {
+            return newInstance(fanout, connectionBuilder, writerBuilder, tracePublisher, mapper, runtime);
+        }
+    }
+
+    public ConnectionClientExecutorsService.OperationBuilder getConnectionBuilder() {
+        return connectionBuilder;
+    }
+
+    public WatchClientBuilder setConnectionBuilder(ConnectionClientExecutorsService.OperationBuilder connectionBuilder) {
+        if (this.connectionBuilder == connectionBuilder) {
+            return this;
+        } else {
+            return newInstance(fanout, connectionBuilder, writerBuilder, tracePublisher, mapper, runtime);
+        }
+    }
+
+    /**
+     * The fanout must be set before the connections, which report to it.
+     */
+    @Override
+    public WatchClientBuilder setDefaults() {
+        WatchClientBuilder builder = super.setDefaults();
+        if (this == builder) {
+            if (fanout == null) {
+                return setFanout(getDefaultFanout()).setDefaults();
+            }
+            if (connectionBuilder == null) {
+                return setConnectionBuilder(getDefaultConnectionBuilder()).setDefaults();
+            }
+            ConnectionClientExecutorsService.OperationBuilder connectionBuilder = this.connectionBuilder.setDefaults();
+            if (this.connectionBuilder != connectionBuilder) {
+                return setConnectionBuilder(connectionBuilder).setDefaults();
+            }
+        }
+        return builder;
+    }
+
+    @Override
+    protected WatchClientBuilder newInstance(
+            TraceWriterBuilder writerBuilder,
+            TraceEventPublisherService tracePublisher, 
+            ObjectMapper mapper,
+            RuntimeModule runtime) {
+        return newInstance(fanout, connectionBuilder, writerBuilder, tracePublisher, mapper, runtime);
+    }
+    
+    protected WatchClientBuilder newInstance(
+            WatchFanout fanout,
+            ConnectionClientExecutorsService.OperationBuilder connectionBuilder,
+            TraceWriterBuilder writerBuilder,
+            TraceEventPublisherService tracePublisher, 
+            ObjectMapper mapper,
+            RuntimeModule runtime) {
+        return new WatchClientBuilder(fanout, connectionBuilder, writerBuilder, tracePublisher, mapper, runtime);
+    }
+    
+    @Override
+    protected List<Service> doBuild() {
+        List<Service> services = Lists.newArrayList();
+        services.add(getTracePublisher());
+        services.addAll(getConnectionBuilder().build());
+        services.add(RunnableService.create(getDefaultRunnable()));
+        return services;
+    }
+
+    /**
+     * Throughput is notifications received.
+     */
+    @Override
+    protected TraceHeader getDefaultTraceHeader() {
+        return TraceHeader.create(
+                Tracing.getTraceDescription(getRuntimeModule().getConfiguration()), 
+                TraceEventTag.TIMESTAMP_EVENT, 
+                TraceEventTag.THROUGHPUT_MEASUREMENT_EVENT,
+                TraceEventTag.SESSION_EVENT,
+                TraceEventTag.NOTIFICATION_EVENT);
+    }
+    
+    protected WatchFanout getDefaultFanout() {
+        return WatchFanout.fromConfiguration(
+                getRuntimeModule().getConfiguration(), 
+                CountingGenerator.ConfigurableIterations.get(getRuntimeModule().getConfiguration()), 
+                getTracePublisher().getPublisher(), 
+                getRuntimeModule().getExecutors().get(ScheduledExecutorService.class));
+    }
+    
+    protected ClientConnectionFactoryBuilder getDefaultClientConnectionFactoryBuilder() {
+        return ClientConnectionFactoryBuilder.defaults()
+                .setCodecFactory(
+                    new Factory<NotificationTimingCodec>() {
+                        @Override
+                        public NotificationTimingCodec get() {
+                            return NotificationTimingCodec.defaults(getFanout());
+                        }
+                    })
+                .setRuntimeModule(getRuntimeModule())
+                .setDefaults();
+    }
+    
+    protected ConnectionClientExecutorsService.OperationBuilder getDefaultConnectionBuilder() {
+        return ConnectionClientExecutorsService.builder()
+                .setConnectionBuilder(getDefaultClientConnectionFactoryBuilder())
+                .setRuntimeModule(getRuntimeModule())
+                .setDefaults(); 
+    }
+    
+    /**
+     * The first session writes and the rest watch.
+     */
+    protected Runnable getDefaultRunnable() {
+        Configuration configuration = getRuntimeModule().getConfiguration();
+        final int watchers = WatchFanout.ConfigurableWatchers.get(configuration).intValue();
+        final SessionConnector connector = SessionConnector.create(
+                getConnectionBuilder().getConnectionClientExecutors(), 
+                SessionConnector.ConfigurableConcurrency.get(configuration).intValue(), 
+                getTracePublisher().getPublisher());
+        final WatchFanout fanout = getFanout();
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    List<ConnectionClientExecutor<Operation.Request,?,?,?>> clients = connector.connect(watchers + 1);
+                    fanout.run(clients.get(0), clients.subList(1, clients.size()));
+                } catch (Exception e) {
+                    throw Throwables.propagate(e);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,309 @@
+package edu.uw.zookeeper.client.trace;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.engio.mbassy.bus.common.PubSubSupport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import org.apache.zookeeper.KeeperException;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.typesafe.config.ConfigValueType;
+
+import edu.uw.zookeeper.client.ClientExecutor;
+import edu.uw.zookeeper.common.Configurable;
+import edu.uw.zookeeper.common.Configuration;
+import edu.uw.zookeeper.common.TimeValue;
+import edu.uw.zookeeper.data.Operations;
+import edu.uw.zookeeper.data.ZNodeLabel;
+import edu.uw.zookeeper.data.ZNodePath;
+import edu.uw.zookeeper.protocol.Operation;
+import edu.uw.zookeeper.protocol.proto.Records;
+
+/**
+ * Measures watch delivery: in each round, every watcher sets a data watch
+ * on every shared znode, and then the writer sets the data of each znode.
+ *
+ * The time from sending each write until each watcher received its notification
+ * is published as a NotificationEvent. The fan-out latency of a write is the time
+ * between its first and last notification, and notifications per interval
+ * are published as throughput.
+ */
+public class WatchFanout implements NotificationListener {
+
+    public static WatchFanout fromConfiguration(
+            Configuration configuration,
+            int rounds,
+            PubSubSupport<? super TraceEvent> publisher,
+            ScheduledExecutorService scheduler) {
+        return create(
+                ConfigurableZNodes.get(configuration).intValue(),
+                rounds,
+                ConfigurableTimeout.get(configuration).value(TimeUnit.NANOSECONDS),
+                ThroughputMeasuringActor.ConfigurableThroughputInterval.get(configuration).value(TimeUnit.NANOSECONDS),
+                publisher,
+                scheduler);
+    }
+
+    public static WatchFanout create(
+            int znodes,
+            int rounds,
+            long timeoutNanos,
+            long intervalNanos,
+            PubSubSupport<? super TraceEvent> publisher,
+            ScheduledExecutorService scheduler) {
+        checkArgument(znodes > 0);
+        checkArgument(intervalNanos > 0L);
+        ImmutableList.Builder<ZNodePath> paths = ImmutableList.builder();
+        for (int i=0; i<znodes; ++i) {
+            paths.add(ZNodePath.root().join(ZNodeLabel.fromString(String.format("watch-%d", i))));
+        }
+        return new WatchFanout(paths.build(), rounds, timeoutNanos, intervalNanos,
+                publisher, scheduler, LogManager.getLogger(WatchFanout.class));
+    }
+
+    @Configurable(path="watch", arg="watchers", key="watchers", value="10", type=ConfigValueType.NUMBER, help="watching sessions")
+    public static class ConfigurableWatchers implements Function<Configuration, Integer> {
+
+        public static Integer get(Configuration configuration) {
+            return new ConfigurableWatchers().apply(configuration);
+        }
+
+        @Override
+        public Integer apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getInt(configurable.key());
+        }
+    }
+
+    @Configurable(path="watch", arg="watchZNodes", key="znodes", value="1", type=ConfigValueType.NUMBER, help="watched znodes, each written once per round")
+    public static class ConfigurableZNodes implements Function<Configuration, Integer> {
+
+        public static Integer get(Configuration configuration) {
+            return new ConfigurableZNodes().apply(configuration);
+        }
+
+        @Override
+        public Integer apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getInt(configurable.key());
+        }
+    }
+
+    @Configurable(path="watch", arg="watchTimeout", key="timeout", value="10 s", help="time to wait for the notifications of a round")
+    public static class ConfigurableTimeout implements Function<Configuration, TimeValue> {
+
+        public static TimeValue get(Configuration configuration) {
+            return new ConfigurableTimeout().apply(configuration);
+        }
+
+        @Override
+        public TimeValue apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return TimeValue.fromString(configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getString(configurable.key()));
+        }
+    }
+
+    protected final Logger logger;
+    protected final ImmutableList<ZNodePath> paths;
+    protected final int rounds;
+    protected final long timeoutNanos;
+    protected final long intervalNanos;
+    protected final PubSubSupport<? super TraceEvent> publisher;
+    protected final ScheduledExecutorService scheduler;
+    protected final ConcurrentMap<String, Write> writes;
+    protected final AtomicInteger notified;
+    protected final AtomicLong total;
+    protected final LatencyHistogram notifyLatency;
+    protected final LatencyHistogram fanoutLatency;
+
+    protected WatchFanout(
+            ImmutableList<ZNodePath> paths,
+            int rounds,
+            long timeoutNanos,
+            long intervalNanos,
+            PubSubSupport<? super TraceEvent> publisher,
+            ScheduledExecutorService scheduler,
+            Logger logger) {
+        this.logger = logger;
+        this.paths = paths;
+        this.rounds = rounds;
+        this.timeoutNanos = timeoutNanos;
+        this.intervalNanos = intervalNanos;
+        this.publisher = publisher;
+        this.scheduler = scheduler;
+        this.writes = Maps.newConcurrentMap();
+        this.notified = new AtomicInteger(0);
+        this.total = new AtomicLong(0L);
+        this.notifyLatency = LatencyHistogram.create();
+        this.fanoutLatency = LatencyHistogram.create();
+    }
+
+    /**
+     * Called from I/O threads, so only records.
+     */
+    @Override
+    public void handleNotification(long sessionId, String path, long nanos) {
+        Write write = writes.get(path);
+        if (write == null) {
+            return;
+        }
+        long latency = nanos - write.sent;
+        notifyLatency.record(TimeUnit.NANOSECONDS.toMicros(latency));
+        publisher.publish(NotificationEvent.fromNanos(sessionId, path, latency));
+        notified.incrementAndGet();
+        total.incrementAndGet();
+        write.received(nanos);
+    }
+
+    public void run(
+            ClientExecutor<? super Records.Request, ?, ?> writer,
+            List<? extends ClientExecutor<? super Records.Request, ?, ?>> watchers) throws Exception {
+        List<ListenableFuture<?>> futures = Lists.newArrayListWithCapacity(paths.size());
+        for (ZNodePath path: paths) {
+            futures.add(writer.submit(Operations.Requests.create().setPath(path).build()));
+        }
+        for (ListenableFuture<?> future: futures) {
+            Records.Response response = response(future);
+            if (! ((response instanceof Operation.Error)
+                    && (((Operation.Error) response).error() == KeeperException.Code.NODEEXISTS))) {
+                unlessError(response);
+            }
+        }
+
+        ScheduledFuture<?> throughput = scheduler.scheduleAtFixedRate(new Runnable() {
+            long last = System.nanoTime();
+            @Override
+            public void run() {
+                long now = System.nanoTime();
+                publisher.publish(ThroughputMeasurementEvent.fromNanos(notified.getAndSet(0), now - last));
+                last = now;
+            }
+        }, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+        long start = System.nanoTime();
+        long missed = 0L;
+        int round = 0;
+        try {
+            for (; round<rounds; ++round) {
+                futures = Lists.newArrayListWithCapacity(paths.size() * watchers.size());
+                for (ClientExecutor<? super Records.Request, ?, ?> watcher: watchers) {
+                    for (ZNodePath path: paths) {
+                        futures.add(watcher.submit(Operations.Requests.getData().setPath(path).setWatch(true).build()));
+                    }
+                }
+                for (ListenableFuture<?> future: futures) {
+                    unlessError(response(future));
+                }
+
+                CountDownLatch latch = new CountDownLatch(paths.size() * watchers.size());
+                List<Write> pending = Lists.newArrayListWithCapacity(paths.size());
+                futures = Lists.newArrayListWithCapacity(paths.size());
+                for (ZNodePath path: paths) {
+                    Write write = new Write(latch, System.nanoTime());
+                    writes.put(path.toString(), write);
+                    pending.add(write);
+                    futures.add(writer.submit(Operations.Requests.setData().setPath(path).setData(new byte[0]).build()));
+                }
+                for (ListenableFuture<?> future: futures) {
+                    unlessError(response(future));
+                }
+                if (! latch.await(timeoutNanos, TimeUnit.NANOSECONDS)) {
+                    missed += latch.getCount();
+                }
+                writes.clear();
+                for (Write write: pending) {
+                    long fanout = write.fanout();
+                    if (fanout >= 0L) {
+                        fanoutLatency.record(TimeUnit.NANOSECONDS.toMicros(fanout));
+                    }
+                }
+            }
+        } finally {
+            throughput.cancel(false);
+            long nanos = System.nanoTime() - start;
+            long count = total.get();
+            logger.info("Received {} notifications ({} missed) in {} rounds of {} writes in {} ms ({} per second)",
+                    count, missed, round, paths.size(),
+                    TimeUnit.NANOSECONDS.toMillis(nanos),
+                    (nanos > 0L) ? (count * TimeUnit.SECONDS.toNanos(1L)) / nanos : 0L);
+            log("Notification", notifyLatency.getAndReset());
+            log("Fan-out", fanoutLatency.getAndReset());
+        }
+    }
+
+    protected void log(String name, LatencyHistogram.Snapshot snapshot) {
+        logger.info("{} latency (us): count={} p50={} p99={} p99.9={} max={}",
+                name,
+                snapshot.count(),
+                snapshot.valueAtPercentile(50.0),
+                snapshot.valueAtPercentile(99.0),
+                snapshot.valueAtPercentile(99.9),
+                snapshot.max());
+    }
+
+    protected static Records.Response response(ListenableFuture<?> future) throws Exception {
+        return (Records.Response) ((Operation.ProtocolResponse<?>) future.get()).record();
+    }
+
+    protected static Records.Response unlessError(Records.Response response) throws KeeperException {
+        if (response instanceof Operation.Error) {
+            throw KeeperException.create(((Operation.Error) response).error());
+        }
+        return response;
+    }
+
+    protected static final class Write {
+
+        protected final CountDownLatch latch;
+        protected final long sent;
+        protected long first;
+        protected long last;
+
+        public Write(CountDownLatch latch, long sent) {
+            this.latch = latch;
+            this.sent = sent;
+            this.first = Long.MAX_VALUE;
+            this.last = Long.MIN_VALUE;
+        }
+
+        /**
+         * Notifications are decoded on different threads,
+         * so they needn't arrive here in order.
+         */
+        public void received(long nanos) {
+            synchronized (this) {
+                first = Math.min(first, nanos);
+                last = Math.max(last, nanos);
+            }
+            latch.countDown();
+        }
+
+        /**
+         * @return negative if nothing was received
+         */
+        public synchronized long fanout() {
+            return (last >= first) ? last - first : -1L;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package edu.uw.zookeeper.client.trace;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.common.base.MoreObjects;
+
+import edu.uw.zookeeper.protocol.proto.OpCode;
+
+/**
+ * Preallocated ring of request send times indexed by xid.
+ * 
+ * Xids are assigned sequentially, so outstanding requests map to distinct slots
+ * as long as there are fewer of them than the capacity.
+ * A request whose slot is still occupied is not timed.
+ */
+public final class XidTimings {
+
+    public static final int DEFAULT_CAPACITY = 1 << 12;
+    
+    public static XidTimings create() {
+        return create(DEFAULT_CAPACITY);
+    }
+    
+    public static XidTimings create(int capacity) {
+        checkArgument(capacity > 0);
+        int n = (capacity == 1) ? 1 : (Integer.highestOneBit(capacity - 1) << 1);
+        return new XidTimings(n);
+    }
+    
+    private static final int EMPTY = Integer.MIN_VALUE;
+    
+    private final int mask;
+    private final AtomicIntegerArray xids;
+    private final AtomicIntegerArray opcodes;
+    private final AtomicLongArray nanos;
+    
+    private XidTimings(int capacity) {
+        this.mask = capacity - 1;
+        this.xids = new AtomicIntegerArray(capacity);
+        this.opcodes = new AtomicIntegerArray(capacity);
+        this.nanos = new AtomicLongArray(capacity);
+        for (int i=0; i<capacity; ++i) {
+            xids.set(i, EMPTY);
+        }
+    }
+    
+    public int capacity() {
+        return xids.length();
+    }
+    
+    /**
+     * @return false if the slot for this xid is occupied
+     */
+    public boolean put(int xid, OpCode opcode, long requestNanos) {
+        int slot = xid & mask;
+        if (xids.get(slot) != EMPTY) {
+            return false;
+        }
+        nanos.set(slot, requestNanos);
+        opcodes.set(slot, opcode.intValue());
+        xids.set(slot, xid);
+        return true;
+    }
+    
+    /**
+     * Reports the timing of this xid with the opcode of its request,
+     * as the response may only carry the error opcode.
+     * 
+     * @param error zero if the operation succeeded, otherwise the error code
+     * @return false if this xid wasn't timed
+     */
+    public boolean remove(int xid, long sessionId, int error, long responseNanos, OperationTimingListener listener) {
+        int slot = xid & mask;
+        if (xids.get(slot) != xid) {
+            return false;
+        }
+        long requestNanos = nanos.get(slot);
+        int opcode = opcodes.get(slot);
+        if (! xids.compareAndSet(slot, xid, EMPTY)) {
+            return false;
+        }
+        listener.handleOperationTiming(
+                sessionId, 
+                OpCode.of(opcode), 
+                error, 
+                requestNanos, 
+                responseNanos);
+        return true;
+    }
+    
+    /**
+     * Removes every outstanding request, reporting it as timed out.
+     */
+    public void expire(long sessionId, OperationTimingListener listener) {
+        for (int i=0; i<xids.length(); ++i) {
+            if (xids.getAndSet(i, EMPTY) != EMPTY) {
+                listener.handleOperationTiming(
+                        sessionId, 
+                        OpCode.of(opcodes.get(i)), 
+                        0, 
+                        nanos.get(i), 
+                        OperationEvent.TIMEOUT);
+            }
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("capacity", capacity())
+                .toString();
+    }
+}
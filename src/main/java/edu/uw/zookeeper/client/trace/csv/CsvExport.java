@@ -2,6 +2,7 @@ package edu.uw.zookeeper.client.trace.csv;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -10,11 +11,12 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Function;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.typesafe.config.ConfigValueType;
 
 import edu.uw.zookeeper.ZooKeeperApplication;
+import edu.uw.zookeeper.client.trace.TraceEvent;
 import edu.uw.zookeeper.client.trace.TraceEventIterator;
-import edu.uw.zookeeper.client.trace.TraceEventTag;
 import edu.uw.zookeeper.client.trace.TraceHeader;
 import edu.uw.zookeeper.client.trace.csv.CsvSchema.CsvSchemaBuilder;
 import edu.uw.zookeeper.common.Application;
@@ -30,43 +32,84 @@ public class CsvExport implements Application {
 
     protected final Logger logger;
     protected final Builder builder;
-    protected final ImmutableList<Application> exporters;
+    protected final ImmutableList<SeriesExporter> exporters;
     
     protected CsvExport(Builder builder) {
         this.logger = LogManager.getLogger(getClass());
         this.builder = builder;
         
-        ImmutableList.Builder<Application> exporters = ImmutableList.builder();
-        boolean latencies = LatencySeriesConfiguration.get(builder.getRuntimeModule().getConfiguration());
-        boolean operations = OperationsSeriesConfiguration.get(builder.getRuntimeModule().getConfiguration());
-        if (! builder.getRuntimeModule().getConfiguration().getArguments().helpOptionSet()) {
-            try {
-                TraceEventIterator events = TraceEventIterator.forFile(builder.getInputFile(), builder.getObjectMapper().reader());
-                TraceHeader header = events.header();
-                events.close();
-                if (! header.getTypes().contains(TraceEventTag.LATENCY_MEASUREMENT_EVENT)) {
-                    latencies = false;
-                }
-                if (! header.getTypes().contains(TraceEventTag.THROUGHPUT_MEASUREMENT_EVENT)) {
-                    operations = false;
-                }
-            } catch (IOException e) {
-                throw Throwables.propagate(e);
-            }
+        ImmutableList.Builder<SeriesExporter> exporters = ImmutableList.builder();
+        if (LatencySeriesConfiguration.get(builder.getRuntimeModule().getConfiguration())) {
+            exporters.add(LatencySeries.exporter());
+        }
+        if (OperationsSeriesConfiguration.get(builder.getRuntimeModule().getConfiguration())) {
+            exporters.add(OperationsTimeSeries.exporter());
+        }
+        if (HistogramSeriesConfiguration.get(builder.getRuntimeModule().getConfiguration())) {
+            exporters.add(LatencyHistogramSeries.exporter());
         }
-        if (latencies) {
-            exporters.add(new ExportLatencySeries());
+        if (SessionSeriesConfiguration.get(builder.getRuntimeModule().getConfiguration())) {
+            exporters.add(SessionSeries.exporter());
         }
-        if (operations) {
-            exporters.add(new ExportOperationsSeries());
+        if (NotificationSeriesConfiguration.get(builder.getRuntimeModule().getConfiguration())) {
+            exporters.add(NotificationSeries.exporter());
+        }
+        if (LockSeriesConfiguration.get(builder.getRuntimeModule().getConfiguration())) {
+            exporters.add(LockSeries.exporter());
+        }
+        if (MultiSeriesConfiguration.get(builder.getRuntimeModule().getConfiguration())) {
+            exporters.add(MultiSeries.exporter());
+        }
+        if (OperationLatencySeriesConfiguration.get(builder.getRuntimeModule().getConfiguration())) {
+            exporters.add(OperationLatencySeries.exporter());
+        }
+        if (OperationThroughputSeriesConfiguration.get(builder.getRuntimeModule().getConfiguration())) {
+            exporters.add(OperationThroughputSeries.exporter());
         }
         this.exporters = exporters.build();
     }
 
+    /**
+     * Reads the trace once, pushing each event to every enabled series.
+     */
     @Override
     public void run() {
-        for (Application e: exporters) {
-            e.run();
+        File inputPath = builder.getInputFile();
+        String filePrefix = inputPath.getName().substring(
+                0, inputPath.getName().lastIndexOf('.'));
+        try {
+            TraceEventIterator events = TraceEventIterator.forFile(inputPath, builder.getObjectMapper().reader());
+            List<SeriesAppender> appenders = Lists.newArrayListWithCapacity(exporters.size());
+            try {
+                TraceHeader header = events.header();
+                for (SeriesExporter exporter: exporters) {
+                    if (exporter.isEnabled(header)) {
+                        appenders.add(exporter.newAppender(
+                                header,
+                                builder.getCsvSchema(), 
+                                builder.getOutputFile(), 
+                                filePrefix));
+                    }
+                }
+                if (! appenders.isEmpty()) {
+                    while (events.hasNext()) {
+                        TraceEvent event = events.next();
+                        for (SeriesAppender appender: appenders) {
+                            appender.append(event);
+                        }
+                    }
+                }
+            } finally {
+                try {
+                    for (SeriesAppender appender: appenders) {
+                        appender.close();
+                    }
+                } finally {
+                    events.close();
+                }
+            }
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
         }
     }
     
@@ -127,42 +170,115 @@ public class CsvExport implements Application {
         }
     }
 
+    @Configurable(arg="percentiles", path="csv", key="histogramSeries", value="true", type=ConfigValueType.BOOLEAN)
+    public static class HistogramSeriesConfiguration implements Function<Configuration, Boolean> {
 
-    public class ExportOperationsSeries implements Application {
+        public static Boolean get(Configuration configuration) {
+            return new HistogramSeriesConfiguration().apply(configuration);
+        }
 
         @Override
-        public void run() {
-            File inputPath = builder.getInputFile();
-            String filePrefix = inputPath.getName().substring(
-                    0, inputPath.getName().lastIndexOf('.'));
-            try {
-                TraceEventIterator events = TraceEventIterator.forFile(inputPath, builder.getObjectMapper().reader());
-                OperationsTimeSeries.eventsToCsvFile(
-                        builder.getCsvSchema(), 
-                        OperationsTimeSeries.toFile(builder.getOutputFile(), filePrefix), 
-                        events);
-            } catch (IOException e) {
-                throw Throwables.propagate(e);
-            }
+        public Boolean apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getBoolean(configurable.key());
         }
     }
-    
-    public class ExportLatencySeries implements Application {
+
+    @Configurable(arg="sessions", path="csv", key="sessionSeries", value="true", type=ConfigValueType.BOOLEAN)
+    public static class SessionSeriesConfiguration implements Function<Configuration, Boolean> {
+
+        public static Boolean get(Configuration configuration) {
+            return new SessionSeriesConfiguration().apply(configuration);
+        }
 
         @Override
-        public void run() {
-            File inputPath = builder.getInputFile();
-            String filePrefix = inputPath.getName().substring(
-                    0, inputPath.getName().lastIndexOf('.'));
-            try {
-                TraceEventIterator events = TraceEventIterator.forFile(inputPath, builder.getObjectMapper().reader());
-                LatencySeries.eventsToCsvFile(
-                        builder.getCsvSchema(), 
-                        LatencySeries.toFile(builder.getOutputFile(), filePrefix), 
-                        events);
-            } catch (IOException e) {
-                throw Throwables.propagate(e);
-            }
+        public Boolean apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getBoolean(configurable.key());
+        }
+    }
+
+    @Configurable(arg="notifications", path="csv", key="notificationSeries", value="true", type=ConfigValueType.BOOLEAN)
+    public static class NotificationSeriesConfiguration implements Function<Configuration, Boolean> {
+
+        public static Boolean get(Configuration configuration) {
+            return new NotificationSeriesConfiguration().apply(configuration);
+        }
+
+        @Override
+        public Boolean apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getBoolean(configurable.key());
+        }
+    }
+
+    @Configurable(arg="locks", path="csv", key="lockSeries", value="true", type=ConfigValueType.BOOLEAN)
+    public static class LockSeriesConfiguration implements Function<Configuration, Boolean> {
+
+        public static Boolean get(Configuration configuration) {
+            return new LockSeriesConfiguration().apply(configuration);
+        }
+
+        @Override
+        public Boolean apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getBoolean(configurable.key());
+        }
+    }
+
+    @Configurable(arg="multis", path="csv", key="multiSeries", value="true", type=ConfigValueType.BOOLEAN)
+    public static class MultiSeriesConfiguration implements Function<Configuration, Boolean> {
+
+        public static Boolean get(Configuration configuration) {
+            return new MultiSeriesConfiguration().apply(configuration);
+        }
+
+        @Override
+        public Boolean apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getBoolean(configurable.key());
+        }
+    }
+
+    @Configurable(arg="opLatencies", path="csv", key="operationLatencySeries", value="true", type=ConfigValueType.BOOLEAN)
+    public static class OperationLatencySeriesConfiguration implements Function<Configuration, Boolean> {
+
+        public static Boolean get(Configuration configuration) {
+            return new OperationLatencySeriesConfiguration().apply(configuration);
+        }
+
+        @Override
+        public Boolean apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getBoolean(configurable.key());
+        }
+    }
+
+    @Configurable(arg="opOperations", path="csv", key="operationThroughputSeries", value="true", type=ConfigValueType.BOOLEAN)
+    public static class OperationThroughputSeriesConfiguration implements Function<Configuration, Boolean> {
+
+        public static Boolean get(Configuration configuration) {
+            return new OperationThroughputSeriesConfiguration().apply(configuration);
+        }
+
+        @Override
+        public Boolean apply(Configuration configuration) {
+            Configurable configurable = getClass().getAnnotation(Configurable.class);
+            return configuration.withConfigurable(configurable)
+                        .getConfigOrEmpty(configurable.path())
+                            .getBoolean(configurable.key());
         }
     }
 }
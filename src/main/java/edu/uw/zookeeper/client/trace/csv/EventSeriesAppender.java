@@ -0,0 +1,39 @@
+package edu.uw.zookeeper.client.trace.csv;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+
+import edu.uw.zookeeper.client.trace.TraceEvent;
+
+public abstract class EventSeriesAppender<T extends TraceEvent> implements SeriesAppender {
+
+    protected final Class<T> type;
+    protected final CsvAppender writer;
+    
+    protected EventSeriesAppender(
+            Class<T> type,
+            CsvAppender writer) {
+        this.type = checkNotNull(type);
+        this.writer = checkNotNull(writer);
+    }
+    
+    @Override
+    public EventSeriesAppender<T> append(TraceEvent event) throws IOException {
+        if (type.isInstance(event)) {
+            appendEvent(type.cast(event));
+        }
+        return this;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writer.flush();
+        } finally {
+            writer.close();
+        }
+    }
+    
+    protected abstract void appendEvent(T event) throws IOException;
+}
@@ -0,0 +1,82 @@
+package edu.uw.zookeeper.client.trace.csv;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import com.google.common.collect.Maps;
+
+import edu.uw.zookeeper.client.trace.TraceEvent;
+
+/**
+ * Writes one file per label,
+ * opened on the first event for each.
+ */
+public abstract class KeyedSeriesAppender<T extends TraceEvent> implements SeriesAppender {
+
+    protected final Class<T> type;
+    protected final File directory;
+    protected final String prefix;
+    protected final String format;
+    protected final Map<String, CsvAppender> writers;
+
+    /**
+     * @param format of file names, given the prefix, label, and suffix
+     */
+    protected KeyedSeriesAppender(
+            Class<T> type,
+            File directory,
+            String prefix,
+            String format) {
+        this.type = checkNotNull(type);
+        this.directory = directory;
+        this.prefix = prefix;
+        this.format = format;
+        this.writers = Maps.newHashMap();
+    }
+
+    @Override
+    public KeyedSeriesAppender<T> append(TraceEvent event) throws IOException {
+        if (type.isInstance(event)) {
+            appendEvent(type.cast(event));
+        }
+        return this;
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException error = null;
+        for (CsvAppender writer: writers.values()) {
+            try {
+                writer.flush();
+                writer.close();
+            } catch (IOException e) {
+                if (error == null) {
+                    error = e;
+                }
+            }
+        }
+        writers.clear();
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * @param schema of the file, if it isn't open yet
+     */
+    protected CsvAppender writer(String label, CsvSchema schema) throws IOException {
+        CsvAppender writer = writers.get(label);
+        if (writer == null) {
+            writer = CsvAppender.forFile(
+                    new File(directory, String.format(format, prefix, label, Csv.SUFFIX)),
+                    schema);
+            writers.put(label, writer);
+        }
+        return writer;
+    }
+
+    protected abstract void appendEvent(T event) throws IOException;
+}
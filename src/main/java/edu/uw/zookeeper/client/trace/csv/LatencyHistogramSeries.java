@@ -0,0 +1,104 @@
+package edu.uw.zookeeper.client.trace.csv;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+
+import edu.uw.zookeeper.client.trace.LatencyHistogramEvent;
+import edu.uw.zookeeper.client.trace.MeasurementWindow;
+import edu.uw.zookeeper.client.trace.TraceEventTag;
+import edu.uw.zookeeper.client.trace.TraceHeader;
+
+public class LatencyHistogramSeries {
+    
+    public static String FILENAME_FORMAT = "%s-percentiles.%s";
+
+    public static File toFile(File parent, String prefix) {
+        return new File(parent, String.format(FILENAME_FORMAT, prefix, Csv.SUFFIX));
+    }
+
+    public static ImmutableList<CsvColumn> columns() {
+        Function<Object, String> millis = CsvSchema.forFormat("%04.3f");
+        return ImmutableList.of(
+                CsvColumn.create(
+                        CsvFieldType.FIELD_INT, "Time (ms)", CsvSchema.forFormat("%d")),
+                CsvColumn.create(
+                        CsvFieldType.FIELD_INT, "Operations", CsvSchema.forFormat("%d")),
+                CsvColumn.create(
+                        CsvFieldType.FIELD_FLOAT, "p50 (ms)", millis),
+                CsvColumn.create(
+                        CsvFieldType.FIELD_FLOAT, "p90 (ms)", millis),
+                CsvColumn.create(
+                        CsvFieldType.FIELD_FLOAT, "p99 (ms)", millis),
+                CsvColumn.create(
+                        CsvFieldType.FIELD_FLOAT, "p99.9 (ms)", millis),
+                CsvColumn.create(
+                        CsvFieldType.FIELD_FLOAT, "Max (ms)", millis));
+    }
+    
+    public static SeriesExporter exporter() {
+        return new SeriesExporter() {
+            @Override
+            public boolean isEnabled(TraceHeader header) {
+                return header.getTypes().contains(TraceEventTag.LATENCY_HISTOGRAM_EVENT);
+            }
+
+            @Override
+            public SeriesAppender newAppender(
+                    TraceHeader header, CsvSchema.CsvSchemaBuilder schema, 
+                    File directory, String prefix) throws IOException {
+                return HistogramAppender.forFile(schema, toFile(directory, prefix), header.getWindow());
+            }
+        };
+    }
+    
+    /**
+     * Time column is cumulative over the appended events,
+     * and intervals outside the measurement window are skipped.
+     */
+    public static class HistogramAppender extends EventSeriesAppender<LatencyHistogramEvent> {
+        
+        public static HistogramAppender forFile(
+                CsvSchema.CsvSchemaBuilder schema, File output) throws IOException {
+            return forFile(schema, output, MeasurementWindow.none());
+        }
+        
+        public static HistogramAppender forFile(
+                CsvSchema.CsvSchemaBuilder schema, File output, MeasurementWindow window) throws IOException {
+            return new HistogramAppender(CsvAppender.forFile(
+                    output, 
+                    schema.withColumns(columns()).build()), window);
+        }
+        
+        protected final MeasurementWindow window;
+        protected int time;
+        
+        public HistogramAppender(CsvAppender writer) {
+            this(writer, MeasurementWindow.none());
+        }
+        
+        public HistogramAppender(CsvAppender writer, MeasurementWindow window) {
+            super(LatencyHistogramEvent.class, writer);
+            this.window = window;
+            this.time = 0;
+        }
+
+        @Override
+        protected void appendEvent(LatencyHistogramEvent event) throws IOException {
+            time += event.getMillis();
+            if (! window.contains(time - event.getMillis(), time)) {
+                return;
+            }
+            writer.append(ImmutableList.of(
+                    Integer.valueOf(time), 
+                    Integer.valueOf(event.getCount()),
+                    Float.valueOf(event.getP50() / 1000.0f),
+                    Float.valueOf(event.getP90() / 1000.0f),
+                    Float.valueOf(event.getP99() / 1000.0f),
+                    Float.valueOf(event.getP999() / 1000.0f),
+                    Float.valueOf(event.getMax() / 1000.0f)));
+        }
+    }
+}
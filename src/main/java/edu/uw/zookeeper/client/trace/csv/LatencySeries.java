@@ -4,13 +4,12 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Iterator;
 
-import com.google.common.base.Function;
-import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterators;
 
 import edu.uw.zookeeper.client.trace.LatencyMeasurementEvent;
 import edu.uw.zookeeper.client.trace.TraceEvent;
+import edu.uw.zookeeper.client.trace.TraceEventTag;
+import edu.uw.zookeeper.client.trace.TraceHeader;
 
 public class LatencySeries {
     
@@ -22,15 +21,14 @@ public class LatencySeries {
     
     public static void eventsToCsvFile(
             CsvSchema.CsvSchemaBuilder schema, File output, Iterator<TraceEvent> events) throws IOException {
-        CsvAppender writer = CsvAppender.forFile(
-                output, 
-                schema.withColumns(columns()).build());
-        Iterator<ImmutableList<Float>> records = fromEvents(events);
-        while (records.hasNext()) {
-            writer.append(records.next());
+        LatencyAppender appender = LatencyAppender.forFile(schema, output);
+        try {
+            while (events.hasNext()) {
+                appender.append(events.next());
+            }
+        } finally {
+            appender.close();
         }
-        writer.flush();
-        writer.close();
     }
 
     public static ImmutableList<CsvColumn> columns() {
@@ -38,33 +36,40 @@ public class LatencySeries {
                 CsvFieldType.FIELD_FLOAT, "Latency (ms)", CsvSchema.forFormat("%04.3f")));
     }
     
-    public static Iterator<ImmutableList<Float>> fromEvents(Iterator<TraceEvent> events) {
-        return toRecords(
-                bound(
-                        Iterators.filter(
-                                events, LatencyMeasurementEvent.class)));
-    }
-    
-    public static Iterator<LatencyMeasurementEvent> bound(
-            Iterator<LatencyMeasurementEvent> events) {
-        return Iterators.filter(
-                events,
-                new Predicate<LatencyMeasurementEvent>() {
-                    @Override
-                    public boolean apply(LatencyMeasurementEvent input) {
-                        return input.getMicros() >= 0;
-                    }
-                });
+    public static SeriesExporter exporter() {
+        return new SeriesExporter() {
+            @Override
+            public boolean isEnabled(TraceHeader header) {
+                return header.getTypes().contains(TraceEventTag.LATENCY_MEASUREMENT_EVENT);
+            }
+
+            @Override
+            public SeriesAppender newAppender(
+                    TraceHeader header, CsvSchema.CsvSchemaBuilder schema, 
+                    File directory, String prefix) throws IOException {
+                return LatencyAppender.forFile(schema, toFile(directory, prefix));
+            }
+        };
     }
     
-    public static Iterator<ImmutableList<Float>> toRecords(Iterator<LatencyMeasurementEvent> events) {
-        return Iterators.transform(
-                events,
-                new Function<LatencyMeasurementEvent, ImmutableList<Float>>() {
-                    @Override
-                    public ImmutableList<Float> apply(LatencyMeasurementEvent input) {
-                        return ImmutableList.of(Float.valueOf(input.getMicros() / 1000.0f));
-                    }
-                });
+    public static class LatencyAppender extends EventSeriesAppender<LatencyMeasurementEvent> {
+        
+        public static LatencyAppender forFile(
+                CsvSchema.CsvSchemaBuilder schema, File output) throws IOException {
+            return new LatencyAppender(CsvAppender.forFile(
+                    output, 
+                    schema.withColumns(columns()).build()));
+        }
+        
+        public LatencyAppender(CsvAppender writer) {
+            super(LatencyMeasurementEvent.class, writer);
+        }
+
+        @Override
+        protected void appendEvent(LatencyMeasurementEvent event) throws IOException {
+            if (event.getMicros() >= 0) {
+                writer.append(ImmutableList.of(Float.valueOf(event.getMicros() / 1000.0f)));
+            }
+        }
     }
 }
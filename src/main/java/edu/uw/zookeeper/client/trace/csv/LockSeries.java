@@ -0,0 +1,85 @@
+package edu.uw.zookeeper.client.trace.csv;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.EnumMap;
+
+import com.google.common.collect.ImmutableList;
+
+import edu.uw.zookeeper.client.trace.LockEvent;
+import edu.uw.zookeeper.client.trace.TraceEventTag;
+import edu.uw.zookeeper.client.trace.TraceHeader;
+
+public class LockSeries {
+    
+    public static String FILENAME_FORMAT = "%s-%s.%s";
+
+    public static String toLabel(LockEvent.Kind kind) {
+        switch (kind) {
+        case ACQUIRE:
+            return "acquires";
+        case HANDOFF:
+            return "handoffs";
+        default:
+            throw new AssertionError(String.valueOf(kind));
+        }
+    }
+
+    public static ImmutableList<CsvColumn> columns(LockEvent.Kind kind) {
+        String name;
+        switch (kind) {
+        case ACQUIRE:
+            name = "Acquire (ms)";
+            break;
+        case HANDOFF:
+            name = "Handoff (ms)";
+            break;
+        default:
+            throw new AssertionError(String.valueOf(kind));
+        }
+        return ImmutableList.of(
+                CsvColumn.create(
+                        CsvFieldType.FIELD_STRING, "Session", CsvSchema.forFormat("0x%x")),
+                CsvColumn.create(
+                        CsvFieldType.FIELD_INT, "Lock", CsvSchema.forFormat("%d")),
+                CsvColumn.create(
+                        CsvFieldType.FIELD_FLOAT, name, CsvSchema.forFormat("%04.3f")));
+    }
+    
+    public static SeriesExporter exporter() {
+        return new SeriesExporter() {
+            @Override
+            public boolean isEnabled(TraceHeader header) {
+                return header.getTypes().contains(TraceEventTag.LOCK_EVENT);
+            }
+
+            @Override
+            public SeriesAppender newAppender(
+                    TraceHeader header, CsvSchema.CsvSchemaBuilder schema, 
+                    File directory, String prefix) throws IOException {
+                return new LockAppender(schema, directory, prefix);
+            }
+        };
+    }
+    
+    public static class LockAppender extends KeyedSeriesAppender<LockEvent> {
+        
+        protected final EnumMap<LockEvent.Kind, CsvSchema> schemas;
+        
+        public LockAppender(CsvSchema.CsvSchemaBuilder schema, File directory, String prefix) {
+            super(LockEvent.class, directory, prefix, FILENAME_FORMAT);
+            this.schemas = new EnumMap<LockEvent.Kind, CsvSchema>(LockEvent.Kind.class);
+            for (LockEvent.Kind kind: LockEvent.Kind.values()) {
+                schemas.put(kind, schema.withColumns(columns(kind)).build());
+            }
+        }
+
+        @Override
+        protected void appendEvent(LockEvent event) throws IOException {
+            writer(toLabel(event.getKind()), schemas.get(event.getKind())).append(ImmutableList.of(
+                    Long.valueOf(event.getSessionId()),
+                    Integer.valueOf(event.getLock()),
+                    Float.valueOf(event.getMicros() / 1000.0f)));
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package edu.uw.zookeeper.client.trace.csv;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.google.common.collect.ImmutableList;
+
+import edu.uw.zookeeper.client.trace.MultiEvent;
+import edu.uw.zookeeper.client.trace.TraceEventTag;
+import edu.uw.zookeeper.client.trace.TraceHeader;
+
+public class MultiSeries {
+    
+    public static String FILENAME_FORMAT = "%s-multis.%s";
+
+    public static File toFile(File parent, String prefix) {
+        return new File(parent, String.format(FILENAME_FORMAT, prefix, Csv.SUFFIX));
+    }
+
+    public static ImmutableList<CsvColumn> columns() {
+        return ImmutableList.of(
+                CsvColumn.create(
+                        CsvFieldType.FIELD_INT, "Operations", CsvSchema.forFormat("%d")),
+                CsvColumn.create(
+                        CsvFieldType.FIELD_INT, "Request (bytes)", CsvSchema.forFormat("%d")),
+                CsvColumn.create(
+                        CsvFieldType.FIELD_INT, "Response (bytes)", CsvSchema.forFormat("%d")),
+                CsvColumn.create(
+                        CsvFieldType.FIELD_FLOAT, "Latency (ms)", CsvSchema.forFormat("%04.3f")),
+                CsvColumn.create(
+                        CsvFieldType.FIELD_FLOAT, "Per operation (ms)", CsvSchema.forFormat("%04.3f")));
+    }
+    
+    public static SeriesExporter exporter() {
+        return new SeriesExporter() {
+            @Override
+            public boolean isEnabled(TraceHeader header) {
+                return header.getTypes().contains(TraceEventTag.MULTI_EVENT);
+            }
+
+            @Override
+            public SeriesAppender newAppender(
+                    TraceHeader header, CsvSchema.CsvSchemaBuilder schema, 
+                    File directory, String prefix) throws IOException {
+                return MultiAppender.forFile(schema, toFile(directory, prefix));
+            }
+        };
+    }
+    
+    public static class MultiAppender extends EventSeriesAppender<MultiEvent> {
+        
+        public static MultiAppender forFile(
+                CsvSchema.CsvSchemaBuilder schema, File output) throws IOException {
+            return new MultiAppender(CsvAppender.forFile(
+                    output, 
+                    schema.withColumns(columns()).build()));
+        }
+        
+        public MultiAppender(CsvAppender writer) {
+            super(MultiEvent.class, writer);
+        }
+
+        @Override
+        protected void appendEvent(MultiEvent event) throws IOException {
+            writer.append(ImmutableList.of(
+                    Integer.valueOf(event.getOps()),
+                    Integer.valueOf(event.getRequestBytes()),
+                    Integer.valueOf(event.getResponseBytes()),
+                    Float.valueOf(event.getMicros() / 1000.0f),
+                    Float.valueOf(event.getMicros() / (1000.0f * Math.max(event.getOps(), 1)))));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package edu.uw.zookeeper.client.trace.csv;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.google.common.collect.ImmutableList;
+
+import edu.uw.zookeeper.client.trace.NotificationEvent;
+import edu.uw.zookeeper.client.trace.TraceEventTag;
+import edu.uw.zookeeper.client.trace.TraceHeader;
+
+public class NotificationSeries {
+    
+    public static String FILENAME_FORMAT = "%s-notifications.%s";
+
+    public static File toFile(File parent, String prefix) {
+        return new File(parent, String.format(FILENAME_FORMAT, prefix, Csv.SUFFIX));
+    }
+
+    public static ImmutableList<CsvColumn> columns() {
+        return ImmutableList.of(
+                CsvColumn.create(
+                        CsvFieldType.FIELD_STRING, "Session", CsvSchema.forFormat("0x%x")),
+                CsvColumn.create(
+                        CsvFieldType.FIELD_STRING, "Path", CsvSchema.forFormat("%s")),
+                CsvColumn.create(
+                        CsvFieldType.FIELD_FLOAT, "Notification (ms)", CsvSchema.forFormat("%04.3f")));
+    }
+    
+    public static SeriesExporter exporter() {
+        return new SeriesExporter() {
+            @Override
+            public boolean isEnabled(TraceHeader header) {
+                return header.getTypes().contains(TraceEventTag.NOTIFICATION_EVENT);
+            }
+
+            @Override
+            public SeriesAppender newAppender(
+                    TraceHeader header, CsvSchema.CsvSchemaBuilder schema, 
+                    File directory, String prefix) throws IOException {
+                return NotificationAppender.forFile(schema, toFile(directory, prefix));
+            }
+        };
+    }
+    
+    public static class NotificationAppender extends EventSeriesAppender<NotificationEvent> {
+        
+        public static NotificationAppender forFile(
+                CsvSchema.CsvSchemaBuilder schema, File output) throws IOException {
+            return new NotificationAppender(CsvAppender.forFile(
+                    output, 
+                    schema.withColumns(columns()).build()));
+        }
+        
+        public NotificationAppender(CsvAppender writer) {
+            super(NotificationEvent.class, writer);
+        }
+
+        @Override
+        protected void appendEvent(NotificationEvent event) throws IOException {
+            writer.append(ImmutableList.of(
+                    Long.valueOf(event.getSessionId()),
+                    event.getPath(),
+                    Float.valueOf(event.getMicros() / 1000.0f)));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package edu.uw.zookeeper.client.trace.csv;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.google.common.collect.ImmutableList;
+
+import edu.uw.zookeeper.client.trace.OperationLatencyEvent;
+import edu.uw.zookeeper.client.trace.TraceEventTag;
+import edu.uw.zookeeper.client.trace.TraceHeader;
+
+public class OperationLatencySeries {
+
+    public static String FILENAME_FORMAT = "%s-latencies-%s.%s";
+
+    public static ImmutableList<CsvColumn> columns() {
+        return LatencySeries.columns();
+    }
+
+    public static SeriesExporter exporter() {
+        return new SeriesExporter() {
+            @Override
+            public boolean isEnabled(TraceHeader header) {
+                return header.getTypes().contains(TraceEventTag.OPERATION_LATENCY_EVENT);
+            }
+
+            @Override
+            public SeriesAppender newAppender(
+                    TraceHeader header, CsvSchema.CsvSchemaBuilder schema,
+                    File directory, String prefix) throws IOException {
+                return OperationLatencyAppender.forDirectory(schema, directory, prefix);
+            }
+        };
+    }
+
+    public static class OperationLatencyAppender extends OperationSeriesAppender<OperationLatencyEvent> {
+
+        public static OperationLatencyAppender forDirectory(
+                CsvSchema.CsvSchemaBuilder schema, File directory, String prefix) {
+            return new OperationLatencyAppender(
+                    schema.withColumns(columns()).build(), directory, prefix);
+        }
+
+        public OperationLatencyAppender(CsvSchema schema, File directory, String prefix) {
+            super(OperationLatencyEvent.class, schema, directory, prefix, FILENAME_FORMAT);
+        }
+
+        @Override
+        protected void appendEvent(OperationLatencyEvent event) throws IOException {
+            if (event.getMicros() >= 0) {
+                writer(event.getOpcode(), event.getError()).append(
+                        ImmutableList.of(Float.valueOf(event.getMicros() / 1000.0f)));
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package edu.uw.zookeeper.client.trace.csv;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.zookeeper.KeeperException;
+
+import edu.uw.zookeeper.client.trace.TraceEvent;
+import edu.uw.zookeeper.protocol.proto.OpCode;
+
+/**
+ * Writes one file per opcode and error code,
+ * opened on the first event for each.
+ */
+public abstract class OperationSeriesAppender<T extends TraceEvent> extends KeyedSeriesAppender<T> {
+
+    /**
+     * @return the opcode name, followed by the error name if there is an error
+     */
+    public static String toLabel(int opcode, int error) {
+        String label = OpCode.of(opcode).name();
+        if (error != 0) {
+            KeeperException.Code code = KeeperException.Code.get(error);
+            label = label + '-' + ((code != null) ? code.name() : String.valueOf(error));
+        }
+        return label;
+    }
+
+    protected final CsvSchema schema;
+
+    /**
+     * @param format of file names, given the prefix, label, and suffix
+     */
+    protected OperationSeriesAppender(
+            Class<T> type,
+            CsvSchema schema,
+            File directory,
+            String prefix,
+            String format) {
+        super(type, directory, prefix, format);
+        this.schema = checkNotNull(schema);
+    }
+
+    protected CsvAppender writer(int opcode, int error) throws IOException {
+        return writer(toLabel(opcode, error), schema);
+    }
+}
@@ -0,0 +1,82 @@
+package edu.uw.zookeeper.client.trace.csv;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.google.common.collect.ImmutableList;
+
+import edu.uw.zookeeper.client.trace.MeasurementWindow;
+import edu.uw.zookeeper.client.trace.OperationThroughputEvent;
+import edu.uw.zookeeper.client.trace.ThroughputMeasurementEvent;
+import edu.uw.zookeeper.client.trace.TraceEvent;
+import edu.uw.zookeeper.client.trace.TraceEventTag;
+import edu.uw.zookeeper.client.trace.TraceHeader;
+
+public class OperationThroughputSeries {
+
+    public static String FILENAME_FORMAT = "%s-operations-%s.%s";
+
+    public static ImmutableList<CsvColumn> columns() {
+        return OperationsTimeSeries.columns();
+    }
+
+    public static SeriesExporter exporter() {
+        return new SeriesExporter() {
+            @Override
+            public boolean isEnabled(TraceHeader header) {
+                return header.getTypes().contains(TraceEventTag.OPERATION_THROUGHPUT_EVENT);
+            }
+
+            @Override
+            public SeriesAppender newAppender(
+                    TraceHeader header, CsvSchema.CsvSchemaBuilder schema,
+                    File directory, String prefix) throws IOException {
+                return OperationThroughputAppender.forDirectory(schema, directory, prefix, header.getWindow());
+            }
+        };
+    }
+
+    /**
+     * Each interval's operation events follow its ThroughputMeasurementEvent,
+     * which advances the time column shared by all files.
+     */
+    public static class OperationThroughputAppender extends OperationSeriesAppender<OperationThroughputEvent> {
+
+        public static OperationThroughputAppender forDirectory(
+                CsvSchema.CsvSchemaBuilder schema, File directory, String prefix, MeasurementWindow window) {
+            return new OperationThroughputAppender(
+                    schema.withColumns(columns()).build(), directory, prefix, window);
+        }
+
+        protected final MeasurementWindow window;
+        protected int time;
+
+        public OperationThroughputAppender(CsvSchema schema, File directory, String prefix, MeasurementWindow window) {
+            super(OperationThroughputEvent.class, schema, directory, prefix, FILENAME_FORMAT);
+            this.window = window;
+            this.time = 0;
+        }
+
+        @Override
+        public OperationThroughputAppender append(TraceEvent event) throws IOException {
+            if (event instanceof ThroughputMeasurementEvent) {
+                ThroughputMeasurementEvent throughput = (ThroughputMeasurementEvent) event;
+                if (throughput.getCount() >= 0) {
+                    time += throughput.getMillis();
+                }
+            } else {
+                super.append(event);
+            }
+            return this;
+        }
+
+        @Override
+        protected void appendEvent(OperationThroughputEvent event) throws IOException {
+            if ((event.getCount() >= 0) && window.contains(time - event.getMillis(), time)) {
+                writer(event.getOpcode(), event.getError()).append(ImmutableList.of(
+                        Integer.valueOf(time),
+                        Integer.valueOf(event.getCount())));
+            }
+        }
+    }
+}
@@ -4,13 +4,13 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Iterator;
 
-import com.google.common.base.Function;
-import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterators;
 
+import edu.uw.zookeeper.client.trace.MeasurementWindow;
 import edu.uw.zookeeper.client.trace.ThroughputMeasurementEvent;
 import edu.uw.zookeeper.client.trace.TraceEvent;
+import edu.uw.zookeeper.client.trace.TraceEventTag;
+import edu.uw.zookeeper.client.trace.TraceHeader;
 
 public class OperationsTimeSeries {
     
@@ -22,15 +22,14 @@ public class OperationsTimeSeries {
     
     public static void eventsToCsvFile(
             CsvSchema.CsvSchemaBuilder schema, File output, Iterator<TraceEvent> events) throws IOException {
-        CsvAppender writer = CsvAppender.forFile(
-                output, 
-                schema.withColumns(columns()).build());
-        Iterator<ImmutableList<Integer>> records = fromEvents(events);
-        while (records.hasNext()) {
-            writer.append(records.next());
+        OperationsAppender appender = OperationsAppender.forFile(schema, output);
+        try {
+            while (events.hasNext()) {
+                appender.append(events.next());
+            }
+        } finally {
+            appender.close();
         }
-        writer.flush();
-        writer.close();
     }
 
     public static ImmutableList<CsvColumn> columns() {
@@ -41,37 +40,64 @@ public class OperationsTimeSeries {
                         CsvFieldType.FIELD_INT, "Operations", CsvSchema.forFormat("%d")));
     }
     
-    public static Iterator<ImmutableList<Integer>> fromEvents(Iterator<TraceEvent> events) {
-        return toRecords(
-                bound(
-                        Iterators.filter(
-                                events, ThroughputMeasurementEvent.class)));
-    }
-    
-    public static Iterator<ThroughputMeasurementEvent> bound(
-            Iterator<ThroughputMeasurementEvent> events) {
-        return Iterators.filter(
-                events,
-                new Predicate<ThroughputMeasurementEvent>() {
-                    @Override
-                    public boolean apply(ThroughputMeasurementEvent input) {
-                        return input.getCount() >= 0;
-                    }
-                });
+    public static SeriesExporter exporter() {
+        return new SeriesExporter() {
+            @Override
+            public boolean isEnabled(TraceHeader header) {
+                return header.getTypes().contains(TraceEventTag.THROUGHPUT_MEASUREMENT_EVENT);
+            }
+
+            @Override
+            public SeriesAppender newAppender(
+                    TraceHeader header, CsvSchema.CsvSchemaBuilder schema, 
+                    File directory, String prefix) throws IOException {
+                return OperationsAppender.forFile(schema, toFile(directory, prefix), header.getWindow());
+            }
+        };
     }
     
-    public static Iterator<ImmutableList<Integer>> toRecords(Iterator<ThroughputMeasurementEvent> events) {
-        return Iterators.transform(
-                events,
-                new Function<ThroughputMeasurementEvent, ImmutableList<Integer>>() {
-                    int time = 0;
-                    @Override
-                    public ImmutableList<Integer> apply(ThroughputMeasurementEvent input) {
-                        time += input.getMillis();
-                        return ImmutableList.of(
-                                Integer.valueOf(time), 
-                                Integer.valueOf(input.getCount()));
-                    }
-                });
+    /**
+     * Time column is cumulative over the appended events,
+     * and intervals outside the measurement window are skipped.
+     */
+    public static class OperationsAppender extends EventSeriesAppender<ThroughputMeasurementEvent> {
+        
+        public static OperationsAppender forFile(
+                CsvSchema.CsvSchemaBuilder schema, File output) throws IOException {
+            return forFile(schema, output, MeasurementWindow.none());
+        }
+        
+        public static OperationsAppender forFile(
+                CsvSchema.CsvSchemaBuilder schema, File output, MeasurementWindow window) throws IOException {
+            return new OperationsAppender(CsvAppender.forFile(
+                    output, 
+                    schema.withColumns(columns()).build()), window);
+        }
+        
+        protected final MeasurementWindow window;
+        protected int time;
+        
+        public OperationsAppender(CsvAppender writer) {
+            this(writer, MeasurementWindow.none());
+        }
+        
+        public OperationsAppender(CsvAppender writer, MeasurementWindow window) {
+            super(ThroughputMeasurementEvent.class, writer);
+            this.window = window;
+            this.time = 0;
+        }
+
+        @Override
+        protected void appendEvent(ThroughputMeasurementEvent event) throws IOException {
+            if (event.getCount() >= 0) {
+                time += event.getMillis();
+                if (! window.contains(time - event.getMillis(), time)) {
+                    return;
+                }
+                writer.append(ImmutableList.of(
+                        Integer.valueOf(time), 
+                        Integer.valueOf(event.getCount())));
+            }
+        }
     }
 }
@@ -0,0 +1,17 @@
+package edu.uw.zookeeper.client.trace.csv;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import edu.uw.zookeeper.client.trace.TraceEvent;
+
+/**
+ * Push-style sink for one CSV series.
+ * 
+ * Receives every event of a trace and ignores the ones it doesn't export.
+ */
+public interface SeriesAppender extends Appender<TraceEvent>, Closeable {
+
+    @Override
+    SeriesAppender append(TraceEvent event) throws IOException;
+}
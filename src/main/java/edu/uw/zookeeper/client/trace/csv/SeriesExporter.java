@@ -0,0 +1,23 @@
+package edu.uw.zookeeper.client.trace.csv;
+
+import java.io.File;
+import java.io.IOException;
+
+import edu.uw.zookeeper.client.trace.TraceHeader;
+
+public interface SeriesExporter {
+
+    /**
+     * @return whether the trace can contain events for this series
+     */
+    boolean isEnabled(TraceHeader header);
+
+    /**
+     * @param header of the trace being exported
+     */
+    SeriesAppender newAppender(
+            TraceHeader header,
+            CsvSchema.CsvSchemaBuilder schema, 
+            File directory, 
+            String prefix) throws IOException;
+}
@@ -0,0 +1,82 @@
+package edu.uw.zookeeper.client.trace.csv;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.EnumMap;
+
+import com.google.common.collect.ImmutableList;
+
+import edu.uw.zookeeper.client.trace.SessionEvent;
+import edu.uw.zookeeper.client.trace.TraceEventTag;
+import edu.uw.zookeeper.client.trace.TraceHeader;
+
+public class SessionSeries {
+    
+    public static String FILENAME_FORMAT = "%s-%s.%s";
+
+    public static String toLabel(SessionEvent.Kind kind) {
+        switch (kind) {
+        case CONNECT:
+            return "connects";
+        case CLOSE:
+            return "closes";
+        default:
+            throw new AssertionError(String.valueOf(kind));
+        }
+    }
+
+    public static ImmutableList<CsvColumn> columns(SessionEvent.Kind kind) {
+        String name;
+        switch (kind) {
+        case CONNECT:
+            name = "Connect (ms)";
+            break;
+        case CLOSE:
+            name = "Close (ms)";
+            break;
+        default:
+            throw new AssertionError(String.valueOf(kind));
+        }
+        return ImmutableList.of(
+                CsvColumn.create(
+                        CsvFieldType.FIELD_STRING, "Session", CsvSchema.forFormat("0x%x")),
+                CsvColumn.create(
+                        CsvFieldType.FIELD_FLOAT, name, CsvSchema.forFormat("%04.3f")));
+    }
+    
+    public static SeriesExporter exporter() {
+        return new SeriesExporter() {
+            @Override
+            public boolean isEnabled(TraceHeader header) {
+                return header.getTypes().contains(TraceEventTag.SESSION_EVENT);
+            }
+
+            @Override
+            public SeriesAppender newAppender(
+                    TraceHeader header, CsvSchema.CsvSchemaBuilder schema, 
+                    File directory, String prefix) throws IOException {
+                return new SessionAppender(schema, directory, prefix);
+            }
+        };
+    }
+    
+    public static class SessionAppender extends KeyedSeriesAppender<SessionEvent> {
+        
+        protected final EnumMap<SessionEvent.Kind, CsvSchema> schemas;
+        
+        public SessionAppender(CsvSchema.CsvSchemaBuilder schema, File directory, String prefix) {
+            super(SessionEvent.class, directory, prefix, FILENAME_FORMAT);
+            this.schemas = new EnumMap<SessionEvent.Kind, CsvSchema>(SessionEvent.Kind.class);
+            for (SessionEvent.Kind kind: SessionEvent.Kind.values()) {
+                schemas.put(kind, schema.withColumns(columns(kind)).build());
+            }
+        }
+
+        @Override
+        protected void appendEvent(SessionEvent event) throws IOException {
+            writer(toLabel(event.getKind()), schemas.get(event.getKind())).append(ImmutableList.of(
+                    Long.valueOf(event.getSessionId()),
+                    Float.valueOf(event.getMicros() / 1000.0f)));
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package edu.uw.zookeeper.client.trace;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ArrivalProcessTest {
+
+    @Test
+    public void testConstant() {
+        ArrivalProcess arrivals = ArrivalProcess.fromString("constant:1000", 1.0, new Random());
+        for (int i=0; i<10000; ++i) {
+            assertEquals(TimeUnit.MILLISECONDS.toNanos(i), arrivals.next().longValue());
+        }
+    }
+
+    @Test
+    public void testPoisson() {
+        int n = 100000;
+        ArrivalProcess arrivals = ArrivalProcess.fromString("poisson:1000", 1.0, new Random(1L));
+        long last = 0L;
+        for (int i=0; i<n; ++i) {
+            long next = arrivals.next().longValue();
+            assertTrue(next >= last);
+            last = next;
+        }
+        // mean gap of 1 ms
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(n), last, TimeUnit.MILLISECONDS.toNanos(n) * 0.02);
+    }
+
+    @Test
+    public void testStep() {
+        ArrivalProcess arrivals = ArrivalProcess.fromString("step:10@1 s,100@1 s", 2.0, new Random());
+        int count = 0;
+        long last = 0L;
+        while (arrivals.hasNext()) {
+            last = arrivals.next().longValue();
+            ++count;
+        }
+        assertEquals(20 + 200, count);
+        assertTrue(last < TimeUnit.SECONDS.toNanos(2L));
+    }
+}
@@ -0,0 +1,92 @@
+package edu.uw.zookeeper.client.trace;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.collect.Lists;
+
+import edu.uw.zookeeper.common.Actor;
+
+@RunWith(JUnit4.class)
+public class AsyncTraceEventActorTest {
+
+    @Test
+    public void testStopDrains() throws InterruptedException {
+        final CountingActor delegate = new CountingActor();
+        final AsyncTraceEventActor actor = AsyncTraceEventActor.create(
+                AsyncTraceEventActor.OverflowPolicy.BLOCK, 64, 1, delegate);
+        assertNull(actor.thread);
+
+        final int producers = 4;
+        final int n = 10000;
+        final long[] accepted = new long[producers];
+        List<Thread> threads = Lists.newArrayListWithCapacity(producers);
+        for (int i=0; i<producers; ++i) {
+            final int id = i;
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    for (int j=0; j<n; ++j) {
+                        if (actor.send(TimestampEvent.create(j))) {
+                            accepted[id] += 1L;
+                        }
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        // stop while producers are still publishing
+        while (delegate.count() == 0) {
+            Thread.yield();
+        }
+        actor.stop();
+        for (Thread thread: threads) {
+            thread.join();
+        }
+
+        long total = 0L;
+        for (long count: accepted) {
+            total += count;
+        }
+        // every accepted event reached the delegate before it was stopped
+        assertEquals(total, delegate.countWhenStopped);
+        assertFalse(actor.send(TimestampEvent.create(0L)));
+    }
+
+    protected static final class CountingActor implements Actor<TraceEvent> {
+
+        protected long count = 0L;
+        protected volatile long countWhenStopped = -1L;
+
+        public synchronized long count() {
+            return count;
+        }
+
+        @Override
+        public void run() {
+        }
+
+        @Override
+        public Actor.State state() {
+            return (countWhenStopped >= 0L) ? Actor.State.TERMINATED : Actor.State.WAITING;
+        }
+
+        @Override
+        public synchronized boolean send(TraceEvent message) {
+            count += 1L;
+            return true;
+        }
+
+        @Override
+        public synchronized boolean stop() {
+            countWhenStopped = count;
+            return true;
+        }
+    }
+}
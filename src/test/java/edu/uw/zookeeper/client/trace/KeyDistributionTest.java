@@ -0,0 +1,61 @@
+package edu.uw.zookeeper.client.trace;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class KeyDistributionTest {
+
+    @Test
+    public void testZipfian() {
+        int n = 1000;
+        int samples = 200000;
+        int[] counts = sample(KeyDistribution.fromString("zipfian:0.99", n, new Random(1L)), samples);
+        double zetan = 0.0;
+        for (int i=1; i<=n; ++i) {
+            zetan += 1.0 / Math.pow(i, 0.99);
+        }
+        assertEquals(samples / zetan, counts[0], samples / zetan * 0.05);
+        assertTrue(counts[0] > counts[1]);
+        assertTrue(counts[1] > counts[10]);
+        assertTrue(counts[10] > counts[n - 1]);
+    }
+
+    @Test
+    public void testLatest() {
+        int n = 1000;
+        int[] counts = sample(KeyDistribution.fromString("latest:0.99", n, new Random(1L)), 100000);
+        assertTrue(counts[n - 1] > counts[n - 2]);
+        assertTrue(counts[n - 2] > counts[0]);
+    }
+
+    @Test
+    public void testHotspot() {
+        int n = 1000;
+        int samples = 100000;
+        int[] counts = sample(KeyDistribution.fromString("hotspot:0.9:0.1", n, new Random(1L)), samples);
+        int hot = 0;
+        for (int i=0; i<n/10; ++i) {
+            hot += counts[i];
+        }
+        assertEquals(0.9 * samples, hot, samples * 0.01);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalid() {
+        KeyDistribution.fromString("zipfian:1.5", 10, new Random());
+    }
+
+    protected int[] sample(KeyDistribution distribution, int samples) {
+        int[] counts = new int[distribution.size()];
+        for (int i=0; i<samples; ++i) {
+            counts[distribution.nextIndex()] += 1;
+        }
+        return counts;
+    }
+}
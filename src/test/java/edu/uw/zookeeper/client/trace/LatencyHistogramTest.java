@@ -0,0 +1,37 @@
+package edu.uw.zookeeper.client.trace;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class LatencyHistogramTest {
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = LatencyHistogram.create();
+        int n = 100000;
+        for (int i=1; i<=n; ++i) {
+            histogram.record(i);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.getAndReset();
+        assertEquals(n, snapshot.count());
+        assertEquals(n, snapshot.max());
+        double error = 1.0 / (1 << (LatencyHistogram.DEFAULT_PRECISION - 1));
+        for (double p: new double[]{50.0, 90.0, 99.0, 99.9}) {
+            double expected = p / 100.0 * n;
+            assertEquals(expected, snapshot.valueAtPercentile(p), expected * error);
+        }
+        assertEquals(n, snapshot.valueAtPercentile(100.0));
+        
+        snapshot = histogram.getAndReset();
+        assertEquals(0L, snapshot.count());
+        assertEquals(0L, snapshot.valueAtPercentile(99.0));
+        
+        histogram.record(7);
+        snapshot = histogram.getAndReset();
+        assertEquals(7L, snapshot.valueAtPercentile(50.0));
+    }
+}
@@ -0,0 +1,86 @@
+package edu.uw.zookeeper.client.trace;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.zookeeper.KeeperException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Futures;
+
+import edu.uw.zookeeper.data.Operations;
+import edu.uw.zookeeper.protocol.ProtocolResponseMessage;
+import edu.uw.zookeeper.protocol.proto.IErrorResponse;
+
+@RunWith(JUnit4.class)
+public class LoadSweepTest {
+
+    @Test
+    public void testParseRates() {
+        assertEquals(ImmutableList.of(100.0, 250.0, 400.0), LoadSweep.parseRates("100, 250,400"));
+        assertEquals(ImmutableList.of(100.0, 200.0, 400.0, 800.0), LoadSweep.parseRates("100..1000*2"));
+        assertTrue(LoadSweep.parseRates("").isEmpty());
+    }
+
+    @Test
+    public void testSaturated() {
+        long window = TimeUnit.SECONDS.toNanos(2L);
+        LatencyHistogram latency = LatencyHistogram.create();
+        for (int i=0; i<1000; ++i) {
+            latency.record((i < 995) ? 100L : 100000L);
+        }
+        LoadSweep.Result result = new LoadSweep.Result(
+                500.0, 1000L, 1000L, 0L, 1000L, window, latency.getAndReset(), LatencyHistogram.create().getAndReset());
+        assertEquals(500.0, result.getThroughput(), 0.001);
+        assertFalse(result.isSaturated(0L));
+        assertFalse(result.isSaturated(TimeUnit.MILLISECONDS.toMicros(1L)));
+
+        for (int i=0; i<1000; ++i) {
+            latency.record((i < 980) ? 100L : 100000L);
+        }
+        result = new LoadSweep.Result(
+                500.0, 1000L, 1000L, 0L, 1000L, window, latency.getAndReset(), LatencyHistogram.create().getAndReset());
+        assertTrue(result.isSaturated(TimeUnit.MILLISECONDS.toMicros(1L)));
+
+        // unanswered requests saturate with or without an SLO
+        result = new LoadSweep.Result(
+                500.0, 1000L, 900L, 0L, 900L, window, LatencyHistogram.create().getAndReset(), LatencyHistogram.create().getAndReset());
+        assertEquals(100L, result.getUnanswered());
+        assertTrue(result.isSaturated(TimeUnit.MILLISECONDS.toMicros(1L)));
+        assertTrue(result.isSaturated(0L));
+    }
+
+    @Test
+    public void testThroughput() {
+        long window = TimeUnit.SECONDS.toNanos(2L);
+        // responses received after the window don't count
+        LoadSweep.Result result = new LoadSweep.Result(
+                500.0, 1000L, 1000L, 0L, 600L, window, LatencyHistogram.create().getAndReset(), LatencyHistogram.create().getAndReset());
+        assertEquals(300.0, result.getThroughput(), 0.001);
+        assertEquals(0L, result.getUnanswered());
+    }
+
+    @Test
+    public void testErrorReply() {
+        long now = System.nanoTime();
+        long window = TimeUnit.SECONDS.toNanos(2L);
+        AtomicLong answered = new AtomicLong(0L);
+        LoadSweep.Window measured = new LoadSweep.Window(answered, now - window, now + window);
+        measured.complete(Futures.immediateFuture(
+                ProtocolResponseMessage.of(1, 1L, Operations.Responses.sync().build())), now);
+        // answered by the server, but not served
+        measured.complete(Futures.immediateFuture(
+                ProtocolResponseMessage.of(2, 1L, new IErrorResponse(KeeperException.Code.NONODE))), now);
+        measured.complete(Futures.immediateFailedFuture(new IllegalStateException()), now);
+        LoadSweep.Result result = measured.result(500.0, answered.get(), window);
+        assertEquals(1L, result.completed);
+        assertEquals(2L, result.errors);
+        assertEquals(1L, result.latency.count());
+        assertEquals(0.5, result.getThroughput(), 0.001);
+    }
+}
@@ -0,0 +1,158 @@
+package edu.uw.zookeeper.client.trace;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import edu.uw.zookeeper.data.Operations;
+import edu.uw.zookeeper.protocol.ProtocolRequestMessage;
+import edu.uw.zookeeper.protocol.ProtocolResponseMessage;
+
+@RunWith(JUnit4.class)
+public class MappedTraceReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSeek() throws IOException {
+        ObjectMapper mapper = ObjectMapperBuilder.defaults().build();
+        File file = folder.newFile("trace.bin");
+        TraceHeader header = TraceHeader.create(ImmutableMap.<String, Object>of(), TraceEventTag.OPERATION_EVENT);
+        TraceWriter writer = TraceWriter.forFile(file, mapper.writer(), header, MoreExecutors.directExecutor());
+        long sessionId = 1;
+        long zxid = 1;
+        int n = BinaryTraceIndex.DEFAULT_INTERVAL * 4 + 1;
+        for (int xid=0; xid<n; ++xid) {
+            long nanos = 1000L * xid;
+            writer.send(OperationEvent.create(
+                    sessionId,
+                    ProtocolRequestMessage.of(xid, Operations.Requests.sync().build()),
+                    nanos,
+                    ProtocolResponseMessage.of(xid, zxid, Operations.Responses.sync().build()),
+                    nanos + 10L));
+        }
+        writer.stop();
+
+        testSeek(MappedTraceReader.forFile(file, mapper.reader()), n);
+
+        // rebuild index
+        assertTrue(BinaryTraceIndex.forTrace(file).delete());
+        testSeek(MappedTraceReader.forFile(file, mapper.reader()), n);
+    }
+
+    @Test
+    public void testUnordered() throws IOException {
+        ObjectMapper mapper = ObjectMapperBuilder.defaults().build();
+        File file = folder.newFile("trace.bin");
+        TraceHeader header = TraceHeader.create(ImmutableMap.<String, Object>of(), TraceEventTag.OPERATION_EVENT);
+        TraceWriter writer = TraceWriter.forFile(file, mapper.writer(), header, MoreExecutors.directExecutor());
+        int interval = BinaryTraceIndex.DEFAULT_INTERVAL;
+        // the last event of the first interval and the first of the third
+        // are published late, into the middle of the second interval
+        int n = interval * 3;
+        for (int xid=0; xid<n; ++xid) {
+            long nanos = 1000L * xid;
+            if (xid == interval - 1) {
+                nanos = 1000L * (interval + 500);
+            } else if (xid == 2 * interval) {
+                nanos = 1000L * (interval + 600);
+            }
+            writer.send(OperationEvent.create(
+                    1L,
+                    ProtocolRequestMessage.of(xid, Operations.Requests.sync().build()),
+                    nanos,
+                    ProtocolResponseMessage.of(xid, 1L, Operations.Responses.sync().build()),
+                    nanos + 10L));
+        }
+        writer.stop();
+
+        for (int i=0; i<2; ++i) {
+            MappedTraceReader reader = MappedTraceReader.forFile(file, mapper.reader());
+            try {
+                TraceEventIterator events = reader.window(1000L * (interval + 450), 1000L * (interval + 650) + 10L);
+                assertTrue(events.hasNext());
+                assertEquals(1000L * (interval + 500), ((OperationEvent) events.next()).getRequestNanos());
+                for (int xid=interval+450; xid<=interval+650; ++xid) {
+                    assertTrue(events.hasNext());
+                    assertEquals(1000L * xid, ((OperationEvent) events.next()).getRequestNanos());
+                }
+                assertTrue(events.hasNext());
+                assertEquals(1000L * (interval + 600), ((OperationEvent) events.next()).getRequestNanos());
+                assertFalse(events.hasNext());
+            } finally {
+                reader.close();
+            }
+            // rebuild index
+            assertTrue(BinaryTraceIndex.forTrace(file).delete());
+        }
+    }
+
+    @Test
+    public void testReadAhead() throws IOException {
+        ObjectMapper mapper = ObjectMapperBuilder.defaults().build();
+        File file = folder.newFile("trace.bin");
+        TraceHeader header = TraceHeader.create(ImmutableMap.<String, Object>of(), TraceEventTag.OPERATION_EVENT);
+        TraceWriter writer = TraceWriter.forFile(file, mapper.writer(), header, MoreExecutors.directExecutor());
+        long sessionId = 1;
+        long zxid = 1;
+        int n = BinaryTraceIndex.DEFAULT_INTERVAL * 8 + 3;
+        for (int xid=0; xid<n; ++xid) {
+            long nanos = 1000L * xid;
+            writer.send(OperationEvent.create(
+                    sessionId,
+                    ProtocolRequestMessage.of(xid, Operations.Requests.sync().build()),
+                    nanos,
+                    ProtocolResponseMessage.of(xid, zxid, Operations.Responses.sync().build()),
+                    nanos + 10L));
+        }
+        writer.stop();
+        
+        testReadAhead(ReadAheadTraceEventIterator.forReader(MappedTraceReader.forFile(file, mapper.reader()), 3, 2), n);
+        testReadAhead(ReadAheadTraceEventIterator.forIterator(TraceEventIterator.forFile(file, mapper.reader()), 2), n);
+    }
+    
+    protected void testReadAhead(TraceEventIterator events, int n) throws IOException {
+        try {
+            for (int i=0; i<n; ++i) {
+                assertTrue(events.hasNext());
+                assertEquals(i * 1000L, ((OperationEvent) events.next()).getRequestNanos());
+            }
+            assertFalse(events.hasNext());
+        } finally {
+            events.close();
+        }
+    }
+
+    protected void testSeek(MappedTraceReader reader, int n) throws IOException {
+        try {
+            assertEquals(5, reader.index().size());
+            for (long i: new long[]{0, 1, BinaryTraceIndex.DEFAULT_INTERVAL, n - 1}) {
+                TraceEventIterator events = reader.seekToEvent(i);
+                assertTrue(events.hasNext());
+                assertEquals(i * 1000L, ((OperationEvent) events.next()).getRequestNanos());
+            }
+            assertFalse(reader.seekToEvent(n).hasNext());
+
+            TraceEventIterator events = reader.window(2500L * 1000L, 3000L * 1000L + 10L);
+            for (int i=2500; i<=3000; ++i) {
+                assertTrue(events.hasNext());
+                assertEquals(i * 1000L, ((OperationEvent) events.next()).getRequestNanos());
+            }
+            assertFalse(events.hasNext());
+        } finally {
+            reader.close();
+        }
+    }
+}
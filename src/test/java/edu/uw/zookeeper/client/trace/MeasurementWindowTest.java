@@ -0,0 +1,83 @@
+package edu.uw.zookeeper.client.trace;
+
+import static org.junit.Assert.*;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import edu.uw.zookeeper.common.Pair;
+import edu.uw.zookeeper.protocol.proto.OpCode;
+
+@RunWith(JUnit4.class)
+public class MeasurementWindowTest {
+
+    @Test
+    public void testContains() {
+        MeasurementWindow window = MeasurementWindow.create(1000L, 5000L, 500L);
+        assertTrue(window.isBounded());
+        assertEquals(6500L, window.getRunMillis());
+        assertFalse(window.contains(999L));
+        assertTrue(window.contains(1000L));
+        assertTrue(window.contains(5999L));
+        assertFalse(window.contains(6000L));
+        assertTrue(window.contains(1000L, 1500L));
+        assertFalse(window.contains(500L, 1500L));
+        assertFalse(window.contains(5500L, 6500L));
+
+        // no duration runs for iterations, without a cooldown
+        window = MeasurementWindow.create(1000L, 0L, 500L);
+        assertFalse(window.isBounded());
+        assertEquals(0L, window.getCooldown());
+        assertTrue(window.contains(Long.MAX_VALUE));
+        assertTrue(MeasurementWindow.none().contains(0L));
+    }
+
+    @Test
+    public void testUntil() {
+        Iterator<Pair<Long, String>> schedule = MeasurementWindow.until(20L, ImmutableList.of(
+                Pair.create(0L, "a"), Pair.create(10L, "b"), Pair.create(20L, "c"), Pair.create(30L, "d")).iterator());
+        assertEquals("a", schedule.next().second());
+        assertEquals("b", schedule.next().second());
+        assertFalse(schedule.hasNext());
+    }
+
+    @Test
+    public void testHeader() {
+        TraceHeader header = TraceHeader.create(
+                ImmutableMap.<String, Object>of(),
+                ImmutableSet.of(TraceEventTag.TIMESTAMP_EVENT),
+                MeasurementWindow.create(1000L, 5000L, 500L));
+        assertEquals(MeasurementWindow.create(1000L, 5000L, 500L), header.getWindow());
+        assertEquals(MeasurementWindow.none(), TraceHeader.create(
+                ImmutableMap.<String, Object>of(), TraceEventTag.TIMESTAMP_EVENT).getWindow());
+    }
+
+    @Test
+    public void testSharedOrigin() {
+        long second = TimeUnit.SECONDS.toNanos(1L);
+        MeasurementOrigin origin = MeasurementOrigin.create();
+        StripedThroughputMeasuringActorTest.RecordingActor events = new StripedThroughputMeasuringActorTest.RecordingActor();
+        LatencyMeasuringActor latencies = LatencyMeasuringActor.create(
+                MeasurementWindow.create(1000L, 1000L, 0L), false, origin, events);
+        StripedThroughputMeasuringActor throughput = StripedThroughputMeasuringActor.create(
+                1000, false, origin, StripedThroughputMeasuringActorTest.stoppedScheduler(), latencies);
+
+        // the first operation, in the warmup, sets the origin
+        throughput.handleOperationTiming(1L, OpCode.GET_DATA, 0, second, second + second / 10);
+        assertEquals(second, origin.get());
+        assertTrue(events.events.isEmpty());
+        // completed 1.1 s after the origin, although 0.6 s after its own request
+        latencies.handleOperationTiming(1L, OpCode.GET_DATA, 0, second + second / 2, 2 * second + second / 10);
+        assertEquals(1, events.events.size());
+        assertTrue(events.events.get(0) instanceof LatencyMeasurementEvent);
+        assertEquals(second, origin.get(3 * second));
+    }
+}
@@ -0,0 +1,61 @@
+package edu.uw.zookeeper.client.trace;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.collect.Lists;
+
+@RunWith(JUnit4.class)
+public class MpscRingBufferTest {
+
+    @Test
+    public void testConcurrentProducers() throws InterruptedException {
+        final MpscRingBuffer<Long> buffer = MpscRingBuffer.create(100);
+        assertEquals(128, buffer.capacity());
+        final int producers = 4;
+        final int n = 10000;
+        List<Thread> threads = Lists.newArrayListWithCapacity(producers);
+        for (int i=0; i<producers; ++i) {
+            final long id = i;
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    for (long j=0; j<n; ++j) {
+                        while (! buffer.offer(Long.valueOf(id * n + j))) {
+                            Thread.yield();
+                        }
+                    }
+                }
+            };
+            thread.start();
+            threads.add(thread);
+        }
+        long[] next = new long[producers];
+        List<Long> batch = Lists.newArrayList();
+        int total = 0;
+        while (total < producers * n) {
+            total += buffer.drainTo(batch, 64);
+            for (Long value: batch) {
+                int id = (int) (value.longValue() / n);
+                // per-producer order is preserved
+                assertEquals(next[id], value.longValue() % n);
+                next[id] += 1L;
+            }
+            batch.clear();
+        }
+        for (Thread thread: threads) {
+            thread.join();
+        }
+        assertTrue(buffer.isEmpty());
+        
+        for (int i=0; i<buffer.capacity(); ++i) {
+            assertTrue(buffer.offer(Long.valueOf(i)));
+        }
+        assertFalse(buffer.offer(Long.valueOf(-1L)));
+    }
+}
@@ -0,0 +1,56 @@
+package edu.uw.zookeeper.client.trace;
+
+import static org.junit.Assert.*;
+
+import java.util.Map;
+
+import org.apache.zookeeper.KeeperException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+import edu.uw.zookeeper.data.Operations;
+import edu.uw.zookeeper.data.ZNodeLabel;
+import edu.uw.zookeeper.data.ZNodePath;
+import edu.uw.zookeeper.protocol.ProtocolRequestMessage;
+import edu.uw.zookeeper.protocol.ProtocolResponseMessage;
+import edu.uw.zookeeper.protocol.proto.IErrorResponse;
+import edu.uw.zookeeper.protocol.proto.OpCode;
+
+@RunWith(JUnit4.class)
+public class OperationTimingCodecTest {
+
+    @Test
+    public void testErrorReply() {
+        StripedThroughputMeasuringActorTest.RecordingActor events = new StripedThroughputMeasuringActorTest.RecordingActor();
+        StripedThroughputMeasuringActor actor = StripedThroughputMeasuringActor.create(
+                StripedThroughputMeasuringActorTest.INTERVAL, true, StripedThroughputMeasuringActorTest.stoppedScheduler(), events);
+        OperationTimingCodec codec = OperationTimingCodec.defaults(actor);
+
+        codec.sent(ProtocolRequestMessage.of(1, Operations.Requests.setData()
+                .setPath(ZNodePath.root().join(ZNodeLabel.fromString("a")))
+                .setData(new byte[0]).build()));
+        codec.sent(ProtocolRequestMessage.of(2, Operations.Requests.sync().build()));
+        codec.received(ProtocolResponseMessage.of(1, 1L, new IErrorResponse(KeeperException.Code.BADVERSION)));
+        codec.received(ProtocolResponseMessage.of(2, 1L, Operations.Responses.sync().build()));
+        actor.stop();
+
+        Map<Map.Entry<Integer, Integer>, Integer> counts = Maps.newHashMap();
+        for (TraceEvent event: events.events) {
+            if (event instanceof OperationThroughputEvent) {
+                OperationThroughputEvent operation = (OperationThroughputEvent) event;
+                Map.Entry<Integer, Integer> key = Maps.immutableEntry(operation.getOpcode(), operation.getError());
+                Integer count = counts.get(key);
+                counts.put(key, ((count == null) ? 0 : count.intValue()) + operation.getCount());
+            }
+        }
+        // keyed by the request opcode, not the error opcode of the reply
+        assertEquals(ImmutableMap.<Map.Entry<Integer, Integer>, Integer>of(
+                Maps.immutableEntry(OpCode.SET_DATA.intValue(), KeeperException.Code.BADVERSION.intValue()), 1,
+                Maps.immutableEntry(OpCode.SYNC.intValue(), 0), 1),
+                counts);
+    }
+}
@@ -0,0 +1,79 @@
+package edu.uw.zookeeper.client.trace;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import edu.uw.zookeeper.data.Operations;
+import edu.uw.zookeeper.protocol.ProtocolRequestMessage;
+import edu.uw.zookeeper.protocol.ProtocolResponseMessage;
+
+@RunWith(JUnit4.class)
+public class RollingTraceWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoll() throws IOException {
+        for (TraceFormat format: TraceFormat.values()) {
+            testRoll(format);
+        }
+    }
+    
+    protected void testRoll(TraceFormat format) throws IOException {
+        ObjectMapper mapper = ObjectMapperBuilder.defaults().build();
+        File file = new File(folder.getRoot(), "trace." + format.suffix());
+        TraceHeader header = TraceHeader.create(ImmutableMap.<String, Object>of(), TraceEventTag.OPERATION_EVENT);
+        TraceWriter writer = RollingTraceWriter.forFile(
+                file, format, mapper.writer(), header, 
+                TraceFlushPolicy.defaults(), TraceRollingPolicy.create(4096L, 0L),
+                MoreExecutors.directExecutor());
+        long sessionId = 1;
+        long zxid = 1;
+        int n = 1000;
+        for (int xid=0; xid<n; ++xid) {
+            long nanos = 1000L * xid;
+            writer.send(OperationEvent.create(
+                    sessionId,
+                    ProtocolRequestMessage.of(xid, Operations.Requests.sync().build()),
+                    nanos,
+                    ProtocolResponseMessage.of(xid, zxid, Operations.Responses.sync().build()),
+                    nanos + 10L));
+        }
+        writer.stop();
+        
+        TraceManifest manifest = TraceManifest.forFile(TraceManifest.forTrace(file), mapper.reader());
+        assertTrue(manifest.getSegments().size() > 1);
+        long events = 0L;
+        for (TraceManifest.Segment segment: manifest.getSegments()) {
+            assertTrue(manifest.segmentFile(TraceManifest.forTrace(file), segment).exists());
+            events += segment.getEvents();
+        }
+        assertEquals(n, events);
+        
+        assertFalse(file.exists());
+        TraceEventIterator iterator = TraceEventIterator.forFile(file, mapper.reader());
+        try {
+            assertEquals(header, iterator.header());
+            for (int xid=0; xid<n; ++xid) {
+                assertTrue(iterator.hasNext());
+                assertEquals(xid * 1000L, ((OperationEvent) iterator.next()).getRequestNanos());
+            }
+            assertFalse(iterator.hasNext());
+        } finally {
+            iterator.close();
+        }
+    }
+}
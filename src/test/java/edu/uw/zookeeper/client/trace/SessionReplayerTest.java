@@ -0,0 +1,139 @@
+package edu.uw.zookeeper.client.trace;
+
+import static org.junit.Assert.*;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import edu.uw.zookeeper.client.ClientExecutor;
+import edu.uw.zookeeper.common.Factory;
+import edu.uw.zookeeper.data.Operations;
+import edu.uw.zookeeper.data.ZNodeLabel;
+import edu.uw.zookeeper.data.ZNodePath;
+import edu.uw.zookeeper.protocol.Operation;
+import edu.uw.zookeeper.protocol.ProtocolRequestMessage;
+import edu.uw.zookeeper.protocol.proto.Records;
+
+@RunWith(JUnit4.class)
+public class SessionReplayerTest {
+
+    public static final int SESSIONS = 5;
+    public static final int REQUESTS = 200;
+
+    @Test(timeout=10000)
+    public void testSessionOrder() {
+        List<ProtocolRequestEvent> trace = trace();
+        RecordingReplayer replayer = new RecordingReplayer(trace.iterator(), -1);
+        replayer.run();
+
+        assertEquals(SESSIONS, replayer.submitted.size());
+        for (int i=0; i<SESSIONS; ++i) {
+            List<Records.Request> expected = Lists.newArrayList();
+            for (ProtocolRequestEvent event: trace) {
+                if (event.getSessionId() == i) {
+                    expected.add(event.getRequest().record());
+                }
+            }
+            assertEquals(expected, replayer.submitted.get(Long.valueOf(i)));
+        }
+    }
+
+    @Test(timeout=10000)
+    public void testWorkerFailure() {
+        RecordingReplayer replayer = new RecordingReplayer(trace().iterator(), REQUESTS / 2);
+        try {
+            replayer.run();
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(String.valueOf(e), Throwables.getRootCause(e) instanceof UnsupportedOperationException);
+        }
+    }
+
+    @Test(timeout=10000)
+    public void testTraceFailure() {
+        final Iterator<ProtocolRequestEvent> trace = trace().iterator();
+        Iterator<ProtocolRequestEvent> failing = new AbstractIterator<ProtocolRequestEvent>() {
+            int count = 0;
+            @Override
+            protected ProtocolRequestEvent computeNext() {
+                if (++count > REQUESTS / 2) {
+                    throw new IllegalStateException();
+                }
+                return trace.next();
+            }
+        };
+        RecordingReplayer replayer = new RecordingReplayer(failing, -1);
+        try {
+            replayer.run();
+            fail();
+        } catch (IllegalStateException e) {
+            // not masked by ending the workers
+        }
+    }
+
+    protected static List<ProtocolRequestEvent> trace() {
+        ImmutableList.Builder<ProtocolRequestEvent> trace = ImmutableList.builder();
+        for (int i=0; i<REQUESTS; ++i) {
+            trace.add(ProtocolRequestEvent.create(
+                    i % SESSIONS,
+                    ProtocolRequestMessage.of(i, Operations.Requests.getData().setPath(
+                            ZNodePath.root().join(ZNodeLabel.fromString(String.valueOf(i)))).build())));
+        }
+        return trace.build();
+    }
+
+    protected static final class RecordingReplayer extends SessionReplayer {
+
+        protected final Map<Long, List<Records.Request>> submitted;
+        protected final int failAt;
+        protected int count;
+
+        /**
+         * @param failAt submission that fails, or negative
+         */
+        public RecordingReplayer(Iterator<ProtocolRequestEvent> requests, int failAt) {
+            super(requests,
+                    new Factory<ClientExecutor<? super Operation.Request, ?, ?>>() {
+                        @Override
+                        public ClientExecutor<? super Operation.Request, ?, ?> get() {
+                            return null;
+                        }
+                    },
+                    2, 0.0, LogManager.getLogger(SessionReplayerTest.class));
+            this.submitted = Maps.newHashMap();
+            this.failAt = failAt;
+            this.count = 0;
+        }
+
+        @Override
+        protected synchronized ListenableFuture<?> submit(
+                ClientExecutor<? super Operation.Request, ?, ?> client,
+                long sessionId,
+                Records.Request request) {
+            if (count++ == failAt) {
+                throw new UnsupportedOperationException();
+            }
+            List<Records.Request> requests = submitted.get(Long.valueOf(sessionId));
+            if (requests == null) {
+                requests = Lists.newArrayList();
+                submitted.put(Long.valueOf(sessionId), requests);
+            }
+            requests.add(request);
+            return Futures.immediateFuture(null);
+        }
+    }
+}
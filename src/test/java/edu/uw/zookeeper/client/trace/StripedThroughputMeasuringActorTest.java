@@ -0,0 +1,196 @@
+package edu.uw.zookeeper.client.trace;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.zookeeper.KeeperException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import edu.uw.zookeeper.common.Actor;
+import edu.uw.zookeeper.protocol.proto.OpCode;
+
+@RunWith(JUnit4.class)
+public class StripedThroughputMeasuringActorTest {
+
+    public static final int INTERVAL = 1000;
+    public static final long ORIGIN = TimeUnit.SECONDS.toNanos(1L);
+
+    @Test
+    public void testLatePublish() {
+        RecordingActor delegate = new RecordingActor();
+        StripedThroughputMeasuringActor actor = StripedThroughputMeasuringActor.create(INTERVAL, stoppedScheduler(), delegate);
+        long interval = TimeUnit.MILLISECONDS.toNanos(INTERVAL);
+        actor.handleOperationTiming(1L, OpCode.GET_DATA, 0, ORIGIN, ORIGIN + interval / 10);
+        assertEquals(ImmutableList.of(1), complete(actor, 1));
+
+        // interval 0 was completed, so this is counted in interval 1
+        actor.handleOperationTiming(1L, OpCode.GET_DATA, 0, ORIGIN, ORIGIN + interval / 5);
+        assertTrue(delegate.events.isEmpty());
+        // past the newest open interval, so this first completes intervals 1 to 5
+        actor.handleOperationTiming(1L, OpCode.GET_DATA, 0, ORIGIN, ORIGIN + 10 * interval);
+        assertEquals(ImmutableList.of(1, 0, 0, 0, 0), counts(delegate.events));
+        assertEquals(ImmutableList.of(0, 0, 0, 1), complete(actor, 10));
+    }
+
+    @Test
+    public void testRetiredSlot() {
+        StripedCounter counter = StripedCounter.create(1, 0);
+        assertTrue(counter.increment(0));
+        assertEquals(1L, counter.sumThenAdvance(4));
+        // a count against the completed interval isn't carried into the next one
+        assertFalse(counter.increment(0));
+        assertEquals(0L, counter.sum());
+        assertTrue(counter.increment(4));
+        assertEquals(1L, counter.sum());
+    }
+
+    @Test(timeout=10000)
+    public void testIdle() throws InterruptedException {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            RecordingActor delegate = new RecordingActor();
+            int millis = 10;
+            StripedThroughputMeasuringActor actor = StripedThroughputMeasuringActor.create(millis, scheduler, delegate);
+            long now = System.nanoTime();
+            actor.handleOperationTiming(1L, OpCode.GET_DATA, 0, now, now);
+            // the tick stops once the interval of the operation is completed
+            while (true) {
+                synchronized (actor) {
+                    if (actor.tick == null) {
+                        break;
+                    }
+                }
+                Thread.sleep(millis);
+            }
+            int size;
+            synchronized (delegate) {
+                size = delegate.events.size();
+                assertEquals(ThroughputMeasurementEvent.create(1, millis), delegate.events.get(0));
+            }
+            Thread.sleep(10 * millis);
+            synchronized (delegate) {
+                assertEquals(size, delegate.events.size());
+            }
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testByOperation() {
+        StripedThroughputMeasuringActor actor = StripedThroughputMeasuringActor.create(INTERVAL, true, stoppedScheduler(), new RecordingActor());
+        long interval = TimeUnit.MILLISECONDS.toNanos(INTERVAL);
+        int badVersion = KeeperException.Code.BADVERSION.intValue();
+        actor.handleOperationTiming(1L, OpCode.GET_DATA, 0, ORIGIN, ORIGIN + interval / 10);
+        actor.handleOperationTiming(2L, OpCode.GET_DATA, 0, ORIGIN, ORIGIN + interval / 5);
+        actor.handleOperationTiming(1L, OpCode.SET_DATA, badVersion, ORIGIN, ORIGIN + interval / 2);
+        actor.handleOperationTiming(2L, OpCode.GET_DATA, 0, ORIGIN, ORIGIN + interval + interval / 2);
+        // not counted
+        actor.handleOperationTiming(1L, OpCode.CLOSE_SESSION, 0, ORIGIN, ORIGIN + interval / 2);
+
+        // each interval follows the aggregate with every key seen so far
+        List<TraceEvent> events = completeEvents(actor, 1);
+        assertEquals(ImmutableList.of(
+                ThroughputMeasurementEvent.create(3, INTERVAL),
+                OperationThroughputEvent.create(OpCode.GET_DATA.intValue(), 0, 2, INTERVAL),
+                OperationThroughputEvent.create(OpCode.SET_DATA.intValue(), badVersion, 1, INTERVAL)),
+                sortOperations(events));
+        events = completeEvents(actor, 2);
+        assertEquals(ImmutableList.of(
+                ThroughputMeasurementEvent.create(1, INTERVAL),
+                OperationThroughputEvent.create(OpCode.GET_DATA.intValue(), 0, 1, INTERVAL),
+                OperationThroughputEvent.create(OpCode.SET_DATA.intValue(), badVersion, 0, INTERVAL)),
+                sortOperations(events));
+    }
+
+    /**
+     * Intervals are only completed by the test.
+     */
+    protected static ScheduledExecutorService stoppedScheduler() {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler.shutdown();
+        return scheduler;
+    }
+
+    /**
+     * @return counts of the intervals completed until the given one
+     */
+    protected static List<Integer> complete(StripedThroughputMeasuringActor actor, int intervals) {
+        return counts(completeEvents(actor, intervals));
+    }
+
+    protected static List<Integer> counts(List<TraceEvent> events) {
+        List<Integer> counts = Lists.newArrayList();
+        for (TraceEvent event: events) {
+            if (event instanceof ThroughputMeasurementEvent) {
+                assertEquals(INTERVAL, ((ThroughputMeasurementEvent) event).getMillis());
+                counts.add(((ThroughputMeasurementEvent) event).getCount());
+            }
+        }
+        return counts;
+    }
+
+    protected static List<TraceEvent> completeEvents(StripedThroughputMeasuringActor actor, int intervals) {
+        ImmutableList.Builder<TraceEvent> events = ImmutableList.builder();
+        synchronized (actor) {
+            actor.complete(ORIGIN, ORIGIN + intervals * TimeUnit.MILLISECONDS.toNanos(INTERVAL), events);
+        }
+        return events.build();
+    }
+
+    /**
+     * Operation events of a single interval are in no particular order.
+     */
+    protected static List<TraceEvent> sortOperations(List<TraceEvent> events) {
+        List<TraceEvent> sorted = Lists.newArrayList(events);
+        Collections.sort(sorted.subList(1, sorted.size()), new Comparator<TraceEvent>() {
+            @Override
+            public int compare(TraceEvent a, TraceEvent b) {
+                OperationThroughputEvent x = (OperationThroughputEvent) a;
+                OperationThroughputEvent y = (OperationThroughputEvent) b;
+                return (x.getOpcode() != y.getOpcode()) ?
+                        Integer.compare(x.getOpcode(), y.getOpcode()) :
+                            Integer.compare(x.getError(), y.getError());
+            }
+        });
+        return sorted;
+    }
+
+    protected static final class RecordingActor implements Actor<TraceEvent> {
+
+        protected final List<TraceEvent> events = Lists.newArrayList();
+        private volatile boolean stopped = false;
+
+        @Override
+        public void run() {
+        }
+
+        @Override
+        public Actor.State state() {
+            return stopped ? Actor.State.TERMINATED : Actor.State.WAITING;
+        }
+
+        @Override
+        public synchronized boolean send(TraceEvent message) {
+            events.add(message);
+            return !stopped;
+        }
+
+        @Override
+        public boolean stop() {
+            stopped = true;
+            return true;
+        }
+    }
+}
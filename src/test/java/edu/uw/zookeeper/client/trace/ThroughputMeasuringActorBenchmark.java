@@ -0,0 +1,115 @@
+package edu.uw.zookeeper.client.trace;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import edu.uw.zookeeper.common.Actor;
+import edu.uw.zookeeper.data.Operations;
+import edu.uw.zookeeper.protocol.ProtocolRequestMessage;
+import edu.uw.zookeeper.protocol.ProtocolResponseMessage;
+import edu.uw.zookeeper.protocol.proto.Records;
+
+/**
+ * Compares ThroughputMeasuringActor with StripedThroughputMeasuringActor
+ * on the response path, with many threads completing operations.
+ * 
+ * Not run as part of the tests; run main() from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@Threads(16)
+public class ThroughputMeasuringActorBenchmark {
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ThroughputMeasuringActorBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+    
+    @Param({"synchronized", "striped"})
+    public String implementation;
+    
+    protected ScheduledExecutorService scheduler;
+    protected Actor<TraceEvent> actor;
+    protected Records.Request request;
+    protected Records.Response response;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        DiscardingActor delegate = new DiscardingActor();
+        int interval = 10;
+        if (implementation.equals("striped")) {
+            actor = StripedThroughputMeasuringActor.create(interval, scheduler, delegate);
+        } else {
+            actor = ThroughputMeasuringActor.create(interval, delegate);
+        }
+        request = Operations.Requests.sync().build();
+        response = Operations.Responses.sync().build();
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        actor.stop();
+        scheduler.shutdownNow();
+    }
+    
+    @Benchmark
+    public boolean send() {
+        long nanos = System.nanoTime();
+        return actor.send(OperationEvent.create(
+                1L,
+                ProtocolRequestMessage.of(1, request),
+                nanos,
+                ProtocolResponseMessage.of(1, 1L, response),
+                nanos));
+    }
+    
+    protected static final class DiscardingActor implements Actor<TraceEvent> {
+
+        private volatile boolean stopped = false;
+        
+        @Override
+        public void run() {
+        }
+
+        @Override
+        public Actor.State state() {
+            return stopped ? Actor.State.TERMINATED : Actor.State.WAITING;
+        }
+
+        @Override
+        public boolean send(TraceEvent message) {
+            return !stopped;
+        }
+
+        @Override
+        public boolean stop() {
+            stopped = true;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package edu.uw.zookeeper.client.trace;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import edu.uw.zookeeper.data.Operations;
+import edu.uw.zookeeper.data.RelativeZNodePath;
+import edu.uw.zookeeper.data.ZNodePath;
+import edu.uw.zookeeper.protocol.ProtocolRequestMessage;
+import edu.uw.zookeeper.protocol.ProtocolResponseMessage;
+import edu.uw.zookeeper.protocol.proto.Records;
+
+/**
+ * Write throughput of each trace format and compression 
+ * for the operations of a GetSetClient run (50% getData, 50% setData of up to 1 KiB).
+ * 
+ * Each invocation writes a whole trace; the size of the last one 
+ * is printed at the end of each trial.
+ * Not run as part of the tests; run main() from the test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TraceCompressionBenchmark {
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TraceCompressionBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+    
+    public static final int EVENTS = 10000;
+    public static final int DATA_MAX = 1024;
+    
+    @Param({"JSON", "BINARY"})
+    public TraceFormat format;
+    
+    @Param({"NONE", "GZIP", "LZ4", "ZSTD"})
+    public TraceCompression compression;
+    
+    protected ObjectMapper mapper;
+    protected TraceHeader header;
+    protected TraceEvent[] events;
+    protected File file;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mapper = ObjectMapperBuilder.defaults().build();
+        header = TraceHeader.create(ImmutableMap.<String, Object>of(), TraceEventTag.OPERATION_EVENT);
+        Random random = new Random(1L);
+        long sessionId = random.nextLong();
+        events = new TraceEvent[EVENTS];
+        for (int xid=0; xid<events.length; ++xid) {
+            long nanos = 1000L * xid;
+            events[xid] = OperationEvent.create(
+                    sessionId,
+                    ProtocolRequestMessage.of(xid, request(random)),
+                    nanos,
+                    ProtocolResponseMessage.of(xid, (long) xid, Operations.Responses.sync().build()),
+                    nanos + random.nextInt(1000000));
+        }
+        file = File.createTempFile("trace", '.' + compression.withSuffix(new File(format.suffix())).getName());
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.printf("%n%s %s: %d bytes for %d events%n", format, compression, file.length(), events.length);
+        file.delete();
+    }
+    
+    @Benchmark
+    public long write() throws IOException {
+        TraceWriter writer = TraceWriter.forFile(
+                file, format, mapper.writer(), header, MoreExecutors.directExecutor());
+        for (TraceEvent event: events) {
+            writer.send(event);
+        }
+        writer.stop();
+        return writer.position();
+    }
+    
+    protected Records.Request request(Random random) {
+        ZNodePath path = ZNodePath.root().join(RelativeZNodePath.fromString(
+                String.format("%d/%d", random.nextInt(4), random.nextInt(4))));
+        if (random.nextBoolean()) {
+            return Operations.Requests.getData().setPath(path).setWatch(false).build();
+        } else {
+            byte[] data = new byte[random.nextInt(DATA_MAX)];
+            random.nextBytes(data);
+            return Operations.Requests.setData().setPath(path).setData(data).build();
+        }
+    }
+}
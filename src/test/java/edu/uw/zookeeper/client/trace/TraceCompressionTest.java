@@ -0,0 +1,67 @@
+package edu.uw.zookeeper.client.trace;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import edu.uw.zookeeper.data.Operations;
+import edu.uw.zookeeper.protocol.ProtocolRequestMessage;
+import edu.uw.zookeeper.protocol.ProtocolResponseMessage;
+
+@RunWith(JUnit4.class)
+public class TraceCompressionTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        ObjectMapper mapper = ObjectMapperBuilder.defaults().build();
+        TraceHeader header = TraceHeader.create(ImmutableMap.<String, Object>of(), TraceEventTag.OPERATION_EVENT);
+        int n = 1000;
+        for (TraceFormat format: TraceFormat.values()) {
+            for (TraceCompression compression: TraceCompression.values()) {
+                File file = compression.withSuffix(new File(folder.getRoot(), "trace." + format.suffix()));
+                assertEquals(format, TraceFormat.forFile(file));
+                assertEquals(compression, TraceCompression.forFile(file));
+                
+                TraceWriter writer = TraceWriter.forFile(file, mapper.writer(), header, MoreExecutors.directExecutor());
+                for (int xid=0; xid<n; ++xid) {
+                    long nanos = 1000L * xid;
+                    writer.send(OperationEvent.create(
+                            1L,
+                            ProtocolRequestMessage.of(xid, Operations.Requests.sync().build()),
+                            nanos,
+                            ProtocolResponseMessage.of(xid, 1L, Operations.Responses.sync().build()),
+                            nanos + 10L));
+                }
+                writer.stop();
+                
+                assertEquals(compression, TraceCompression.detect(file));
+                assertEquals(format, TraceFormat.detect(file));
+                TraceEventIterator events = TraceEventIterator.forFile(file, mapper.reader());
+                try {
+                    assertEquals(header, events.header());
+                    for (int xid=0; xid<n; ++xid) {
+                        assertTrue(events.hasNext());
+                        assertEquals(xid * 1000L, ((OperationEvent) events.next()).getRequestNanos());
+                    }
+                    assertFalse(events.hasNext());
+                } finally {
+                    events.close();
+                }
+            }
+        }
+    }
+}
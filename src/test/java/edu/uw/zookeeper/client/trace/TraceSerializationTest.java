@@ -2,12 +2,16 @@ package edu.uw.zookeeper.client.trace;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.zookeeper.KeeperException;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -15,6 +19,7 @@ import org.junit.runners.JUnit4;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.MoreExecutors;
 
 import edu.uw.zookeeper.client.trace.LatencyMeasurementEvent;
@@ -32,6 +37,7 @@ import edu.uw.zookeeper.data.Operations;
 import edu.uw.zookeeper.protocol.Message;
 import edu.uw.zookeeper.protocol.ProtocolRequestMessage;
 import edu.uw.zookeeper.protocol.ProtocolResponseMessage;
+import edu.uw.zookeeper.protocol.proto.OpCode;
 
 @RunWith(JUnit4.class)
 public class TraceSerializationTest {
@@ -44,9 +50,19 @@ public class TraceSerializationTest {
         assertTrue(mapper.canDeserialize(mapper.constructType(Message.ClientRequest.class)));
         testTraceEventHeaderSerialization(TimestampEvent.currentTimeMillis(), mapper);
         testTraceEventHeaderSerialization(LatencyMeasurementEvent.create(1), mapper);
+        testTraceEventHeaderSerialization(LatencyHistogramEvent.create(500, 10, 1, 2, 3, 4, 5), mapper);
+        testTraceEventHeaderSerialization(SessionEvent.create(SessionEvent.Kind.CONNECT, 0x1234567890L, 1500), mapper);
+        testTraceEventHeaderSerialization(SessionEvent.create(SessionEvent.Kind.CLOSE, 0x1234567890L, 800), mapper);
+        testTraceEventHeaderSerialization(NotificationEvent.create(0x1234567890L, "/watch-0", 2500), mapper);
+        testTraceEventHeaderSerialization(LockEvent.create(LockEvent.Kind.ACQUIRE, 0x1234567890L, 3, 4000), mapper);
+        testTraceEventHeaderSerialization(LockEvent.create(LockEvent.Kind.HANDOFF, 0x1234567890L, 3, 700), mapper);
+        testTraceEventHeaderSerialization(MultiEvent.create(10, 1200, 300, 5000), mapper);
+        testTraceEventHeaderSerialization(OperationLatencyEvent.create(OpCode.GET_DATA.intValue(), 0, 250), mapper);
+        testTraceEventHeaderSerialization(OperationThroughputEvent.create(OpCode.SET_DATA.intValue(), KeeperException.Code.BADVERSION.intValue(), 12, 500), mapper);
         long sessionId = 1;
         int xid = 1;
         testTraceEventHeaderSerialization(ProtocolRequestEvent.create(sessionId, ProtocolRequestMessage.of(xid, Operations.Requests.sync().build())), mapper);
+        testTraceEventHeaderSerialization(ProtocolRequestEvent.create(sessionId, ProtocolRequestMessage.of(xid, Operations.Requests.sync().build()), 1000L), mapper);
         long zxid = 1;
         testTraceEventHeaderSerialization(ProtocolResponseEvent.create(sessionId, ProtocolResponseMessage.of(xid, zxid, Operations.Responses.sync().build())), mapper);
     }
@@ -78,6 +94,47 @@ public class TraceSerializationTest {
         assertFalse(itr.hasNext());
     }
     
+    @Test
+    public void testBinaryIterator() throws IOException {
+        ObjectMapper mapper = ObjectMapperBuilder.defaults().build();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        TraceHeader header = TraceHeader.create(ImmutableMap.<String, Object>of(), TraceEventTag.TIMESTAMP_EVENT, TraceEventTag.PROTOCOL_REQUEST_EVENT, TraceEventTag.PROTOCOL_RESPONSE_EVENT);
+        TraceWriter writer = BinaryTraceWriter.create(output, mapper.writer(), header, MoreExecutors.directExecutor());
+        long sessionId = 1;
+        long zxid = 1;
+        List<TraceEvent> events = Lists.newArrayList();
+        events.add(TimestampEvent.create(1));
+        for (int xid=1; xid<10; ++xid) {
+            events.add(ProtocolRequestEvent.create(sessionId, ProtocolRequestMessage.of(xid, Operations.Requests.sync().build()), 1000L * xid));
+            events.add(ProtocolResponseEvent.create(sessionId, ProtocolResponseMessage.of(xid, zxid, Operations.Responses.sync().build())));
+        }
+        events.add(LatencyMeasurementEvent.create(-1));
+        events.add(ThroughputMeasurementEvent.create(100, 500));
+        events.add(SessionEvent.create(SessionEvent.Kind.CONNECT, sessionId, 1500));
+        events.add(SessionEvent.create(SessionEvent.Kind.CLOSE, sessionId, 800));
+        events.add(NotificationEvent.create(sessionId, "/watch-0", 2500));
+        events.add(LockEvent.create(LockEvent.Kind.ACQUIRE, sessionId, 0, 4000));
+        events.add(LockEvent.create(LockEvent.Kind.HANDOFF, sessionId, 0, 700));
+        events.add(MultiEvent.create(10, 1200, 300, 5000));
+        events.add(OperationLatencyEvent.create(OpCode.CLOSE_SESSION.intValue(), 0, 2500));
+        events.add(OperationThroughputEvent.create(OpCode.SET_DATA.intValue(), KeeperException.Code.BADVERSION.intValue(), 12, 500));
+        events.add(ProtocolRequestEvent.create(sessionId, ProtocolRequestMessage.of(10, Operations.Requests.sync().build())));
+        events.add(TimestampEvent.create(2));
+        for (TraceEvent event: events) {
+            writer.send(event);
+        }
+        writer.stop();
+        
+        TraceEventIterator itr = BinaryTraceEventIterator.create(
+                new ByteArrayInputStream(output.toByteArray()), mapper.reader());
+        assertEquals(header, itr.header());
+        for (TraceEvent event: events) {
+            assertTrue(itr.hasNext());
+            assertEquals(event, itr.next());
+        }
+        assertFalse(itr.hasNext());
+    }
+    
     public void testTraceEventHeaderSerialization(TraceEvent input, ObjectMapper mapper) throws IOException {
         testStringSerialization(TraceEventHeader.create(input), TraceEventHeader.class, mapper);
     }
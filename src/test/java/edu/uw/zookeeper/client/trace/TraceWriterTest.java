@@ -0,0 +1,64 @@
+package edu.uw.zookeeper.client.trace;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import edu.uw.zookeeper.data.Operations;
+import edu.uw.zookeeper.protocol.ProtocolRequestMessage;
+import edu.uw.zookeeper.protocol.ProtocolResponseMessage;
+
+@RunWith(JUnit4.class)
+public class TraceWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test(timeout=10000)
+    public void testIdleFlush() throws Exception {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            for (TraceFormat format: TraceFormat.values()) {
+                testIdleFlush(format, scheduler);
+            }
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    protected void testIdleFlush(TraceFormat format, ScheduledExecutorService scheduler) throws Exception {
+        ObjectMapper mapper = ObjectMapperBuilder.defaults().build();
+        File file = new File(folder.getRoot(), "trace." + format.suffix());
+        TraceHeader header = TraceHeader.create(ImmutableMap.<String, Object>of(), TraceEventTag.OPERATION_EVENT);
+        // far more bytes than are written, so only the interval flushes
+        TraceWriter writer = TraceWriter.forFile(
+                file, format, mapper.writer(), header,
+                TraceFlushPolicy.create(1L << 20, TimeUnit.MILLISECONDS.toNanos(50L), 0L),
+                MoreExecutors.directExecutor())
+                .setScheduler(scheduler);
+        writer.send(OperationEvent.create(
+                1L,
+                ProtocolRequestMessage.of(1, Operations.Requests.sync().build()),
+                0L,
+                ProtocolResponseMessage.of(1, 1L, Operations.Responses.sync().build()),
+                10L));
+        // flushed without another batch or stop
+        while (file.length() == 0L) {
+            Thread.sleep(10L);
+        }
+        writer.stop();
+    }
+}
@@ -0,0 +1,117 @@
+package edu.uw.zookeeper.client.trace;
+
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.google.common.collect.Queues;
+
+import edu.uw.zookeeper.data.Operations;
+import edu.uw.zookeeper.protocol.Message;
+import edu.uw.zookeeper.protocol.ProtocolRequestMessage;
+import edu.uw.zookeeper.protocol.ProtocolResponseMessage;
+import edu.uw.zookeeper.protocol.proto.OpCode;
+
+/**
+ * Compares the pending request queue kept by OperationTracingCodec
+ * with the XidTimings ring kept by OperationTimingCodec,
+ * for a window of outstanding requests.
+ * 
+ * Only the bookkeeping is measured, not encoding or decoding,
+ * so this doesn't compare the codecs as a whole.
+ * 
+ * Run main() from the test classpath; the GC profiler reports
+ * gc.alloc.rate.norm, the bytes allocated per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class XidTimingsBenchmark {
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(XidTimingsBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+    
+    @Param({"1", "100"})
+    public int outstanding;
+    
+    protected Message.ClientRequest<?>[] requests;
+    protected Message.ServerResponse<?>[] responses;
+    protected Queue<OperationTracingCodec.RequestSentEvent> queue;
+    protected XidTimings timings;
+    protected BlackholeListener listener;
+    protected int xid;
+    protected int pending;
+    
+    @Setup(Level.Iteration)
+    public void setUp() {
+        requests = new Message.ClientRequest<?>[outstanding];
+        responses = new Message.ServerResponse<?>[outstanding];
+        for (int i=0; i<outstanding; ++i) {
+            requests[i] = ProtocolRequestMessage.of(i, Operations.Requests.sync().build());
+            responses[i] = ProtocolResponseMessage.of(i, 1L, Operations.Responses.sync().build());
+        }
+        queue = Queues.newConcurrentLinkedQueue();
+        timings = XidTimings.create();
+        listener = new BlackholeListener();
+        xid = 0;
+        pending = 0;
+    }
+    
+    @Benchmark
+    public void queue(Blackhole blackhole) {
+        int i = xid;
+        xid = (xid + 1) % outstanding;
+        queue.offer(new OperationTracingCodec.RequestSentEvent(requests[i], System.nanoTime()));
+        if (++pending >= outstanding) {
+            --pending;
+            OperationTracingCodec.RequestSentEvent pending = queue.peek();
+            queue.remove(pending);
+            blackhole.consume(OperationEvent.create(1L, pending.request, pending.nanos, responses[pending.request.xid()], System.nanoTime()));
+        }
+    }
+    
+    @Benchmark
+    public void ring(Blackhole blackhole) {
+        int i = xid;
+        xid = (xid + 1) % outstanding;
+        timings.put(i, OpCode.SYNC, System.nanoTime());
+        int oldest = (i + 1) % outstanding;
+        listener.blackhole = blackhole;
+        timings.remove(oldest, 1L, 0, System.nanoTime(), listener);
+    }
+    
+    protected static final class BlackholeListener implements OperationTimingListener {
+        
+        protected Blackhole blackhole;
+
+        @Override
+        public void handleOperationTiming(long sessionId, OpCode opcode, int error,
+                long requestNanos, long responseNanos) {
+            blackhole.consume(responseNanos - requestNanos);
+        }
+    }
+}
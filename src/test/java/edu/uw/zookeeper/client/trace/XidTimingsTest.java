@@ -0,0 +1,61 @@
+package edu.uw.zookeeper.client.trace;
+
+import static org.junit.Assert.*;
+
+import org.apache.zookeeper.KeeperException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import edu.uw.zookeeper.protocol.proto.OpCode;
+
+@RunWith(JUnit4.class)
+public class XidTimingsTest {
+
+    @Test
+    public void testRemove() {
+        XidTimings timings = XidTimings.create(4);
+        RecordingListener listener = new RecordingListener();
+        assertTrue(timings.put(1, OpCode.SET_DATA, 100L));
+        assertFalse(timings.put(5, OpCode.GET_DATA, 110L));
+
+        assertFalse(timings.remove(2, 1L, 0, 200L, listener));
+        assertNull(listener.opcode);
+
+        // the request opcode is reported, not the error opcode of the reply
+        assertTrue(timings.remove(1, 1L, KeeperException.Code.BADVERSION.intValue(), 200L, listener));
+        assertEquals(OpCode.SET_DATA, listener.opcode);
+        assertEquals(KeeperException.Code.BADVERSION.intValue(), listener.error);
+        assertEquals(100L, listener.requestNanos);
+        assertEquals(200L, listener.responseNanos);
+        assertFalse(timings.remove(1, 1L, 0, 300L, listener));
+    }
+
+    @Test
+    public void testExpire() {
+        XidTimings timings = XidTimings.create(4);
+        RecordingListener listener = new RecordingListener();
+        timings.put(2, OpCode.GET_DATA, 100L);
+        timings.expire(1L, listener);
+        assertEquals(OpCode.GET_DATA, listener.opcode);
+        assertEquals(OperationEvent.TIMEOUT, listener.responseNanos);
+        assertTrue(timings.put(2, OpCode.GET_DATA, 100L));
+    }
+
+    protected static final class RecordingListener implements OperationTimingListener {
+
+        protected OpCode opcode = null;
+        protected int error = 0;
+        protected long requestNanos = 0L;
+        protected long responseNanos = 0L;
+
+        @Override
+        public void handleOperationTiming(long sessionId, OpCode opcode, int error,
+                long requestNanos, long responseNanos) {
+            this.opcode = opcode;
+            this.error = error;
+            this.requestNanos = requestNanos;
+            this.responseNanos = responseNanos;
+        }
+    }
+}
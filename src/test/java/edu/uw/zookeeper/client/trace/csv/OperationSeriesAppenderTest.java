@@ -0,0 +1,60 @@
+package edu.uw.zookeeper.client.trace.csv;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.zookeeper.KeeperException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
+
+import edu.uw.zookeeper.client.trace.MeasurementWindow;
+import edu.uw.zookeeper.client.trace.OperationThroughputEvent;
+import edu.uw.zookeeper.client.trace.ThroughputMeasurementEvent;
+import edu.uw.zookeeper.protocol.proto.OpCode;
+
+@RunWith(JUnit4.class)
+public class OperationSeriesAppenderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testLabel() {
+        assertEquals("GET_DATA", OperationSeriesAppender.toLabel(OpCode.GET_DATA.intValue(), 0));
+        assertEquals("SET_DATA-BADVERSION", OperationSeriesAppender.toLabel(
+                OpCode.SET_DATA.intValue(), KeeperException.Code.BADVERSION.intValue()));
+    }
+
+    @Test
+    public void testFiles() throws IOException {
+        File directory = folder.getRoot();
+        int badVersion = KeeperException.Code.BADVERSION.intValue();
+        OperationThroughputSeries.OperationThroughputAppender appender = OperationThroughputSeries.OperationThroughputAppender.forDirectory(
+                CsvSchema.builder(), directory, "trace", MeasurementWindow.none());
+        appender.append(ThroughputMeasurementEvent.create(3, 1000));
+        appender.append(OperationThroughputEvent.create(OpCode.GET_DATA.intValue(), 0, 2, 1000));
+        appender.append(OperationThroughputEvent.create(OpCode.SET_DATA.intValue(), badVersion, 1, 1000));
+        appender.append(ThroughputMeasurementEvent.create(1, 1000));
+        appender.append(OperationThroughputEvent.create(OpCode.GET_DATA.intValue(), 0, 1, 1000));
+        appender.append(OperationThroughputEvent.create(OpCode.SET_DATA.intValue(), badVersion, 0, 1000));
+        appender.close();
+
+        // one file per opcode and error code
+        assertEquals(
+                ImmutableSet.of("trace-operations-GET_DATA.csv", "trace-operations-SET_DATA-BADVERSION.csv"),
+                ImmutableSet.copyOf(directory.list()));
+        List<String> lines = Files.readLines(new File(directory, "trace-operations-SET_DATA-BADVERSION.csv"), Csv.CHARSET);
+        assertEquals(3, lines.size());
+        assertEquals("1000,1", lines.get(1));
+        assertEquals("2000,0", lines.get(2));
+    }
+}